@@ -122,6 +122,14 @@ class DefaultHighlightVisitor implements HighlightVisitor, DumbAware {
     return 2;
   }
 
+  /**
+   * Each clone has its own annotation holder and {@link CachedAnnotators} gives every thread its own annotator instances
+   */
+  @Override
+  public boolean isConcurrentVisitingSupported() {
+    return true;
+  }
+
   private void runAnnotators(PsiElement element) {
     List<Annotator> annotators = myCachedAnnotators.get(element.getLanguage().getID());
     if (annotators.isEmpty()) return;
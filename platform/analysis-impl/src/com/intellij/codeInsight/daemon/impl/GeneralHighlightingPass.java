@@ -25,6 +25,7 @@ import com.intellij.codeInsight.daemon.impl.analysis.CustomHighlightInfoHolder;
 import com.intellij.codeInsight.daemon.impl.analysis.HighlightInfoHolder;
 import com.intellij.codeInsight.daemon.impl.analysis.HighlightingLevelManager;
 import com.intellij.codeInsight.problems.ProblemImpl;
+import com.intellij.concurrency.JobLauncher;
 import com.intellij.lang.annotation.HighlightSeverity;
 import com.intellij.openapi.application.Application;
 import com.intellij.openapi.application.ApplicationManager;
@@ -42,6 +43,7 @@ import com.intellij.openapi.project.DumbService;
 import com.intellij.openapi.project.IndexNotReadyException;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.*;
+import com.intellij.openapi.util.registry.Registry;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.problems.Problem;
@@ -70,6 +72,10 @@ public class GeneralHighlightingPass extends ProgressableTextEditorHighlightingP
   private static final Key<Boolean> HAS_ERROR_ELEMENT = Key.create("HAS_ERROR_ELEMENT");
   static final Condition<PsiFile> SHOULD_HIGHLIGHT_FILTER = file -> HighlightingLevelManager.getInstance(file.getProject()).shouldHighlight(file);
   private static final Random RESTART_DAEMON_RANDOM = new Random();
+  /**
+   * Minimal number of elements to consider concurrent visiting, smaller files are visited faster by a single thread
+   */
+  private static final int CONCURRENT_VISITING_THRESHOLD = 5000;
 
   final boolean myUpdateAll;
   final ProperTextRange myPriorityRange;
@@ -293,20 +299,27 @@ public class GeneralHighlightingPass extends ProgressableTextEditorHighlightingP
     final HighlightInfoHolder holder = createInfoHolder(getFile());
 
     final int chunkSize = Math.max(1, (elements1.size()+elements2.size()) / 100); // one percent precision is enough
+    final List<HighlightInfo> concurrentPostInfos = new ArrayList<>();
 
     boolean success = analyzeByVisitors(visitors, holder, 0, () -> {
       Stack<TextRange> nestedRange = new Stack<>();
       Stack<List<HighlightInfo>> nestedInfos = new Stack<>();
       runVisitors(elements1, ranges1, chunkSize, progress, skipParentsSet, holder, insideResult, outsideResult, forceHighlightParents, visitors,
-                  nestedRange, nestedInfos);
+                  nestedRange, nestedInfos, null);
       final TextRange priorityIntersection = myPriorityRange.intersection(myRestrictRange);
       if ((!elements1.isEmpty() || !insideResult.isEmpty()) && priorityIntersection != null) { // do not apply when there were no elements to highlight
         myHighlightInfoProcessor.highlightsInsideVisiblePartAreProduced(myHighlightingSession, insideResult, myPriorityRange, myRestrictRange, getId());
       }
-      runVisitors(elements2, ranges2, chunkSize, progress, skipParentsSet, holder, insideResult, outsideResult, forceHighlightParents, visitors,
-                  nestedRange, nestedInfos);
+      int sequentialStart = canVisitConcurrently(elements2, visitors)
+                            ? runVisitorsConcurrently(elements2, ranges2, chunkSize, progress, skipParentsSet, insideResult, outsideResult,
+                                                      concurrentPostInfos, forceHighlightParents, nestedRange, nestedInfos)
+                            : 0;
+      runVisitors(elements2.subList(sequentialStart, elements2.size()), ranges2.subList(sequentialStart, ranges2.size()), chunkSize,
+                  progress, skipParentsSet, holder, insideResult, outsideResult, forceHighlightParents, visitors, nestedRange, nestedInfos,
+                  null);
     });
-    List<HighlightInfo> postInfos = new ArrayList<>(holder.size());
+    List<HighlightInfo> postInfos = new ArrayList<>(holder.size() + concurrentPostInfos.size());
+    postInfos.addAll(concurrentPostInfos);
     // there can be extra highlights generated in PostHighlightVisitor
     for (int j = 0; j < holder.size(); j++) {
       final HighlightInfo info = holder.get(j);
@@ -317,6 +330,104 @@ public class GeneralHighlightingPass extends ProgressableTextEditorHighlightingP
     return success;
   }
 
+  private boolean canVisitConcurrently(@NotNull List<PsiElement> elements, @NotNull HighlightVisitor[] visitors) {
+    if (elements.size() < CONCURRENT_VISITING_THRESHOLD || !Registry.is("daemon.concurrent.visiting")) {
+      return false;
+    }
+    for (HighlightVisitor visitor : visitors) {
+      if (!visitor.isConcurrentVisitingSupported()) return false;
+    }
+    return true;
+  }
+
+  private static class VisitingChunk {
+    private final int myStart;
+    private final int myEnd;
+    private final List<HighlightInfo> myInsideResult = new ArrayList<>();
+    private final List<HighlightInfo> myOutsideResult = new ArrayList<>();
+    private final List<HighlightInfo> myPostInfos = new ArrayList<>();
+    private final Set<PsiElement> mySkipParentsSet = new THashSet<>();
+    private final Stack<TextRange> myNestedRange = new Stack<>();
+    private final Stack<List<HighlightInfo>> myNestedInfos = new Stack<>();
+    private final List<Runnable> myDeferredEvents = new ArrayList<>();
+
+    private VisitingChunk(int start, int end) {
+      myStart = start;
+      myEnd = end;
+    }
+  }
+
+  /**
+   * Elements are sorted in post-order, so each top-level subtree occupies a contiguous range which ends with the top-level element itself.
+   * Groups of such subtrees are independent and can be visited concurrently by visitor clones, then the results are merged in order.
+   *
+   * @return index of the first element which was not visited and must be processed sequentially (i.e. the file itself)
+   */
+  private int runVisitorsConcurrently(@NotNull List<PsiElement> elements,
+                                      @NotNull List<ProperTextRange> ranges,
+                                      int progressChunkSize,
+                                      @NotNull ProgressIndicator progress,
+                                      @NotNull Set<PsiElement> skipParentsSet,
+                                      @NotNull List<HighlightInfo> insideResult,
+                                      @NotNull List<HighlightInfo> outsideResult,
+                                      @NotNull List<HighlightInfo> postInfos,
+                                      boolean forceHighlightParents,
+                                      @NotNull Stack<TextRange> nestedRange,
+                                      @NotNull Stack<List<HighlightInfo>> nestedInfos) {
+    int minChunkSize = Math.max(CONCURRENT_VISITING_THRESHOLD / 4, elements.size() / (4 * Runtime.getRuntime().availableProcessors()));
+    List<VisitingChunk> chunks = new ArrayList<>();
+    int chunkStart = 0;
+    for (int i = 0; i < elements.size(); i++) {
+      PsiElement element = elements.get(i);
+      if (element instanceof PsiFile) break;
+      if (element.getParent() instanceof PsiFile && i + 1 - chunkStart >= minChunkSize) {
+        chunks.add(new VisitingChunk(chunkStart, i + 1));
+        chunkStart = i + 1;
+      }
+    }
+    if (chunks.size() < 2) {
+      return 0;
+    }
+
+    boolean success = JobLauncher.getInstance().invokeConcurrentlyUnderProgress(chunks, progress, true, chunk -> {
+      HighlightVisitor[] visitors = getHighlightVisitors(getFile());
+      try {
+        HighlightInfoHolder holder = createInfoHolder(getFile());
+        boolean analyzed = analyzeByVisitors(visitors, holder, 0, () -> runVisitors(elements.subList(chunk.myStart, chunk.myEnd),
+                                                                                      ranges.subList(chunk.myStart, chunk.myEnd), progressChunkSize,
+                                                                                      progress, chunk.mySkipParentsSet, holder, chunk.myInsideResult,
+                                                                                      chunk.myOutsideResult, forceHighlightParents, visitors,
+                                                                                      chunk.myNestedRange, chunk.myNestedInfos,
+                                                                                      chunk.myDeferredEvents));
+        // highlights generated by the visitors after the chunk is visited, as after the sequential visiting in collectHighlights()
+        for (int j = 0; j < holder.size(); j++) {
+          chunk.myPostInfos.add(holder.get(j));
+        }
+        return analyzed;
+      }
+      finally {
+        incVisitorUsageCount(-1);
+      }
+    });
+    if (!success) {
+      progress.checkCanceled();
+      cancelAndRestartDaemonLater(progress, myProject);
+    }
+
+    for (VisitingChunk chunk : chunks) {
+      for (Runnable event : chunk.myDeferredEvents) {
+        event.run();
+      }
+      insideResult.addAll(chunk.myInsideResult);
+      outsideResult.addAll(chunk.myOutsideResult);
+      postInfos.addAll(chunk.myPostInfos);
+      skipParentsSet.addAll(chunk.mySkipParentsSet);
+      nestedRange.addAll(chunk.myNestedRange);
+      nestedInfos.addAll(chunk.myNestedInfos);
+    }
+    return chunkStart;
+  }
+
   private boolean analyzeByVisitors(@NotNull final HighlightVisitor[] visitors,
                                     @NotNull final HighlightInfoHolder holder,
                                     final int i,
@@ -344,7 +455,8 @@ public class GeneralHighlightingPass extends ProgressableTextEditorHighlightingP
                            boolean forceHighlightParents,
                            @NotNull HighlightVisitor[] visitors,
                            @NotNull Stack<TextRange> nestedRange,
-                           @NotNull Stack<List<HighlightInfo>> nestedInfos) {
+                           @NotNull Stack<List<HighlightInfo>> nestedInfos,
+                           @Nullable List<Runnable> deferredEvents) {
     boolean failed = false;
     int nextLimit = chunkSize;
     for (int i = 0; i < elements.size(); i++) {
@@ -403,7 +515,13 @@ public class GeneralHighlightingPass extends ProgressableTextEditorHighlightingP
         // We also know that we can remove syntax error element.
         info.setBijective(elementRange.equalsToRange(info.startOffset, info.endOffset) || isErrorElement);
 
-        myHighlightInfoProcessor.infoIsAvailable(myHighlightingSession, info, myPriorityRange, myRestrictRange, Pass.UPDATE_ALL);
+        if (deferredEvents == null) {
+          myHighlightInfoProcessor.infoIsAvailable(myHighlightingSession, info, myPriorityRange, myRestrictRange, Pass.UPDATE_ALL);
+        }
+        else {
+          deferredEvents.add(() -> myHighlightInfoProcessor.infoIsAvailable(myHighlightingSession, info, myPriorityRange, myRestrictRange,
+                                                                            Pass.UPDATE_ALL));
+        }
         infosForThisRange.add(info);
       }
       holder.clear();
@@ -429,7 +547,13 @@ public class GeneralHighlightingPass extends ProgressableTextEditorHighlightingP
       nestedRange.push(elementRange);
       nestedInfos.push(infosForThisRange);
       if (parent == null || !Comparing.equal(elementRange, parent.getTextRange())) {
-        myHighlightInfoProcessor.allHighlightsForRangeAreProduced(myHighlightingSession, elementRange, infosForThisRange);
+        if (deferredEvents == null) {
+          myHighlightInfoProcessor.allHighlightsForRangeAreProduced(myHighlightingSession, elementRange, infosForThisRange);
+        }
+        else {
+          List<HighlightInfo> infos = infosForThisRange;
+          deferredEvents.add(() -> myHighlightInfoProcessor.allHighlightsForRangeAreProduced(myHighlightingSession, elementRange, infos));
+        }
       }
     }
     advanceProgress(elements.size() - (nextLimit-chunkSize));
@@ -31,4 +31,12 @@ public interface HighlightVisitor {
   @NotNull
   HighlightVisitor clone();
   int order();
+
+  /**
+   * @return true if {@link #clone() clones} of this visitor can visit independent top-level subtrees of the same file concurrently.
+   * Each clone gets its own {@link #analyze} call, so the visitor must not rely on seeing every element of the file
+   */
+  default boolean isConcurrentVisitingSupported() {
+    return false;
+  }
 }
@@ -38,7 +38,7 @@ public abstract class ProgressableTextEditorHighlightingPass extends TextEditorH
   private volatile boolean myFinished;
   private volatile long myProgressLimit;
   private final AtomicLong myProgressCount = new AtomicLong();
-  private volatile long myNextChunkThreshold; // the value myProgressCount should exceed to generate next fireProgressAdvanced event
+  private final AtomicLong myNextChunkThreshold = new AtomicLong(); // the value myProgressCount should exceed to generate next fireProgressAdvanced event
   private final String myPresentableName;
   protected final PsiFile myFile;
   @Nullable private final Editor myEditor;
@@ -139,16 +139,17 @@ public abstract class ProgressableTextEditorHighlightingPass extends TextEditorH
 
   public void setProgressLimit(long limit) {
     myProgressLimit = limit;
-    myNextChunkThreshold = Math.max(1, limit / 100); // 1% precision
+    myNextChunkThreshold.set(Math.max(1, limit / 100)); // 1% precision
   }
 
   public void advanceProgress(long delta) {
     if (myHighlightingSession != null) {
       // session can be null in e.g. inspection batch mode
       long current = myProgressCount.addAndGet(delta);
-      if (current >= myNextChunkThreshold) {
+      long threshold = myNextChunkThreshold.get();
+      // visitors of independent subtrees may advance the progress concurrently, only one of them fires the event
+      if (current >= threshold && myNextChunkThreshold.compareAndSet(threshold, threshold + Math.max(1, myProgressLimit / 100))) {
         double progress = getProgress();
-        myNextChunkThreshold += Math.max(1, myProgressLimit / 100);
         myHighlightInfoProcessor.progressIsAdvanced(myHighlightingSession, progress);
       }
     }
@@ -81,6 +81,15 @@ public interface TranslatingCompiler extends Compiler {
    */
   void compile(CompileContext context, Chunk<Module> moduleChunk, VirtualFile[] files, OutputSink sink);
 
+  /**
+   * Returns false if {@link #compile} must not be called for different module chunks at the same time.
+   * Independent module chunks are compiled concurrently when the <code>compiler.parallel.chunks.count</code> registry value is above 1;
+   * the sink passed to the concurrent calls is different for every chunk.
+   */
+  default boolean isReentrant() {
+    return true;
+  }
+
   @NotNull
   FileType[] getInputFileTypes();
 
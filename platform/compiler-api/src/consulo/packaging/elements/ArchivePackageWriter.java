@@ -18,6 +18,7 @@ package consulo.packaging.elements;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 
@@ -34,5 +35,15 @@ public interface ArchivePackageWriter<ArchiveObject> {
   void addFile(@NotNull ArchiveObject archiveObject, @NotNull InputStream stream, @NotNull String relativePath, long fileLength, long lastModified)
           throws IOException;
 
+  /**
+   * Adds a file of the local file system. Unlike a stream, the file may be read more than once,
+   * e.g. to store an already compressed file without compressing it again.
+   */
+  default void addFile(@NotNull ArchiveObject archiveObject, @NotNull File file, @NotNull String relativePath) throws IOException {
+    try (FileInputStream stream = new FileInputStream(file)) {
+      addFile(archiveObject, stream, relativePath, file.length(), file.lastModified());
+    }
+  }
+
   void close(@NotNull ArchiveObject archiveObject) throws IOException;
 }
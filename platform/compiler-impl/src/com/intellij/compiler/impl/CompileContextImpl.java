@@ -139,8 +139,10 @@ public class CompileContextImpl extends UserDataHolderBase implements CompileCon
 
   @Override
   public void markGenerated(Collection<VirtualFile> files) {
-    for (final VirtualFile file : files) {
-      myGeneratedSources.add(FileBasedIndex.getFileId(file));
+    synchronized (myGeneratedSources) {
+      for (final VirtualFile file : files) {
+        myGeneratedSources.add(FileBasedIndex.getFileId(file));
+      }
     }
   }
 
@@ -151,8 +153,10 @@ public class CompileContextImpl extends UserDataHolderBase implements CompileCon
 
   @Override
   public boolean isGenerated(VirtualFile file) {
-    if (myGeneratedSources.contains(FileBasedIndex.getFileId(file))) {
-      return true;
+    synchronized (myGeneratedSources) {
+      if (myGeneratedSources.contains(FileBasedIndex.getFileId(file))) {
+        return true;
+      }
     }
     if (isUnderRoots(myRootToModuleMap.keySet(), file)) {
       return true;
@@ -215,11 +219,13 @@ public class CompileContextImpl extends UserDataHolderBase implements CompileCon
 
   @Override
   public CompilerMessage[] getMessages(CompilerMessageCategory category) {
-    Collection<CompilerMessage> collection = myMessages.get(category);
-    if (collection == null) {
-      return CompilerMessage.EMPTY_ARRAY;
+    synchronized (myMessages) {
+      Collection<CompilerMessage> collection = myMessages.get(category);
+      if (collection == null) {
+        return CompilerMessage.EMPTY_ARRAY;
+      }
+      return collection.toArray(new CompilerMessage[collection.size()]);
     }
-    return collection.toArray(new CompilerMessage[collection.size()]);
   }
 
   @Override
@@ -284,12 +290,16 @@ public class CompileContextImpl extends UserDataHolderBase implements CompileCon
       LOG.info("addMessage: " + msg + " this=" + this);
     }
 
-    Collection<CompilerMessage> messages = myMessages.get(msg.getCategory());
-    if (messages == null) {
-      messages = new LinkedHashSet<CompilerMessage>();
-      myMessages.put(msg.getCategory(), messages);
+    final boolean added;
+    synchronized (myMessages) {
+      Collection<CompilerMessage> messages = myMessages.get(msg.getCategory());
+      if (messages == null) {
+        messages = new LinkedHashSet<CompilerMessage>();
+        myMessages.put(msg.getCategory(), messages);
+      }
+      added = messages.add(msg);
     }
-    if (messages.add(msg)) {
+    if (added) {
       myTask.addMessage(msg);
     }
 
@@ -306,17 +316,19 @@ public class CompileContextImpl extends UserDataHolderBase implements CompileCon
 
   @Override
   public int getMessageCount(CompilerMessageCategory category) {
-    if (category != null) {
-      Collection<CompilerMessage> collection = myMessages.get(category);
-      return collection != null ? collection.size() : 0;
-    }
-    int count = 0;
-    for (Collection<CompilerMessage> collection : myMessages.values()) {
-      if (collection != null) {
-        count += collection.size();
+    synchronized (myMessages) {
+      if (category != null) {
+        Collection<CompilerMessage> collection = myMessages.get(category);
+        return collection != null ? collection.size() : 0;
+      }
+      int count = 0;
+      for (Collection<CompilerMessage> collection : myMessages.values()) {
+        if (collection != null) {
+          count += collection.size();
+        }
       }
+      return count;
     }
-    return count;
   }
 
   @Override
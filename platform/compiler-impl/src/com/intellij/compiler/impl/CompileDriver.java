@@ -1009,11 +1009,9 @@ public class CompileDriver {
   private boolean translate(final CompileContextEx context,
                             final CompilerManager compilerManager,
                             final boolean forceCompile,
-                            boolean isRebuild,
+                            final boolean isRebuild,
                             final boolean onlyCheckStatus) throws ExitException {
 
-    boolean didSomething = false;
-
     final TranslatingCompiler[] original = compilerManager.getCompilers(TranslatingCompiler.class, myCompilerFilter);
 
     final List<Chunk<Module>> sortedChunks =
@@ -1022,195 +1020,45 @@ public class CompileDriver {
         return ModuleCompilerUtil.getSortedModuleChunks(myProject, Arrays.asList(moduleManager.getModules()));
       }));
 
-    final DumbService dumbService = DumbService.getInstance(myProject);
-    try {
-      final Set<Module> processedModules = new HashSet<>();
-      VirtualFile[] snapshot = null;
-      final Map<Chunk<Module>, Collection<VirtualFile>> chunkMap = new HashMap<>();
-      int total = 0;
-      int processed = 0;
-      for (final Chunk<Module> currentChunk : sortedChunks) {
-        TranslatingCompiler[] translators = original.clone();
-        for (CompilerSorter compilerSorter : CompilerSorter.EP_NAME.getExtensions()) {
-          compilerSorter.sort(currentChunk, translators, TranslatingCompiler.class);
-        }
-        final TranslatorsOutputSink sink = new TranslatorsOutputSink(context, translators);
-        final Set<FileType> generatedTypes = new HashSet<>();
-        Collection<VirtualFile> chunkFiles = chunkMap.get(currentChunk);
-        final Set<VirtualFile> filesToRecompile = new HashSet<>();
-        final Set<VirtualFile> allDependent = new HashSet<>();
-        try {
-          int round = 0;
-          boolean compiledSomethingForThisChunk = false;
-          Collection<VirtualFile> dependentFiles = Collections.emptyList();
-          final Function<Pair<int[], Set<VirtualFile>>, Pair<int[], Set<VirtualFile>>> dependencyFilter =
-            new DependentClassesCumulativeFilter();
-
-          do {
-            for (int currentCompiler = 0, translatorsLength = translators.length; currentCompiler < translatorsLength; currentCompiler++) {
-              sink.setCurrentCompilerIndex(currentCompiler);
-              final TranslatingCompiler compiler = translators[currentCompiler];
-              if (context.getProgressIndicator().isCanceled()) {
-                throw new ExitException(ExitStatus.CANCELLED);
-              }
-
-              dumbService.waitForSmartMode();
-
-              if (snapshot == null || ContainerUtil.intersects(generatedTypes, compilerManager.getRegisteredInputTypes(compiler))) {
-                // rescan snapshot if previously generated files may influence the input of this compiler
-                final Collection<VirtualFile> prevSnapshot =
-                  round > 0 && snapshot != null ? Arrays.asList(snapshot) : Collections.<VirtualFile>emptySet();
-                snapshot = ApplicationManager.getApplication().runReadAction((Computable<VirtualFile[]>)() -> {
-                  return context.getCompileScope().getFiles(null, true);
-                });
-                recalculateChunkToFilesMap(context, sortedChunks, snapshot, chunkMap);
-                if (round == 0) {
-                  chunkFiles = chunkMap.get(currentChunk);
-                }
-                else {
-                  final Set<VirtualFile> newFiles = new HashSet<>(chunkMap.get(currentChunk));
-                  newFiles.removeAll(prevSnapshot);
-                  newFiles.removeAll(chunkFiles);
-                  if (!newFiles.isEmpty()) {
-                    final ArrayList<VirtualFile> merged = new ArrayList<>(chunkFiles.size() + newFiles.size());
-                    merged.addAll(chunkFiles);
-                    merged.addAll(newFiles);
-                    chunkFiles = merged;
-                  }
-                }
-                total = snapshot.length * translatorsLength;
-              }
-
-              final CompileContextEx _context;
-              if (compiler instanceof IntermediateOutputCompiler) {
-                // wrap compile context so that output goes into intermediate directories
-                final IntermediateOutputCompiler _compiler = (IntermediateOutputCompiler)compiler;
-                _context = new CompileContextExProxy(context) {
-                  @Override
-                  public VirtualFile getModuleOutputDirectory(final Module module) {
-                    return getGenerationOutputDir(_compiler, module, false);
-                  }
-
-                  @Override
-                  public VirtualFile getModuleOutputDirectoryForTests(final Module module) {
-                    return getGenerationOutputDir(_compiler, module, true);
-                  }
-                };
-              }
-              else {
-                _context = context;
-              }
-              final boolean compiledSomething =
-                compileSources(_context, currentChunk, compiler, chunkFiles, round == 0 ? forceCompile : true, isRebuild, onlyCheckStatus,
-                               sink);
-
-              processed += chunkFiles.size();
-              _context.getProgressIndicator().setFraction(((double)processed) / total);
-
-              if (compiledSomething) {
-                generatedTypes.addAll(compilerManager.getRegisteredOutputTypes(compiler));
-              }
-
-              didSomething |= compiledSomething;
-              compiledSomethingForThisChunk |= didSomething;
-
-              if (_context.getMessageCount(CompilerMessageCategory.ERROR) > 0) {
-                break; // break the loop over compilers
-              }
-            }
-
-            final boolean hasUnprocessedTraverseRoots = context.getDependencyCache().hasUnprocessedTraverseRoots();
-            if (!isRebuild && (compiledSomethingForThisChunk || hasUnprocessedTraverseRoots)) {
-              final Set<VirtualFile> compiledWithErrors = CacheUtils.getFilesCompiledWithErrors(context);
-              filesToRecompile.removeAll(sink.getCompiledSources());
-              filesToRecompile.addAll(compiledWithErrors);
-
-              dependentFiles = CacheUtils.findDependentFiles(context, compiledWithErrors, dependencyFilter);
-              if (!processedModules.isEmpty()) {
-                for (Iterator<VirtualFile> it = dependentFiles.iterator(); it.hasNext(); ) {
-                  final VirtualFile next = it.next();
-                  final Module module = context.getModuleByFile(next);
-                  if (module != null && processedModules.contains(module)) {
-                    it.remove();
-                  }
-                }
-              }
-
-              if (ourDebugMode) {
-                if (!dependentFiles.isEmpty()) {
-                  for (VirtualFile dependentFile : dependentFiles) {
-                    System.out.println("FOUND TO RECOMPILE: " + dependentFile.getPresentableUrl());
-                  }
-                }
-                else {
-                  System.out.println("NO FILES TO RECOMPILE");
-                }
-              }
-
-              if (!dependentFiles.isEmpty()) {
-                filesToRecompile.addAll(dependentFiles);
-                allDependent.addAll(dependentFiles);
-                if (context.getProgressIndicator().isCanceled() || context.getMessageCount(CompilerMessageCategory.ERROR) > 0) {
-                  break;
-                }
-                final List<VirtualFile> filesInScope = getFilesInScope(context, currentChunk, dependentFiles);
-                if (filesInScope.isEmpty()) {
-                  break;
-                }
-                context.getDependencyCache().clearTraverseRoots();
-                chunkFiles = filesInScope;
-                total += chunkFiles.size() * translators.length;
-              }
-
-              didSomething |= (hasUnprocessedTraverseRoots != context.getDependencyCache().hasUnprocessedTraverseRoots());
-            }
-
-            round++;
-          }
-          while (!dependentFiles.isEmpty() && context.getMessageCount(CompilerMessageCategory.ERROR) == 0);
-
-          if (CompilerManager.MAKE_ENABLED) {
-            if (!context.getProgressIndicator().isCanceled()) {
-              // when cancelled pretend nothing was compiled and next compile will compile everything from the scratch
-              final ProgressIndicator indicator = context.getProgressIndicator();
-              final DependencyCache cache = context.getDependencyCache();
+    final int parallelism = Registry.intValue("compiler.parallel.chunks.count");
+    // only a rebuild, which does not look for dependent files, may compile the chunks concurrently;
+    // they still share the dependency cache, which serializes the access to it
+    final boolean concurrent = parallelism > 1 && isRebuild && !onlyCheckStatus && sortedChunks.size() > 1;
 
-              indicator.pushState();
-              indicator.setText(CompilerBundle.message("progress.updating.caches"));
-              indicator.setText2("");
-
-              cache.update();
-
-              indicator.setText(CompilerBundle.message("progress.saving.caches"));
-              cache.resetState();
-              processedModules.addAll(currentChunk.getNodes());
-              indicator.popState();
-            }
-          }
-
-          if (context.getMessageCount(CompilerMessageCategory.ERROR) > 0) {
-            throw new ExitException(ExitStatus.ERRORS);
-          }
-
-        }
-        catch (CacheCorruptedException e) {
-          LOG.info(e);
-          context.requestRebuildNextTime(e.getMessage());
-        }
-        finally {
-          final int errorCount = context.getMessageCount(CompilerMessageCategory.ERROR);
-          if (errorCount != 0) {
-            filesToRecompile.addAll(allDependent);
-          }
-          if (filesToRecompile.size() > 0) {
-            sink.add(null, Collections.<TranslatingCompiler.OutputItem>emptyList(), VfsUtilCore.toVirtualFileArray(filesToRecompile));
+    final ModuleChunkScheduler scheduler = new ModuleChunkScheduler(sortedChunks);
+    final long start = System.currentTimeMillis();
+    final List<TranslationState> states = Collections.synchronizedList(new ArrayList<>());
+    try {
+      if (concurrent) {
+        final VirtualFile[] snapshot =
+          ApplicationManager.getApplication().runReadAction((Computable<VirtualFile[]>)() -> context.getCompileScope().getFiles(null, true));
+        final Map<Chunk<Module>, Collection<VirtualFile>> chunkMap = new HashMap<>();
+        recalculateChunkToFilesMap(context, sortedChunks, snapshot, chunkMap);
+
+        scheduler.runConcurrently(chunk -> {
+          final TranslationState state = new TranslationState(Collections.singletonList(chunk), false);
+          state.snapshot = snapshot;
+          state.chunkMap.put(chunk, chunkMap.get(chunk));
+          states.add(state);
+          translateChunk(context, compilerManager, original, chunk, state, forceCompile, isRebuild, onlyCheckStatus);
+        }, parallelism, context.getProgressIndicator());
+
+        if (!context.getProgressIndicator().isCanceled()) {
+          try {
+            updateDependencyCache(context);
           }
-          if (errorCount == 0) {
-            // perform update only if there were no errors, so it is guaranteed that the file was processd by all neccesary compilers
-            sink.flushPostponedItems();
+          catch (CacheCorruptedException e) {
+            LOG.info(e);
+            context.requestRebuildNextTime(e.getMessage());
           }
         }
       }
+      else {
+        final TranslationState state = new TranslationState(sortedChunks, true);
+        states.add(state);
+        scheduler.runSequentially(
+          chunk -> translateChunk(context, compilerManager, original, chunk, state, forceCompile, isRebuild, onlyCheckStatus));
+      }
     }
     catch (ProcessCanceledException e) {
       ProgressManager.getInstance().executeNonCancelableSection(() -> {
@@ -1235,11 +1083,246 @@ public class CompileDriver {
     }
     finally {
       dropDependencyCache(context);
-      if (didSomething) {
+      if (sortedChunks.size() > 1) {
+        scheduler.logCriticalPath(System.currentTimeMillis() - start);
+      }
+      if (didSomething(states)) {
         TranslatingCompilerFilesMonitor.getInstance().updateOutputRootsLayout(myProject);
       }
     }
-    return didSomething;
+    return didSomething(states);
+  }
+
+  private static boolean didSomething(@NotNull List<TranslationState> states) {
+    synchronized (states) {
+      for (TranslationState state : states) {
+        if (state.didSomething) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+
+  /**
+   * State of {@link #translate} carried over from one module chunk to the next one.
+   * When the chunks are compiled concurrently, every chunk gets a state of its own.
+   */
+  private static class TranslationState {
+    private final List<Chunk<Module>> myChunks;
+    // false when the chunks are compiled concurrently: the dependency cache is updated once after all of them
+    // and the progress shows the number of compiled chunks
+    private final boolean mySequential;
+    private final Set<Module> processedModules = new HashSet<>();
+    private final Map<Chunk<Module>, Collection<VirtualFile>> chunkMap = new HashMap<>();
+    private VirtualFile[] snapshot;
+    private int total;
+    private int processed;
+    private boolean didSomething;
+
+    private TranslationState(@NotNull List<Chunk<Module>> chunks, boolean sequential) {
+      myChunks = chunks;
+      mySequential = sequential;
+    }
+  }
+
+  private void translateChunk(final CompileContextEx context,
+                              final CompilerManager compilerManager,
+                              final TranslatingCompiler[] original,
+                              final Chunk<Module> currentChunk,
+                              final TranslationState state,
+                              final boolean forceCompile,
+                              final boolean isRebuild,
+                              final boolean onlyCheckStatus) throws ExitException {
+    final DumbService dumbService = DumbService.getInstance(myProject);
+    TranslatingCompiler[] translators = original.clone();
+    for (CompilerSorter compilerSorter : CompilerSorter.EP_NAME.getExtensions()) {
+      compilerSorter.sort(currentChunk, translators, TranslatingCompiler.class);
+    }
+    final TranslatorsOutputSink sink = new TranslatorsOutputSink(context, translators);
+    final Set<FileType> generatedTypes = new HashSet<>();
+    Collection<VirtualFile> chunkFiles = state.chunkMap.get(currentChunk);
+    final Set<VirtualFile> filesToRecompile = new HashSet<>();
+    final Set<VirtualFile> allDependent = new HashSet<>();
+    try {
+      int round = 0;
+      boolean compiledSomethingForThisChunk = false;
+      Collection<VirtualFile> dependentFiles = Collections.emptyList();
+      final Function<Pair<int[], Set<VirtualFile>>, Pair<int[], Set<VirtualFile>>> dependencyFilter =
+        new DependentClassesCumulativeFilter();
+
+      do {
+        for (int currentCompiler = 0, translatorsLength = translators.length; currentCompiler < translatorsLength; currentCompiler++) {
+          sink.setCurrentCompilerIndex(currentCompiler);
+          final TranslatingCompiler compiler = translators[currentCompiler];
+          if (context.getProgressIndicator().isCanceled()) {
+            throw new ExitException(ExitStatus.CANCELLED);
+          }
+
+          dumbService.waitForSmartMode();
+
+          if (state.snapshot == null || ContainerUtil.intersects(generatedTypes, compilerManager.getRegisteredInputTypes(compiler))) {
+            // rescan snapshot if previously generated files may influence the input of this compiler
+            final Collection<VirtualFile> prevSnapshot =
+              round > 0 && state.snapshot != null ? Arrays.asList(state.snapshot) : Collections.<VirtualFile>emptySet();
+            state.snapshot = ApplicationManager.getApplication().runReadAction((Computable<VirtualFile[]>)() -> {
+              return context.getCompileScope().getFiles(null, true);
+            });
+            recalculateChunkToFilesMap(context, state.myChunks, state.snapshot, state.chunkMap);
+            if (round == 0) {
+              chunkFiles = state.chunkMap.get(currentChunk);
+            }
+            else {
+              final Set<VirtualFile> newFiles = new HashSet<>(state.chunkMap.get(currentChunk));
+              newFiles.removeAll(prevSnapshot);
+              newFiles.removeAll(chunkFiles);
+              if (!newFiles.isEmpty()) {
+                final ArrayList<VirtualFile> merged = new ArrayList<>(chunkFiles.size() + newFiles.size());
+                merged.addAll(chunkFiles);
+                merged.addAll(newFiles);
+                chunkFiles = merged;
+              }
+            }
+            state.total = state.snapshot.length * translatorsLength;
+          }
+
+          final CompileContextEx _context;
+          if (compiler instanceof IntermediateOutputCompiler) {
+            // wrap compile context so that output goes into intermediate directories
+            final IntermediateOutputCompiler _compiler = (IntermediateOutputCompiler)compiler;
+            _context = new CompileContextExProxy(context) {
+              @Override
+              public VirtualFile getModuleOutputDirectory(final Module module) {
+                return getGenerationOutputDir(_compiler, module, false);
+              }
+
+              @Override
+              public VirtualFile getModuleOutputDirectoryForTests(final Module module) {
+                return getGenerationOutputDir(_compiler, module, true);
+              }
+            };
+          }
+          else {
+            _context = context;
+          }
+          final boolean compiledSomething =
+            compileSources(_context, currentChunk, compiler, chunkFiles, round == 0 ? forceCompile : true, isRebuild, onlyCheckStatus,
+                           sink);
+
+          state.processed += chunkFiles.size();
+          if (state.mySequential) {
+            _context.getProgressIndicator().setFraction(((double)state.processed) / state.total);
+          }
+
+          if (compiledSomething) {
+            generatedTypes.addAll(compilerManager.getRegisteredOutputTypes(compiler));
+          }
+
+          state.didSomething |= compiledSomething;
+          compiledSomethingForThisChunk |= state.didSomething;
+
+          if (_context.getMessageCount(CompilerMessageCategory.ERROR) > 0) {
+            break; // break the loop over compilers
+          }
+        }
+
+        if (!isRebuild) {
+          final boolean hasUnprocessedTraverseRoots = context.getDependencyCache().hasUnprocessedTraverseRoots();
+          if (compiledSomethingForThisChunk || hasUnprocessedTraverseRoots) {
+            final Set<VirtualFile> compiledWithErrors = CacheUtils.getFilesCompiledWithErrors(context);
+            filesToRecompile.removeAll(sink.getCompiledSources());
+            filesToRecompile.addAll(compiledWithErrors);
+
+            dependentFiles = CacheUtils.findDependentFiles(context, compiledWithErrors, dependencyFilter);
+            if (!state.processedModules.isEmpty()) {
+              for (Iterator<VirtualFile> it = dependentFiles.iterator(); it.hasNext(); ) {
+                final VirtualFile next = it.next();
+                final Module module = context.getModuleByFile(next);
+                if (module != null && state.processedModules.contains(module)) {
+                  it.remove();
+                }
+              }
+            }
+
+            if (ourDebugMode) {
+              if (!dependentFiles.isEmpty()) {
+                for (VirtualFile dependentFile : dependentFiles) {
+                  System.out.println("FOUND TO RECOMPILE: " + dependentFile.getPresentableUrl());
+                }
+              }
+              else {
+                System.out.println("NO FILES TO RECOMPILE");
+              }
+            }
+
+            if (!dependentFiles.isEmpty()) {
+              filesToRecompile.addAll(dependentFiles);
+              allDependent.addAll(dependentFiles);
+              if (context.getProgressIndicator().isCanceled() || context.getMessageCount(CompilerMessageCategory.ERROR) > 0) {
+                break;
+              }
+              final List<VirtualFile> filesInScope = getFilesInScope(context, currentChunk, dependentFiles);
+              if (filesInScope.isEmpty()) {
+                break;
+              }
+              context.getDependencyCache().clearTraverseRoots();
+              chunkFiles = filesInScope;
+              state.total += chunkFiles.size() * translators.length;
+            }
+
+            state.didSomething |= (hasUnprocessedTraverseRoots != context.getDependencyCache().hasUnprocessedTraverseRoots());
+          }
+        }
+
+        round++;
+      }
+      while (!dependentFiles.isEmpty() && context.getMessageCount(CompilerMessageCategory.ERROR) == 0);
+
+      if (CompilerManager.MAKE_ENABLED && state.mySequential) {
+        if (!context.getProgressIndicator().isCanceled()) {
+          // when cancelled pretend nothing was compiled and next compile will compile everything from the scratch
+          updateDependencyCache(context);
+          state.processedModules.addAll(currentChunk.getNodes());
+        }
+      }
+
+      if (context.getMessageCount(CompilerMessageCategory.ERROR) > 0) {
+        throw new ExitException(ExitStatus.ERRORS);
+      }
+
+    }
+    catch (CacheCorruptedException e) {
+      LOG.info(e);
+      context.requestRebuildNextTime(e.getMessage());
+    }
+    finally {
+      final int errorCount = context.getMessageCount(CompilerMessageCategory.ERROR);
+      if (errorCount != 0) {
+        filesToRecompile.addAll(allDependent);
+      }
+      if (filesToRecompile.size() > 0) {
+        sink.add(null, Collections.<TranslatingCompiler.OutputItem>emptyList(), VfsUtilCore.toVirtualFileArray(filesToRecompile));
+      }
+      if (errorCount == 0) {
+        // perform update only if there were no errors, so it is guaranteed that the file was processd by all neccesary compilers
+        sink.flushPostponedItems();
+      }
+    }
+  }
+
+  private static void updateDependencyCache(final CompileContextEx context) throws CacheCorruptedException {
+    final ProgressIndicator indicator = context.getProgressIndicator();
+    final DependencyCache cache = context.getDependencyCache();
+
+    indicator.pushState();
+    indicator.setText(CompilerBundle.message("progress.updating.caches"));
+    indicator.setText2("");
+
+    cache.update();
+
+    indicator.setText(CompilerBundle.message("progress.saving.caches"));
+    cache.resetState();
+    indicator.popState();
   }
 
   private static List<VirtualFile> getFilesInScope(final CompileContextEx context,
@@ -1752,7 +1835,14 @@ public class CompileDriver {
       }
 
       if ((wereFilesDeleted[0] || !toCompile.isEmpty()) && context.getMessageCount(CompilerMessageCategory.ERROR) == 0) {
-        compiler.compile(context, moduleChunk, VfsUtilCore.toVirtualFileArray(toCompile), sink);
+        if (compiler.isReentrant()) {
+          compiler.compile(context, moduleChunk, VfsUtilCore.toVirtualFileArray(toCompile), sink);
+        }
+        else {
+          synchronized (compiler) {
+            compiler.compile(context, moduleChunk, VfsUtilCore.toVirtualFileArray(toCompile), sink);
+          }
+        }
       }
     }
     finally {
@@ -2301,16 +2391,16 @@ CompilerManagerImpl.addDeletedPath(outputPath.getPath());
       myCompilers = compilers;
     }
 
-    public void setCurrentCompilerIndex(int index) {
+    public synchronized void setCurrentCompilerIndex(int index) {
       myCurrentCompilerIdx = index;
     }
 
-    public Set<VirtualFile> getCompiledSources() {
-      return Collections.unmodifiableSet(myCompiledSources);
+    public synchronized Set<VirtualFile> getCompiledSources() {
+      return new HashSet<>(myCompiledSources);
     }
 
     @Override
-    public void add(final String outputRoot, final Collection<TranslatingCompiler.OutputItem> items, final VirtualFile[] filesToRecompile) {
+    public synchronized void add(final String outputRoot, final Collection<TranslatingCompiler.OutputItem> items, final VirtualFile[] filesToRecompile) {
       for (TranslatingCompiler.OutputItem item : items) {
         final VirtualFile file = item.getSourceFile();
         if (file != null) {
@@ -2411,7 +2501,7 @@ CompilerManagerImpl.addDeletedPath(outputPath.getPath());
       collection.add(item);
     }
 
-    public void flushPostponedItems() {
+    public synchronized void flushPostponedItems() {
       final TranslatingCompilerFilesMonitor filesMonitor = TranslatingCompilerFilesMonitor.getInstance();
       try {
         for (Map.Entry<String, Collection<TranslatingCompiler.OutputItem>> entry : myPostponedItems.entrySet()) {
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2013-2016 consulo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.compiler.impl;
+
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.util.Ref;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Runs a task for every node of a dependency graph so that a node is started only after the nodes it depends on are finished.
+ * Nodes which don't depend on one another may run at the same time.
+ */
+public class DependentTasksRunner {
+  public interface Task<T, E extends Exception> {
+    void run(@NotNull T node) throws E;
+  }
+
+  private DependentTasksRunner() {
+  }
+
+  /**
+   * Runs at most {@code parallelism} tasks at once in the application pool under the given indicator.
+   * No task is started after a task fails, the failure is rethrown once the running tasks are finished.
+   *
+   * @param sortedNodes  nodes in topological order, dependencies first
+   * @param dependencies nodes every node depends on, nodes which are not in {@code sortedNodes} are ignored
+   */
+  public static <T, E extends Exception> void runConcurrently(@NotNull List<T> sortedNodes,
+                                                              @NotNull Map<T, ? extends Collection<T>> dependencies,
+                                                              @NotNull Task<T, E> task,
+                                                              @NotNull Class<E> exceptionClass,
+                                                              @NotNull String name,
+                                                              int parallelism,
+                                                              @NotNull ProgressIndicator indicator) throws E {
+    final Set<T> nodes = new HashSet<>(sortedNodes);
+    final Map<T, Integer> unfinishedDependencies = new HashMap<>();
+    final Map<T, List<T>> dependents = new HashMap<>();
+    for (T node : sortedNodes) {
+      int count = 0;
+      final Collection<T> nodeDependencies = dependencies.get(node);
+      if (nodeDependencies != null) {
+        for (T dependency : nodeDependencies) {
+          if (!nodes.contains(dependency) || dependency.equals(node)) continue;
+          List<T> list = dependents.get(dependency);
+          if (list == null) {
+            dependents.put(dependency, list = new ArrayList<>());
+          }
+          list.add(node);
+          count++;
+        }
+      }
+      unfinishedDependencies.put(node, count);
+    }
+
+    final ExecutorService executor = AppExecutorUtil.createBoundedApplicationPoolExecutor(name, parallelism);
+    final CompletionService<T> completionService = new ExecutorCompletionService<>(executor);
+    int running = 0;
+    Throwable failure = null;
+    try {
+      for (T node : sortedNodes) {
+        if (unfinishedDependencies.get(node) == 0) {
+          submit(completionService, task, node, indicator);
+          running++;
+        }
+      }
+
+      while (running > 0) {
+        final Future<T> future;
+        try {
+          future = completionService.poll(10, TimeUnit.MILLISECONDS);
+        }
+        catch (InterruptedException e) {
+          throw new ProcessCanceledException(e);
+        }
+        if (future == null) {
+          if (failure == null && indicator.isCanceled()) {
+            failure = new ProcessCanceledException();
+          }
+          continue;
+        }
+
+        running--;
+        try {
+          final List<T> nodeDependents = dependents.get(future.get());
+          if (failure != null || nodeDependents == null) continue;
+          for (T dependent : nodeDependents) {
+            final int count = unfinishedDependencies.get(dependent) - 1;
+            unfinishedDependencies.put(dependent, count);
+            if (count == 0) {
+              submit(completionService, task, dependent, indicator);
+              running++;
+            }
+          }
+        }
+        catch (ExecutionException e) {
+          if (failure == null) {
+            failure = e.getCause();
+          }
+        }
+        catch (InterruptedException e) {
+          throw new ProcessCanceledException(e);
+        }
+      }
+    }
+    finally {
+      executor.shutdown();
+    }
+
+    if (exceptionClass.isInstance(failure)) throw exceptionClass.cast(failure);
+    if (failure instanceof RuntimeException) throw (RuntimeException)failure;
+    if (failure instanceof Error) throw (Error)failure;
+    if (failure != null) throw new RuntimeException(failure);
+  }
+
+  private static <T, E extends Exception> void submit(@NotNull CompletionService<T> completionService,
+                                                      @NotNull final Task<T, E> task,
+                                                      @NotNull final T node,
+                                                      @NotNull final ProgressIndicator indicator) {
+    completionService.submit(() -> {
+      final Ref<Exception> exception = Ref.create();
+      ProgressManager.getInstance().executeProcessUnderProgress(() -> {
+        try {
+          task.run(node);
+        }
+        catch (Exception e) {
+          exception.set(e);
+        }
+      }, indicator);
+      if (!exception.isNull()) throw exception.get();
+      return node;
+    });
+  }
+}
@@ -0,0 +1,357 @@
+/*
+ * Copyright 2013-2016 consulo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.compiler.impl;
+
+import com.intellij.openapi.compiler.CompilerPaths;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.newvfs.persistent.FSRecords;
+import com.intellij.util.ArrayUtil;
+import com.intellij.util.io.*;
+import gnu.trove.TIntObjectHashMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.io.DataOutputStream;
+
+/**
+ * Make state of the source and output files of {@link TranslatingCompilerFilesMonitorImpl}, keyed by the file id.
+ * <p/>
+ * The last compiled timestamps of the sources are a memory mapped column per project with a long at the offset of the file id,
+ * so an up-to-date check reads a single value and doesn't go through the records of VFS.
+ * The source path and the class name of the outputs are a column of two ints shared by all projects.
+ * The output paths of a source are of variable size and are kept in a map per project.
+ * Paths and class names are the ids of {@link FSRecords#getNames()}.
+ * <p/>
+ * The values of a file in all columns are read and written under the lock of the file, the locks are striped by the file id.
+ * The values of a deleted file are removed as its id is reused, the storage is dropped with VFS as file ids are not valid anymore then.
+ * Columns which can't be opened are created anew, if that fails too, the files are considered not compiled.
+ */
+class MakeFilesStorage {
+  private static final Logger LOG = Logger.getInstance(MakeFilesStorage.class);
+
+  private static final int VERSION = 1;
+  private static final int LOCK_COUNT = 64;
+
+  private final File myDir;
+  private final Object[] myFileLocks = new Object[LOCK_COUNT];
+  @Nullable private final Column myOutputs;
+  private final TIntObjectHashMap<ProjectColumns> myProjects = new TIntObjectHashMap<ProjectColumns>();
+
+  private MakeFilesStorage(@NotNull File dir) {
+    myDir = dir;
+    for (int i = 0; i < LOCK_COUNT; i++) {
+      myFileLocks[i] = new Object();
+    }
+    myOutputs = openOutputs();
+    final File[] projectDirs = dir.listFiles();
+    if (projectDirs != null) {
+      for (File projectDir : projectDirs) {
+        if (projectDir.isDirectory()) {
+          try {
+            final int projectId = Integer.parseInt(projectDir.getName());
+            final ProjectColumns columns = openProject(projectId);
+            if (columns != null) {
+              myProjects.put(projectId, columns);
+            }
+          }
+          catch (NumberFormatException ignored) {
+          }
+        }
+      }
+    }
+  }
+
+  @NotNull
+  static MakeFilesStorage open() {
+    return open(new File(CompilerPaths.getCompilerSystemDirectory(), "make_state"));
+  }
+
+  @NotNull
+  static MakeFilesStorage open(@NotNull File dir) {
+    final File versionFile = new File(dir, "version");
+    if (versionDiffers(versionFile)) {
+      FileUtil.delete(dir);
+      try {
+        writeVersion(versionFile);
+      }
+      catch (IOException e) {
+        LOG.warn("Cannot write the version of the make state of files", e);
+      }
+    }
+    return new MakeFilesStorage(dir);
+  }
+
+  @Nullable
+  private Column openOutputs() {
+    final File file = new File(myDir, "outputs");
+    try {
+      return new Column(file);
+    }
+    catch (IOException e) {
+      LOG.info(e);
+    }
+    IOUtil.deleteAllFilesStartingWith(file);
+    try {
+      return new Column(file);
+    }
+    catch (IOException e) {
+      LOG.warn("Cannot open the make state of output files, they are considered unknown", e);
+      return null;
+    }
+  }
+
+  @Nullable
+  private ProjectColumns openProject(int projectId) {
+    final File dir = new File(myDir, String.valueOf(projectId));
+    try {
+      return new ProjectColumns(dir);
+    }
+    catch (IOException e) {
+      LOG.info(e);
+    }
+    FileUtil.delete(dir);
+    try {
+      return new ProjectColumns(dir);
+    }
+    catch (IOException e) {
+      LOG.warn("Cannot open the make state of source files, they are considered not compiled", e);
+      return null;
+    }
+  }
+
+  @NotNull
+  Object getFileLock(int fileId) {
+    return myFileLocks[Math.abs(fileId) % LOCK_COUNT];
+  }
+
+  /**
+   * @return ids of all projects which have compiled sources
+   */
+  @NotNull
+  int[] getProjectIds() {
+    synchronized (myProjects) {
+      return myProjects.keys();
+    }
+  }
+
+  /**
+   * @return the last compiled timestamp of the source, -1 if it was not compiled in the project
+   */
+  long getTimestamp(int projectId, int fileId) {
+    final ProjectColumns columns = getProject(projectId, false);
+    if (columns == null) return -1L;
+    final long stamp = columns.myStamps.get(fileId);
+    return stamp == 0 ? -1L : stamp;
+  }
+
+  @NotNull
+  int[] getOutputPaths(int projectId, int fileId) throws IOException {
+    final ProjectColumns columns = getProject(projectId, false);
+    if (columns == null) return ArrayUtil.EMPTY_INT_ARRAY;
+    final int[] paths = columns.myOutputPaths.get(fileId);
+    return paths == null ? ArrayUtil.EMPTY_INT_ARRAY : paths;
+  }
+
+  void putSource(int projectId, int fileId, long timestamp, @NotNull int[] outputPaths) throws IOException {
+    final ProjectColumns columns = getProject(projectId, timestamp > 0 || outputPaths.length > 0);
+    if (columns == null) return;
+    columns.myStamps.put(fileId, timestamp > 0 ? timestamp : 0);
+    if (outputPaths.length > 0) {
+      columns.myOutputPaths.put(fileId, outputPaths);
+    }
+    else {
+      columns.myOutputPaths.remove(fileId);
+    }
+  }
+
+  /**
+   * @return the ids of the source path and the class name of the output, null if the file isn't a known output
+   */
+  @Nullable
+  int[] getOutput(int fileId) {
+    if (myOutputs == null) return null;
+    final long value = myOutputs.get(fileId);
+    if (value == 0) return null;
+    return new int[]{(int)(value >>> 32) - 1, (int)value - 1};
+  }
+
+  void putOutput(int fileId, int sourcePath, int className) {
+    if (myOutputs == null) return;
+    myOutputs.put(fileId, ((long)(sourcePath + 1) << 32) | ((className + 1) & 0xFFFFFFFFL));
+  }
+
+  /**
+   * Drops the values of a deleted file, its id may be given to another file
+   */
+  void removeFile(int fileId) throws IOException {
+    if (myOutputs != null) {
+      myOutputs.put(fileId, 0);
+    }
+    for (ProjectColumns columns : getProjects()) {
+      columns.myStamps.put(fileId, 0);
+      columns.myOutputPaths.remove(fileId);
+    }
+  }
+
+  void flush() {
+    if (myOutputs != null) {
+      myOutputs.force();
+    }
+    for (ProjectColumns columns : getProjects()) {
+      columns.force();
+    }
+  }
+
+  void close() {
+    if (myOutputs != null) {
+      myOutputs.close();
+    }
+    for (ProjectColumns columns : getProjects()) {
+      try {
+        columns.close();
+      }
+      catch (IOException e) {
+        LOG.info(e);
+      }
+    }
+  }
+
+  @NotNull
+  private ProjectColumns[] getProjects() {
+    synchronized (myProjects) {
+      return myProjects.getValues(new ProjectColumns[myProjects.size()]);
+    }
+  }
+
+  @Nullable
+  private ProjectColumns getProject(int projectId, boolean create) {
+    synchronized (myProjects) {
+      ProjectColumns columns = myProjects.get(projectId);
+      if (columns == null && create) {
+        columns = openProject(projectId);
+        if (columns != null) {
+          myProjects.put(projectId, columns);
+        }
+      }
+      return columns;
+    }
+  }
+
+  private static boolean versionDiffers(@NotNull File versionFile) {
+    try {
+      final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(versionFile)));
+      try {
+        return DataInputOutputUtil.readINT(in) != VERSION || DataInputOutputUtil.readTIME(in) != FSRecords.getCreationTimestamp();
+      }
+      finally {
+        in.close();
+      }
+    }
+    catch (IOException e) {
+      return true;
+    }
+  }
+
+  private static void writeVersion(@NotNull File versionFile) throws IOException {
+    FileUtil.createParentDirs(versionFile);
+    final DataOutputStream out = new DataOutputStream(new FileOutputStream(versionFile));
+    try {
+      DataInputOutputUtil.writeINT(out, VERSION);
+      DataInputOutputUtil.writeTIME(out, FSRecords.getCreationTimestamp());
+    }
+    finally {
+      out.close();
+    }
+  }
+
+  private static class ProjectColumns {
+    private final Column myStamps;
+    private final PersistentHashMap<Integer, int[]> myOutputPaths;
+
+    private ProjectColumns(@NotNull File dir) throws IOException {
+      myStamps = new Column(new File(dir, "stamps"));
+      try {
+        myOutputPaths = new PersistentHashMap<Integer, int[]>(new File(dir, "output_paths"), EnumeratorIntegerDescriptor.INSTANCE,
+                                                             new DataExternalizer<int[]>() {
+                                                               @Override
+                                                               public void save(@NotNull DataOutput out, int[] value) throws IOException {
+                                                                 DataInputOutputUtil.writeINT(out, value.length);
+                                                                 for (int path : value) {
+                                                                   out.writeInt(path);
+                                                                 }
+                                                               }
+
+                                                               @Override
+                                                               public int[] read(@NotNull DataInput in) throws IOException {
+                                                                 final int[] value = new int[DataInputOutputUtil.readINT(in)];
+                                                                 for (int i = 0; i < value.length; i++) {
+                                                                   value[i] = in.readInt();
+                                                                 }
+                                                                 return value;
+                                                               }
+                                                             });
+      }
+      catch (IOException e) {
+        myStamps.close();
+        throw e;
+      }
+    }
+
+    private void force() {
+      myStamps.force();
+      myOutputPaths.force();
+    }
+
+    private void close() throws IOException {
+      myStamps.close();
+      myOutputPaths.close();
+    }
+  }
+
+  /**
+   * Memory mapped array of longs indexed by file id, zero for files without a value
+   */
+  private static class Column {
+    private static final int PAGE_SIZE = 1024 * 1024;
+
+    private final ResizeableMappedFile myFile;
+
+    private Column(@NotNull File file) throws IOException {
+      myFile = new ResizeableMappedFile(file, 64 * 1024, new PagedFileStorage.StorageLockContext(false), PAGE_SIZE, true);
+    }
+
+    private synchronized long get(int fileId) {
+      final long offset = (long)Math.abs(fileId) * 8;
+      return offset + 8 > myFile.length() ? 0 : myFile.getLong(offset);
+    }
+
+    private synchronized void put(int fileId, long value) {
+      final long offset = (long)Math.abs(fileId) * 8;
+      if (value == 0 && offset + 8 > myFile.length()) return;
+      myFile.putLong(offset, value);
+    }
+
+    private synchronized void force() {
+      myFile.force();
+    }
+
+    private synchronized void close() {
+      myFile.close();
+    }
+  }
+}
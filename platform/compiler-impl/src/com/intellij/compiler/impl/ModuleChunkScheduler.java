@@ -0,0 +1,133 @@
+/*
+ * Copyright 2013-2016 consulo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.compiler.impl;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.roots.ModuleRootManager;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.util.Chunk;
+import com.intellij.util.containers.ContainerUtil;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs a task for every module chunk so that a chunk is started only after the chunks it depends on are finished.
+ * Independent chunks may run concurrently, see {@link DependentTasksRunner}. The time of every chunk is recorded to report the critical path of the build,
+ * i.e. the chain of dependent chunks which bounds the build time however many chunks run at once.
+ */
+class ModuleChunkScheduler {
+  private static final Logger LOG = Logger.getInstance(ModuleChunkScheduler.class);
+
+  interface ChunkTask {
+    void run(@NotNull Chunk<Module> chunk) throws ExitException;
+  }
+
+  private final List<Chunk<Module>> mySortedChunks;
+  private final Map<Chunk<Module>, Set<Chunk<Module>>> myDependencies = new HashMap<>();
+  private final Map<Chunk<Module>, Long> myDurations = ContainerUtil.newConcurrentMap();
+
+  /**
+   * @param sortedChunks chunks in topological order, dependencies first
+   */
+  ModuleChunkScheduler(@NotNull List<Chunk<Module>> sortedChunks) {
+    mySortedChunks = sortedChunks;
+    ApplicationManager.getApplication().runReadAction(() -> {
+      final Map<Module, Chunk<Module>> moduleToChunk = new HashMap<>();
+      for (Chunk<Module> chunk : sortedChunks) {
+        for (Module module : chunk.getNodes()) {
+          moduleToChunk.put(module, chunk);
+        }
+      }
+      for (Chunk<Module> chunk : sortedChunks) {
+        final Set<Chunk<Module>> dependencies = new LinkedHashSet<>();
+        for (Module module : chunk.getNodes()) {
+          for (Module dependency : ModuleRootManager.getInstance(module).getDependencies()) {
+            final Chunk<Module> dependencyChunk = moduleToChunk.get(dependency);
+            if (dependencyChunk != null && dependencyChunk != chunk) {
+              dependencies.add(dependencyChunk);
+            }
+          }
+        }
+        myDependencies.put(chunk, dependencies);
+      }
+    });
+  }
+
+  void runSequentially(@NotNull ChunkTask task) throws ExitException {
+    for (Chunk<Module> chunk : mySortedChunks) {
+      runTimed(task, chunk);
+    }
+  }
+
+  /**
+   * Runs at most {@code parallelism} chunks at once in the application pool under the given indicator.
+   * No chunk is started after a chunk fails, the failure is rethrown once the running chunks are finished.
+   */
+  void runConcurrently(@NotNull final ChunkTask task, int parallelism, @NotNull final ProgressIndicator indicator) throws ExitException {
+    final AtomicInteger finished = new AtomicInteger();
+    DependentTasksRunner.runConcurrently(mySortedChunks, myDependencies, chunk -> {
+      runTimed(task, chunk);
+      indicator.setFraction((double)finished.incrementAndGet() / mySortedChunks.size());
+    }, ExitException.class, "Module chunks compilation", parallelism, indicator);
+  }
+
+  private void runTimed(@NotNull ChunkTask task, @NotNull Chunk<Module> chunk) throws ExitException {
+    final long start = System.currentTimeMillis();
+    try {
+      task.run(chunk);
+    }
+    finally {
+      myDurations.put(chunk, System.currentTimeMillis() - start);
+    }
+  }
+
+  void logCriticalPath(long buildTime) {
+    final Map<Chunk<Module>, Long> finishTimes = new HashMap<>();
+    final Map<Chunk<Module>, Chunk<Module>> previous = new HashMap<>();
+    Chunk<Module> last = null;
+    for (Chunk<Module> chunk : mySortedChunks) {
+      final Long duration = myDurations.get(chunk);
+      if (duration == null) continue;
+
+      long start = 0;
+      for (Chunk<Module> dependency : myDependencies.get(chunk)) {
+        final Long finish = finishTimes.get(dependency);
+        if (finish != null && finish > start) {
+          start = finish;
+          previous.put(chunk, dependency);
+        }
+      }
+      finishTimes.put(chunk, start + duration);
+      if (last == null || start + duration > finishTimes.get(last)) {
+        last = chunk;
+      }
+    }
+    if (last == null) return;
+
+    final List<String> path = new ArrayList<>();
+    for (Chunk<Module> chunk = last; chunk != null; chunk = previous.get(chunk)) {
+      path.add(chunk + " " + myDurations.get(chunk) + "ms");
+    }
+    Collections.reverse(path);
+    LOG.info("Compilation of " + myDurations.size() + " module chunks took " + buildTime + "ms, critical path " + finishTimes.get(last) +
+             "ms: " + StringUtil.join(path, " -> "));
+  }
+}
@@ -40,11 +40,11 @@ import com.intellij.openapi.util.*;
 import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vfs.*;
-import com.intellij.openapi.vfs.newvfs.FileAttribute;
 import com.intellij.openapi.vfs.newvfs.ManagingFS;
 import com.intellij.openapi.vfs.newvfs.NewVirtualFile;
 import com.intellij.openapi.vfs.newvfs.persistent.FSRecords;
 import com.intellij.util.Alarm;
+import com.intellij.util.ArrayUtil;
 import com.intellij.util.containers.ContainerUtil;
 import com.intellij.util.containers.SLRUCache;
 import com.intellij.util.indexing.FileBasedIndex;
@@ -86,8 +86,6 @@ public class TranslatingCompilerFilesMonitorImpl extends TranslatingCompilerFile
   private static final Logger LOG = Logger.getInstance("#consulo.compiler.impl.TranslatingCompilerFilesMonitor");
   private static final boolean ourDebugMode = false;
 
-  private static final FileAttribute ourSourceFileAttribute = new FileAttribute("_make_source_file_info_", 3);
-  private static final FileAttribute ourOutputFileAttribute = new FileAttribute("_make_output_file_info_", 3);
   private static final Key<Map<String, VirtualFile>> SOURCE_FILES_CACHE = Key.create("_source_url_to_vfile_cache_");
 
   private final Object myDataLock = new Object();
@@ -187,10 +185,13 @@ public class TranslatingCompilerFilesMonitorImpl extends TranslatingCompilerFile
   private final TIntIntHashMap myInitInProgress = new TIntIntHashMap(); // projectId for successfully initialized projects
   private final Object myAsyncScanLock = new Object();
 
-  private boolean myForceCompiling;
+  private volatile boolean myForceCompiling;
+
+  private final MakeFilesStorage myStorage;
 
   public TranslatingCompilerFilesMonitorImpl(VirtualFileManager vfsManager, ProjectManager projectManager, Application application) {
     myProjectManager = projectManager;
+    myStorage = MakeFilesStorage.open();
 
     projectManager.addProjectManagerListener(new MyProjectManagerListener());
     vfsManager.addVirtualFileListener(new MyVfsListener(), application);
@@ -245,7 +246,11 @@ public class TranslatingCompilerFilesMonitorImpl extends TranslatingCompilerFile
 
   @Nullable
   public static VirtualFile getSourceFileByOutput(VirtualFile outputFile) {
-    final OutputFileInfo outputFileInfo = loadOutputInfo(outputFile);
+    final TranslatingCompilerFilesMonitor monitor = TranslatingCompilerFilesMonitor.getInstance();
+    if (!(monitor instanceof TranslatingCompilerFilesMonitorImpl)) {
+      return null;
+    }
+    final OutputFileInfo outputFileInfo = ((TranslatingCompilerFilesMonitorImpl)monitor).loadOutputInfo(outputFile);
     if (outputFileInfo != null) {
       final String path = outputFileInfo.getSourceFilePath();
       if (path != null) {
@@ -532,6 +537,7 @@ public class TranslatingCompilerFilesMonitorImpl extends TranslatingCompilerFile
     synchronized (myProjectOutputRoots) {
       myProjectOutputRoots.put(projectId, map);
     }
+    myStorage.flush();
   }
 
   @Override
@@ -680,6 +686,8 @@ public class TranslatingCompilerFilesMonitorImpl extends TranslatingCompilerFile
       LOG.info(e);
       deleteStorageFiles(getOutputRootsFile());
     }
+
+    myStorage.close();
   }
 
   private static void savePathsToDelete(final File file, final Map<String, SourceUrlClassNamePair> outputs) {
@@ -710,93 +718,70 @@ public class TranslatingCompilerFilesMonitorImpl extends TranslatingCompilerFile
   }
 
   @Nullable
-  private static SourceFileInfo loadSourceInfo(final VirtualFile file) {
+  private SourceFileInfo loadSourceInfo(final VirtualFile file) {
+    final int fileId = Math.abs(getFileId(file));
     try {
-      final DataInputStream is = ourSourceFileAttribute.readAttribute(file);
-      if (is != null) {
-        try {
-          return new SourceFileInfo(is);
-        }
-        finally {
-          is.close();
+      synchronized (myStorage.getFileLock(fileId)) {
+        SourceFileInfo info = null;
+        for (int projectId : myStorage.getProjectIds()) {
+          final long stamp = myStorage.getTimestamp(projectId, fileId);
+          final int[] outputPaths = myStorage.getOutputPaths(projectId, fileId);
+          if (stamp <= 0L && outputPaths.length == 0) {
+            continue;
+          }
+          if (info == null) {
+            info = new SourceFileInfo();
+          }
+          info.updateTimestamp(projectId, stamp);
+          for (int outputPath : outputPaths) {
+            info.addOutputPath(projectId, outputPath);
+          }
         }
+        return info;
       }
     }
-    catch (RuntimeException e) {
-      final Throwable cause = e.getCause();
-      if (cause instanceof IOException) {
-        LOG.info(e); // ignore IOExceptions
-      }
-      else {
-        throw e;
-      }
-    }
-    catch (IOException ignored) {
-      LOG.info(ignored);
+    catch (IOException e) {
+      LOG.info(e);
     }
     return null;
   }
 
-  public static void removeSourceInfo(VirtualFile file) {
-    saveSourceInfo(file, new SourceFileInfo());
-  }
-
-  private static void saveSourceInfo(VirtualFile file, SourceFileInfo descriptor) {
-    final java.io.DataOutputStream out = ourSourceFileAttribute.writeAttribute(file);
+  private void saveSourceInfo(VirtualFile file, SourceFileInfo descriptor) {
+    final int fileId = Math.abs(getFileId(file));
     try {
-      try {
-        descriptor.save(out);
-      }
-      finally {
-        out.close();
+      synchronized (myStorage.getFileLock(fileId)) {
+        // projects missing in the descriptor are cleared
+        final TIntHashSet projectIds = descriptor.getProjectIds();
+        projectIds.addAll(myStorage.getProjectIds());
+        for (int projectId : projectIds.toArray()) {
+          myStorage.putSource(projectId, fileId, descriptor.getTimestamp(projectId), descriptor.getOutputPaths(projectId));
+        }
       }
     }
-    catch (IOException ignored) {
-      LOG.info(ignored);
+    catch (IOException e) {
+      LOG.info(e);
     }
   }
 
-  @Nullable
-  private static OutputFileInfo loadOutputInfo(final VirtualFile file) {
+  private void removeFileInfo(int fileId) {
     try {
-      final DataInputStream is = ourOutputFileAttribute.readAttribute(file);
-      if (is != null) {
-        try {
-          return new OutputFileInfo(is);
-        }
-        finally {
-          is.close();
-        }
-      }
-    }
-    catch (RuntimeException e) {
-      final Throwable cause = e.getCause();
-      if (cause instanceof IOException) {
-        LOG.info(e); // ignore IO exceptions
-      }
-      else {
-        throw e;
+      synchronized (myStorage.getFileLock(fileId)) {
+        myStorage.removeFile(fileId);
       }
     }
-    catch (IOException ignored) {
-      LOG.info(ignored);
+    catch (IOException e) {
+      LOG.info(e);
     }
-    return null;
   }
 
-  private static void saveOutputInfo(VirtualFile file, OutputFileInfo descriptor) {
-    final java.io.DataOutputStream out = ourOutputFileAttribute.writeAttribute(file);
-    try {
-      try {
-        descriptor.save(out);
-      }
-      finally {
-        out.close();
-      }
-    }
-    catch (IOException ignored) {
-      LOG.info(ignored);
-    }
+  @Nullable
+  private OutputFileInfo loadOutputInfo(final VirtualFile file) {
+    final int[] output = myStorage.getOutput(Math.abs(getFileId(file)));
+    return output != null ? new OutputFileInfo(output[0], output[1]) : null;
+  }
+
+  private void saveOutputInfo(VirtualFile file, OutputFileInfo descriptor) {
+    myStorage.putOutput(Math.abs(getFileId(file)), descriptor.mySourcePath, descriptor.myClassName);
   }
 
   private int getProjectId(Project project) {
@@ -830,9 +815,9 @@ public class TranslatingCompilerFilesMonitorImpl extends TranslatingCompilerFile
       myClassName = className != null ? symtable.enumerate(className) : -1;
     }
 
-    OutputFileInfo(final DataInput in) throws IOException {
-      mySourcePath = in.readInt();
-      myClassName = in.readInt();
+    OutputFileInfo(int sourcePath, int className) {
+      mySourcePath = sourcePath;
+      myClassName = className;
     }
 
     String getSourceFilePath() {
@@ -855,11 +840,6 @@ public class TranslatingCompilerFilesMonitorImpl extends TranslatingCompilerFile
       }
       return null;
     }
-
-    public void save(final DataOutput out) throws IOException {
-      out.writeInt(mySourcePath);
-      out.writeInt(myClassName);
-    }
   }
 
   private static class SourceFileInfo {
@@ -869,59 +849,6 @@ public class TranslatingCompilerFilesMonitorImpl extends TranslatingCompilerFile
     private SourceFileInfo() {
     }
 
-    private SourceFileInfo(@NotNull DataInput in) throws IOException {
-      final int projCount = DataInputOutputUtil.readINT(in);
-      for (int idx = 0; idx < projCount; idx++) {
-        final int projectId = DataInputOutputUtil.readINT(in);
-        final long stamp = DataInputOutputUtil.readTIME(in);
-        updateTimestamp(projectId, stamp);
-
-        final int pathsCount = DataInputOutputUtil.readINT(in);
-        for (int i = 0; i < pathsCount; i++) {
-          final int path = in.readInt();
-          addOutputPath(projectId, path);
-        }
-      }
-    }
-
-    public void save(@NotNull final DataOutput out) throws IOException {
-      final int[] projects = getProjectIds().toArray();
-      DataInputOutputUtil.writeINT(out, projects.length);
-      for (int projectId : projects) {
-        DataInputOutputUtil.writeINT(out, projectId);
-        DataInputOutputUtil.writeTIME(out, getTimestamp(projectId));
-        final Object value = myProjectToOutputPathMap != null ? myProjectToOutputPathMap.get(projectId) : null;
-        if (value instanceof Integer) {
-          DataInputOutputUtil.writeINT(out, 1);
-          out.writeInt(((Integer)value).intValue());
-        }
-        else if (value instanceof TIntHashSet) {
-          final TIntHashSet set = (TIntHashSet)value;
-          DataInputOutputUtil.writeINT(out, set.size());
-          final IOException[] ex = new IOException[]{null};
-          set.forEach(new TIntProcedure() {
-            @Override
-            public boolean execute(final int value) {
-              try {
-                out.writeInt(value);
-                return true;
-              }
-              catch (IOException e) {
-                ex[0] = e;
-                return false;
-              }
-            }
-          });
-          if (ex[0] != null) {
-            throw ex[0];
-          }
-        }
-        else {
-          DataInputOutputUtil.writeINT(out, 0);
-        }
-      }
-    }
-
     private void updateTimestamp(final int projectId, final long stamp) {
       if (stamp > 0L) {
         if (myTimestamps == null) {
@@ -991,7 +918,19 @@ public class TranslatingCompilerFilesMonitorImpl extends TranslatingCompilerFile
     }
 
     long getTimestamp(final int projectId) {
-      return myTimestamps == null ? -1L : myTimestamps.get(projectId);
+      return myTimestamps == null || !myTimestamps.containsKey(projectId) ? -1L : myTimestamps.get(projectId);
+    }
+
+    @NotNull
+    int[] getOutputPaths(final int projectId) {
+      final Object val = myProjectToOutputPathMap != null ? myProjectToOutputPathMap.get(projectId) : null;
+      if (val instanceof Integer) {
+        return new int[]{((Integer)val).intValue()};
+      }
+      if (val instanceof TIntHashSet) {
+        return ((TIntHashSet)val).toArray();
+      }
+      return ArrayUtil.EMPTY_INT_ARRAY;
     }
 
     void processOutputPaths(final int projectId, final Proc proc) {
@@ -1126,11 +1065,10 @@ public class TranslatingCompilerFilesMonitorImpl extends TranslatingCompilerFile
           @Override
           public boolean processFile(final VirtualFile file) {
             if (!file.isDirectory()) {
-              if (!isMarkedForRecompilation(projectId, Math.abs(getFileId(file)))) {
-                final SourceFileInfo srcInfo = loadSourceInfo(file);
-                if (srcInfo == null || srcInfo.getTimestamp(projectId) != file.getTimeStamp()) {
-                  addSourceForRecompilation(projectId, file, srcInfo);
-                }
+              final int fileId = Math.abs(getFileId(file));
+              // the stamp column is enough to find out the file is up-to-date, the whole info is loaded only for changed files
+              if (!isMarkedForRecompilation(projectId, fileId) && myStorage.getTimestamp(projectId, fileId) != file.getTimeStamp()) {
+                addSourceForRecompilation(projectId, file, loadSourceInfo(file));
               }
             }
             else {
@@ -1289,11 +1227,9 @@ public class TranslatingCompilerFilesMonitorImpl extends TranslatingCompilerFile
                 final FileProcessor processor = new FileProcessor() {
                   @Override
                   public void execute(final VirtualFile file) {
-                    if (!isMarkedForRecompilation(projectId, Math.abs(getFileId(file)))) {
-                      final SourceFileInfo srcInfo = loadSourceInfo(file);
-                      if (srcInfo == null || srcInfo.getTimestamp(projectId) != file.getTimeStamp()) {
-                        addSourceForRecompilation(projectId, file, srcInfo);
-                      }
+                    final int fileId = Math.abs(getFileId(file));
+                    if (!isMarkedForRecompilation(projectId, fileId) && myStorage.getTimestamp(projectId, fileId) != file.getTimeStamp()) {
+                      addSourceForRecompilation(projectId, file, loadSourceInfo(file));
                     }
                   }
                 };
@@ -1546,6 +1482,7 @@ public class TranslatingCompilerFilesMonitorImpl extends TranslatingCompilerFile
       }
 
       final Set<File> pathsToMark = new THashSet<File>(FileUtil.FILE_HASHING_STRATEGY);
+      final TIntArrayList deletedFileIds = new TIntArrayList();
 
       processRecursively(eventFile, true, new FileProcessor() {
         private final TIntArrayList myAssociatedProjectIds = new TIntArrayList();
@@ -1554,6 +1491,7 @@ public class TranslatingCompilerFilesMonitorImpl extends TranslatingCompilerFile
         public void execute(final VirtualFile file) {
           final String filePath = file.getPath();
           pathsToMark.add(new File(filePath));
+          deletedFileIds.add(Math.abs(getFileId(file)));
           myAssociatedProjectIds.clear();
           try {
             final OutputFileInfo outputInfo = loadOutputInfo(file);
@@ -1631,6 +1569,10 @@ public class TranslatingCompilerFilesMonitorImpl extends TranslatingCompilerFile
         }
       });
 
+      // the ids of the deleted files are given to new files later
+      for (int fileId : deletedFileIds.toNativeArray()) {
+        removeFileInfo(fileId);
+      }
       notifyFilesDeleted(pathsToMark);
     }
 
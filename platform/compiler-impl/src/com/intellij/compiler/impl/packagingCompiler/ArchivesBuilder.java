@@ -16,17 +16,20 @@
 
 package com.intellij.compiler.impl.packagingCompiler;
 
+import com.intellij.compiler.impl.DependentTasksRunner;
 import com.intellij.openapi.compiler.CompileContext;
 import com.intellij.openapi.compiler.CompilerBundle;
 import com.intellij.openapi.compiler.CompilerMessageCategory;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.util.Pair;
 import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.registry.Registry;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vfs.VfsUtil;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.packaging.impl.compiler.ArtifactCompilerUtil;
 import com.intellij.util.ArrayUtil;
+import com.intellij.util.containers.ContainerUtil;
 import com.intellij.util.graph.CachingSemiGraph;
 import com.intellij.util.graph.DFSTBuilder;
 import com.intellij.util.graph.GraphGenerator;
@@ -69,11 +72,17 @@ public class ArchivesBuilder {
       return false;
     }
 
-    myBuiltArchives = new HashMap<>();
+    myBuiltArchives = ContainerUtil.newConcurrentMap();
     try {
-      for (ArchivePackageInfo archivePackageInfo : sortedArchives) {
-        myContext.getProgressIndicator().checkCanceled();
-        buildArchive(archivePackageInfo);
+      final int parallelism = Math.min(Registry.intValue("compiler.parallel.archives.count"), sortedArchives.length);
+      if (parallelism > 1) {
+        buildArchivesConcurrently(sortedArchives, parallelism);
+      }
+      else {
+        for (ArchivePackageInfo archivePackageInfo : sortedArchives) {
+          myContext.getProgressIndicator().checkCanceled();
+          buildArchive(archivePackageInfo);
+        }
       }
 
       myContext.getProgressIndicator().setText(CompilerBundle.message("packaging.compiler.message.copying.archives"));
@@ -87,6 +96,23 @@ public class ArchivesBuilder {
     return true;
   }
 
+  /**
+   * Builds an archive once all archives packed into it are built, archives which don't contain one another are built at the same time
+   */
+  private void buildArchivesConcurrently(@NotNull ArchivePackageInfo[] sortedArchives, int parallelism) throws IOException {
+    final Map<ArchivePackageInfo, List<ArchivePackageInfo>> nestedArchives = new HashMap<>();
+    for (ArchivePackageInfo archive : sortedArchives) {
+      final List<ArchivePackageInfo> nested = new ArrayList<>();
+      for (Pair<String, ArchivePackageInfo> nestedArchive : archive.getPackedArchives()) {
+        nested.add(nestedArchive.getSecond());
+      }
+      nestedArchives.put(archive, nested);
+    }
+
+    DependentTasksRunner.runConcurrently(Arrays.asList(sortedArchives), nestedArchives, archive -> buildArchive(archive), IOException.class,
+                                         "Archives building", parallelism, myContext.getProgressIndicator());
+  }
+
   private void deleteTemporaryJars() {
     for (File file : myBuiltArchives.values()) {
       FileUtil.delete(file);
@@ -243,9 +269,7 @@ public class ArchivesBuilder {
 
     myContext.getProgressIndicator().setText2(relativePath);
 
-    try (FileInputStream fileOutputStream = new FileInputStream(file)) {
-      writer.addFile(archiveObject, fileOutputStream, relativePath, file.length(), file.lastModified());
-    }
+    writer.addFile(archiveObject, file, relativePath);
   }
 
   private static <T> String addParentDirectories(@NotNull T archiveObject,
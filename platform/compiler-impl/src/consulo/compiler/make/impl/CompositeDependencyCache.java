@@ -35,6 +35,8 @@ import java.util.List;
 import java.util.Set;
 
 /**
+ * The methods of all caches are called under the lock of the composite one.
+ *
  * @author VISTALL
  * @since 14:45/20.10.13
  */
@@ -51,11 +53,11 @@ public class CompositeDependencyCache implements DependencyCache {
   }
 
   @Override
-  public void findDependentFiles(CompileContextEx context,
-                                 Ref<CacheCorruptedException> exceptionRef,
-                                 Function<Pair<int[], Set<VirtualFile>>, Pair<int[], Set<VirtualFile>>> filter,
-                                 Set<VirtualFile> dependentFiles,
-                                 Set<VirtualFile> compiledWithErrors) throws CacheCorruptedException, ExitException {
+  public synchronized void findDependentFiles(CompileContextEx context,
+                                              Ref<CacheCorruptedException> exceptionRef,
+                                              Function<Pair<int[], Set<VirtualFile>>, Pair<int[], Set<VirtualFile>>> filter,
+                                              Set<VirtualFile> dependentFiles,
+                                              Set<VirtualFile> compiledWithErrors) throws CacheCorruptedException, ExitException {
     for (DependencyCache dependencyCache : myDependencyCaches) {
       dependencyCache.findDependentFiles(context, exceptionRef, filter, dependentFiles, compiledWithErrors);
 
@@ -67,7 +69,7 @@ public class CompositeDependencyCache implements DependencyCache {
   }
 
   @Override
-  public boolean hasUnprocessedTraverseRoots() {
+  public synchronized boolean hasUnprocessedTraverseRoots() {
     for (DependencyCache ourDependencyExtension : myDependencyCaches) {
       if(ourDependencyExtension.hasUnprocessedTraverseRoots()) {
         return true;
@@ -77,21 +79,21 @@ public class CompositeDependencyCache implements DependencyCache {
   }
 
   @Override
-  public void resetState() {
+  public synchronized void resetState() {
     for (DependencyCache ourDependencyExtension : myDependencyCaches) {
       ourDependencyExtension.resetState();
     }
   }
 
   @Override
-  public void clearTraverseRoots() {
+  public synchronized void clearTraverseRoots() {
     for (DependencyCache ourDependencyExtension : myDependencyCaches) {
       ourDependencyExtension.clearTraverseRoots();
     }
   }
 
   @Override
-  public void update() throws CacheCorruptedException {
+  public synchronized void update() throws CacheCorruptedException {
     for (DependencyCache ourDependencyExtension : myDependencyCaches) {
       ourDependencyExtension.update();
     }
@@ -99,7 +101,7 @@ public class CompositeDependencyCache implements DependencyCache {
 
   @Nullable
   @Override
-  public String relativePathToQName(@NotNull String path, char separator) {
+  public synchronized String relativePathToQName(@NotNull String path, char separator) {
     for (DependencyCache ourDependencyExtension : myDependencyCaches) {
       String s = ourDependencyExtension.relativePathToQName(path, separator);
       if(s != null) {
@@ -110,12 +112,16 @@ public class CompositeDependencyCache implements DependencyCache {
   }
 
   @Override
-  public void syncOutDir(Trinity<File, String, Boolean> trinity) throws CacheCorruptedException {
+  public synchronized void syncOutDir(Trinity<File, String, Boolean> trinity) throws CacheCorruptedException {
     for (DependencyCache ourDependencyExtension : myDependencyCaches) {
       ourDependencyExtension.syncOutDir(trinity);
     }
   }
 
+  /**
+   * Module chunks of a rebuild may be compiled concurrently, so the cache is accessed under its lock,
+   * a compiler using the returned child should synchronize on this cache too.
+   */
   @NotNull
   public <T extends DependencyCache> T findChild(Class<T> clazz) {
     for (DependencyCache dependencyCach : myDependencyCaches) {
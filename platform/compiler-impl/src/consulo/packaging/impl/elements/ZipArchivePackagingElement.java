@@ -16,11 +16,22 @@
 package consulo.packaging.impl.elements;
 
 import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.io.FileUtilRt;
+import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.packaging.impl.elements.ArchivePackagingElement;
+import com.intellij.util.PathUtil;
 import consulo.packaging.elements.ArchivePackageWriter;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.CRC32;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
@@ -32,6 +43,10 @@ public class ZipArchivePackagingElement extends ArchivePackagingElement {
   public static class ZipArchivePackageWriter implements ArchivePackageWriter<ZipOutputStream> {
     public static final ZipArchivePackageWriter INSTANCE = new ZipArchivePackageWriter();
 
+    // deflating these files again takes time and gains almost nothing, they are stored as is
+    private static final Set<String> COMPRESSED_EXTENSIONS =
+            new HashSet<String>(Arrays.asList("jar", "zip", "war", "ear", "rar", "gz", "tgz", "bz2", "xz", "7z", "png", "jpg", "jpeg", "gif"));
+
     @NotNull
     @Override
     public ZipOutputStream createArchiveObject(@NotNull File tempFile) throws IOException {
@@ -62,6 +77,48 @@ public class ZipArchivePackagingElement extends ArchivePackagingElement {
       zipOutputStream.closeEntry();
     }
 
+    @Override
+    public void addFile(@NotNull ZipOutputStream zipOutputStream, @NotNull File file, @NotNull String relativePath) throws IOException {
+      // decided by the entry name, the source may be a temp file (e.g. a nested archive) with another extension
+      if (!COMPRESSED_EXTENSIONS.contains(StringUtil.toLowerCase(FileUtilRt.getExtension(PathUtil.getFileName(relativePath)))) ||
+          file.length() > Integer.MAX_VALUE) {
+        ArchivePackageWriter.super.addFile(zipOutputStream, file, relativePath);
+        return;
+      }
+
+      try (FileChannel channel = new FileInputStream(file).getChannel()) {
+        final long size = channel.size();
+        // the crc is needed before the entry is written, so the file is read twice
+        final CRC32 crc = new CRC32();
+        final ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        while (channel.read(buffer) != -1) {
+          buffer.flip();
+          crc.update(buffer);
+          buffer.clear();
+        }
+
+        ZipEntry e = new ZipEntry(relativePath);
+        e.setMethod(ZipEntry.STORED);
+        e.setTime(file.lastModified());
+        e.setSize(size);
+        e.setCompressedSize(size);
+        e.setCrc(crc.getValue());
+
+        zipOutputStream.putNextEntry(e);
+        // not closed, closing the channel closes the archive stream
+        final WritableByteChannel target = Channels.newChannel(zipOutputStream);
+        long position = 0;
+        while (position < size) {
+          final long transferred = channel.transferTo(position, size - position, target);
+          if (transferred <= 0) {
+            throw new IOException(file + " was changed while it was added to the archive");
+          }
+          position += transferred;
+        }
+        zipOutputStream.closeEntry();
+      }
+    }
+
     @Override
     public void
     close(@NotNull ZipOutputStream zipOutputStream) throws IOException {
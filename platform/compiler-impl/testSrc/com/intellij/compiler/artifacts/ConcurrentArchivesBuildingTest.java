@@ -0,0 +1,90 @@
+/*
+ * Copyright 2013-2016 consulo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.compiler.artifacts;
+
+import com.intellij.openapi.util.registry.Registry;
+import com.intellij.openapi.util.registry.RegistryValue;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.packaging.artifacts.Artifact;
+
+/**
+ * Builds archives packed into one another with several archives built at once
+ */
+public class ConcurrentArchivesBuildingTest extends ArtifactCompilerTestCase {
+  private RegistryValue myParallelArchives;
+  private int myOldParallelArchives;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myParallelArchives = Registry.get("compiler.parallel.archives.count");
+    myOldParallelArchives = myParallelArchives.asInteger();
+    myParallelArchives.setValue(4);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    try {
+      myParallelArchives.setValue(myOldParallelArchives);
+    }
+    finally {
+      super.tearDown();
+    }
+  }
+
+  public void testNestedArchivesAreBuiltFirst() {
+    final VirtualFile a = createFile("a.txt", "a");
+    final VirtualFile b = createFile("b.txt", "b");
+    final VirtualFile image = createFile("image.png", "not deflated");
+
+    final Artifact artifact = addArtifact(
+      root()
+        .archive("outer.jar").file(a)
+          .archive("middle.jar").file(b)
+            .archive("inner.jar").file(image).end()
+          .end()
+          .archive("other.jar").file(a).end()
+        .end()
+        .archive("single.jar").file(image).end()
+        .archive("plain.jar").file(a).file(b).end());
+    compileProject();
+
+    assertOutput(artifact, fs()
+      .archive("outer.jar").file("a.txt", "a")
+        .archive("middle.jar").file("b.txt", "b")
+          .archive("inner.jar").file("image.png", "not deflated").end()
+        .end()
+        .archive("other.jar").file("a.txt", "a").end()
+      .end()
+      .archive("single.jar").file("image.png", "not deflated").end()
+      .archive("plain.jar").file("a.txt", "a").file("b.txt", "b").end());
+  }
+
+  public void testArchivePackedIntoSeveralArchives() {
+    final VirtualFile a = createFile("a.txt", "a");
+
+    final Artifact inner = addArtifact("inner", archive("inner.jar").file(a));
+    final Artifact artifact = addArtifact(
+      root()
+        .archive("first.jar").artifact(inner).end()
+        .archive("second.jar").artifact(inner).file(a).end());
+    compileProject();
+
+    assertOutput(artifact, fs()
+      .archive("first.jar").archive("inner.jar").file("a.txt", "a").end().end()
+      .archive("second.jar").archive("inner.jar").file("a.txt", "a").end().file("a.txt", "a").end());
+  }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2013-2016 consulo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.compiler.impl;
+
+import com.intellij.openapi.progress.EmptyProgressIndicator;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.testFramework.LightPlatformTestCase;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class DependentTasksRunnerTest extends LightPlatformTestCase {
+  private final Map<String, List<String>> myDependencies = new HashMap<>();
+  private final List<String> mySortedNodes = new ArrayList<>();
+
+  public void testDependenciesAreFinishedFirst() throws IOException {
+    // two diamonds sharing the root and a chain aside
+    node("a");
+    node("b", "a");
+    node("c", "a");
+    node("d", "b", "c");
+    node("e", "a", "d");
+    node("x");
+    node("y", "x");
+    node("z", "y", "outside");
+
+    final Random random = new Random(42);
+    for (int i = 0; i < 20; i++) {
+      final List<String> events = Collections.synchronizedList(new ArrayList<>());
+      run(3, node -> {
+        events.add("start " + node);
+        sleep(random.nextInt(5));
+        events.add("finish " + node);
+      });
+
+      assertEquals(2 * mySortedNodes.size(), events.size());
+      for (String node : mySortedNodes) {
+        final int start = events.indexOf("start " + node);
+        assertTrue(events.toString(), start >= 0 && start == events.lastIndexOf("start " + node));
+        for (String dependency : myDependencies.get(node)) {
+          if (mySortedNodes.contains(dependency)) {
+            assertTrue(events.toString(), events.indexOf("finish " + dependency) < start);
+          }
+        }
+      }
+    }
+  }
+
+  public void testIndependentNodesRunAtOnce() throws IOException {
+    node("a");
+    node("b");
+    node("c", "a", "b");
+
+    final CountDownLatch bothStarted = new CountDownLatch(2);
+    final List<String> finished = Collections.synchronizedList(new ArrayList<>());
+    run(2, node -> {
+      if (!node.equals("c")) {
+        bothStarted.countDown();
+        assertTrue(node + " waits for the other one", await(bothStarted));
+      }
+      finished.add(node);
+    });
+    assertEquals("c", finished.get(2));
+  }
+
+  public void testParallelismIsBounded() throws IOException {
+    for (int i = 0; i < 20; i++) {
+      node("n" + i);
+    }
+
+    final AtomicInteger running = new AtomicInteger();
+    final AtomicInteger maxRunning = new AtomicInteger();
+    run(3, node -> {
+      final int count = running.incrementAndGet();
+      maxRunning.accumulateAndGet(count, Math::max);
+      sleep(2);
+      running.decrementAndGet();
+    });
+    assertTrue(String.valueOf(maxRunning.get()), maxRunning.get() <= 3);
+  }
+
+  public void testNoNodeStartedAfterFailure() {
+    node("a");
+    node("b", "a");
+    node("slow");
+    node("c", "slow");
+
+    final CountDownLatch failed = new CountDownLatch(1);
+    final List<String> finished = Collections.synchronizedList(new ArrayList<>());
+    try {
+      run(2, node -> {
+        if (node.equals("a")) {
+          failed.countDown();
+          throw new IOException("a failed");
+        }
+        if (node.equals("slow")) {
+          await(failed);
+          sleep(20);
+        }
+        finished.add(node);
+      });
+      fail();
+    }
+    catch (IOException e) {
+      assertEquals("a failed", e.getMessage());
+    }
+    // the running node is finished before the failure is rethrown, its dependent is not started
+    assertEquals(Collections.singletonList("slow"), finished);
+  }
+
+  public void testUncheckedFailureIsRethrown() throws IOException {
+    node("a");
+    try {
+      run(2, node -> {
+        throw new ProcessCanceledException();
+      });
+      fail();
+    }
+    catch (ProcessCanceledException ignored) {
+    }
+  }
+
+  private void node(@NotNull String node, @NotNull String... dependencies) {
+    mySortedNodes.add(node);
+    myDependencies.put(node, Arrays.asList(dependencies));
+  }
+
+  private void run(int parallelism, @NotNull DependentTasksRunner.Task<String, IOException> task) throws IOException {
+    DependentTasksRunner.runConcurrently(mySortedNodes, myDependencies, task, IOException.class, "Test", parallelism,
+                                         new EmptyProgressIndicator());
+  }
+
+  private static boolean await(@NotNull CountDownLatch latch) {
+    try {
+      return latch.await(10, TimeUnit.SECONDS);
+    }
+    catch (InterruptedException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private static void sleep(int millis) {
+    try {
+      Thread.sleep(millis);
+    }
+    catch (InterruptedException e) {
+      throw new RuntimeException(e);
+    }
+  }
+}
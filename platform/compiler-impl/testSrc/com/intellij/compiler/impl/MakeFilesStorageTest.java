@@ -0,0 +1,124 @@
+/*
+ * Copyright 2013-2016 consulo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.compiler.impl;
+
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.testFramework.LightPlatformTestCase;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.util.Arrays;
+
+public class MakeFilesStorageTest extends LightPlatformTestCase {
+  private static final int PROJECT = 7;
+  private static final int OTHER_PROJECT = 8;
+
+  private File myDir;
+  private MakeFilesStorage myStorage;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myDir = FileUtil.createTempDirectory("make", "state");
+    myStorage = MakeFilesStorage.open(myDir);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    try {
+      myStorage.close();
+      FileUtil.delete(myDir);
+    }
+    finally {
+      super.tearDown();
+    }
+  }
+
+  public void testValuesAreKeptAfterReopening() throws Exception {
+    myStorage.putSource(PROJECT, 10, 1000L, new int[]{1, 2});
+    myStorage.putSource(OTHER_PROJECT, 10, 2000L, new int[0]);
+    myStorage.putOutput(11, 3, 4);
+
+    myStorage.close();
+    myStorage = MakeFilesStorage.open(myDir);
+
+    final int[] projectIds = myStorage.getProjectIds();
+    Arrays.sort(projectIds);
+    assertInts(projectIds, PROJECT, OTHER_PROJECT);
+    assertEquals(1000L, myStorage.getTimestamp(PROJECT, 10));
+    assertInts(myStorage.getOutputPaths(PROJECT, 10), 1, 2);
+    assertEquals(2000L, myStorage.getTimestamp(OTHER_PROJECT, 10));
+    assertEquals(0, myStorage.getOutputPaths(OTHER_PROJECT, 10).length);
+    assertInts(myStorage.getOutput(11), 3, 4);
+
+    assertEquals(-1L, myStorage.getTimestamp(PROJECT, 11));
+    assertNull(myStorage.getOutput(10));
+  }
+
+  public void testIdOfDeletedFileIsReused() throws Exception {
+    myStorage.putSource(PROJECT, 10, 1000L, new int[]{1, 2});
+    myStorage.putSource(OTHER_PROJECT, 10, 2000L, new int[]{5});
+    myStorage.putOutput(10, 3, 4);
+    myStorage.putSource(PROJECT, 12, 3000L, new int[]{6});
+
+    myStorage.removeFile(10);
+    // a new file gets the id of the deleted one
+    myStorage.putSource(OTHER_PROJECT, 10, 4000L, new int[0]);
+
+    assertEquals(-1L, myStorage.getTimestamp(PROJECT, 10));
+    assertEquals(0, myStorage.getOutputPaths(PROJECT, 10).length);
+    assertEquals(4000L, myStorage.getTimestamp(OTHER_PROJECT, 10));
+    assertEquals(0, myStorage.getOutputPaths(OTHER_PROJECT, 10).length);
+    assertNull(myStorage.getOutput(10));
+
+    assertEquals(3000L, myStorage.getTimestamp(PROJECT, 12));
+    assertInts(myStorage.getOutputPaths(PROJECT, 12), 6);
+  }
+
+  public void testIdBeyondStoredValuesIsRemoved() throws Exception {
+    myStorage.putSource(PROJECT, 10, 1000L, new int[0]);
+
+    myStorage.removeFile(100000);
+    assertEquals(-1L, myStorage.getTimestamp(PROJECT, 100000));
+    assertNull(myStorage.getOutput(100000));
+    assertEquals(1000L, myStorage.getTimestamp(PROJECT, 10));
+  }
+
+  public void testCorruptedProjectValuesAreDropped() throws Exception {
+    myStorage.putSource(PROJECT, 10, 1000L, new int[]{1, 2});
+    myStorage.putOutput(11, 3, 4);
+    myStorage.close();
+
+    final File projectDir = new File(myDir, String.valueOf(PROJECT));
+    for (File file : projectDir.listFiles()) {
+      if (file.getName().startsWith("output_paths")) {
+        FileUtil.writeToFile(file, "garbage");
+      }
+    }
+    myStorage = MakeFilesStorage.open(myDir);
+
+    assertEquals(-1L, myStorage.getTimestamp(PROJECT, 10));
+    assertEquals(0, myStorage.getOutputPaths(PROJECT, 10).length);
+    assertInts(myStorage.getOutput(11), 3, 4);
+
+    myStorage.putSource(PROJECT, 10, 2000L, new int[]{5});
+    assertEquals(2000L, myStorage.getTimestamp(PROJECT, 10));
+  }
+
+  private static void assertInts(@Nullable int[] actual, int... expected) {
+    assertEquals(Arrays.toString(expected), Arrays.toString(actual));
+  }
+}
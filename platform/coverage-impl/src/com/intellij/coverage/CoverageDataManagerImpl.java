@@ -44,6 +44,7 @@ import com.intellij.rt.coverage.data.ClassData;
 import com.intellij.rt.coverage.data.LineCoverage;
 import com.intellij.rt.coverage.data.LineData;
 import com.intellij.rt.coverage.data.ProjectData;
+import com.intellij.rt.coverage.util.CompactProjectDataFile;
 import com.intellij.util.Alarm;
 import com.intellij.util.ArrayUtil;
 import com.intellij.util.containers.ContainerUtil;
@@ -229,6 +230,7 @@ public class CoverageDataManagerImpl extends CoverageDataManager {
 
   private void deleteCachedCoverage(String coverageDataFileName, boolean deleteTraces) {
     FileUtil.delete(new File(coverageDataFileName));
+    FileUtil.delete(CompactProjectDataFile.getCompactFile(new File(coverageDataFileName)));
     if (deleteTraces) {
       FileUtil.delete(getTracesDirectory(coverageDataFileName));
     }
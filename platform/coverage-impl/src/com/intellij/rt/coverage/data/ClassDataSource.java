@@ -0,0 +1,31 @@
+/*
+ * Copyright 2013-2016 consulo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.intellij.rt.coverage.data;
+
+import java.util.Collection;
+
+/**
+ * Coverage data of classes which is decoded only when a class is asked for, see {@link ProjectData#addClassDataSource(ClassDataSource)}
+ */
+public interface ClassDataSource {
+  Collection getClassNames();
+
+  /**
+   * @return new instance of the class data on every call, null if there is no data for the class
+   */
+  ClassData loadClassData(String name);
+}
@@ -205,6 +205,22 @@ public class LineData implements CoverageData {
     }
   }
 
+  public String getUniqueTestName() {
+    return myUniqueTestName;
+  }
+
+  /**
+   * @return false if the line was hit by different tests, it is never attributed to one test then
+   */
+  public boolean mayBeUnique() {
+    return myMayBeUnique;
+  }
+
+  public void setNotUnique() {
+    myUniqueTestName = null;
+    myMayBeUnique = false;
+  }
+
   public boolean isCoveredByOneTest() {
     return myUniqueTestName != null && myUniqueTestName.length() > 0;
   }
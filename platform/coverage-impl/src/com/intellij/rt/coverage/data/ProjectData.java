@@ -22,10 +22,7 @@ import com.intellij.rt.coverage.util.ErrorReporter;
 import java.io.*;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.util.Collection;
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.Map;
+import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 
 public class ProjectData implements CoverageData, Serializable {
@@ -53,14 +50,80 @@ public class ProjectData implements CoverageData, Serializable {
   private ClassesMap myClasses = new ClassesMap();
   private Map myLinesMap;
 
+  private transient volatile List mySources;
+  private transient Set myLoadedNames;
+
   private static Object ourProjectDataObject;
 
   public ClassData getClassData(final String name) {
-    return myClasses.get(name);
+    final ClassData classData = myClasses.get(name);
+    if (classData != null || mySources == null) return classData;
+    return loadFromSources(name);
+  }
+
+  /**
+   * Classes of the source are decoded and merged into this data only when they are asked for,
+   * the source is not read if the classes of this data are changed otherwise.
+   */
+  public synchronized void addClassDataSource(ClassDataSource source) {
+    if (mySources == null) {
+      mySources = new ArrayList();
+      myLoadedNames = new HashSet();
+    }
+    mySources.add(source);
+    for (Iterator iter = myLoadedNames.iterator(); iter.hasNext();) {
+      final String name = (String) iter.next();
+      final ClassData loadedData = source.loadClassData(name);
+      if (loadedData == null) continue;
+      final ClassData classData = myClasses.get(name);
+      if (classData == null) {
+        myClasses.put(name, loadedData);
+      } else {
+        classData.merge(loadedData);
+      }
+    }
+  }
+
+  private synchronized ClassData loadFromSources(String name) {
+    if (!myLoadedNames.add(name)) return myClasses.get(name);
+    ClassData result = null;
+    for (Iterator iter = mySources.iterator(); iter.hasNext();) {
+      final ClassData loadedData = ((ClassDataSource) iter.next()).loadClassData(name);
+      if (loadedData == null) continue;
+      if (result == null) {
+        result = loadedData;
+      } else {
+        result.merge(loadedData);
+      }
+    }
+    if (result != null) {
+      myClasses.put(name, result);
+    }
+    return result;
+  }
+
+  // classes decoded from the sources are merged from the sources themselves
+  private static boolean isInSources(Object[] sources, String name) {
+    for (int i = 0; i < sources.length; i++) {
+      if (((ClassDataSource) sources[i]).getClassNames().contains(name)) return true;
+    }
+    return false;
+  }
+
+  private Set getAllClassNames() {
+    final Object[] sources;
+    synchronized (this) {
+      sources = mySources.toArray();
+    }
+    final Set names = new HashSet(myClasses.names());
+    for (int i = 0; i < sources.length; i++) {
+      names.addAll(((ClassDataSource) sources[i]).getClassNames());
+    }
+    return names;
   }
 
   public ClassData getOrCreateClassData(String name) {
-    ClassData classData = myClasses.get(name);
+    ClassData classData = getClassData(name);
     if (classData == null) {
       classData = new ClassData(name);
       myClasses.put(name, classData);
@@ -99,10 +162,18 @@ public class ProjectData implements CoverageData, Serializable {
 
   public void merge(final CoverageData data) {
     final ProjectData projectData = (ProjectData)data;
+    final Object[] sources;
+    synchronized (projectData) {
+      sources = projectData.mySources != null ? projectData.mySources.toArray() : new Object[0];
+    }
+    for (int i = 0; i < sources.length; i++) {
+      addClassDataSource((ClassDataSource) sources[i]);
+    }
     for (Iterator iter = projectData.myClasses.names().iterator(); iter.hasNext();) {
       final String key = (String) iter.next();
+      if (isInSources(sources, key)) continue;
       final ClassData mergedData = projectData.myClasses.get(key);
-      ClassData classData = myClasses.get(key);
+      ClassData classData = getClassData(key);
       if (classData == null) {
         classData = new ClassData(mergedData.getName());
         myClasses.put(key, classData);
@@ -220,7 +291,8 @@ public class ProjectData implements CoverageData, Serializable {
 
   /** @noinspection UnusedDeclaration*/
   public Map getClasses() {
-    return myClasses.asMap();
+    if (mySources == null) return myClasses.asMap();
+    return new LazyClassesMap(getAllClassNames());
   }
 
 
@@ -364,7 +436,8 @@ public class ProjectData implements CoverageData, Serializable {
   private static class ClassesMap {
     private static final int POOL_SIZE = 1000;
     private IdentityClassData[] myIdentityArray = new IdentityClassData[POOL_SIZE];
-    private final Map myClasses = new HashMap(1000);
+    // read without the lock of the project data while the classes are loaded from the sources
+    private final Map myClasses = new ConcurrentHashMap(1000);
 
     public ClassData get(String name) {
       int idx = Math.abs(name.hashCode() % POOL_SIZE);
@@ -392,9 +465,62 @@ public class ProjectData implements CoverageData, Serializable {
     }
   }
 
+  /**
+   * Snapshot of the class names of the data whose classes are decoded from the sources only when they are asked for
+   */
+  private class LazyClassesMap extends AbstractMap {
+    private final Set myNames;
+
+    private LazyClassesMap(Set names) {
+      myNames = Collections.unmodifiableSet(names);
+    }
+
+    public boolean containsKey(Object key) {
+      return myNames.contains(key);
+    }
+
+    public Object get(Object key) {
+      return key instanceof String && myNames.contains(key) ? getClassData((String) key) : null;
+    }
+
+    public Set keySet() {
+      return myNames;
+    }
+
+    public int size() {
+      return myNames.size();
+    }
+
+    public Set entrySet() {
+      return new AbstractSet() {
+        public Iterator iterator() {
+          final Iterator names = myNames.iterator();
+          return new Iterator() {
+            public boolean hasNext() {
+              return names.hasNext();
+            }
+
+            public Object next() {
+              final String name = (String) names.next();
+              return new SimpleImmutableEntry(name, getClassData(name));
+            }
+
+            public void remove() {
+              throw new UnsupportedOperationException();
+            }
+          };
+        }
+
+        public int size() {
+          return myNames.size();
+        }
+      };
+    }
+  }
+
   private static class IdentityClassData {
-    private String myClassName;
-    private ClassData myClassData;
+    private final String myClassName;
+    private final ClassData myClassData;
 
     private IdentityClassData(String className, ClassData classData) {
       myClassName = className;
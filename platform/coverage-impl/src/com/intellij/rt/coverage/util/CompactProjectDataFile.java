@@ -0,0 +1,309 @@
+/*
+ * Copyright 2013-2016 consulo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.intellij.rt.coverage.util;
+
+import com.intellij.rt.coverage.data.*;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.*;
+
+/**
+ * Coverage data of a session in a form which is read at once and decoded class by class.
+ * <p/>
+ * The file is written next to the session data file once the session is loaded for the first time and contains
+ * a block of fixed size values per class: the line numbers, hits, method signatures and test names of the lines
+ * as int columns followed by the string table and the branches of the lines.
+ * A test name index is {@link #NO_TEST} for lines without a test and {@link #DIFFERENT_TESTS} for lines hit by several tests.
+ * The directory of the class names and offsets of their blocks is at the end of the file.
+ */
+public class CompactProjectDataFile implements ClassDataSource {
+  public static final boolean ENABLED = !"false".equals(System.getProperty("idea.coverage.compact.data"));
+
+  private static final String EXTENSION = ".compact";
+  private static final int MAGIC = 0x49434F56;
+  private static final int VERSION = 2;
+  private static final int NO_TEST = -1;
+  private static final int DIFFERENT_TESTS = -2;
+  private static final int HEADER_SIZE = 4 + 4 + 8 + 8;
+
+  private final ByteBuffer myBuffer;
+  private final Map myOffsets;
+
+  private CompactProjectDataFile(ByteBuffer buffer, Map offsets) {
+    myBuffer = buffer;
+    myOffsets = offsets;
+  }
+
+  public static File getCompactFile(File sessionDataFile) {
+    return new File(sessionDataFile.getPath() + EXTENSION);
+  }
+
+  /**
+   * @return null if there is no compact file for the current state of the session data file
+   */
+  public static CompactProjectDataFile open(File sessionDataFile) throws IOException {
+    final File file = getCompactFile(sessionDataFile);
+    if (!file.exists() || file.length() < HEADER_SIZE + 8 || file.length() > Integer.MAX_VALUE) return null;
+
+    // read into the heap rather than mapped, a mapping would be released only once the buffer is garbage collected
+    // and would keep the file locked on Windows until then
+    final ByteBuffer buffer;
+    final FileInputStream in = new FileInputStream(file);
+    try {
+      final FileChannel channel = in.getChannel();
+      buffer = ByteBuffer.allocate((int)channel.size());
+      while (buffer.hasRemaining()) {
+        if (channel.read(buffer) < 0) return null;
+      }
+      buffer.flip();
+    }
+    finally {
+      in.close();
+    }
+
+    if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION ||
+        buffer.getLong(8) != sessionDataFile.length() || buffer.getLong(16) != sessionDataFile.lastModified()) {
+      return null;
+    }
+
+    final int classCount = buffer.getInt(buffer.limit() - 4);
+    final ByteBuffer directory = buffer.duplicate();
+    directory.position(buffer.getInt(buffer.limit() - 8));
+    final Map offsets = new HashMap(classCount * 4 / 3 + 1);
+    for (int c = 0; c < classCount; c++) {
+      final String name = readString(directory);
+      offsets.put(name, new Integer(directory.getInt()));
+    }
+    return new CompactProjectDataFile(buffer, offsets);
+  }
+
+  public Collection getClassNames() {
+    return Collections.unmodifiableSet(myOffsets.keySet());
+  }
+
+  public ClassData loadClassData(String name) {
+    final Integer offset = (Integer)myOffsets.get(name);
+    if (offset == null) return null;
+
+    final ByteBuffer buffer = myBuffer.duplicate();
+    buffer.position(offset.intValue());
+    final int linesLength = buffer.getInt();
+    final int count = buffer.getInt();
+    final int[] lineNumbers = readInts(buffer, count);
+    final int[] hits = readInts(buffer, count);
+    final int[] signatures = readInts(buffer, count);
+    final int[] testNames = readInts(buffer, count);
+    final String[] strings = new String[buffer.getInt()];
+    for (int i = 0; i < strings.length; i++) {
+      strings[i] = readString(buffer);
+    }
+
+    final ClassData classData = new ClassData(name);
+    final LineData[] lines = new LineData[linesLength];
+    for (int i = 0; i < count; i++) {
+      final LineData lineData = new LineData(lineNumbers[i], strings[signatures[i]]);
+      classData.registerMethodSignature(lineData);
+      if (testNames[i] >= 0) {
+        lineData.setTestName(strings[testNames[i]]);
+      }
+      else if (testNames[i] == DIFFERENT_TESTS) {
+        lineData.setNotUnique();
+      }
+      lineData.setHits(hits[i]);
+
+      final int jumpsCount = buffer.getInt();
+      for (int j = 0; j < jumpsCount; j++) {
+        lineData.setTrueHits(j, buffer.getInt());
+        lineData.setFalseHits(j, buffer.getInt());
+      }
+      final int switchesCount = buffer.getInt();
+      for (int s = 0; s < switchesCount; s++) {
+        final int defaultHits = buffer.getInt();
+        final int[] keys = readInts(buffer, buffer.getInt());
+        final int[] keysHits = readInts(buffer, keys.length);
+        lineData.setDefaultHits(s, keys, defaultHits);
+        lineData.setSwitchHits(s, keys, keysHits);
+      }
+      lineData.fillArrays();
+      lines[lineNumbers[i]] = lineData;
+    }
+    classData.setLines(lines);
+    return classData;
+  }
+
+  private static int[] readInts(ByteBuffer buffer, int count) {
+    final int[] result = new int[count];
+    for (int i = 0; i < count; i++) {
+      result[i] = buffer.getInt();
+    }
+    return result;
+  }
+
+  private static String readString(ByteBuffer buffer) {
+    final char[] chars = new char[buffer.getInt()];
+    for (int i = 0; i < chars.length; i++) {
+      chars[i] = buffer.getChar();
+    }
+    return new String(chars);
+  }
+
+  /**
+   * Writes the classes to a temporary file which replaces the compact file of the session once all classes are written,
+   * so a partially written file is never opened.
+   */
+  public static class Writer {
+    private final File mySessionDataFile;
+    private final File myTempFile;
+    private final DataOutputStream myOut;
+    private final List myNames = new ArrayList();
+    private final List myOffsets = new ArrayList();
+
+    public Writer(File sessionDataFile) throws IOException {
+      mySessionDataFile = sessionDataFile;
+      myTempFile = new File(getCompactFile(sessionDataFile).getPath() + ".tmp");
+      myOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(myTempFile)));
+      myOut.writeInt(MAGIC);
+      myOut.writeInt(VERSION);
+      myOut.writeLong(sessionDataFile.length());
+      myOut.writeLong(sessionDataFile.lastModified());
+    }
+
+    public void write(ClassData classData) throws IOException {
+      myNames.add(classData.getName());
+      myOffsets.add(new Integer(myOut.size()));
+
+      final Object[] lines = classData.getLines();
+      final List lineDatas = new ArrayList();
+      if (lines != null) {
+        for (int i = 0; i < lines.length; i++) {
+          if (lines[i] != null) lineDatas.add(lines[i]);
+        }
+      }
+      final int count = lineDatas.size();
+      final List strings = new ArrayList();
+      final Map stringIndices = new HashMap();
+
+      myOut.writeInt(lines != null ? lines.length : 0);
+      myOut.writeInt(count);
+      for (int i = 0; i < count; i++) {
+        myOut.writeInt(((LineData)lineDatas.get(i)).getLineNumber());
+      }
+      for (int i = 0; i < count; i++) {
+        myOut.writeInt(((LineData)lineDatas.get(i)).getHits());
+      }
+      for (int i = 0; i < count; i++) {
+        myOut.writeInt(indexOf(((LineData)lineDatas.get(i)).getMethodSignature(), strings, stringIndices));
+      }
+      for (int i = 0; i < count; i++) {
+        final LineData lineData = (LineData)lineDatas.get(i);
+        final String testName = lineData.getUniqueTestName();
+        if (testName != null) {
+          myOut.writeInt(indexOf(testName, strings, stringIndices));
+        }
+        else {
+          myOut.writeInt(lineData.mayBeUnique() ? NO_TEST : DIFFERENT_TESTS);
+        }
+      }
+      myOut.writeInt(strings.size());
+      for (int i = 0; i < strings.size(); i++) {
+        writeString((String)strings.get(i));
+      }
+
+      for (int i = 0; i < count; i++) {
+        final LineData lineData = (LineData)lineDatas.get(i);
+        final JumpData[] jumps = lineData.getJumps();
+        if (jumps == null) {
+          myOut.writeInt(0);
+        }
+        else {
+          myOut.writeInt(jumps.length);
+          for (int j = 0; j < jumps.length; j++) {
+            myOut.writeInt(jumps[j] != null ? jumps[j].getTrueHits() : 0);
+            myOut.writeInt(jumps[j] != null ? jumps[j].getFalseHits() : 0);
+          }
+        }
+        final SwitchData[] switches = lineData.getSwitches();
+        if (switches == null) {
+          myOut.writeInt(0);
+        }
+        else {
+          myOut.writeInt(switches.length);
+          for (int s = 0; s < switches.length; s++) {
+            final int[] keys = switches[s] != null ? switches[s].getKeys() : new int[0];
+            final int[] hits = switches[s] != null ? switches[s].getHits() : new int[0];
+            myOut.writeInt(switches[s] != null ? switches[s].getDefaultHits() : 0);
+            myOut.writeInt(keys.length);
+            for (int k = 0; k < keys.length; k++) {
+              myOut.writeInt(keys[k]);
+            }
+            for (int k = 0; k < keys.length; k++) {
+              myOut.writeInt(k < hits.length ? hits[k] : 0);
+            }
+          }
+        }
+      }
+    }
+
+    public void finish() throws IOException {
+      try {
+        final int directoryOffset = myOut.size();
+        for (int c = 0; c < myNames.size(); c++) {
+          writeString((String)myNames.get(c));
+          myOut.writeInt(((Integer)myOffsets.get(c)).intValue());
+        }
+        myOut.writeInt(directoryOffset);
+        myOut.writeInt(myNames.size());
+      }
+      finally {
+        myOut.close();
+      }
+
+      final File file = getCompactFile(mySessionDataFile);
+      if (file.exists() && !file.delete() || !myTempFile.renameTo(file)) {
+        myTempFile.delete();
+        throw new IOException("Failed to write " + file.getPath());
+      }
+    }
+
+    public void abort() {
+      try {
+        myOut.close();
+      }
+      catch (IOException ignored) {
+      }
+      myTempFile.delete();
+    }
+
+    private void writeString(String value) throws IOException {
+      myOut.writeInt(value.length());
+      myOut.writeChars(value);
+    }
+
+    private static int indexOf(String value, List strings, Map stringIndices) {
+      final String key = value != null ? value : "";
+      Integer index = (Integer)stringIndices.get(key);
+      if (index == null) {
+        index = new Integer(strings.size());
+        strings.add(key);
+        stringIndices.put(key, index);
+      }
+      return index.intValue();
+    }
+  }
+}
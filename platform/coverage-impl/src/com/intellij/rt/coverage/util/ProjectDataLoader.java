@@ -30,18 +30,91 @@ import java.io.*;
 public class ProjectDataLoader {
 
   public static ProjectData load(File sessionDataFile) {
+    if (CompactProjectDataFile.ENABLED) {
+      final ProjectData projectInfo = loadCompact(sessionDataFile);
+      if (projectInfo != null) return projectInfo;
+    }
+
     final ProjectData projectInfo = new ProjectData();
-    DataInputStream in = null;
     try {
-      in = new DataInputStream(new BufferedInputStream(new FileInputStream(sessionDataFile)));
-      final TIntObjectHashMap dict = new TIntObjectHashMap(1000, 0.99f);
+      readClasses(sessionDataFile, new ClassDataConsumer() {
+        public ClassData createClassData(String name) {
+          return projectInfo.getOrCreateClassData(name);
+        }
+
+        public void consume(ClassData classData) {
+        }
+      });
+    } catch (Exception e) {
+      ErrorReporter.reportError("Failed to load coverage data from file: " + sessionDataFile.getAbsolutePath(), e);
+    }
+    return projectInfo;
+  }
+
+  /**
+   * Classes are decoded from the compact file of the session when they are asked for, the compact file is written
+   * by reading the session data once without keeping the classes in memory.
+   *
+   * @return null if the compact file can't be used
+   */
+  private static ProjectData loadCompact(File sessionDataFile) {
+    try {
+      CompactProjectDataFile compactFile = CompactProjectDataFile.open(sessionDataFile);
+      if (compactFile == null) {
+        final CompactProjectDataFile.Writer writer = new CompactProjectDataFile.Writer(sessionDataFile);
+        try {
+          readClasses(sessionDataFile, new ClassDataConsumer() {
+            public ClassData createClassData(String name) {
+              return new ClassData(name);
+            }
+
+            public void consume(ClassData classData) throws IOException {
+              writer.write(classData);
+            }
+          });
+          writer.finish();
+        }
+        catch (IOException e) {
+          writer.abort();
+          throw e;
+        }
+        catch (RuntimeException e) {
+          writer.abort();
+          throw e;
+        }
+        compactFile = CompactProjectDataFile.open(sessionDataFile);
+        if (compactFile == null) return null;
+      }
+
+      final ProjectData projectInfo = new ProjectData();
+      projectInfo.addClassDataSource(compactFile);
+      return projectInfo;
+    }
+    catch (Exception e) {
+      ErrorReporter.reportError("Failed to use compact coverage data for file: " + sessionDataFile.getAbsolutePath(), e);
+      return null;
+    }
+  }
+
+  private interface ClassDataConsumer {
+    ClassData createClassData(String name);
+
+    /**
+     * Called once all lines of the class are read
+     */
+    void consume(ClassData classData) throws IOException;
+  }
+
+  private static void readClasses(File sessionDataFile, ClassDataConsumer consumer) throws IOException {
+    final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(sessionDataFile)));
+    try {
       final int classCount = CoverageIOUtil.readINT(in);
+      final String[] dict = new String[classCount];
       for (int c = 0; c < classCount; c++) {
-        final ClassData classInfo = projectInfo.getOrCreateClassData(CoverageIOUtil.readUTFFast(in));
-        dict.put(c, classInfo);
+        dict[c] = CoverageIOUtil.readUTFFast(in);
       }
       for (int c = 0; c < classCount; c++) {
-        final ClassData classInfo = (ClassData)dict.get(CoverageIOUtil.readINT(in));
+        final ClassData classInfo = consumer.createClassData(dict[CoverageIOUtil.readINT(in)]);
         final int methCount = CoverageIOUtil.readINT(in);
         final TIntObjectHashMap lines = new TIntObjectHashMap(4, 0.99f);
         int maxLine = 1;
@@ -87,23 +160,15 @@ public class ProjectDataLoader {
           }
         }
         classInfo.setLines(LinesUtil.calcLineArray(maxLine, lines));
+        consumer.consume(classInfo);
       }
-    } catch (Exception e) {
-      ErrorReporter.reportError("Failed to load coverage data from file: " + sessionDataFile.getAbsolutePath(), e);
-      return projectInfo;
     }
     finally {
-      try {
-        in.close();
-      }
-      catch (IOException e) {
-        ErrorReporter.reportError("Failed to close file: " + sessionDataFile.getAbsolutePath(), e);
-      }
+      in.close();
     }
-    return projectInfo;
   }
 
-  private static String expand(DataInputStream in, final TIntObjectHashMap dict) throws IOException {
+  private static String expand(DataInputStream in, final String[] dict) throws IOException {
     return CoverageIOUtil.processWithDictionary(CoverageIOUtil.readUTFFast(in), new CoverageIOUtil.Consumer() {
       protected String consume(String type) {
         final int typeIdx;
@@ -112,7 +177,7 @@ public class ProjectDataLoader {
         } catch (NumberFormatException e) {
           return type;
         }
-        return ((ClassData) dict.get(typeIdx)).getName();
+        return dict[typeIdx];
       }
     });
   }
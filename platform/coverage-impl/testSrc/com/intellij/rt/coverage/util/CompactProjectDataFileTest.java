@@ -0,0 +1,166 @@
+/*
+ * Copyright 2013-2016 consulo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.rt.coverage.util;
+
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.rt.coverage.data.*;
+import junit.framework.TestCase;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+public class CompactProjectDataFileTest extends TestCase {
+  private File myDir;
+  private File mySessionDataFile;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myDir = FileUtil.createTempDirectory("compact", null);
+    mySessionDataFile = new File(myDir, "session.coverage");
+    FileUtil.writeToFile(mySessionDataFile, "session data");
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    try {
+      FileUtil.delete(myDir);
+    }
+    finally {
+      super.tearDown();
+    }
+  }
+
+  public void testRoundTrip() throws IOException {
+    List<ClassData> classes = Arrays.asList(createClass("a.First", "first test"), createClass("a.b.Second", null), new ClassData("Empty"));
+    write(classes);
+
+    CompactProjectDataFile file = CompactProjectDataFile.open(mySessionDataFile);
+    assertNotNull(file);
+    assertEquals(new HashSet<>(Arrays.asList("a.First", "a.b.Second", "Empty")), new HashSet<>(file.getClassNames()));
+    for (ClassData classData : classes) {
+      assertEquals(describe(classData), describe(file.loadClassData(classData.getName())));
+    }
+    assertNull(file.loadClassData("a.Missing"));
+  }
+
+  public void testNotOpenedForChangedSessionData() throws IOException {
+    write(Collections.singletonList(createClass("a.First", null)));
+
+    FileUtil.writeToFile(mySessionDataFile, "other session data");
+    assertNull(CompactProjectDataFile.open(mySessionDataFile));
+  }
+
+  public void testClassesAreDecodedWhenAskedFor() throws IOException {
+    write(Arrays.asList(createClass("a.First", null), createClass("a.b.Second", null)));
+    final CompactProjectDataFile file = CompactProjectDataFile.open(mySessionDataFile);
+    assertNotNull(file);
+    final List<String> loaded = new ArrayList<>();
+    ProjectData projectData = new ProjectData();
+    projectData.addClassDataSource(new ClassDataSource() {
+      @Override
+      public Collection getClassNames() {
+        return file.getClassNames();
+      }
+
+      @Override
+      public ClassData loadClassData(String name) {
+        loaded.add(name);
+        return file.loadClassData(name);
+      }
+    });
+    projectData.getOrCreateClassData("a.Third");
+
+    Map classes = projectData.getClasses();
+    assertEquals(new HashSet<>(Arrays.asList("a.First", "a.b.Second", "a.Third")), classes.keySet());
+    assertEquals(Collections.singletonList("a.Third"), loaded);
+
+    assertEquals(describe(createClass("a.First", null)), describe((ClassData)classes.get("a.First")));
+    assertEquals(Arrays.asList("a.Third", "a.First"), loaded);
+    assertNull(classes.get("a.Missing"));
+  }
+
+  private void write(@NotNull List<ClassData> classes) throws IOException {
+    CompactProjectDataFile.Writer writer = new CompactProjectDataFile.Writer(mySessionDataFile);
+    for (ClassData classData : classes) {
+      writer.write(classData);
+    }
+    writer.finish();
+  }
+
+  @NotNull
+  private static ClassData createClass(@NotNull String name, String testName) {
+    ClassData classData = new ClassData(name);
+    LineData[] lines = new LineData[8];
+    lines[1] = createLine(classData, 1, "<init>()V", 1);
+    lines[3] = createLine(classData, 3, "run(I)V", 5);
+    lines[3].setTestName(testName);
+    lines[3].setTrueHits(0, 3);
+    lines[3].setFalseHits(0, 2);
+    lines[3].setTrueHits(1, 0);
+    lines[3].setFalseHits(1, 5);
+    lines[4] = createLine(classData, 4, "run(I)V", 2);
+    lines[4].setTestName("one test");
+    lines[4].setTestName("other test");
+    lines[4].setDefaultHits(0, new int[]{1, 7}, 1);
+    lines[4].setSwitchHits(0, new int[]{1, 7}, new int[]{0, 1});
+    lines[7] = createLine(classData, 7, "run(I)V", 0);
+    for (LineData line : lines) {
+      if (line != null) line.fillArrays();
+    }
+    classData.setLines(lines);
+    return classData;
+  }
+
+  @NotNull
+  private static LineData createLine(@NotNull ClassData classData, int line, @NotNull String signature, int hits) {
+    LineData lineData = new LineData(line, signature);
+    classData.registerMethodSignature(lineData);
+    lineData.setHits(hits);
+    return lineData;
+  }
+
+  @NotNull
+  private static String describe(@NotNull ClassData classData) {
+    StringBuilder builder = new StringBuilder(classData.getName()).append('\n');
+    // a class without lines is read with an empty array of them
+    Object[] lines = classData.getLines() != null ? classData.getLines() : new Object[0];
+    builder.append(lines.length).append(" lines\n");
+    for (Object line : lines) {
+      if (line == null) continue;
+      LineData lineData = (LineData)line;
+      builder.append(lineData.getLineNumber()).append(' ').append(lineData.getMethodSignature()).append(" hits ").append(lineData.getHits())
+        .append(" test ").append(lineData.getUniqueTestName()).append(' ').append(lineData.mayBeUnique());
+      JumpData[] jumps = lineData.getJumps();
+      if (jumps != null) {
+        for (JumpData jump : jumps) {
+          builder.append(" jump ").append(jump.getTrueHits()).append('/').append(jump.getFalseHits());
+        }
+      }
+      SwitchData[] switches = lineData.getSwitches();
+      if (switches != null) {
+        for (SwitchData switchData : switches) {
+          builder.append(" switch ").append(switchData.getDefaultHits()).append(' ').append(Arrays.toString(switchData.getKeys()))
+            .append(' ').append(Arrays.toString(switchData.getHits()));
+        }
+      }
+      builder.append('\n');
+    }
+    return builder.toString();
+  }
+}
@@ -23,7 +23,6 @@ import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.util.Pair;
 import com.intellij.openapi.util.registry.Registry;
 import com.intellij.openapi.util.text.StringUtil;
-import com.intellij.util.containers.ContainerUtil;
 import gnu.trove.TIntArrayList;
 import org.jetbrains.annotations.NotNull;
 
@@ -31,10 +30,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import static com.intellij.diff.comparison.ComparisonPolicy.IGNORE_WHITESPACES;
-import static com.intellij.diff.comparison.TrimUtil.trimEnd;
-import static com.intellij.diff.comparison.TrimUtil.trimStart;
 import static com.intellij.diff.comparison.iterables.DiffIterableUtil.*;
-import static com.intellij.openapi.util.text.StringUtil.isWhiteSpace;
 
 public class ByLine {
   @NotNull
@@ -42,8 +38,7 @@ public class ByLine {
                                          @NotNull List<? extends CharSequence> lines2,
                                          @NotNull ComparisonPolicy policy,
                                          @NotNull ProgressIndicator indicator) {
-    indicator.checkCanceled();
-    return doCompare(getLines(lines1, policy), getLines(lines2, policy), policy, indicator);
+    return compare(new LineHashes(lines1), new LineHashes(lines2), policy, indicator);
   }
 
   @NotNull
@@ -52,8 +47,29 @@ public class ByLine {
                                          @NotNull List<? extends CharSequence> lines3,
                                          @NotNull ComparisonPolicy policy,
                                          @NotNull ProgressIndicator indicator) {
+    return compare(new LineHashes(lines1), new LineHashes(lines2), new LineHashes(lines3), policy, indicator);
+  }
+
+  /**
+   * Hashes are computed once per text and policy, pass the same {@link LineHashes} instances to compare the texts again
+   */
+  @NotNull
+  public static FairDiffIterable compare(@NotNull LineHashes text1,
+                                         @NotNull LineHashes text2,
+                                         @NotNull ComparisonPolicy policy,
+                                         @NotNull ProgressIndicator indicator) {
     indicator.checkCanceled();
-    return doCompare(getLines(lines1, policy), getLines(lines2, policy), getLines(lines3, policy), policy, indicator);
+    return doCompare(text1, text2, policy, indicator);
+  }
+
+  @NotNull
+  public static List<MergeRange> compare(@NotNull LineHashes text1,
+                                         @NotNull LineHashes text2,
+                                         @NotNull LineHashes text3,
+                                         @NotNull ComparisonPolicy policy,
+                                         @NotNull ProgressIndicator indicator) {
+    indicator.checkCanceled();
+    return doCompare(text1, text2, text3, policy, indicator);
   }
 
   //
@@ -61,20 +77,23 @@ public class ByLine {
   //
 
   @NotNull
-  static FairDiffIterable doCompare(@NotNull List<Line> lines1,
-                                    @NotNull List<Line> lines2,
+  static FairDiffIterable doCompare(@NotNull LineHashes text1,
+                                    @NotNull LineHashes text2,
                                     @NotNull ComparisonPolicy policy,
                                     @NotNull ProgressIndicator indicator) {
     indicator.checkCanceled();
 
+    List<Line> lines1 = getLines(text1, policy, indicator);
+    List<Line> lines2 = getLines(text2, policy, indicator);
+
     if (policy == IGNORE_WHITESPACES) {
       FairDiffIterable changes = compareSmart(lines1, lines2, indicator);
       changes = optimizeLineChunks(lines1, lines2, changes, indicator);
       return expandRanges(lines1, lines2, changes);
     }
     else {
-      List<Line> iwLines1 = convertMode(lines1, IGNORE_WHITESPACES);
-      List<Line> iwLines2 = convertMode(lines2, IGNORE_WHITESPACES);
+      List<Line> iwLines1 = getLines(text1, IGNORE_WHITESPACES, indicator);
+      List<Line> iwLines2 = getLines(text2, IGNORE_WHITESPACES, indicator);
 
       FairDiffIterable iwChanges = compareSmart(iwLines1, iwLines2, indicator);
       iwChanges = optimizeLineChunks(lines1, lines2, iwChanges, indicator);
@@ -83,16 +102,20 @@ public class ByLine {
   }
 
   @NotNull
-  static List<MergeRange> doCompare(@NotNull List<Line> lines1,
-                                    @NotNull List<Line> lines2,
-                                    @NotNull List<Line> lines3,
+  static List<MergeRange> doCompare(@NotNull LineHashes text1,
+                                    @NotNull LineHashes text2,
+                                    @NotNull LineHashes text3,
                                     @NotNull ComparisonPolicy policy,
                                     @NotNull ProgressIndicator indicator) {
     indicator.checkCanceled();
 
-    List<Line> iwLines1 = convertMode(lines1, IGNORE_WHITESPACES);
-    List<Line> iwLines2 = convertMode(lines2, IGNORE_WHITESPACES);
-    List<Line> iwLines3 = convertMode(lines3, IGNORE_WHITESPACES);
+    List<Line> lines1 = getLines(text1, policy, indicator);
+    List<Line> lines2 = getLines(text2, policy, indicator);
+    List<Line> lines3 = getLines(text3, policy, indicator);
+
+    List<Line> iwLines1 = getLines(text1, IGNORE_WHITESPACES, indicator);
+    List<Line> iwLines2 = getLines(text2, IGNORE_WHITESPACES, indicator);
+    List<Line> iwLines3 = getLines(text3, IGNORE_WHITESPACES, indicator);
 
     FairDiffIterable iwChanges1 = compareSmart(iwLines2, iwLines1, indicator);
     iwChanges1 = optimizeLineChunks(lines2, lines1, iwChanges1, indicator);
@@ -350,15 +373,14 @@ public class ByLine {
   //
 
   @NotNull
-  private static List<Line> getLines(@NotNull List<? extends CharSequence> text, @NotNull ComparisonPolicy policy) {
-    return ContainerUtil.map(text, (line) -> new Line(line, policy));
-  }
+  private static List<Line> getLines(@NotNull LineHashes text, @NotNull ComparisonPolicy policy, @NotNull ProgressIndicator indicator) {
+    List<? extends CharSequence> lines = text.getLines();
+    int[] hashes = text.getHashes(policy, indicator);
+    int[] nonSpaceChars = text.getNonSpaceChars(indicator);
 
-  @NotNull
-  private static List<Line> convertMode(@NotNull List<Line> original, @NotNull ComparisonPolicy policy) {
-    List<Line> result = new ArrayList<>(original.size());
-    for (Line line : original) {
-      result.add(new Line(line.getContent(), policy));
+    List<Line> result = new ArrayList<>(lines.size());
+    for (int i = 0; i < lines.size(); i++) {
+      result.add(new Line(lines.get(i), policy, hashes[i], nonSpaceChars[i]));
     }
     return result;
   }
@@ -370,10 +392,14 @@ public class ByLine {
     private final int myNonSpaceChars;
 
     public Line(@NotNull CharSequence text, @NotNull ComparisonPolicy policy) {
+      this(text, policy, LineHashes.hashCode(text, policy), LineHashes.countNonSpaceChars(text));
+    }
+
+    Line(@NotNull CharSequence text, @NotNull ComparisonPolicy policy, int hash, int nonSpaceChars) {
       myText = text;
       myPolicy = policy;
-      myHash = hashCode(text, policy);
-      myNonSpaceChars = countNonSpaceChars(text);
+      myHash = hash;
+      myNonSpaceChars = nonSpaceChars;
     }
 
     @NotNull
@@ -403,21 +429,6 @@ public class ByLine {
       return myHash;
     }
 
-    private static int countNonSpaceChars(@NotNull CharSequence text) {
-      int nonSpace = 0;
-
-      int len = text.length();
-      int offset = 0;
-
-      while (offset < len) {
-        char c = text.charAt(offset);
-        if (!isWhiteSpace(c)) nonSpace++;
-        offset++;
-      }
-
-      return nonSpace;
-    }
-
     private static boolean equals(@NotNull CharSequence text1, @NotNull CharSequence text2, @NotNull ComparisonPolicy policy) {
       switch (policy) {
         case DEFAULT:
@@ -430,20 +441,5 @@ public class ByLine {
           throw new IllegalArgumentException(policy.toString());
       }
     }
-
-    private static int hashCode(@NotNull CharSequence text, @NotNull ComparisonPolicy policy) {
-      switch (policy) {
-        case DEFAULT:
-          return StringUtil.stringHashCode(text);
-        case TRIM_WHITESPACES:
-          int offset1 = trimStart(text, 0, text.length());
-          int offset2 = trimEnd(text, offset1, text.length());
-          return StringUtil.stringHashCode(text, offset1, offset2);
-        case IGNORE_WHITESPACES:
-          return StringUtil.stringHashCodeIgnoreWhitespaces(text);
-        default:
-          throw new IllegalArgumentException(policy.name());
-      }
-    }
   }
 }
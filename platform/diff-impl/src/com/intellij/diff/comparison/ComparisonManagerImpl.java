@@ -28,25 +28,32 @@ import com.intellij.util.Consumer;
 import com.intellij.util.containers.ContainerUtil;
 import com.intellij.util.diff.FilesTooBigForDiffException;
 import com.intellij.util.text.CharSequenceSubSequence;
+import com.intellij.util.text.ImmutableCharSequence;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 public class ComparisonManagerImpl extends ComparisonManager {
   public static final Logger LOG = Logger.getInstance(ComparisonManagerImpl.class);
 
+  // immutable texts are compared again when the policy is changed, keep their line ends and hashes
+  // the values must not refer to the texts, or the weak keys would never be collected
+  private final Map<CharSequence, CachedLines> myTextLinesCache =
+    ContainerUtil.createConcurrentWeakKeySoftValueMap(10, 0.75f, 2, ContainerUtil.<CharSequence>identityStrategy());
+
   @NotNull
   @Override
   public List<LineFragment> compareLines(@NotNull CharSequence text1,
                                          @NotNull CharSequence text2,
                                          @NotNull ComparisonPolicy policy,
                                          @NotNull ProgressIndicator indicator) throws DiffTooBigException {
-    List<Line> lines1 = getLines(text1);
-    List<Line> lines2 = getLines(text2);
-    FairDiffIterable iterable = ByLine.compare(lines1, lines2, policy, indicator);
-    return convertIntoLineFragments(lines1, lines2, iterable);
+    TextLines lines1 = getTextLines(text1);
+    TextLines lines2 = getTextLines(text2);
+    FairDiffIterable iterable = ByLine.compare(lines1.hashes, lines2.hashes, policy, indicator);
+    return convertIntoLineFragments(lines1.lines, lines2.lines, iterable);
   }
 
   @NotNull
@@ -56,10 +63,10 @@ public class ComparisonManagerImpl extends ComparisonManager {
                                               @NotNull CharSequence text3,
                                               @NotNull ComparisonPolicy policy,
                                               @NotNull ProgressIndicator indicator) throws DiffTooBigException {
-    List<Line> lines1 = getLines(text1);
-    List<Line> lines2 = getLines(text2);
-    List<Line> lines3 = getLines(text3);
-    List<MergeRange> ranges = ByLine.compare(lines1, lines2, lines3, policy, indicator);
+    TextLines lines1 = getTextLines(text1);
+    TextLines lines2 = getTextLines(text2);
+    TextLines lines3 = getTextLines(text3);
+    List<MergeRange> ranges = ByLine.compare(lines1.hashes, lines2.hashes, lines3.hashes, policy, indicator);
     return convertIntoMergeLineFragments(ranges);
   }
 
@@ -382,6 +389,42 @@ public class ComparisonManagerImpl extends ComparisonManager {
     return Collections.singletonList(new DiffFragmentImpl(0, length1, 0, length2));
   }
 
+  @NotNull
+  private TextLines getTextLines(@NotNull CharSequence text) {
+    if (!(text instanceof ImmutableCharSequence || text instanceof String)) {
+      return new TextLines(getLines(text));
+    }
+
+    CachedLines cached = myTextLinesCache.get(text);
+    if (cached != null) {
+      return new TextLines(getLines(text, cached.lineEnds), cached.hashes);
+    }
+
+    List<Line> lines = getLines(text);
+    int[] lineEnds = new int[lines.size()];
+    for (int i = 0; i < lineEnds.length; i++) {
+      lineEnds[i] = lines.get(i).myOffset2;
+    }
+    TextLines textLines = new TextLines(lines, new LineHashes.Computed());
+    myTextLinesCache.put(text, new CachedLines(lineEnds, textLines.computed));
+    return textLines;
+  }
+
+  /**
+   * @param lineEnds line end offsets without the line separators, as found by {@link #getLines(CharSequence)}
+   */
+  @NotNull
+  private static List<Line> getLines(@NotNull CharSequence text, @NotNull int[] lineEnds) {
+    List<Line> lines = new ArrayList<>(lineEnds.length);
+    int offset = 0;
+    for (int i = 0; i < lineEnds.length; i++) {
+      boolean newline = i != lineEnds.length - 1;
+      lines.add(new Line(text, offset, lineEnds[i], newline));
+      offset = lineEnds[i] + 1;
+    }
+    return lines;
+  }
+
   @NotNull
   private static List<Line> getLines(@NotNull CharSequence text) {
     List<Line> lines = new ArrayList<>();
@@ -402,6 +445,32 @@ public class ComparisonManagerImpl extends ComparisonManager {
     return lines;
   }
 
+  private static class TextLines {
+    @NotNull public final List<Line> lines;
+    @NotNull public final LineHashes.Computed computed;
+    @NotNull public final LineHashes hashes;
+
+    public TextLines(@NotNull List<Line> lines) {
+      this(lines, new LineHashes.Computed());
+    }
+
+    public TextLines(@NotNull List<Line> lines, @NotNull LineHashes.Computed computed) {
+      this.lines = lines;
+      this.computed = computed;
+      this.hashes = new LineHashes(lines, computed);
+    }
+  }
+
+  private static class CachedLines {
+    @NotNull public final int[] lineEnds;
+    @NotNull public final LineHashes.Computed hashes;
+
+    public CachedLines(@NotNull int[] lineEnds, @NotNull LineHashes.Computed hashes) {
+      this.lineEnds = lineEnds;
+      this.hashes = hashes;
+    }
+  }
+
   private static class Line extends CharSequenceSubSequence {
     private final int myOffset1;
     private final int myOffset2;
@@ -0,0 +1,245 @@
+/*
+ * Copyright 2013-2016 consulo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.diff.comparison;
+
+import com.intellij.concurrency.JobLauncher;
+import com.intellij.diff.util.DiffUtil;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.util.text.CharSequenceSubSequence;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.intellij.diff.comparison.TrimUtil.trimEnd;
+import static com.intellij.diff.comparison.TrimUtil.trimStart;
+import static com.intellij.openapi.util.text.StringUtil.isWhiteSpace;
+
+/**
+ * Line hashes of a text for every {@link ComparisonPolicy}, computed on demand and shared by comparisons of the same text,
+ * so switching the policy in a viewer does not walk all the lines again.
+ * <p/>
+ * Hashes of big texts are computed in parallel chunks.
+ * Instances for documents are cached against the modification stamp, see {@link #getInstance(Document)}.
+ * Computed hashes can be kept apart from the lines in {@link Computed} to be shared by instances for the same text.
+ */
+public class LineHashes {
+  private static final Key<LineHashes> DOCUMENT_HASHES_KEY = Key.create("Diff.LineHashes");
+
+  private static final int CHUNK_SIZE = 4096;
+  private static final int PARALLEL_THRESHOLD = 4 * CHUNK_SIZE;
+
+  private static final int NON_SPACE_CHARS = ComparisonPolicy.values().length;
+
+  /**
+   * Hashes computed for a text. They do not refer to the text, so they may be cached for it without keeping it alive.
+   */
+  static final class Computed {
+    // by policy ordinal, the last one is the non-space chars count; guarded by itself
+    private final int[][] myValues = new int[NON_SPACE_CHARS + 1][];
+  }
+
+  @NotNull private final List<? extends CharSequence> myLines;
+  @NotNull private final Computed myComputed;
+  private final long myModificationStamp;
+
+  public LineHashes(@NotNull List<? extends CharSequence> lines) {
+    this(lines, new Computed());
+  }
+
+  /**
+   * @param computed hashes computed before for the same lines
+   */
+  LineHashes(@NotNull List<? extends CharSequence> lines, @NotNull Computed computed) {
+    this(lines, computed, -1);
+  }
+
+  private LineHashes(@NotNull List<? extends CharSequence> lines, @NotNull Computed computed, long modificationStamp) {
+    myLines = lines;
+    myComputed = computed;
+    myModificationStamp = modificationStamp;
+  }
+
+  /**
+   * Should be called under read action
+   */
+  @NotNull
+  public static LineHashes getInstance(@NotNull Document document) {
+    long stamp = document.getModificationStamp();
+    LineHashes hashes = document.getUserData(DOCUMENT_HASHES_KEY);
+    if (hashes == null || hashes.myModificationStamp != stamp) {
+      hashes = new LineHashes(getLines(document), new Computed(), stamp);
+      document.putUserData(DOCUMENT_HASHES_KEY, hashes);
+    }
+    return hashes;
+  }
+
+  /**
+   * Lines of the current text of the document which do not copy it. Unlike {@link DiffUtil#getLines(Document)} they are
+   * equal to each other only, not to strings.
+   */
+  @NotNull
+  private static List<? extends CharSequence> getLines(@NotNull Document document) {
+    final CharSequence text = document.getImmutableCharSequence();
+    final int lineCount = DiffUtil.getLineCount(document);
+    final int[] offsets = new int[2 * lineCount];
+    for (int i = 0; i < lineCount; i++) {
+      offsets[2 * i] = document.getLineStartOffset(i);
+      offsets[2 * i + 1] = document.getLineEndOffset(i);
+    }
+    return new AbstractList<DocumentLine>() {
+      @Override
+      public DocumentLine get(int index) {
+        return new DocumentLine(text, offsets[2 * index], offsets[2 * index + 1]);
+      }
+
+      @Override
+      public int size() {
+        return lineCount;
+      }
+    };
+  }
+
+  @NotNull
+  public List<? extends CharSequence> getLines() {
+    return myLines;
+  }
+
+  public int size() {
+    return myLines.size();
+  }
+
+  @NotNull
+  public int[] getHashes(@NotNull ComparisonPolicy policy, @NotNull ProgressIndicator indicator) {
+    return getValues(policy.ordinal(), policy, indicator);
+  }
+
+  /**
+   * Does not compute hashes of all lines if they are not known yet, use it when only a few lines are needed
+   */
+  public int getHash(int index, @NotNull ComparisonPolicy policy) {
+    int[] hashes;
+    synchronized (myComputed.myValues) {
+      hashes = myComputed.myValues[policy.ordinal()];
+    }
+    return hashes != null ? hashes[index] : hashCode(myLines.get(index), policy);
+  }
+
+  @NotNull
+  public int[] getNonSpaceChars(@NotNull ProgressIndicator indicator) {
+    return getValues(NON_SPACE_CHARS, null, indicator);
+  }
+
+  @NotNull
+  private int[] getValues(int slot, @Nullable ComparisonPolicy policy, @NotNull ProgressIndicator indicator) {
+    int[] values;
+    synchronized (myComputed.myValues) {
+      values = myComputed.myValues[slot];
+    }
+    if (values == null) {
+      values = compute(policy, indicator);
+      synchronized (myComputed.myValues) {
+        myComputed.myValues[slot] = values;
+      }
+    }
+    return values;
+  }
+
+  /**
+   * @param policy null to count non-space chars
+   */
+  @NotNull
+  private int[] compute(@Nullable final ComparisonPolicy policy, @NotNull ProgressIndicator indicator) {
+    indicator.checkCanceled();
+
+    final int[] result = new int[myLines.size()];
+    if (result.length < PARALLEL_THRESHOLD || ApplicationManager.getApplication() == null) {
+      fill(result, 0, result.length, policy);
+      return result;
+    }
+
+    List<Integer> chunks = new ArrayList<>();
+    for (int start = 0; start < result.length; start += CHUNK_SIZE) {
+      chunks.add(start);
+    }
+    boolean completed = JobLauncher.getInstance().invokeConcurrentlyUnderProgress(chunks, indicator, false, false, start -> {
+      fill(result, start, Math.min(start + CHUNK_SIZE, result.length), policy);
+      return true;
+    });
+    if (!completed) throw new ProcessCanceledException();
+    return result;
+  }
+
+  private void fill(@NotNull int[] result, int start, int end, @Nullable ComparisonPolicy policy) {
+    for (int i = start; i < end; i++) {
+      CharSequence line = myLines.get(i);
+      result[i] = policy == null ? countNonSpaceChars(line) : hashCode(line, policy);
+    }
+  }
+
+  static int hashCode(@NotNull CharSequence text, @NotNull ComparisonPolicy policy) {
+    switch (policy) {
+      case DEFAULT:
+        return StringUtil.stringHashCode(text);
+      case TRIM_WHITESPACES:
+        int offset1 = trimStart(text, 0, text.length());
+        int offset2 = trimEnd(text, offset1, text.length());
+        return StringUtil.stringHashCode(text, offset1, offset2);
+      case IGNORE_WHITESPACES:
+        return StringUtil.stringHashCodeIgnoreWhitespaces(text);
+      default:
+        throw new IllegalArgumentException(policy.name());
+    }
+  }
+
+  static int countNonSpaceChars(@NotNull CharSequence text) {
+    int nonSpace = 0;
+
+    int len = text.length();
+    int offset = 0;
+
+    while (offset < len) {
+      char c = text.charAt(offset);
+      if (!isWhiteSpace(c)) nonSpace++;
+      offset++;
+    }
+
+    return nonSpace;
+  }
+
+  private static class DocumentLine extends CharSequenceSubSequence {
+    public DocumentLine(@NotNull CharSequence chars, int start, int end) {
+      super(chars, start, end);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof DocumentLine && StringUtil.equals(this, (DocumentLine)o);
+    }
+
+    @Override
+    public int hashCode() {
+      return StringUtil.stringHashCode(this);
+    }
+  }
+}
@@ -24,6 +24,7 @@ import com.intellij.openapi.util.Comparing;
 import com.intellij.openapi.util.Pair;
 import com.intellij.openapi.util.registry.Registry;
 import com.intellij.util.containers.ContainerUtil;
+import com.intellij.util.diff.CancellationChecker;
 import com.intellij.util.diff.Diff;
 import com.intellij.util.diff.FilesTooBigForDiffException;
 import org.jetbrains.annotations.NotNull;
@@ -46,8 +47,7 @@ public class DiffIterableUtil {
     indicator.checkCanceled();
 
     try {
-      // TODO: use ProgressIndicator inside
-      Diff.Change change = Diff.buildChanges(data1, data2);
+      Diff.Change change = Diff.buildChanges(data1, data2, createChecker(indicator));
       return fair(create(change, data1.length, data2.length));
     }
     catch (FilesTooBigForDiffException e) {
@@ -64,8 +64,7 @@ public class DiffIterableUtil {
     indicator.checkCanceled();
 
     try {
-      // TODO: use ProgressIndicator inside
-      Diff.Change change = Diff.buildChanges(data1, data2);
+      Diff.Change change = Diff.buildChanges(data1, data2, createChecker(indicator));
       return fair(create(change, data1.length, data2.length));
     }
     catch (FilesTooBigForDiffException e) {
@@ -87,6 +86,16 @@ public class DiffIterableUtil {
     return diff(data1, data2, indicator);
   }
 
+  @NotNull
+  private static CancellationChecker createChecker(@NotNull final ProgressIndicator indicator) {
+    return new CancellationChecker() {
+      @Override
+      public void checkCanceled() {
+        indicator.checkCanceled();
+      }
+    };
+  }
+
   //
   // Iterable
   //
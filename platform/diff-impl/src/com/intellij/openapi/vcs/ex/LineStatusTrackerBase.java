@@ -34,11 +34,13 @@ import com.intellij.openapi.vcs.CalledInAwt;
 import com.intellij.util.containers.ContainerUtil;
 import com.intellij.util.diff.FilesTooBigForDiffException;
 import consulo.annotations.RequiredWriteAction;
+import gnu.trove.TIntArrayList;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.annotations.TestOnly;
 
 import java.util.*;
+import java.util.function.ToIntFunction;
 
 import static com.intellij.diff.util.DiffUtil.getLineCount;
 import static com.intellij.openapi.localVcs.UpToDateLineNumberProvider.ABSENT_LINE_NUMBER;
@@ -47,6 +49,9 @@ import static com.intellij.openapi.localVcs.UpToDateLineNumberProvider.ABSENT_LI
 public abstract class LineStatusTrackerBase {
   protected static final Logger LOG = Logger.getInstance("#com.intellij.openapi.vcs.ex.LineStatusTracker");
 
+  // incremental updates between background checks of the ranges against the whole documents
+  private static final int CONSISTENCY_CHECK_PERIOD = 100;
+
   // all variables should be modified in EDT and under LOCK
   // read access allowed from EDT or while holding LOCK
   private final Object LOCK = new Object();
@@ -74,6 +79,9 @@ public abstract class LineStatusTrackerBase {
 
   @Nullable private DirtyRange myDirtyRange;
 
+  private int myUpdatesSinceConsistencyCheck;
+  private boolean myConsistencyCheckScheduled;
+
   public LineStatusTrackerBase(@Nullable final Project project,
                                @NotNull final Document document) {
     myDocument = document;
@@ -144,6 +152,7 @@ public abstract class LineStatusTrackerBase {
 
     synchronized (LOCK) {
       destroyRanges();
+      myUpdatesSinceConsistencyCheck = 0;
       try {
         myRanges = RangesBuilder.createRanges(myDocument, myVcsDocument, isDetectWhitespaceChangedLines());
         for (final Range range : myRanges) {
@@ -310,6 +319,7 @@ public abstract class LineStatusTrackerBase {
         try {
           doUpdateRanges(myDirtyRange.line1, myDirtyRange.line2, myDirtyRange.lineShift, myDirtyRange.beforeTotalLines);
           myDirtyRange = null;
+          scheduleConsistencyCheck();
         }
         catch (Exception e) {
           LOG.error(e);
@@ -319,6 +329,88 @@ public abstract class LineStatusTrackerBase {
     }
   }
 
+  /**
+   * Ranges are updated incrementally by re-comparing only the changed lines, so once in a while they are checked against
+   * the whole documents in background and recalculated if some unchanged lines do not match.
+   */
+  @CalledInAwt
+  private void scheduleConsistencyCheck() {
+    if (++myUpdatesSinceConsistencyCheck < CONSISTENCY_CHECK_PERIOD || myConsistencyCheckScheduled) return;
+    myUpdatesSinceConsistencyCheck = 0;
+    myConsistencyCheckScheduled = true;
+
+    final List<Range> ranges = new ArrayList<>(myRanges.size());
+    for (Range range : myRanges) {
+      ranges.add(new Range(range));
+    }
+    final CharSequence content = myDocument.getImmutableCharSequence();
+    final CharSequence vcsContent = myVcsDocument.getImmutableCharSequence();
+    final long stamp = myDocument.getModificationStamp();
+    final long vcsStamp = myVcsDocument.getModificationStamp();
+
+    myApplication.executeOnPooledThread(() -> {
+      final boolean consistent = isConsistent(ranges, content, vcsContent);
+      myApplication.invokeLater(() -> {
+        myConsistencyCheckScheduled = false;
+        if (consistent || isSuppressed() || myDirtyRange != null) return;
+        // documents were modified meanwhile, the next check will see the fresh ranges
+        if (myDocument.getModificationStamp() != stamp || myVcsDocument.getModificationStamp() != vcsStamp) return;
+
+        LOG.warn("Incrementally updated ranges do not match the document, recalculating");
+        reinstallRanges();
+      });
+    });
+  }
+
+  private static boolean isConsistent(@NotNull List<Range> ranges, @NotNull CharSequence content, @NotNull CharSequence vcsContent) {
+    int[] lineStarts = getLineStarts(content);
+    int[] vcsLineStarts = getLineStarts(vcsContent);
+
+    int line = 0;
+    int vcsLine = 0;
+    for (Range range : ranges) {
+      if (!isSameLines(content, lineStarts, line, range.getLine1(), vcsContent, vcsLineStarts, vcsLine, range.getVcsLine1())) {
+        return false;
+      }
+      line = range.getLine2();
+      vcsLine = range.getVcsLine2();
+    }
+    return isSameLines(content, lineStarts, line, lineStarts.length, vcsContent, vcsLineStarts, vcsLine, vcsLineStarts.length);
+  }
+
+  private static boolean isSameLines(@NotNull CharSequence text1, @NotNull int[] lineStarts1, int start1, int end1,
+                                     @NotNull CharSequence text2, @NotNull int[] lineStarts2, int start2, int end2) {
+    if (end1 - start1 != end2 - start2) return false;
+    if (end1 > lineStarts1.length || end2 > lineStarts2.length) return false;
+
+    for (int i = 0; i < end1 - start1; i++) {
+      int offset1 = lineStarts1[start1 + i];
+      int offset2 = lineStarts2[start2 + i];
+      int length1 = getLineEnd(text1, lineStarts1, start1 + i) - offset1;
+      int length2 = getLineEnd(text2, lineStarts2, start2 + i) - offset2;
+      if (length1 != length2) return false;
+
+      for (int j = 0; j < length1; j++) {
+        if (text1.charAt(offset1 + j) != text2.charAt(offset2 + j)) return false;
+      }
+    }
+    return true;
+  }
+
+  private static int getLineEnd(@NotNull CharSequence text, @NotNull int[] lineStarts, int line) {
+    return line + 1 < lineStarts.length ? lineStarts[line + 1] - 1 : text.length();
+  }
+
+  @NotNull
+  private static int[] getLineStarts(@NotNull CharSequence text) {
+    TIntArrayList starts = new TIntArrayList();
+    starts.add(0);
+    for (int i = 0; i < text.length(); i++) {
+      if (text.charAt(i) == '\n') starts.add(i + 1);
+    }
+    return starts.toNativeArray();
+  }
+
   @CalledInAwt
   private void updateRangeHighlighters() {
     if (myToBeInstalledRanges.isEmpty() && myToBeDestroyedRanges.isEmpty()) return;
@@ -568,19 +660,8 @@ public abstract class LineStatusTrackerBase {
                           @NotNull List<Range> rangesBeforeChange,
                           @NotNull List<Range> changedRanges,
                           @NotNull List<Range> rangesAfterChange) {
-    int lastBefore = -1;
-    int firstAfter = myRanges.size();
-    for (int i = 0; i < myRanges.size(); i++) {
-      Range range = myRanges.get(i);
-
-      if (range.getLine2() < beforeChangedLine1) {
-        lastBefore = i;
-      }
-      else if (range.getLine1() > beforeChangedLine2) {
-        firstAfter = i;
-        break;
-      }
-    }
+    int lastBefore = findFirstAbove(myRanges, beforeChangedLine1 - 1, Range::getLine2) - 1;
+    int firstAfter = findFirstAbove(myRanges, beforeChangedLine2, Range::getLine1);
 
     // Expand on ranges, that are separated from changed lines only by whitespaces
 
@@ -612,18 +693,29 @@ public abstract class LineStatusTrackerBase {
       firstAfter++;
     }
 
-    for (int i = 0; i < myRanges.size(); i++) {
-      Range range = myRanges.get(i);
-      if (i <= lastBefore) {
-        rangesBeforeChange.add(range);
-      }
-      else if (i >= firstAfter) {
-        rangesAfterChange.add(range);
+    rangesBeforeChange.addAll(myRanges.subList(0, lastBefore + 1));
+    changedRanges.addAll(myRanges.subList(lastBefore + 1, firstAfter));
+    rangesAfterChange.addAll(myRanges.subList(firstAfter, myRanges.size()));
+  }
+
+  /**
+   * Ranges are sorted and do not intersect, so their lines grow monotonically
+   *
+   * @return index of the first range with key greater than the value, or size of the list
+   */
+  private static int findFirstAbove(@NotNull List<Range> ranges, int value, @NotNull ToIntFunction<Range> key) {
+    int low = 0;
+    int high = ranges.size();
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (key.applyAsInt(ranges.get(mid)) > value) {
+        high = mid;
       }
       else {
-        changedRanges.add(range);
+        low = mid + 1;
       }
     }
+    return low;
   }
 
   private static boolean isLineRangeEmpty(@NotNull Document document, int line1, int line2) {
@@ -659,8 +751,9 @@ public abstract class LineStatusTrackerBase {
   public Range getNextRange(int line) {
     synchronized (LOCK) {
       if (!tryValidate()) return null;
-      for (Range range : myRanges) {
-        if (line < range.getLine2() && !range.isSelectedByLine(line)) {
+      for (int i = findFirstAbove(myRanges, line, Range::getLine2); i < myRanges.size(); i++) {
+        Range range = myRanges.get(i);
+        if (!range.isSelectedByLine(line)) {
           return range;
         }
       }
@@ -672,9 +765,9 @@ public abstract class LineStatusTrackerBase {
   public Range getPrevRange(int line) {
     synchronized (LOCK) {
       if (!tryValidate()) return null;
-      for (int i = myRanges.size() - 1; i >= 0; i--) {
+      for (int i = findFirstAbove(myRanges, line - 1, Range::getLine1) - 1; i >= 0; i--) {
         Range range = myRanges.get(i);
-        if (line > range.getLine1() && !range.isSelectedByLine(line)) {
+        if (!range.isSelectedByLine(line)) {
           return range;
         }
       }
@@ -686,7 +779,9 @@ public abstract class LineStatusTrackerBase {
   public Range getRangeForLine(int line) {
     synchronized (LOCK) {
       if (!tryValidate()) return null;
-      for (final Range range : myRanges) {
+      for (int i = findFirstAbove(myRanges, line - 1, Range::getLine2); i < myRanges.size(); i++) {
+        Range range = myRanges.get(i);
+        if (range.getLine1() > line) break;
         if (range.isSelectedByLine(line)) return range;
       }
       return null;
@@ -825,11 +920,8 @@ public abstract class LineStatusTrackerBase {
       if (line1 == line2) return false;
       assert line1 < line2;
 
-      for (Range range : myRanges) {
-        if (range.getLine1() >= line2) return false;
-        if (range.getLine2() > line1) return true;
-      }
-      return false;
+      int index = findFirstAbove(myRanges, line1, Range::getLine2);
+      return index < myRanges.size() && myRanges.get(index).getLine1() < line2;
     }
   }
 
@@ -845,25 +937,23 @@ public abstract class LineStatusTrackerBase {
     synchronized (LOCK) {
       if (!tryValidate()) return approximate ? line : ABSENT_LINE_NUMBER;
 
-      int result = line;
-
-      for (Range range : myRanges) {
+      // lines before the range are shifted by all the previous ranges
+      int index = findFirstAbove(myRanges, line, fromVcs ? Range::getVcsLine2 : Range::getLine2);
+      if (index < myRanges.size()) {
+        Range range = myRanges.get(index);
         int startLine1 = fromVcs ? range.getVcsLine1() : range.getLine1();
-        int endLine1 = fromVcs ? range.getVcsLine2() : range.getLine2();
         int startLine2 = fromVcs ? range.getLine1() : range.getVcsLine1();
-        int endLine2 = fromVcs ? range.getLine2() : range.getVcsLine2();
-
-        if (startLine1 <= line && endLine1 > line) {
+        if (startLine1 <= line) {
           return approximate ? startLine2 : ABSENT_LINE_NUMBER;
         }
-
-        if (endLine1 > line) return result;
-
-        int length1 = endLine1 - startLine1;
-        int length2 = endLine2 - startLine2;
-        result += length2 - length1;
+        return line + startLine2 - startLine1;
       }
-      return result;
+      if (index == 0) return line;
+
+      Range last = myRanges.get(index - 1);
+      int endLine1 = fromVcs ? last.getVcsLine2() : last.getLine2();
+      int endLine2 = fromVcs ? last.getLine2() : last.getVcsLine2();
+      return line + endLine2 - endLine1;
     }
   }
 
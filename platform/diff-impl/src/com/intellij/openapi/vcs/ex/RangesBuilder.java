@@ -15,14 +15,16 @@
  */
 package com.intellij.openapi.vcs.ex;
 
-import com.intellij.diff.util.DiffUtil;
+import com.intellij.diff.comparison.ComparisonPolicy;
+import com.intellij.diff.comparison.LineHashes;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.progress.DumbProgressIndicator;
 import com.intellij.openapi.util.text.StringUtil;
-import com.intellij.util.ArrayUtil;
 import com.intellij.util.diff.Diff;
 import com.intellij.util.diff.FilesTooBigForDiffException;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
 import java.util.Collections;
@@ -39,7 +41,7 @@ public class RangesBuilder {
   @NotNull
   public static List<Range> createRanges(@NotNull Document current, @NotNull Document vcs, boolean innerWhitespaceChanges)
           throws FilesTooBigForDiffException {
-    return createRanges(DiffUtil.getLines(current), DiffUtil.getLines(vcs), 0, 0, innerWhitespaceChanges);
+    return createRanges(LineHashes.getInstance(current), LineHashes.getInstance(vcs), 0, 0, innerWhitespaceChanges);
   }
 
   @NotNull
@@ -48,7 +50,20 @@ public class RangesBuilder {
                                          int shift,
                                          int vcsShift,
                                          boolean innerWhitespaceChanges) throws FilesTooBigForDiffException {
-    Diff.Change ch = Diff.buildChanges(ArrayUtil.toStringArray(vcs), ArrayUtil.toStringArray(current));
+    return createRanges(new LineHashes(current), new LineHashes(vcs), shift, vcsShift, innerWhitespaceChanges);
+  }
+
+  /**
+   * Lines of the vcs document rarely change, {@link LineHashes#getInstance(Document)} keeps them and their hashes between
+   * the tracker updates. Lines of the current text are hashed only if they are not trimmed off as a common prefix or suffix.
+   */
+  @NotNull
+  private static List<Range> createRanges(@NotNull LineHashes current,
+                                          @NotNull LineHashes vcs,
+                                          int shift,
+                                          int vcsShift,
+                                          boolean innerWhitespaceChanges) throws FilesTooBigForDiffException {
+    Diff.Change ch = Diff.buildChanges(getLines(vcs, true), getLines(current, false));
 
     List<Range> result = new ArrayList<Range>();
     while (ch != null) {
@@ -76,8 +91,8 @@ public class RangesBuilder {
   private static Range createOnSmart(@NotNull Diff.Change change,
                                      int shift,
                                      int vcsShift,
-                                     @NotNull List<String> current,
-                                     @NotNull List<String> vcs) throws FilesTooBigForDiffException {
+                                     @NotNull LineHashes current,
+                                     @NotNull LineHashes vcs) throws FilesTooBigForDiffException {
     byte type = getChangeType(change);
 
     int offset1 = shift + change.line1;
@@ -93,10 +108,10 @@ public class RangesBuilder {
     LineWrapper[] lines1 = new LineWrapper[change.deleted];
     LineWrapper[] lines2 = new LineWrapper[change.inserted];
     for (int i = 0; i < change.deleted; i++) {
-      lines1[i] = new LineWrapper(vcs.get(i + change.line0));
+      lines1[i] = new LineWrapper(vcs, i + change.line0);
     }
     for (int i = 0; i < change.inserted; i++) {
-      lines2[i] = new LineWrapper(current.get(i + change.line1));
+      lines2[i] = new LineWrapper(current, i + change.line1);
     }
 
     Diff.Change ch = Diff.buildChanges(lines1, lines2);
@@ -133,6 +148,17 @@ public class RangesBuilder {
     return new Range(offset1, offset2, uOffset1, uOffset2, inner);
   }
 
+  @NotNull
+  private static Line[] getLines(@NotNull LineHashes text, boolean cacheHashes) {
+    List<? extends CharSequence> lines = text.getLines();
+    int[] hashes = cacheHashes ? text.getHashes(ComparisonPolicy.DEFAULT, DumbProgressIndicator.INSTANCE) : null;
+    Line[] result = new Line[lines.size()];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = new Line(lines.get(i), hashes, i);
+    }
+    return result;
+  }
+
   private static byte getChangeType(@NotNull Diff.Change change) {
     if ((change.deleted > 0) && (change.inserted > 0)) return Range.MODIFIED;
     if ((change.deleted > 0)) return Range.DELETED;
@@ -141,17 +167,42 @@ public class RangesBuilder {
     return Range.EQUAL;
   }
 
+  private static class Line {
+    @NotNull private final CharSequence myText;
+    @Nullable private final int[] myHashes;
+    private final int myIndex;
+
+    public Line(@NotNull CharSequence text, @Nullable int[] hashes, int index) {
+      myText = text;
+      myHashes = hashes;
+      myIndex = index;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof Line && StringUtil.equals(myText, ((Line)o).myText);
+    }
+
+    /**
+     * Same as {@link ComparisonPolicy#DEFAULT} hashes of {@link LineHashes}
+     */
+    @Override
+    public int hashCode() {
+      return myHashes != null ? myHashes[myIndex] : StringUtil.stringHashCode(myText);
+    }
+  }
+
   private static class LineWrapper {
-    @NotNull private final String myLine;
+    @NotNull private final CharSequence myLine;
     private final int myHash;
 
-    public LineWrapper(@NotNull String line) {
-      myLine = line;
-      myHash = StringUtil.stringHashCodeIgnoreWhitespaces(line);
+    public LineWrapper(@NotNull LineHashes lines, int index) {
+      myLine = lines.getLines().get(index);
+      myHash = lines.getHash(index, ComparisonPolicy.IGNORE_WHITESPACES);
     }
 
     @NotNull
-    public String getLine() {
+    public CharSequence getLine() {
       return myLine;
     }
 
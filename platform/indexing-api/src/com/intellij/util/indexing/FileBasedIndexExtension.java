@@ -48,6 +48,14 @@ public abstract class FileBasedIndexExtension<K, V> extends IndexExtension<K, V,
     return DEFAULT_CACHE_SIZE;
   }
 
+  /**
+   * Number of values read from the disk which are kept in memory, unlike {@link #getCacheSize()} they survive index flushes.
+   * Worth it for indices with big values which are expensive to read, e.g. serialized stub trees, 0 turns the cache off.
+   */
+  public int getLoadedValuesCacheSize() {
+    return 0;
+  }
+
   /**
    * For most indices the method should return an empty collection.
    *
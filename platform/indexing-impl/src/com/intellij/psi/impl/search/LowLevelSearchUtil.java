@@ -35,6 +35,8 @@ import com.intellij.psi.util.PsiTreeUtil;
 import com.intellij.util.ArrayUtil;
 import com.intellij.util.ConcurrencyUtil;
 import com.intellij.util.containers.ContainerUtil;
+import com.intellij.util.text.CharArrayUtil;
+import com.intellij.util.text.MultiStringSearcher;
 import com.intellij.util.text.StringSearcher;
 import consulo.annotations.RequiredReadAction;
 import gnu.trove.TIntArrayList;
@@ -42,7 +44,9 @@ import gnu.trove.TIntProcedure;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.concurrent.ConcurrentMap;
 
@@ -303,10 +307,11 @@ public class LowLevelSearchUtil {
       int newEnd = Math.max(endOffset, cachedOccurrences == null ? endOffset : cachedOccurrences[1]);
       occurrences.add(newStart);
       occurrences.add(newEnd);
+      char[] textArray = CharArrayUtil.fromSequenceWithoutCopying(text);
       for (int index = newStart; index < newEnd; index++) {
         if (progress != null) progress.checkCanceled();
         //noinspection AssignmentToForLoopParameter
-        index = searcher.scan(text, index, newEnd);
+        index = searcher.scan(text, textArray, index, newEnd);
         if (index < 0) break;
         if (checkJavaIdentifier(text, 0, text.length(), searcher, index)) {
           occurrences.add(index);
@@ -329,6 +334,62 @@ public class LowLevelSearchUtil {
     return offsets.toNativeArray();
   }
 
+  /**
+   * Finds occurrences of all the searchers in one pass over the whole text and caches them,
+   * so following {@link #processTextOccurrences}/{@link #getTextOccurrencesInScope} calls for the same text and searchers don't scan it again.
+   * Worth calling when the same file is going to be searched for several words.
+   */
+  public static void cacheTextOccurrences(@NotNull CharSequence text,
+                                          @NotNull List<StringSearcher> searchers,
+                                          @Nullable ProgressIndicator progress) {
+    Map<StringSearcher, int[]> cachedMap = cache.get(text);
+    List<StringSearcher> toScan = new ArrayList<>(searchers.size());
+    for (StringSearcher searcher : searchers) {
+      int[] cached = cachedMap == null ? null : cachedMap.get(searcher);
+      boolean hasCachedOccurrences = cached != null && cached[0] == 0 && cached[1] >= text.length();
+      String pattern = searcher.getPattern();
+      boolean simpleCase = pattern.toLowerCase(Locale.US).length() == pattern.length();
+      if (searcher.isForwardDirection() && simpleCase && !hasCachedOccurrences && !toScan.contains(searcher)) {
+        toScan.add(searcher);
+      }
+    }
+    if (toScan.size() < 2) return;
+
+    String[] patterns = new String[toScan.size()];
+    TIntArrayList[] occurrences = new TIntArrayList[toScan.size()];
+    for (int i = 0; i < patterns.length; i++) {
+      patterns[i] = toScan.get(i).getPattern();
+      occurrences[i] = new TIntArrayList();
+      occurrences[i].add(0);
+      occurrences[i].add(text.length());
+    }
+
+    // case sensitive searchers are verified on each occurrence found by the case insensitive automaton
+    MultiStringSearcher multiSearcher = new MultiStringSearcher(patterns, false);
+    int[] checkedCount = {0};
+    multiSearcher.processOccurrences(text, CharArrayUtil.fromSequenceWithoutCopying(text), 0, text.length(), (patternIndex, offset) -> {
+      if ((++checkedCount[0] & 0xFFF) == 0 && progress != null) progress.checkCanceled();
+
+      // equal patterns are reported once, so check all the searchers
+      for (int i = patternIndex; i < patterns.length; i++) {
+        if (i != patternIndex && !patterns[i].equalsIgnoreCase(patterns[patternIndex])) continue;
+        StringSearcher searcher = toScan.get(i);
+        if (searcher.isCaseSensitive() && !CharArrayUtil.regionMatches(text, offset, searcher.getPattern())) continue;
+        if (checkJavaIdentifier(text, 0, text.length(), searcher, offset)) {
+          occurrences[i].add(offset);
+        }
+      }
+      return true;
+    });
+
+    if (cachedMap == null) {
+      cachedMap = ConcurrencyUtil.cacheOrGet(cache, text, ContainerUtil.createConcurrentSoftMap());
+    }
+    for (int i = 0; i < patterns.length; i++) {
+      cachedMap.put(toScan.get(i), occurrences[i].toNativeArray());
+    }
+  }
+
   private static boolean checkJavaIdentifier(@NotNull CharSequence text, int startOffset, int endOffset, @NotNull StringSearcher searcher, int index) {
     if (!searcher.isJavaIdentifier()) {
       return true;
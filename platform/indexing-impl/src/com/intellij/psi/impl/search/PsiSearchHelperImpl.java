@@ -698,7 +698,16 @@ public class PsiSearchHelperImpl implements PsiSearchHelper {
 
     return processPsiFileRoots(files, totalSize, alreadyProcessedFiles, progress, psiRoot -> {
       final VirtualFile vfile = psiRoot.getVirtualFile();
-      for (final RequestWithProcessor singleRequest : candidateFiles.get(vfile)) {
+      Collection<RequestWithProcessor> requests = candidateFiles.get(vfile);
+      if (requests.size() > 1) {
+        // find all the words in one pass, the searchers below will take occurrences from the cache
+        List<StringSearcher> searchers = new ArrayList<>(requests.size());
+        for (RequestWithProcessor request : requests) {
+          searchers.add(createSearcher(request.request));
+        }
+        LowLevelSearchUtil.cacheTextOccurrences(psiRoot.getViewProvider().getContents(), searchers, progress);
+      }
+      for (final RequestWithProcessor singleRequest : requests) {
         Processor<PsiElement> localProcessor = localProcessors.get(singleRequest);
         if (!localProcessor.process(psiRoot)) {
           return false;
@@ -877,7 +886,7 @@ public class PsiSearchHelperImpl implements PsiSearchHelper {
     for (Map.Entry<Set<IdIndexEntry>, Collection<RequestWithProcessor>> entry : globals.entrySet()) {
       for (RequestWithProcessor singleRequest : entry.getValue()) {
         PsiSearchRequest primitive = singleRequest.request;
-        StringSearcher searcher = new StringSearcher(primitive.word, primitive.caseSensitive, true, false);
+        StringSearcher searcher = createSearcher(primitive);
         BulkOccurrenceProcessor adapted = adaptProcessor(primitive, singleRequest.refProcessor);
 
         Processor<PsiElement> localProcessor = localProcessor(adapted, progress, searcher);
@@ -888,6 +897,11 @@ public class PsiSearchHelperImpl implements PsiSearchHelper {
     }
   }
 
+  @NotNull
+  private static StringSearcher createSearcher(@NotNull PsiSearchRequest primitive) {
+    return new StringSearcher(primitive.word, primitive.caseSensitive, true, false);
+  }
+
   private static void registerRequest(@NotNull Collection<RequestWithProcessor> collection,
                                       @NotNull PsiSearchRequest primitive,
                                       @NotNull Processor<PsiReference> processor) {
@@ -25,16 +25,25 @@ import com.intellij.util.Consumer;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 @SuppressWarnings("ForLoopReplaceableByForEach")
 public class CompositeFilter implements Filter, FilterMixin {
   private static final Logger LOG = Logger.getInstance(CompositeFilter.class);
+  private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
 
   private final List<Filter> myFilters = new ArrayList<>();
+  private final List<AtomicLong> myFilterTimes = new ArrayList<>();
   private boolean myIsAnyHeavy;
   private boolean forceUseAllFilters;
+  private volatile boolean myMeasureFilterTimes;
   private final DumbService myDumbService;
 
   public CompositeFilter(@NotNull Project project) {
@@ -49,6 +58,7 @@ public class CompositeFilter implements Filter, FilterMixin {
   @Nullable
   public Result applyFilter(final String line, final int entireLength) {
     final boolean dumb = myDumbService.isDumb();
+    final boolean measure = myMeasureFilterTimes;
     List<Filter> filters = myFilters;
     int count = filters.size();
 
@@ -56,7 +66,8 @@ public class CompositeFilter implements Filter, FilterMixin {
     for (int i = 0; i < count; i++) {
       Filter filter = filters.get(i);
       if (!dumb || DumbService.isDumbAware(filter)) {
-        long t0 = System.currentTimeMillis();
+        long t0 = System.nanoTime();
+        long cpu0 = measure ? getCurrentThreadCpuTime() : 0;
 
         Result result;
         try {
@@ -70,7 +81,11 @@ public class CompositeFilter implements Filter, FilterMixin {
         }
         resultItems = merge(resultItems, result);
 
-        t0 = System.currentTimeMillis() - t0;
+        if (measure) {
+          myFilterTimes.get(i).addAndGet(getCurrentThreadCpuTime() - cpu0);
+        }
+        t0 = System.nanoTime() - t0;
+        t0 = TimeUnit.NANOSECONDS.toMillis(t0);
         if (t0 > 1000) {
           LOG.warn(filter.getClass().getSimpleName() + ".applyFilter() took " + t0 + " ms on '''" + line + "'''");
         }
@@ -82,6 +97,13 @@ public class CompositeFilter implements Filter, FilterMixin {
     return createFinalResult(resultItems);
   }
 
+  /**
+   * @return CPU time of the current thread in nanoseconds, or 0 if the JVM doesn't measure it
+   */
+  private static long getCurrentThreadCpuTime() {
+    return THREAD_MX_BEAN.isCurrentThreadCpuTimeSupported() ? THREAD_MX_BEAN.getCurrentThreadCpuTime() : 0;
+  }
+
   @Nullable
   private static Result createFinalResult(@Nullable List<ResultItem> resultItems) {
     if (resultItems == null) {
@@ -183,11 +205,44 @@ public class CompositeFilter implements Filter, FilterMixin {
     return myIsAnyHeavy;
   }
 
+  @Override
+  public boolean isStateless() {
+    for (Filter filter : myFilters) {
+      if (!filter.isStateless()) return false;
+    }
+    return true;
+  }
+
   public void addFilter(final Filter filter) {
     myFilters.add(filter);
+    myFilterTimes.add(new AtomicLong());
     myIsAnyHeavy |= filter instanceof FilterMixin;
   }
 
+  /**
+   * Asking for the CPU time of the current thread twice per filter costs more than a regexp filter spends on a typical line,
+   * so the time is measured only on demand
+   *
+   * @see #getFilterTimes()
+   */
+  public void setMeasureFilterTimes(boolean measureFilterTimes) {
+    myMeasureFilterTimes = measureFilterTimes;
+  }
+
+  /**
+   * @return milliseconds of CPU time spent in {@link #applyFilter(String, int)} of every filter while
+   * {@link #setMeasureFilterTimes(boolean) measuring} was on, summed over all threads the lines were filtered in,
+   * so waiting for a read action or a busy machine doesn't count
+   */
+  @NotNull
+  public Map<Filter, Long> getFilterTimes() {
+    Map<Filter, Long> result = new LinkedHashMap<>();
+    for (int i = 0; i < myFilters.size(); i++) {
+      result.put(myFilters.get(i), TimeUnit.NANOSECONDS.toMillis(myFilterTimes.get(i).get()));
+    }
+    return result;
+  }
+
   public void setForceUseAllFilters(boolean forceUseAllFilters) {
     this.forceUseAllFilters = forceUseAllFilters;
   }
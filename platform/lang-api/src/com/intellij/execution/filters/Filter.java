@@ -265,4 +265,12 @@ public interface Filter {
    */
   @Nullable
   Result applyFilter(String line, int entireLength);
+
+  /**
+   * @return true if the result for a line doesn't depend on the lines filtered before it,
+   *         so that the console may pass different lines to {@link #applyFilter(String, int)} concurrently
+   */
+  default boolean isStateless() {
+    return false;
+  }
 }
@@ -146,6 +146,11 @@ public class RegexpFilter implements Filter {
     return null;
   }
 
+  @Override
+  public boolean isStateless() {
+    return true;
+  }
+
   private Result createResult(final Matcher matcher, final int entireLen) {
     final String filePath = matcher.group(myFileRegister);
 
@@ -36,4 +36,9 @@ public class UrlFilter implements Filter {
     }
     return null;
   }
+
+  @Override
+  public boolean isStateless() {
+    return true;
+  }
 }
@@ -15,6 +15,7 @@
  */
 package com.intellij.psi.stubs;
 
+import com.intellij.util.io.UnsyncByteArrayInputStream;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.InputStream;
@@ -34,6 +35,14 @@ public abstract class SerializationManagerEx extends SerializationManager {
   @NotNull
   public abstract Stub deserialize(@NotNull InputStream stream) throws SerializerNotFoundException;
 
+  /**
+   * Reads the stub tree serialized into the first {@code length} bytes, the bytes must not be modified afterwards
+   */
+  @NotNull
+  public Stub deserialize(@NotNull byte[] bytes, int length) throws SerializerNotFoundException {
+    return deserialize(new UnsyncByteArrayInputStream(bytes, 0, length));
+  }
+
   public abstract boolean isNameStorageCorrupted();
 
   public abstract void repairNameStorage();
@@ -26,6 +26,7 @@ import org.junit.Test;
 
 import javax.swing.*;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 public class CompositeFilterTest {
 
@@ -88,6 +89,18 @@ public class CompositeFilterTest {
 
   }
 
+  @Test
+  public void testFilterTimesAreMeasuredOnDemand() throws Exception {
+    Filter filter = busyFilter();
+    myCompositeFilter.addFilter(filter);
+    applyFilter();
+    Assert.assertEquals(Long.valueOf(0), myCompositeFilter.getFilterTimes().get(filter));
+
+    myCompositeFilter.setMeasureFilterTimes(true);
+    applyFilter();
+    Assert.assertTrue(myCompositeFilter.getFilterTimes().get(filter) > 0);
+  }
+
   private Filter.Result applyFilter() {
     return myCompositeFilter.applyFilter("foo\n", 10);
   }
@@ -122,6 +135,23 @@ public class CompositeFilterTest {
     };
   }
 
+  /**
+   * Keeps the CPU busy for a few milliseconds on every line
+   */
+  private Filter busyFilter() {
+    return new Filter() {
+      @Nullable
+      @Override
+      public Result applyFilter(String line, int entireLength) {
+        long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(5);
+        while (System.nanoTime() < end) {
+          line = line.trim();
+        }
+        return null;
+      }
+    };
+  }
+
   private Filter returnContinuingResultFilter() {
     return new Filter() {
       @Nullable
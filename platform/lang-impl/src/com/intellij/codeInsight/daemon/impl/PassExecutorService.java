@@ -54,13 +54,11 @@ import gnu.trove.THashMap;
 import gnu.trove.TIntObjectHashMap;
 import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.annotations.TestOnly;
 
 import java.util.*;
-import java.util.concurrent.CancellationException;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.TimeoutException;
+import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -71,6 +69,20 @@ import java.util.regex.Pattern;
 class PassExecutorService implements Disposable {
   private static final Logger LOG = Logger.getInstance("#com.intellij.codeInsight.daemon.impl.PassExecutorService");
   private static final boolean CHECK_CONSISTENCY = ApplicationManager.getApplication().isUnitTestMode();
+  private static final Key<Long> TIME_TO_FIRST_HIGHLIGHT = Key.create("TIME_TO_FIRST_HIGHLIGHT");
+
+  /**
+   * Passes for the focused editor, they are never deferred
+   */
+  private static final int PRIORITY_FOCUSED = 0;
+  /**
+   * Passes for other visible editors
+   */
+  private static final int PRIORITY_VISIBLE = 1;
+  /**
+   * Passes for editors which are not visible, started only after all {@link #PRIORITY_FOCUSED} passes are finished
+   */
+  private static final int PRIORITY_BACKGROUND = 2;
 
   private final Map<ScheduledPass, Job<Void>> mySubmittedPasses = new ConcurrentHashMap<>();
   private final Project myProject;
@@ -201,6 +213,9 @@ class PassExecutorService implements Disposable {
       assertConsistency(freePasses, toBeSubmitted, threadsToStartCountdown);
     }
 
+    assignPriorities(toBeSubmitted.values());
+    ContainerUtil.sort(freePasses, Comparator.comparingInt((ScheduledPass pass) -> pass.myPriority));
+
     log(updateProgress, null, vFiles + " ----- starting " + threadsToStartCountdown.get(), freePasses);
 
     for (ScheduledPass dependentPass : dependentPasses) {
@@ -211,6 +226,38 @@ class PassExecutorService implements Disposable {
     }
   }
 
+  private void assignPriorities(@NotNull Collection<ScheduledPass> scheduledPasses) {
+    Editor focusedEditor = null;
+    Set<FileEditor> visibleEditors = Collections.emptySet();
+    if (ApplicationManager.getApplication().isDispatchThread()) {
+      FileEditorManager fileEditorManager = FileEditorManager.getInstance(myProject);
+      focusedEditor = fileEditorManager.getSelectedTextEditor();
+      visibleEditors = ContainerUtil.newHashSet(fileEditorManager.getSelectedEditors());
+    }
+
+    PriorityGate gate = new PriorityGate();
+    Map<FileEditor, FirstHighlightLatch> latches = new THashMap<>();
+    for (ScheduledPass scheduledPass : scheduledPasses) {
+      FileEditor fileEditor = scheduledPass.myFileEditor;
+      int priority;
+      if (focusedEditor != null && fileEditor instanceof TextEditor && ((TextEditor)fileEditor).getEditor() == focusedEditor) {
+        priority = PRIORITY_FOCUSED;
+      }
+      else if (focusedEditor == null || visibleEditors.contains(fileEditor)) {
+        priority = PRIORITY_VISIBLE;
+      }
+      else {
+        priority = PRIORITY_BACKGROUND;
+      }
+      scheduledPass.myPriority = priority;
+      scheduledPass.myGate = gate;
+      scheduledPass.myFirstHighlightLatch = latches.computeIfAbsent(fileEditor, editor -> new FirstHighlightLatch());
+      if (priority == PRIORITY_FOCUSED) {
+        gate.myRunningFocusedPasses.incrementAndGet();
+      }
+    }
+  }
+
   private void assertConsistency(List<ScheduledPass> freePasses,
                                  Map<Pair<FileEditor, Integer>, ScheduledPass> toBeSubmitted,
                                  AtomicInteger threadsToStartCountdown) {
@@ -388,6 +435,10 @@ class PassExecutorService implements Disposable {
     private final Collection<ScheduledPass> mySuccessorsOnCompletion = new ArrayList<>();
     private final Collection<ScheduledPass> mySuccessorsOnSubmit = new ArrayList<>();
     @NotNull private final DaemonProgressIndicator myUpdateProgress;
+    private int myPriority = PRIORITY_VISIBLE;
+    private PriorityGate myGate;
+    private FirstHighlightLatch myFirstHighlightLatch;
+    private volatile boolean myDeferred;
 
     private ScheduledPass(@NotNull FileEditor fileEditor,
                           @NotNull TextEditorHighlightingPass pass,
@@ -412,12 +463,22 @@ class PassExecutorService implements Disposable {
           saveException(e, myUpdateProgress);
           throw e;
         }
+        finally {
+          if (myPriority == PRIORITY_FOCUSED && myGate != null) {
+            myGate.focusedPassFinished();
+          }
+        }
       });
     }
 
     private void doRun() {
       if (myUpdateProgress.isCanceled()) return;
 
+      if (myPriority == PRIORITY_BACKGROUND && myGate != null && myGate.defer(this)) {
+        log(myUpdateProgress, myPass, "Deferred until focused editor passes are finished. ");
+        return;
+      }
+
       log(myUpdateProgress, myPass, "Started. ");
 
       for (ScheduledPass successor : mySuccessorsOnSubmit) {
@@ -460,7 +521,7 @@ class PassExecutorService implements Disposable {
       log(myUpdateProgress, myPass, "Finished. ");
 
       if (!myUpdateProgress.isCanceled()) {
-        applyInformationToEditorsLater(myFileEditor, myPass, myUpdateProgress, myThreadsToStartCountdown);
+        applyInformationToEditorsLater(myFileEditor, myPass, myUpdateProgress, myThreadsToStartCountdown, myFirstHighlightLatch);
         for (ScheduledPass successor : mySuccessorsOnCompletion) {
           int predecessorsToRun = successor.myRunningPredecessorsCount.decrementAndGet();
           if (predecessorsToRun == 0) {
@@ -490,7 +551,8 @@ class PassExecutorService implements Disposable {
   private void applyInformationToEditorsLater(@NotNull final FileEditor fileEditor,
                                               @NotNull final TextEditorHighlightingPass pass,
                                               @NotNull final DaemonProgressIndicator updateProgress,
-                                              @NotNull final AtomicInteger threadsToStartCountdown) {
+                                              @NotNull final AtomicInteger threadsToStartCountdown,
+                                              @Nullable final FirstHighlightLatch firstHighlightLatch) {
     ApplicationManager.getApplication().invokeLater((DumbAwareRunnable)() -> {
       if (isDisposed() || myProject.isDisposed()) {
         updateProgress.cancel();
@@ -507,6 +569,9 @@ class PassExecutorService implements Disposable {
           if (document != null) {
             fileStatusMap.markFileUpToDate(document, pass.getId());
           }
+          if (firstHighlightLatch != null) {
+            firstHighlightLatch.passApplied(fileEditor);
+          }
           log(updateProgress, pass, " Applied");
         }
       }
@@ -534,6 +599,69 @@ class PassExecutorService implements Disposable {
     }, updateProgress.getModalityState());
   }
 
+  /**
+   * Shared by all passes submitted in one {@link #submitPasses} call.
+   * Background passes which are ready to run while passes of the focused editor are still running are parked here
+   * and resubmitted once the last focused editor pass finishes, so they don't compete with it for job threads
+   */
+  private class PriorityGate {
+    private final AtomicInteger myRunningFocusedPasses = new AtomicInteger();
+    private final Queue<ScheduledPass> myDeferredPasses = new ConcurrentLinkedQueue<>();
+
+    // return true if the pass was parked and must not run now
+    private boolean defer(@NotNull ScheduledPass pass) {
+      if (myRunningFocusedPasses.get() <= 0 || pass.myDeferred) return false;
+      pass.myDeferred = true;
+      myDeferredPasses.offer(pass);
+      if (myRunningFocusedPasses.get() <= 0) {
+        // focused passes finished while we were parking, nobody else will drain the queue
+        resubmitDeferred();
+      }
+      return true;
+    }
+
+    private void focusedPassFinished() {
+      if (myRunningFocusedPasses.decrementAndGet() == 0) {
+        resubmitDeferred();
+      }
+    }
+
+    private void resubmitDeferred() {
+      ScheduledPass pass;
+      while ((pass = myDeferredPasses.poll()) != null) {
+        submit(pass);
+      }
+    }
+  }
+
+  /**
+   * Measures time from passes submission till the first pass result is applied to the editor
+   */
+  private static class FirstHighlightLatch {
+    private final long myStartNanos = System.nanoTime();
+    private boolean myApplied;
+
+    // called in EDT only
+    private void passApplied(@NotNull FileEditor fileEditor) {
+      if (myApplied) return;
+      myApplied = true;
+      long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - myStartNanos);
+      fileEditor.putUserData(TIME_TO_FIRST_HIGHLIGHT, millis);
+      if (LOG.isDebugEnabled()) {
+        LOG.debug("Time to first highlight for " + fileEditor + ": " + millis + "ms");
+      }
+    }
+  }
+
+  /**
+   * @return milliseconds elapsed between the last daemon restart and the first highlighting pass result applied to the editor,
+   * or null if the editor was never highlighted
+   */
+  @Nullable
+  static Long getTimeToFirstHighlight(@NotNull FileEditor fileEditor) {
+    return fileEditor.getUserData(TIME_TO_FIRST_HIGHLIGHT);
+  }
+
   protected boolean isDisposed() {
     return isDisposed;
   }
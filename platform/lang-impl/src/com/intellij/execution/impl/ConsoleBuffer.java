@@ -180,7 +180,7 @@ public class ConsoleBuffer {
 
   public String getText() {
     if (myDeferredOutput.size() > 1) {
-      final StringBuilder buffer = new StringBuilder();
+      final StringBuilder buffer = new StringBuilder(myDeferredOutputLength);
       for (StringBuilder builder : myDeferredOutput) {
         buffer.append(builder);
       }
@@ -274,7 +274,11 @@ public class ConsoleBuffer {
   public Pair<String, Integer> print(@NotNull String s, @NotNull ConsoleViewContentType contentType, @Nullable HyperlinkInfo info) {
     int numberOfSymbolsToProceed = s.length();
     int trimmedSymbolsNumber = myDeferredOutputLength;
-    if (contentType != ConsoleViewContentType.USER_INPUT) {
+    if (contentType != ConsoleViewContentType.USER_INPUT && canDropDeferredOutput(s.length())) {
+      clear(false);
+      numberOfSymbolsToProceed = myCyclicBufferSize;
+    }
+    else if (contentType != ConsoleViewContentType.USER_INPUT && shouldTrimOnPrint(s.length())) {
       numberOfSymbolsToProceed = trimDeferredOutputIfNecessary(s.length());
       trimmedSymbolsNumber -= myDeferredOutputLength;
     }
@@ -310,7 +314,7 @@ public class ConsoleBuffer {
 
       if (bufferToUse.length() < myCyclicBufferUnitSize) {
         int numberOfSymbolsToAdd = Math.min(myCyclicBufferUnitSize - bufferToUse.length(), s.length() - offset);
-        bufferToUse.append(s.substring(offset, offset + numberOfSymbolsToAdd));
+        bufferToUse.append(s, offset, offset + numberOfSymbolsToAdd);
         offset += numberOfSymbolsToAdd;
       }
     }
@@ -323,6 +327,44 @@ public class ConsoleBuffer {
     return new Pair<>(s, trimmedSymbolsNumber);
   }
 
+  /**
+   * A process which outputs a lot fills the whole cyclic buffer by a single chunk of its output, and all deferred text
+   * would be removed by {@link #trimDeferredOutputIfNecessary(int)} token by token and unit by unit then.
+   * The deferred text is dropped at once instead if none of it is to be kept on cycling.
+   */
+  private boolean canDropDeferredOutput(int numberOfNewSymbols) {
+    if (!myUseCyclicBuffer || numberOfNewSymbols < myCyclicBufferSize) {
+      return false;
+    }
+    for (ConsoleViewContentType type : myDeferredTypes) {
+      if (myContentTypesToNotStripOnCycling.contains(type)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Trimming walks all deferred tokens, so a process which outputs a lot of small chunks to the full buffer would pay for it
+   * on every chunk. The deferred text is allowed to grow up to twice the cyclic buffer size instead, it's trimmed by
+   * {@link #trimToCyclicBufferSize()} once per flush.
+   */
+  private boolean shouldTrimOnPrint(int numberOfNewSymbols) {
+    return myUseCyclicBuffer && (long)myDeferredOutputLength + numberOfNewSymbols > 2L * myCyclicBufferSize;
+  }
+
+  /**
+   * Trims the deferred text to the {@link #getCyclicBufferSize() cyclic buffer size}. Is expected to be called before the text
+   * is flushed, as {@link #print(String, ConsoleViewContentType, HyperlinkInfo)} doesn't trim it until it exceeds the size twice.
+   *
+   * @return number of removed symbols
+   */
+  public int trimToCyclicBufferSize() {
+    int length = myDeferredOutputLength;
+    trimDeferredOutputIfNecessary(0);
+    return length - myDeferredOutputLength;
+  }
+
   //private void checkState() {
   //  int bufferOffset = 0;
   //  Iterator<StringBuilder> iterator = myDeferredOutput.iterator();
@@ -448,9 +490,7 @@ public class ConsoleBuffer {
       }
     }
 
-    for (int i = indicesOfTokensToRemove.size() - 1; i >= 0; i--) {
-      myDeferredTokens.remove(indicesOfTokensToRemove.get(i));
-    }
+    removeTokens(indicesOfTokensToRemove);
 
     if (!myDeferredTokens.isEmpty()) {
       TokenInfo tokenInfo = myDeferredTokens.get(0);
@@ -473,6 +513,27 @@ public class ConsoleBuffer {
     return numberOfNewSymbols;
   }
 
+  /**
+   * Removes the tokens at the given ascending indices in one pass, as removing them one by one from the list start
+   * would shift the rest of the tokens on every removal.
+   */
+  private void removeTokens(@NotNull TIntArrayList indices) {
+    if (indices.isEmpty()) {
+      return;
+    }
+    int size = myDeferredTokens.size();
+    int kept = indices.get(0);
+    for (int i = kept + 1, next = 1; i < size; i++) {
+      if (next < indices.size() && indices.get(next) == i) {
+        next++;
+      }
+      else {
+        myDeferredTokens.set(kept++, myDeferredTokens.get(i));
+      }
+    }
+    myDeferredTokens.subList(kept, size).clear();
+  }
+
   private static void skip(@NotNull Context context, int symbolsToSkipNumber) {
     int remainingNumberOfBufferSymbols = context.currentBuffer.length() - context.bufferOffset;
     if (remainingNumberOfBufferSymbols < symbolsToSkipNumber) {
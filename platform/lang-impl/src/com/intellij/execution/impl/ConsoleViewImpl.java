@@ -88,11 +88,13 @@ import java.io.IOException;
 import java.util.*;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.regex.Pattern;
 
 public class ConsoleViewImpl extends JPanel implements ConsoleView, ObservableConsoleView, DataProvider, OccurenceNavigator {
   @NonNls private static final String CONSOLE_VIEW_POPUP_MENU = "ConsoleView.PopupMenu";
   private static final Logger LOG = Logger.getInstance("#com.intellij.execution.impl.ConsoleViewImpl");
 
+  private static final Pattern CARRIAGE_RETURN = Pattern.compile("\r", Pattern.LITERAL);
   private static final int DEFAULT_FLUSH_DELAY = SystemProperties.getIntProperty("console.flush.delay.ms", 200);
 
   private static final CharMatcher NEW_LINE_MATCHER = CharMatcher.anyOf("\n\r");
@@ -285,6 +287,7 @@ public class ConsoleViewImpl extends JPanel implements ConsoleView, ObservableCo
     myProject = project;
 
     myFilters = new CompositeFilter(project);
+    myFilters.setMeasureFilterTimes(LOG.isDebugEnabled());
     if (usePredefinedMessageFilter) {
       for (ConsoleFilterProvider eachProvider : Extensions.getExtensions(ConsoleFilterProvider.FILTER_PROVIDERS)) {
         Filter[] filters;
@@ -560,6 +563,9 @@ public class ConsoleViewImpl extends JPanel implements ConsoleView, ObservableCo
 
   @Override
   public void dispose() {
+    if (LOG.isDebugEnabled() && !myFilters.isEmpty()) {
+      LOG.debug("Filter CPU times, ms: " + myFilters.getFilterTimes());
+    }
     myState = myState.dispose();
     if (myEditor != null) {
       cancelAllFlushRequests();
@@ -702,6 +708,7 @@ public class ConsoleViewImpl extends JPanel implements ConsoleView, ObservableCo
       if (myOutputPaused) return;
       if (myBuffer.isEmpty()) return;
 
+      myContentSize -= myBuffer.trimToCyclicBufferSize();
       addedText = myBuffer.getText();
 
       contentTypes = Collections.unmodifiableCollection(new HashSet<>(myBuffer.getDeferredTokenTypes()));
@@ -722,7 +729,8 @@ public class ConsoleViewImpl extends JPanel implements ConsoleView, ObservableCo
       }
       try {
         myInDocumentUpdate = true;
-        String[] strings = addedText.split("\\r", -1); // limit must be any negative number to avoid discarding of trailing empty strings
+        // limit must be any negative number to avoid discarding of trailing empty strings
+        String[] strings = addedText.indexOf('\r') < 0 ? new String[]{addedText} : CARRIAGE_RETURN.split(addedText, -1);
         for (int i = 0; i < strings.length - 1; i++) {
           document.insertString(document.getTextLength(), strings[i]);
           int lastLine = document.getLineCount() - 1;
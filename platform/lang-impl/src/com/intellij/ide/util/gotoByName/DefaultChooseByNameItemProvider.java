@@ -43,6 +43,7 @@ import java.util.*;
 public class DefaultChooseByNameItemProvider implements ChooseByNameItemProvider {
   private static final Logger LOG = Logger.getInstance("#com.intellij.ide.util.gotoByName.ChooseByNameIdea");
   private final Reference<PsiElement> myContext;
+  private final NameCandidatesFilter myCandidatesFilter = new NameCandidatesFilter();
 
   public DefaultChooseByNameItemProvider(PsiElement context) {
     myContext = new WeakReference<PsiElement>(context);
@@ -88,9 +89,18 @@ public class DefaultChooseByNameItemProvider implements ChooseByNameItemProvider
     } else {
       String[] names = base.getNames(everywhere);
       started = System.currentTimeMillis();
-      processNamesByPattern(base, names, matchingPattern, indicator, collect);
+      boolean customMatcher = model instanceof CustomMatcherModel;
+      String[] candidates = customMatcher ? names : myCandidatesFilter.getCandidates(names, matchingPattern);
+      processNamesByPattern(base, candidates, matchingPattern, indicator, collect);
+      if (!customMatcher) {
+        List<String> matchedNames = new ArrayList<String>(namesList.size());
+        for (MatchResult result : namesList) {
+          matchedNames.add(result.elementName);
+        }
+        myCandidatesFilter.rememberMatched(names, matchingPattern, matchedNames);
+      }
       if (LOG.isDebugEnabled()) {
-        LOG.debug("matched:"+ (System.currentTimeMillis() - started)+ "," + names.length);
+        LOG.debug("matched:"+ (System.currentTimeMillis() - started)+ "," + names.length + ",candidates:" + candidates.length);
       }
     }
 
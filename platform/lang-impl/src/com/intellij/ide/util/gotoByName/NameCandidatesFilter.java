@@ -0,0 +1,131 @@
+/*
+ * Copyright 2013-2016 consulo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.ide.util.gotoByName;
+
+import com.intellij.util.ArrayUtil;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Cheap candidate pre-filter for {@link com.intellij.psi.codeStyle.MinusculeMatcher}.
+ * <p/>
+ * Every letter or digit of a pattern must be present in a matching name, so each name is summarized as a bit mask of the
+ * letters and digits it contains, and only names whose mask covers the pattern mask are handed to the matcher.
+ * Also, when the pattern is extended by typing, only the names matched by the previous pattern are considered.
+ * <p/>
+ * Thread safe. Names are compared by identity of the array, which is cached by {@link ChooseByNameBase} per checkbox state.
+ */
+class NameCandidatesFilter {
+  private static final int DIGITS_SHIFT = 'z' - 'a' + 1;
+
+  private String[] myNames;
+  private long[] myMasks;
+
+  private String[] myLastMatchedFrom;
+  private String myLastPattern;
+  private String[] myLastMatched;
+
+  @NotNull
+  synchronized String[] getCandidates(@NotNull String[] names, @NotNull String pattern) {
+    if (myLastMatchedFrom == names && myLastPattern != null && isNarrowing(myLastPattern, pattern)) {
+      return filterByMask(myLastMatched, null, pattern);
+    }
+
+    if (myNames != names) {
+      myNames = names;
+      myMasks = null;
+    }
+    if (myMasks == null) {
+      myMasks = buildMasks(names);
+    }
+    return filterByMask(names, myMasks, pattern);
+  }
+
+  /**
+   * Remembers names matched by the pattern for {@link #getCandidates} calls with longer patterns
+   */
+  synchronized void rememberMatched(@NotNull String[] names, @NotNull String pattern, @NotNull Collection<String> matched) {
+    myLastMatchedFrom = names;
+    myLastPattern = pattern;
+    myLastMatched = ArrayUtil.toStringArray(matched);
+  }
+
+  /**
+   * Names matching an alphanumeric pattern also match the same pattern with more alphanumeric chars typed, so the previous
+   * result can be narrowed. Spaces, inner wildcards and separators change the matching rules, the previous result is not reused for them.
+   */
+  static boolean isNarrowing(@NotNull String previousPattern, @NotNull String pattern) {
+    if (previousPattern.isEmpty() || !pattern.startsWith(previousPattern)) {
+      return false;
+    }
+    // leading wildcard is added for search in any place and means the same for both patterns
+    for (int i = pattern.startsWith("*") ? 1 : 0; i < pattern.length(); i++) {
+      if (!Character.isLetterOrDigit(pattern.charAt(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @NotNull
+  private static String[] filterByMask(@NotNull String[] names, long[] masks, @NotNull String pattern) {
+    long patternMask = mask(pattern);
+    if (patternMask == 0) {
+      return names;
+    }
+
+    List<String> result = new ArrayList<String>();
+    for (int i = 0; i < names.length; i++) {
+      String name = names[i];
+      if (name == null) continue;
+      long nameMask = masks == null ? mask(name) : masks[i];
+      if ((nameMask & patternMask) == patternMask) {
+        result.add(name);
+      }
+    }
+    return ArrayUtil.toStringArray(result);
+  }
+
+  @NotNull
+  private static long[] buildMasks(@NotNull String[] names) {
+    long[] masks = new long[names.length];
+    for (int i = 0; i < names.length; i++) {
+      String name = names[i];
+      masks[i] = name == null ? 0 : mask(name);
+    }
+    return masks;
+  }
+
+  static long mask(@NotNull String s) {
+    long mask = 0;
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      if (c >= 'a' && c <= 'z') {
+        mask |= 1L << (c - 'a');
+      }
+      else if (c >= 'A' && c <= 'Z') {
+        mask |= 1L << (c - 'A');
+      }
+      else if (c >= '0' && c <= '9') {
+        mask |= 1L << (DIGITS_SHIFT + c - '0');
+      }
+    }
+    return mask;
+  }
+}
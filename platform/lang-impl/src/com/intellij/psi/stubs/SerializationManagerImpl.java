@@ -184,4 +184,19 @@ public class SerializationManagerImpl extends SerializationManagerEx implements
       throw new RuntimeException(e);
     }
   }
+
+  @NotNull
+  @Override
+  public Stub deserialize(@NotNull byte[] bytes, int length) throws SerializerNotFoundException {
+    initSerializers();
+
+    try {
+      return myStubSerializationHelper.deserialize(bytes, length);
+    }
+    catch (IOException e) {
+      nameStorageCrashed();
+      LOG.info(e);
+      throw new RuntimeException(e);
+    }
+  }
 }
@@ -22,7 +22,6 @@ package com.intellij.psi.stubs;
 import com.intellij.util.CompressionUtil;
 import com.intellij.util.io.DataInputOutputUtil;
 import com.intellij.util.io.PersistentHashMapValueStorage;
-import com.intellij.util.io.UnsyncByteArrayInputStream;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -85,7 +84,7 @@ public class SerializedStubTree {
       myStubElement = null;
       if (willIndexStub) return stubElement;
     }
-    return SerializationManagerEx.getInstanceEx().deserialize(new UnsyncByteArrayInputStream(myBytes));
+    return SerializationManagerEx.getInstanceEx().deserialize(myBytes, myLength);
   }
 
   public boolean contentLengthMatches(long byteContentLength, int charContentLength) {
@@ -23,16 +23,20 @@ import com.intellij.util.containers.RecentStringInterner;
 import com.intellij.util.io.AbstractStringEnumerator;
 import com.intellij.util.io.DataInputOutputUtil;
 import com.intellij.util.io.IOUtil;
+import com.intellij.util.io.UnsyncByteArrayInputStream;
 import gnu.trove.TIntObjectHashMap;
 import gnu.trove.TObjectIntHashMap;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -133,6 +137,45 @@ public class StubSerializationHelper {
       ++i;
     }
 
+    return deserializeRoots(inputStream);
+  }
+
+  /**
+   * Same as {@link #deserialize(InputStream)}, but strings are decoded from the bytes only when stubs ask for them.
+   * Names are read by stubs as lazy {@link com.intellij.util.io.StringRef}s, so the names of stubs which are never looked at
+   * are not decoded and interned at all. Only the string table is copied from the bytes, they are not referenced afterwards.
+   */
+  @NotNull
+  public Stub deserialize(@NotNull byte[] bytes, int length) throws IOException, SerializerNotFoundException {
+    UnsyncByteArrayInputStream stream = new UnsyncByteArrayInputStream(bytes, 0, length);
+    DataInputStream tableStream = new DataInputStream(stream);
+    final int numberOfStrings = DataInputOutputUtil.readINT(tableStream);
+    final int tableStart = length - stream.available();
+    LazyStringEnumerator storage = new LazyStringEnumerator(numberOfStrings);
+    byte[] buffer = IOUtil.allocReadWriteUTFBuffer();
+
+    for (int i = 0; i < numberOfStrings; i++) {
+      int offset = length - stream.available();
+      int stringLength = bytes[offset] & 0xFF;
+      if (stringLength == 0xFF) {
+        // not ascii or too long, see IOUtil#writeUTFFast
+        storage.myStrings[i] = myStringInterner.get(IOUtil.readUTFFast(buffer, tableStream));
+        storage.myNotDecoded--;
+      }
+      else {
+        storage.myOffsets[i] = offset - tableStart;
+        stream.skip(stringLength + 1);
+      }
+    }
+    if (storage.myNotDecoded > 0) {
+      storage.myTable = Arrays.copyOfRange(bytes, tableStart, length - stream.available());
+    }
+
+    return deserializeRoots(new StubInputStream(stream, storage));
+  }
+
+  @NotNull
+  private Stub deserializeRoots(@NotNull StubInputStream inputStream) throws IOException, SerializerNotFoundException {
     final int stubFilesCount = DataInputOutputUtil.readINT(inputStream);
     if (stubFilesCount <= 0) {
       Logger.getInstance(getClass()).error("Incorrect stub files count during deserialization:"+stubFilesCount);
@@ -199,6 +242,73 @@ public class StubSerializationHelper {
     return myIdToSerializer.get(id);
   }
 
+  /**
+   * Strings of a serialized stub tree, decoded from a copy of its string table on the first request
+   */
+  private class LazyStringEnumerator implements AbstractStringEnumerator {
+    // the string table of the serialized tree, null when there is nothing left to decode
+    private byte[] myTable;
+    // offsets of the ascii strings headers in myTable
+    private final int[] myOffsets;
+    private final String[] myStrings;
+    private int myNotDecoded;
+    // strings enumerated after reading, they follow the stored ones
+    private final List<String> myAddedStrings = new ArrayList<>();
+
+    LazyStringEnumerator(int numberOfStrings) {
+      myOffsets = new int[numberOfStrings];
+      myStrings = new String[numberOfStrings];
+      myNotDecoded = numberOfStrings;
+    }
+
+    @Override
+    public synchronized int enumerate(@Nullable String value) throws IOException {
+      if (value == null) return 0;
+      for (int i = 1; i <= myStrings.length; i++) {
+        if (value.equals(valueOf(i))) return i;
+      }
+      int index = myAddedStrings.indexOf(value);
+      if (index < 0) {
+        index = myAddedStrings.size();
+        myAddedStrings.add(value);
+      }
+      return myStrings.length + index + 1;
+    }
+
+    @Override
+    public synchronized String valueOf(int idx) throws IOException {
+      if (idx == 0) return null;
+      if (idx > myStrings.length) return myAddedStrings.get(idx - myStrings.length - 1);
+      String value = myStrings[idx - 1];
+      if (value == null) {
+        int offset = myOffsets[idx - 1];
+        value = intern(new String(myTable, offset + 1, myTable[offset] & 0xFF, StandardCharsets.ISO_8859_1));
+        myStrings[idx - 1] = value;
+        if (--myNotDecoded == 0) {
+          myTable = null;
+        }
+      }
+      return value;
+    }
+
+    @Override
+    public void markCorrupted() {
+    }
+
+    @Override
+    public void close() throws IOException {
+    }
+
+    @Override
+    public boolean isDirty() {
+      return false;
+    }
+
+    @Override
+    public void force() {
+    }
+  }
+
   private static class FileLocalStringEnumerator implements AbstractStringEnumerator {
     private final TObjectIntHashMap<String> myEnumerates;
     private final ArrayList<String> myStrings = new ArrayList<>();
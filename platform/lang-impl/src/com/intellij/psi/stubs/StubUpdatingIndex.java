@@ -31,6 +31,7 @@ import com.intellij.openapi.vfs.newvfs.NewVirtualFile;
 import com.intellij.openapi.vfs.newvfs.persistent.FSRecords;
 import com.intellij.psi.tree.IFileElementType;
 import com.intellij.psi.tree.IStubFileElementType;
+import com.intellij.util.SystemProperties;
 import com.intellij.util.ThrowableRunnable;
 import com.intellij.util.containers.ContainerUtil;
 import com.intellij.util.indexing.*;
@@ -111,6 +112,12 @@ public class StubUpdatingIndex extends CustomImplementationFileBasedIndexExtensi
     return 5; // no need to cache many serialized trees
   }
 
+  @Override
+  public int getLoadedValuesCacheSize() {
+    // trees of recently visited files, so that navigation does not read and decompress them again
+    return SystemProperties.getIntProperty("idea.stub.trees.cache.size", 256);
+  }
+
   @Override
   public boolean keyIsUniqueForIndexedFile() {
     return true;
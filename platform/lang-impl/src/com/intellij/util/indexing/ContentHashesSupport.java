@@ -81,6 +81,11 @@ class ContentHashesSupport {
     return ourHashesWithFileType.enumerate(digest);
   }
 
+  @NotNull
+  static byte[] getContentHash(int hashId) throws IOException {
+    return ourHashesWithFileType.valueOf(hashId);
+  }
+
   static byte[] calcContentHashWithFileType(@NotNull byte[] bytes, @Nullable Charset charset, @NotNull FileType fileType) {
     MessageDigest messageDigest = ContentHashesUtil.HASHER_CACHE.getValue();
 
@@ -144,6 +144,7 @@ public class FileBasedIndexImpl extends FileBasedIndex {
   private final AtomicInteger myUpdatingFiles = new AtomicInteger();
   private final Set<Project> myProjectsBeingUpdated = ContainerUtil.newConcurrentSet();
   private final IndexAccessValidator myAccessValidator = new IndexAccessValidator();
+  private final IndexingStatistics myIndexingStatistics = new IndexingStatistics();
 
   @SuppressWarnings({"FieldCanBeLocal", "UnusedDeclaration"})
   private volatile boolean myInitialized;
@@ -367,7 +368,8 @@ public class FileBasedIndexImpl extends FileBasedIndex {
           contentHashesEnumeratorOk = true;
         }
         storage = new VfsAwareMapIndexStorage<>(IndexInfrastructure.getStorageFile(name), extension.getKeyDescriptor(), extension.getValueExternalizer(),
-                                                extension.getCacheSize(), extension.keyIsUniqueForIndexedFile(), extension.traceKeyHashToVirtualFileMapping());
+                                                extension.getCacheSize(), extension.getLoadedValuesCacheSize(), extension.keyIsUniqueForIndexedFile(),
+                                                extension.traceKeyHashToVirtualFileMapping());
 
         final InputFilter inputFilter = extension.getInputFilter();
         final Set<FileType> addedTypes = new THashSet<>();
@@ -943,6 +945,14 @@ public class FileBasedIndexImpl extends FileBasedIndex {
     return myChangedFilesCollector;
   }
 
+  /**
+   * Collected only for files with content, unless disabled with <code>idea.indexing.statistics.enabled</code>
+   */
+  @NotNull
+  public IndexingStatistics getIndexingStatistics() {
+    return myIndexingStatistics;
+  }
+
   public static final class ProjectIndexableFilesFilter extends IdFilter {
     private static final int SHIFT = 6;
     private static final int MASK = (1 << SHIFT) - 1;
@@ -1541,6 +1551,7 @@ public class FileBasedIndexImpl extends FileBasedIndex {
   }
 
   static final Key<Boolean> ourPhysicalContentKey = Key.create("physical.content.flag");
+  static final Key<Integer> ourMapSizeKey = Key.create("indexed.map.size");
 
   private void updateSingleIndex(@NotNull ID<?, ?> indexId, VirtualFile file, final int inputId, @Nullable FileContent currentFC) {
     if (!RebuildStatus.isOk(indexId) && !myIsUnitTestMode) {
@@ -1558,12 +1569,21 @@ public class FileBasedIndexImpl extends FileBasedIndex {
 
     boolean updateCalculated = false;
     try {
+      long started = IndexingStatistics.ENABLED ? System.nanoTime() : 0;
       // important: no hard referencing currentFC to avoid OOME, the methods introduced for this purpose!
       // important: update is called out of try since possible indexer extension is HANDLED as single file fail / restart indexing policy
       final Computable<Boolean> update = index.update(inputId, currentFC);
       updateCalculated = true;
+      long mapped = IndexingStatistics.ENABLED ? System.nanoTime() : 0;
 
       scheduleUpdate(indexId, update, file, inputId, hasContent);
+
+      if (IndexingStatistics.ENABLED && hasContent) {
+        Integer mapSize = currentFC.getUserData(ourMapSizeKey);
+        currentFC.putUserData(ourMapSizeKey, null);
+        myIndexingStatistics.addFile(indexId, currentFC.getFileType(), currentFC.getContent().length, mapSize == null ? 0 : mapSize,
+                                     mapped - started, System.nanoTime() - mapped);
+      }
     }
     catch (RuntimeException exception) {
       Throwable causeToRebuildIndex = getCauseToRebuildIndex(exception);
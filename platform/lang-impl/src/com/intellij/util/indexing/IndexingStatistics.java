@@ -0,0 +1,202 @@
+/*
+ * Copyright 2013-2016 consulo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.util.indexing;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.fileTypes.FileType;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.util.ConcurrencyUtil;
+import com.intellij.util.SystemProperties;
+import com.intellij.util.containers.ContainerUtil;
+import gnu.trove.THashMap;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Cumulative time and volume of indexing by every index and file type, see {@link FileBasedIndexImpl#getIndexingStatistics()}.
+ */
+public class IndexingStatistics {
+  private static final Logger LOG = Logger.getInstance(IndexingStatistics.class);
+
+  static final boolean ENABLED = SystemProperties.getBooleanProperty("idea.indexing.statistics.enabled", true);
+  private static final int REPORT_SIZE = 10;
+
+  public static class Counters {
+    private int myFiles;
+    private long myBytes;
+    private long myMapSize;
+    private long myMappingTime;
+    private long myStorageUpdateTime;
+
+    public int getFiles() {
+      return myFiles;
+    }
+
+    public long getBytes() {
+      return myBytes;
+    }
+
+    /**
+     * @return number of keys produced for the files
+     */
+    public long getMapSize() {
+      return myMapSize;
+    }
+
+    public long getMappingTimeNanos() {
+      return myMappingTime;
+    }
+
+    public long getStorageUpdateTimeNanos() {
+      return myStorageUpdateTime;
+    }
+
+    public long getTotalTimeNanos() {
+      return myMappingTime + myStorageUpdateTime;
+    }
+
+    private synchronized void addFile(int bytes, int mapSize, long mappingTime, long storageUpdateTime) {
+      myFiles++;
+      myBytes += bytes;
+      myMapSize += mapSize;
+      myMappingTime += mappingTime;
+      myStorageUpdateTime += storageUpdateTime;
+    }
+
+    private synchronized void add(@NotNull Counters counters, int sign) {
+      myFiles += sign * counters.myFiles;
+      myBytes += sign * counters.myBytes;
+      myMapSize += sign * counters.myMapSize;
+      myMappingTime += sign * counters.myMappingTime;
+      myStorageUpdateTime += sign * counters.myStorageUpdateTime;
+    }
+
+    @NotNull
+    private synchronized Counters copy() {
+      Counters copy = new Counters();
+      copy.add(this, 1);
+      return copy;
+    }
+
+    @Override
+    public String toString() {
+      return myFiles + " files, " + StringUtil.formatFileSize(myBytes) + ", " + myMapSize + " keys, " +
+             "mapping " + myMappingTime / 1000000 + "ms, storage update " + myStorageUpdateTime / 1000000 + "ms";
+    }
+  }
+
+  private final ConcurrentMap<ID<?, ?>, ConcurrentMap<FileType, Counters>> myCounters = ContainerUtil.newConcurrentMap();
+
+  void addFile(@NotNull ID<?, ?> indexId, @NotNull FileType fileType, int bytes, int mapSize, long mappingTime, long storageUpdateTime) {
+    ConcurrentMap<FileType, Counters> byFileType = myCounters.get(indexId);
+    if (byFileType == null) {
+      byFileType = ConcurrencyUtil.cacheOrGet(myCounters, indexId, ContainerUtil.<FileType, Counters>newConcurrentMap());
+    }
+    Counters counters = byFileType.get(fileType);
+    if (counters == null) {
+      counters = ConcurrencyUtil.cacheOrGet(byFileType, fileType, new Counters());
+    }
+    counters.addFile(bytes, mapSize, mappingTime, storageUpdateTime);
+  }
+
+  @NotNull
+  public Map<ID<?, ?>, Counters> getCountersByIndex() {
+    return groupBy(copyCounters(), (indexId, fileType) -> indexId);
+  }
+
+  @NotNull
+  public Map<FileType, Counters> getCountersByFileType() {
+    return groupBy(copyCounters(), (indexId, fileType) -> fileType);
+  }
+
+  @NotNull
+  public Snapshot takeSnapshot() {
+    return new Snapshot();
+  }
+
+  public class Snapshot {
+    private final Map<ID<?, ?>, Map<FileType, Counters>> myStartCounters = copyCounters();
+    private final long myStartMillis = System.currentTimeMillis();
+
+    private Snapshot() {
+    }
+
+    public void logStatisticsSinceCreation(@NotNull String activityName) {
+      Map<ID<?, ?>, Map<FileType, Counters>> counters = copyCounters();
+      for (Map.Entry<ID<?, ?>, Map<FileType, Counters>> entry : counters.entrySet()) {
+        Map<FileType, Counters> startCounters = myStartCounters.get(entry.getKey());
+        if (startCounters == null) continue;
+        for (Map.Entry<FileType, Counters> fileTypeEntry : entry.getValue().entrySet()) {
+          Counters start = startCounters.get(fileTypeEntry.getKey());
+          if (start != null) fileTypeEntry.getValue().add(start, -1);
+        }
+      }
+
+      StringBuilder report = new StringBuilder();
+      report.append(activityName).append(" took ").append(System.currentTimeMillis() - myStartMillis).append("ms");
+      appendTop(report, "indices", groupBy(counters, (indexId, fileType) -> indexId));
+      appendTop(report, "file types", groupBy(counters, (indexId, fileType) -> fileType.getName()));
+      LOG.info(report.toString());
+    }
+  }
+
+  private static void appendTop(@NotNull StringBuilder report, @NotNull String title, @NotNull Map<?, Counters> counters) {
+    List<Map.Entry<?, Counters>> entries = new ArrayList<>(counters.entrySet());
+    entries.removeIf(entry -> entry.getValue().getFiles() == 0);
+    entries.sort(Comparator.comparingLong((Map.Entry<?, Counters> entry) -> entry.getValue().getTotalTimeNanos()).reversed());
+
+    report.append("\nslowest ").append(title).append(':');
+    for (Map.Entry<?, Counters> entry : entries.subList(0, Math.min(REPORT_SIZE, entries.size()))) {
+      report.append("\n  ").append(entry.getKey()).append(": ").append(entry.getValue());
+    }
+  }
+
+  @NotNull
+  private Map<ID<?, ?>, Map<FileType, Counters>> copyCounters() {
+    Map<ID<?, ?>, Map<FileType, Counters>> result = new THashMap<>();
+    for (Map.Entry<ID<?, ?>, ConcurrentMap<FileType, Counters>> entry : myCounters.entrySet()) {
+      Map<FileType, Counters> byFileType = new THashMap<>();
+      for (Map.Entry<FileType, Counters> fileTypeEntry : entry.getValue().entrySet()) {
+        byFileType.put(fileTypeEntry.getKey(), fileTypeEntry.getValue().copy());
+      }
+      result.put(entry.getKey(), byFileType);
+    }
+    return result;
+  }
+
+  private interface Grouping<K> {
+    K getKey(@NotNull ID<?, ?> indexId, @NotNull FileType fileType);
+  }
+
+  @NotNull
+  private static <K> Map<K, Counters> groupBy(@NotNull Map<ID<?, ?>, Map<FileType, Counters>> counters, @NotNull Grouping<K> grouping) {
+    Map<K, Counters> result = new THashMap<>();
+    for (Map.Entry<ID<?, ?>, Map<FileType, Counters>> entry : counters.entrySet()) {
+      for (Map.Entry<FileType, Counters> fileTypeEntry : entry.getValue().entrySet()) {
+        K key = grouping.getKey(entry.getKey(), fileTypeEntry.getKey());
+        Counters group = result.get(key);
+        if (group == null) result.put(key, group = new Counters());
+        group.add(fileTypeEntry.getValue(), 1);
+      }
+    }
+    return result;
+  }
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright 2013-2016 consulo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.util.indexing;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.io.ByteSequence;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.newvfs.persistent.ContentHashesUtil;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import com.intellij.util.io.DataInputOutputUtil;
+import com.intellij.util.io.IOUtil;
+import com.intellij.util.io.PersistentHashMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.TestOnly;
+
+import java.io.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Index values computed in advance for files of SDKs and libraries, e.g. by a build which indexes them once.
+ * <p/>
+ * The values are kept in the form of the snapshots of {@link SnapshotInputMappings}, but keyed by the content hash itself
+ * instead of its local id, so the data exported on one machine can be used on another one.
+ * A directory given by <code>idea.prebuilt.indices.dir</code> is never opened in place: its data is copied into the index
+ * directory of the system directory first, files with known contents are not indexed again.
+ * The copying is done in background, until it is finished the files are indexed as if there were no prebuilt data.
+ * Running with <code>idea.prebuilt.indices.export.dir</code> (and a clean system directory) writes the computed values there.
+ */
+class PrebuiltIndexStorage {
+  private static final Logger LOG = Logger.getInstance(PrebuiltIndexStorage.class);
+
+  private static final String MOUNTED_DIR = System.getProperty("idea.prebuilt.indices.dir");
+  private static final String EXPORT_DIR = System.getProperty("idea.prebuilt.indices.export.dir");
+  private static final int VERSION = 1;
+
+  private static final ExecutorService ourCopyingExecutor = AppExecutorUtil.createBoundedApplicationPoolExecutor("Prebuilt Indices Copying", 1);
+
+  private final File myFile;
+  private final boolean myReadOnly;
+  private volatile PersistentHashMap<byte[], ByteSequence> myValues;
+  private boolean myClosed; // guarded by this
+  private Future<?> myOpening;
+
+  private PrebuiltIndexStorage(@NotNull File file, boolean readOnly) {
+    myFile = file;
+    myReadOnly = readOnly;
+  }
+
+  /**
+   * @return null if there is no data for the index in the mounted directory or it was built for another version of the index
+   */
+  @Nullable
+  static PrebuiltIndexStorage openMounted(@NotNull ID<?, ?> indexId, int indexVersion) {
+    if (MOUNTED_DIR == null) return null;
+    return openMounted(new File(MOUNTED_DIR, indexId.toString()), new File(IndexInfrastructure.getIndexRootDir(indexId), "prebuilt"),
+                       indexVersion);
+  }
+
+  @Nullable
+  static PrebuiltIndexStorage openMounted(@NotNull File dir, @NotNull File copy, int indexVersion) {
+    File versionFile = new File(dir, "version");
+    if (!versionFile.exists()) return null;
+    if (versionDiffers(versionFile, indexVersion)) {
+      LOG.info("Prebuilt index data in " + dir + " is ignored as it was built for another version of the index");
+      return null;
+    }
+
+    PrebuiltIndexStorage storage = new PrebuiltIndexStorage(new File(copy, "values"), true);
+    if (isUpToDateCopy(dir, copy)) {
+      if (!storage.openCopy(copy)) return null;
+    }
+    else {
+      storage.myOpening = ourCopyingExecutor.submit(() -> {
+        try {
+          FileUtil.delete(copy);
+          FileUtil.copyDir(dir, copy);
+        }
+        catch (IOException e) {
+          LOG.warn("Cannot copy prebuilt index data from " + dir, e);
+          FileUtil.delete(copy);
+          return;
+        }
+        storage.openCopy(copy);
+      });
+    }
+    return storage;
+  }
+
+  private boolean openCopy(@NotNull File copy) {
+    try {
+      open();
+      return true;
+    }
+    catch (IOException e) {
+      LOG.warn("Cannot open prebuilt index data in " + copy, e);
+      FileUtil.delete(copy);
+      return false;
+    }
+  }
+
+  private static boolean isUpToDateCopy(@NotNull File dir, @NotNull File copy) {
+    File[] files = dir.listFiles();
+    if (files == null) return false;
+    for (File file : files) {
+      File copied = new File(copy, file.getName());
+      if (!copied.isFile() || copied.length() != file.length() || copied.lastModified() != file.lastModified()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Nullable
+  static PrebuiltIndexStorage openExport(@NotNull ID<?, ?> indexId, int indexVersion) throws IOException {
+    if (EXPORT_DIR == null) return null;
+    return openExport(new File(EXPORT_DIR, indexId.toString()), indexVersion);
+  }
+
+  @NotNull
+  static PrebuiltIndexStorage openExport(@NotNull File dir, int indexVersion) throws IOException {
+    File versionFile = new File(dir, "version");
+    if (versionDiffers(versionFile, indexVersion)) {
+      FileUtil.delete(dir);
+      writeVersion(versionFile, indexVersion);
+    }
+
+    PrebuiltIndexStorage storage = new PrebuiltIndexStorage(new File(dir, "values"), false);
+    try {
+      storage.open();
+    }
+    catch (IOException e) {
+      IOUtil.deleteAllFilesStartingWith(storage.myFile);
+      throw e;
+    }
+    return storage;
+  }
+
+  private synchronized void open() throws IOException {
+    if (myClosed) return;
+    myValues = new PersistentHashMap<byte[], ByteSequence>(myFile, new ContentHashesUtil.ContentHashesDescriptor(),
+                                                          ByteSequenceDataExternalizer.INSTANCE) {
+      @Override
+      protected boolean isReadOnly() {
+        return myReadOnly;
+      }
+    };
+  }
+
+  @TestOnly
+  void waitForOpening() throws ExecutionException, InterruptedException {
+    if (myOpening != null) myOpening.get();
+  }
+
+  /**
+   * @return null if the content is not known or the data is not copied yet
+   */
+  @Nullable
+  ByteSequence get(@NotNull byte[] contentHash) throws IOException {
+    PersistentHashMap<byte[], ByteSequence> values = myValues;
+    return values == null ? null : values.get(contentHash);
+  }
+
+  void put(@NotNull byte[] contentHash, @NotNull ByteSequence value) throws IOException {
+    myValues.put(contentHash, value);
+  }
+
+  void flush() {
+    PersistentHashMap<byte[], ByteSequence> values = myValues;
+    if (values != null) values.force();
+  }
+
+  synchronized void close() throws IOException {
+    myClosed = true;
+    if (myValues != null) myValues.close();
+  }
+
+  private static boolean versionDiffers(@NotNull File versionFile, int indexVersion) {
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(versionFile)))) {
+      return DataInputOutputUtil.readINT(in) != indexVersion || DataInputOutputUtil.readINT(in) != VERSION;
+    }
+    catch (IOException e) {
+      return true;
+    }
+  }
+
+  private static void writeVersion(@NotNull File versionFile, int indexVersion) throws IOException {
+    FileUtil.createParentDirs(versionFile);
+    try (DataOutputStream out = new DataOutputStream(new FileOutputStream(versionFile))) {
+      DataInputOutputUtil.writeINT(out, indexVersion);
+      DataInputOutputUtil.writeINT(out, VERSION);
+    }
+  }
+}
@@ -54,6 +54,8 @@ public class SnapshotInputMappings<Key, Value, Input> {
   private volatile PersistentHashMap<Integer, ByteSequence> myContents;
   private volatile PersistentHashMap<Integer, Integer> myInputsSnapshotMapping;
   private volatile PersistentHashMap<Integer, String> myIndexingTrace;
+  private volatile PrebuiltIndexStorage myPrebuiltContents;
+  private volatile PrebuiltIndexStorage myExportedContents;
 
   private final DataExternalizer<Collection<Key>> mySnapshotIndexExternalizer;
   private boolean myIsPsiBackedIndex;
@@ -111,6 +113,10 @@ public class SnapshotInputMappings<Key, Value, Input> {
       if (doReadSavedPersistentData) {
         if (!myContents.isBusyReading() || DebugAssertions.EXTRA_SANITY_CHECKS) { // avoid blocking read, we can calculate index value
           ByteSequence bytes = readContents(hashId);
+          if (bytes == null && myPrebuiltContents != null) {
+            bytes = myPrebuiltContents.get(ContentHashesSupport.getContentHash(hashId));
+            if (bytes != null) saveContents(hashId, bytes);
+          }
 
           if (bytes != null) {
             data = deserializeSavedPersistentData(bytes);
@@ -194,6 +200,7 @@ public class SnapshotInputMappings<Key, Value, Input> {
     if (myContents != null) myContents.force();
     if (myInputsSnapshotMapping != null) myInputsSnapshotMapping.force();
     if (myIndexingTrace != null) myIndexingTrace.force();
+    if (myExportedContents != null) myExportedContents.flush();
   }
 
   public void clear() throws IOException {
@@ -216,6 +223,8 @@ public class SnapshotInputMappings<Key, Value, Input> {
     if (myContents != null) myContents.close();
     if (myInputsSnapshotMapping != null) myInputsSnapshotMapping.close();
     if (myIndexingTrace != null) myIndexingTrace.close();
+    if (myPrebuiltContents != null) myPrebuiltContents.close();
+    if (myExportedContents != null) myExportedContents.close();
   }
 
   private void createMaps() throws IOException {
@@ -223,6 +232,8 @@ public class SnapshotInputMappings<Key, Value, Input> {
     myIndexingTrace = DebugAssertions.EXTRA_SANITY_CHECKS ? createIndexingTrace() : null;
     myInputsSnapshotMapping =
             !SharedIndicesData.ourFileSharedIndicesEnabled || SharedIndicesData.DO_CHECKS ? createInputSnapshotMapping() : null;
+    myPrebuiltContents = PrebuiltIndexStorage.openMounted(myIndexId, myIndexExtension.getVersion());
+    myExportedContents = PrebuiltIndexStorage.openExport(myIndexId, myIndexExtension.getVersion());
   }
 
   private PersistentHashMap<Integer, ByteSequence> createContentsIndex() throws IOException {
@@ -464,15 +475,17 @@ public class SnapshotInputMappings<Key, Value, Input> {
         }
       }
 
-      saveContents(id, out);
+      saveContents(id, new ByteSequence(out.getInternalBuffer(), 0, out.size()));
     } catch (IOException ex) {
       throw new RuntimeException(ex);
     }
     return true;
   }
 
-  private void saveContents(int id, BufferExposingByteArrayOutputStream out) throws IOException {
-    ByteSequence byteSequence = new ByteSequence(out.getInternalBuffer(), 0, out.size());
+  private void saveContents(int id, ByteSequence byteSequence) throws IOException {
+    if (myExportedContents != null) {
+      myExportedContents.put(ContentHashesSupport.getContentHash(id), byteSequence);
+    }
     if (SharedIndicesData.ourFileSharedIndicesEnabled) {
       if (SharedIndicesData.DO_CHECKS) {
         synchronized (myContents) {
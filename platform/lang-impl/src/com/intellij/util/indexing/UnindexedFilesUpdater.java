@@ -90,6 +90,7 @@ public class UnindexedFilesUpdater extends DumbModeTask {
     }
 
     snapshot = PerformanceWatcher.takeSnapshot();
+    IndexingStatistics.Snapshot statisticsSnapshot = myIndex.getIndexingStatistics().takeSnapshot();
 
     if (trackResponsiveness) LOG.info("Unindexed files update started: " + files.size() + " files to update");
 
@@ -98,7 +99,10 @@ public class UnindexedFilesUpdater extends DumbModeTask {
 
     indexFiles(indicator, files);
 
-    if (trackResponsiveness) snapshot.logResponsivenessSinceCreation("Unindexed files update");
+    if (trackResponsiveness) {
+      snapshot.logResponsivenessSinceCreation("Unindexed files update");
+      if (IndexingStatistics.ENABLED) statisticsSnapshot.logStatisticsSinceCreation("Unindexed files update");
+    }
   }
 
   private void indexFiles(ProgressIndicator indicator, List<VirtualFile> files) {
@@ -66,7 +66,17 @@ public final class VfsAwareMapIndexStorage<Key, Value> extends MapIndexStorage<K
                                  final int cacheSize,
                                  boolean keyIsUniqueForIndexedFile,
                                  boolean buildKeyHashToVirtualFileMapping) throws IOException {
-    super(storageFile, keyDescriptor, valueExternalizer, cacheSize, keyIsUniqueForIndexedFile, false);
+    this(storageFile, keyDescriptor, valueExternalizer, cacheSize, 0, keyIsUniqueForIndexedFile, buildKeyHashToVirtualFileMapping);
+  }
+
+  public VfsAwareMapIndexStorage(@NotNull File storageFile,
+                                 @NotNull KeyDescriptor<Key> keyDescriptor,
+                                 @NotNull DataExternalizer<Value> valueExternalizer,
+                                 final int cacheSize,
+                                 final int loadedValuesCacheSize,
+                                 boolean keyIsUniqueForIndexedFile,
+                                 boolean buildKeyHashToVirtualFileMapping) throws IOException {
+    super(storageFile, keyDescriptor, valueExternalizer, cacheSize, loadedValuesCacheSize, keyIsUniqueForIndexedFile, false);
     myBuildKeyHashToVirtualFileMapping = buildKeyHashToVirtualFileMapping && FileBasedIndex.ourEnableTracingOfKeyHashToVirtualFileMapping;
     initMapAndCache();
   }
@@ -99,6 +99,9 @@ public class VfsAwareMapReduceIndex<Key, Value, Input> extends MapReduceIndex<Ke
       data = mapInput(content);
       hashId = 0;
     }
+    if (IndexingStatistics.ENABLED && content instanceof UserDataHolder) {
+      ((UserDataHolder)content).putUserData(FileBasedIndexImpl.ourMapSizeKey, data.size());
+    }
     return createUpdateData(data, () -> {
       if (mySnapshotInputMappings != null && isContentPhysical) {
         return new MapInputDataDiffBuilder<>(inputId, mySnapshotInputMappings.readInputKeys(inputId));
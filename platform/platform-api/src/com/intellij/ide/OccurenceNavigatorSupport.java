@@ -99,12 +99,8 @@ public abstract class OccurenceNavigatorSupport implements OccurenceNavigator {
 
     DefaultMutableTreeNode root = (DefaultMutableTreeNode)tree.getModel().getRoot();
 
-    Enumeration enumeration = root.preorderEnumeration();
     List<TreeNode> nodes = new ArrayList<>();
-    while (enumeration.hasMoreElements()) {
-      TreeNode node = (TreeNode)enumeration.nextElement();
-      nodes.add(node);
-    }
+    collectNodes(root, nodes);
 
     DefaultMutableTreeNode result = null;
 
@@ -151,6 +147,26 @@ public abstract class OccurenceNavigatorSupport implements OccurenceNavigator {
     return result;
   }
 
+  private void collectNodes(@NotNull TreeNode node, @NotNull List<TreeNode> nodes) {
+    nodes.add(node);
+    for (TreeNode child : getChildren(node)) {
+      collectNodes(child, nodes);
+    }
+  }
+
+  /**
+   * Children of the node which are searched for occurrences, the children in the tree by default
+   */
+  @NotNull
+  protected List<? extends TreeNode> getChildren(@NotNull TreeNode node) {
+    List<TreeNode> children = new ArrayList<>(node.getChildCount());
+    Enumeration enumeration = node.children();
+    while (enumeration.hasMoreElements()) {
+      children.add((TreeNode)enumeration.nextElement());
+    }
+    return children;
+  }
+
   protected DefaultMutableTreeNode getNode(TreeNode node, TreeNode selectedNode, boolean[] ready) {
     if (!ready[0]) {
       if (node == selectedNode) {
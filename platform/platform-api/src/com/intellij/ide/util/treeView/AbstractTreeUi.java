@@ -1298,8 +1298,8 @@ public class AbstractTreeUi {
         processInnerChange(new TreeRunnable("AbstractTreeUi.processAlwaysLeaf") {
           @Override
           public void perform() {
+            removeNodesFromParent(node, Arrays.asList(children), true);
             for (TreeNode each : children) {
-              removeNodeFromParent((MutableTreeNode)each, true);
               disposeNode((DefaultMutableTreeNode)each);
             }
           }
@@ -1353,8 +1353,10 @@ public class AbstractTreeUi {
 
     removeFromUnbuilt(node);
 
+    final List<DefaultMutableTreeNode> obsoleteNodes = new ArrayList<>();
+
     //noinspection unchecked
-    processExistingNodes(node, elementToIndexMap, pass, canSmartExpand(node, toSmartExpand), forceUpdate, wasExpanded, preloadedChildren)
+    processExistingNodes(node, elementToIndexMap, pass, canSmartExpand(node, toSmartExpand), forceUpdate, wasExpanded, preloadedChildren, obsoleteNodes)
             .done(new TreeConsumer("AbstractTreeUi.updateNodeChildrenNow: on done processExistingNodes") {
               @Override
               public void perform() {
@@ -1363,6 +1365,7 @@ public class AbstractTreeUi {
                   return;
                 }
 
+                removeObsoleteNodes(node, obsoleteNodes);
                 removeLoading(node, false);
 
                 final boolean expanded = isExpanded(node, wasExpanded);
@@ -1419,12 +1422,49 @@ public class AbstractTreeUi {
             }).rejected(new TreeConsumer<Throwable>("AbstractTreeUi.updateNodeChildrenNow: on reject processExistingNodes") {
       @Override
       public void perform() {
+        if (!isDisposed(node)) {
+          removeObsoleteNodes(node, obsoleteNodes);
+        }
         removeFromUpdatingChildren(node);
         processNodeActionsIfReady(node);
       }
     });
   }
 
+  /**
+   * Removes the children whose elements are not among the children of the parent element anymore,
+   * collected by {@link #processExistingNode} to remove them with one model event once all existing children are processed.
+   */
+  private void removeObsoleteNodes(@NotNull DefaultMutableTreeNode parentNode, @NotNull List<DefaultMutableTreeNode> obsoleteNodes) {
+    if (obsoleteNodes.isEmpty()) return;
+
+    final List<DefaultMutableTreeNode> toRemove = new ArrayList<>(obsoleteNodes.size());
+    for (DefaultMutableTreeNode each : obsoleteNodes) {
+      if (each.getParent() == parentNode) {
+        toRemove.add(each);
+      }
+    }
+    obsoleteNodes.clear();
+    if (toRemove.isEmpty()) return;
+
+    if (parentNode.getChildCount() == toRemove.size() && myTree.isExpanded(new TreePath(parentNode.getPath()))) {
+      insertLoadingNode(parentNode, false);
+    }
+
+    final List<Object> disposedElements = new ArrayList<>(toRemove.size());
+    for (DefaultMutableTreeNode each : toRemove) {
+      disposedElements.add(getElementFor(each));
+    }
+
+    removeNodesFromParent(parentNode, toRemove, false);
+    for (DefaultMutableTreeNode each : toRemove) {
+      disposeNode(each);
+    }
+    for (Object each : disposedElements) {
+      adjustSelectionOnChildRemove(parentNode, -1, each);
+    }
+  }
+
   private boolean isDisposed(@NotNull DefaultMutableTreeNode node) {
     return !node.isNodeAncestor((DefaultMutableTreeNode)myTree.getModel().getRoot());
   }
@@ -1665,7 +1705,8 @@ public class AbstractTreeUi {
                                           final boolean canSmartExpand,
                                           final boolean forceUpdate,
                                           final boolean wasExpaned,
-                                          @Nullable final LoadedChildren preloaded) {
+                                          @Nullable final LoadedChildren preloaded,
+                                          @NotNull final List<DefaultMutableTreeNode> obsoleteNodes) {
     final List<TreeNode> childNodes = TreeUtil.listChildren(node);
     return maybeYeild(new AsyncRunnable() {
       @NotNull
@@ -1700,7 +1741,8 @@ public class AbstractTreeUi {
                 descriptor = descriptorFromNode;
               }
 
-              return processExistingNode(eachChild, descriptor, node, elementToIndexMap, pass, canSmartExpand, childForceUpdate, preloaded);
+              return processExistingNode(eachChild, descriptor, node, elementToIndexMap, pass, canSmartExpand, childForceUpdate, preloaded,
+                                         obsoleteNodes);
             }
           }, pass, node));
 
@@ -2978,7 +3020,8 @@ public class AbstractTreeUi {
                                          @NotNull final TreeUpdatePass pass,
                                          final boolean canSmartExpand,
                                          final boolean forceUpdate,
-                                         @Nullable LoadedChildren parentPreloadedChildren) {
+                                         @Nullable LoadedChildren parentPreloadedChildren,
+                                         @NotNull final List<DefaultMutableTreeNode> obsoleteNodes) {
     if (pass.isExpired()) {
       return Promises.<Void>rejectedPromise();
     }
@@ -3079,6 +3122,11 @@ public class AbstractTreeUi {
             if (TreeBuilderUtil.isNodeOrChildSelected(myTree, childNode)) {
               selectedIndex = parentNode.getIndex(childNode);
             }
+            else if (childNode.getParent() == parentNode) {
+              obsoleteNodes.add(childNode);
+              result.setResult(null);
+              return;
+            }
 
             if (childNode.getParent() instanceof DefaultMutableTreeNode) {
               final DefaultMutableTreeNode parent = (DefaultMutableTreeNode)childNode.getParent();
@@ -3235,6 +3283,55 @@ public class AbstractTreeUi {
     });
   }
 
+  /**
+   * Removes the children of the parent with one {@link DefaultTreeModel#nodesWereRemoved} event rather than an event per child,
+   * so the tree recomputes its rows once however many children are removed.
+   */
+  private void removeNodesFromParent(@NotNull final DefaultMutableTreeNode parentNode,
+                                     @NotNull final List<? extends TreeNode> nodes,
+                                     final boolean willAdjustSelection) {
+    if (nodes.size() == 1) {
+      removeNodeFromParent((MutableTreeNode)nodes.get(0), willAdjustSelection);
+      return;
+    }
+
+    processInnerChange(new TreeRunnable("AbstractTreeUi.removeNodesFromParent") {
+      @Override
+      public void perform() {
+        final Set<TreeNode> toRemove = ContainerUtil.newIdentityTroveSet(nodes.size());
+        for (TreeNode each : nodes) {
+          if (each.getParent() != parentNode) continue;
+
+          if (willAdjustSelection) {
+            final TreePath path = getPathFor(each);
+            if (myTree.isPathSelected(path)) {
+              myTree.removeSelectionPath(path);
+            }
+          }
+          toRemove.add(each);
+        }
+        if (toRemove.isEmpty()) return;
+
+        // one pass over the children instead of looking up the index of every removed one
+        final int[] indices = new int[toRemove.size()];
+        final Object[] children = new Object[toRemove.size()];
+        int i = 0;
+        for (int index = 0; index < parentNode.getChildCount() && i < indices.length; index++) {
+          TreeNode child = parentNode.getChildAt(index);
+          if (toRemove.contains(child)) {
+            indices[i] = index;
+            children[i] = child;
+            i++;
+          }
+        }
+        for (int j = indices.length - 1; j >= 0; j--) {
+          parentNode.remove(indices[j]);
+        }
+        myTreeModel.nodesWereRemoved(parentNode, indices, children);
+      }
+    });
+  }
+
   private void expandPath(@NotNull final TreePath path, final boolean canSmartExpand) {
     processInnerChange(new TreeRunnable("AbstractTreeUi.expandPath") {
       @Override
@@ -44,6 +44,12 @@ import java.util.concurrent.atomic.AtomicBoolean;
 class AsyncFilterRunner {
   private static final Logger LOG = Logger.getInstance("#com.intellij.execution.impl.FilterRunner");
   private static final ExecutorService ourExecutor = AppExecutorUtil.createBoundedApplicationPoolExecutor("console filters", 1);
+  /**
+   * Chunks of lines are filtered concurrently if the filter is {@link Filter#isStateless() stateless}
+   */
+  private static final ExecutorService ourChunkExecutor =
+    AppExecutorUtil.createBoundedApplicationPoolExecutor("console filter chunks", Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+  static final int LINES_PER_CHUNK = 500;
   private final EditorHyperlinkSupport myHyperlinks;
   private final Editor myEditor;
   private final Map<AtomicBoolean, Future<FilterResults>> myPendingFilterResults = new LinkedHashMap<>();
@@ -56,19 +62,30 @@ class AsyncFilterRunner {
   void highlightHyperlinks(final Filter customFilter, final int startLine, final int endLine) {
     if (endLine < 0) return;
 
-    Computable<FilterResults> bgComputation = highlightHyperlinksAsync(customFilter, startLine, endLine);
+    HighlightTask task = highlightHyperlinksAsync(customFilter, startLine, endLine);
     if (ApplicationManager.getApplication().isWriteAccessAllowed()) {
-      bgComputation.compute().applyHighlights(myHyperlinks);
+      try {
+        task.compute().applyHighlights(myHyperlinks);
+      }
+      finally {
+        task.disposeChunks();
+      }
     }
     else {
-      runFiltersInBackground(bgComputation);
+      runFiltersInBackground(task);
     }
   }
 
-  private void runFiltersInBackground(Computable<FilterResults> bgComputation) {
+  private void runFiltersInBackground(HighlightTask task) {
     AtomicBoolean handled = new AtomicBoolean();
     Future<FilterResults> future = ourExecutor.submit(() -> {
-      FilterResults results = computeWithWritePriority(bgComputation);
+      FilterResults results;
+      try {
+        results = task.myConcurrent ? computeConcurrently(task) : computeWithWritePriority(task::compute, FilterResults.EMPTY);
+      }
+      finally {
+        task.disposeChunks();
+      }
       if (!results.myResults.isEmpty()) {
         ApplicationManager.getApplication().invokeLater(() -> {
           results.applyHighlights(myHyperlinks);
@@ -82,8 +99,8 @@ class AsyncFilterRunner {
   }
 
   @NotNull
-  private FilterResults computeWithWritePriority(Computable<FilterResults> bgComputation) {
-    Ref<FilterResults> applyResults = Ref.create(FilterResults.EMPTY);
+  private <T> T computeWithWritePriority(@NotNull Computable<T> bgComputation, @NotNull T defaultValue) {
+    Ref<T> applyResults = Ref.create(defaultValue);
     Runnable computeInReadAction = () -> {
       if (myEditor.isDisposed()) return;
       applyResults.set(bgComputation.compute());
@@ -94,6 +111,29 @@ class AsyncFilterRunner {
     return applyResults.get();
   }
 
+  /**
+   * Every chunk is filtered in its own read action, so a write action pending restarts only the chunks being filtered at the moment.
+   * The results are merged in the order of the chunks.
+   */
+  @NotNull
+  private FilterResults computeConcurrently(@NotNull HighlightTask task) {
+    List<Future<List<Filter.Result>>> futures = new ArrayList<>(task.myChunks.size());
+    for (LineChunk chunk : task.myChunks) {
+      futures.add(ourChunkExecutor.submit(() -> computeWithWritePriority(() -> chunk.compute(task.myMarker), Collections.emptyList())));
+    }
+
+    List<Filter.Result> results = new ArrayList<>();
+    for (Future<List<Filter.Result>> future : futures) {
+      try {
+        results.addAll(future.get());
+      }
+      catch (Exception e) {
+        throw new RuntimeException(e);
+      }
+    }
+    return task.createResults(results);
+  }
+
   private boolean handleSynchronouslyIfQuick(AtomicBoolean handled, Future<FilterResults> future, long timeout) {
     try {
       future.get(timeout, TimeUnit.MILLISECONDS).applyHighlights(myHyperlinks);
@@ -126,23 +166,20 @@ class AsyncFilterRunner {
   }
 
   @NotNull
-  private Computable<FilterResults> highlightHyperlinksAsync(Filter filter, int startLine, int endLine) {
+  private HighlightTask highlightHyperlinksAsync(Filter filter, int startLine, int endLine) {
     Document document = myEditor.getDocument();
     int markerOffset = document.getLineEndOffset(endLine);
     RangeMarker marker = document.createRangeMarker(markerOffset, markerOffset);
-    List<LineHighlighter> tasks = new ArrayList<>();
-    for (int i = startLine; i <= endLine; i++) {
-       tasks.add(processLine(document, filter, i));
-    }
-    return () -> {
-      List<Filter.Result> results = new ArrayList<>();
-      for (LineHighlighter task : tasks) {
-        ProgressManager.checkCanceled();
-        if (!marker.isValid()) return FilterResults.EMPTY;
-        ContainerUtil.addIfNotNull(results, task.compute());
+    List<LineChunk> chunks = new ArrayList<>();
+    for (int chunkStart = startLine; chunkStart <= endLine; chunkStart += LINES_PER_CHUNK) {
+      int chunkEnd = Math.min(endLine, chunkStart + LINES_PER_CHUNK - 1);
+      LineChunk chunk = new LineChunk(document.createRangeMarker(document.getLineStartOffset(chunkStart), document.getLineEndOffset(chunkEnd)));
+      for (int i = chunkStart; i <= chunkEnd; i++) {
+        chunk.myLines.add(processLine(document, filter, i));
       }
-      return new FilterResults(markerOffset, marker, results);
-    };
+      chunks.add(chunk);
+    }
+    return new HighlightTask(markerOffset, marker, chunks, chunks.size() > 1 && filter.isStateless());
   }
 
   @NotNull
@@ -169,6 +206,66 @@ class AsyncFilterRunner {
   private interface LineHighlighter extends NullableComputable<Filter.Result> {
   }
 
+  private static class HighlightTask {
+    private final int myMarkerOffset;
+    private final RangeMarker myMarker;
+    private final List<LineChunk> myChunks;
+    private final boolean myConcurrent;
+
+    HighlightTask(int markerOffset, RangeMarker marker, List<LineChunk> chunks, boolean concurrent) {
+      myMarkerOffset = markerOffset;
+      myMarker = marker;
+      myChunks = chunks;
+      myConcurrent = concurrent;
+    }
+
+    @NotNull
+    FilterResults compute() {
+      List<Filter.Result> results = new ArrayList<>();
+      for (LineChunk chunk : myChunks) {
+        results.addAll(chunk.compute(myMarker));
+      }
+      return createResults(results);
+    }
+
+    @NotNull
+    FilterResults createResults(List<Filter.Result> results) {
+      return myMarker.isValid() ? new FilterResults(myMarkerOffset, myMarker, results) : FilterResults.EMPTY;
+    }
+
+    /**
+     * The chunk ranges are needed only while the filters run, the results are moved by {@link #myMarker} alone
+     */
+    void disposeChunks() {
+      for (LineChunk chunk : myChunks) {
+        chunk.myRange.dispose();
+      }
+    }
+  }
+
+  private static class LineChunk {
+    private final RangeMarker myRange;
+    private final List<LineHighlighter> myLines = new ArrayList<>();
+
+    LineChunk(RangeMarker range) {
+      myRange = range;
+    }
+
+    @NotNull
+    List<Filter.Result> compute(@NotNull RangeMarker endMarker) {
+      // the lines of the chunk are already removed from the console by its cyclic buffer
+      if (!myRange.isValid()) return Collections.emptyList();
+
+      List<Filter.Result> results = new ArrayList<>();
+      for (LineHighlighter line : myLines) {
+        ProgressManager.checkCanceled();
+        if (!endMarker.isValid()) return Collections.emptyList();
+        ContainerUtil.addIfNotNull(results, line.compute());
+      }
+      return results;
+    }
+  }
+
   private static class FilterResults {
     static final FilterResults EMPTY = new FilterResults(0, null, Collections.emptyList());
     private int myInitialMarkerOffset;
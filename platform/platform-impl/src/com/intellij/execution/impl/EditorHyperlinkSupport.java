@@ -265,6 +265,11 @@ public class EditorHyperlinkSupport {
         Result result = customFilter.applyFilter(line, entireLength);
         return result != null ? result : predefinedMessageFilter.applyFilter(line, entireLength);
       }
+
+      @Override
+      public boolean isStateless() {
+        return customFilter.isStateless() && predefinedMessageFilter.isStateless();
+      }
     }, line1, endLine);
   }
 
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2013-2016 consulo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.internal;
+
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.ide.CopyPasteManager;
+import com.intellij.openapi.project.DumbAwareAction;
+import com.intellij.util.messages.impl.MessageBusStatistics;
+import consulo.annotations.RequiredDispatchThread;
+import org.jetbrains.annotations.NotNull;
+
+import java.awt.datatransfer.StringSelection;
+import java.util.List;
+
+/**
+ * Dumps collected {@link MessageBusStatistics} to the log and clipboard
+ */
+public class DumpMessageBusStatisticsAction extends DumbAwareAction {
+  private static final Logger LOG = Logger.getInstance(DumpMessageBusStatisticsAction.class);
+
+  @RequiredDispatchThread
+  @Override
+  public void actionPerformed(@NotNull AnActionEvent e) {
+    List<MessageBusStatistics.Entry> entries = MessageBusStatistics.getEntries();
+
+    StringBuilder builder = new StringBuilder();
+    builder.append("Message bus statistics (sample rate ").append(MessageBusStatistics.getSampleRate()).append("), ");
+    builder.append(entries.size()).append(" listeners:\n");
+    for (MessageBusStatistics.Entry entry : entries) {
+      builder.append(' ').append(entry).append('\n');
+    }
+
+    String text = builder.toString();
+    LOG.info(text);
+    try {
+      CopyPasteManager.getInstance().setContents(new StringSelection(text));
+    }
+    catch (Exception ignore) {
+    }
+  }
+
+  @RequiredDispatchThread
+  @Override
+  public void update(@NotNull AnActionEvent e) {
+    e.getPresentation().setEnabled(MessageBusStatistics.isEnabled() || !MessageBusStatistics.getEntries().isEmpty());
+  }
+}
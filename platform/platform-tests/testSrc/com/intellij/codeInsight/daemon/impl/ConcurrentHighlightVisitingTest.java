@@ -0,0 +1,374 @@
+/*
+ * Copyright 2013-2016 consulo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.codeInsight.daemon.impl;
+
+import com.intellij.codeInsight.daemon.DaemonCodeAnalyzer;
+import com.intellij.codeInsight.daemon.impl.analysis.HighlightInfoHolder;
+import com.intellij.extapi.psi.ASTWrapperPsiElement;
+import com.intellij.extapi.psi.PsiFileBase;
+import com.intellij.lang.*;
+import com.intellij.lexer.Lexer;
+import com.intellij.lexer.LexerBase;
+import com.intellij.openapi.extensions.Extensions;
+import com.intellij.openapi.fileTypes.FileType;
+import com.intellij.openapi.fileTypes.LanguageFileType;
+import com.intellij.openapi.fileTypes.ex.FileTypeManagerEx;
+import com.intellij.openapi.util.registry.Registry;
+import com.intellij.openapi.util.registry.RegistryValue;
+import com.intellij.psi.FileViewProvider;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.TokenType;
+import com.intellij.psi.tree.IElementType;
+import com.intellij.psi.tree.IFileElementType;
+import com.intellij.psi.tree.TokenSet;
+import com.intellij.testFramework.PsiTestExtensionUtil;
+import com.intellij.testFramework.fixtures.LightPlatformCodeInsightFixtureTestCase;
+import consulo.lang.LanguageVersion;
+import org.jetbrains.annotations.NotNull;
+
+import javax.swing.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Highlights a file of many top-level items with and without concurrent visiting of its subtrees and compares the results
+ */
+public class ConcurrentHighlightVisitingTest extends LightPlatformCodeInsightFixtureTestCase {
+  private static final Language LANGUAGE = new Language("CONCURRENT_VISITING_TEST") {
+  };
+  private static final IFileElementType FILE = new IFileElementType(LANGUAGE);
+  private static final IElementType WORD = new IElementType("WORD", LANGUAGE);
+  private static final IElementType SEMICOLON = new IElementType("SEMICOLON", LANGUAGE);
+  private static final IElementType ITEM = new IElementType("ITEM", LANGUAGE);
+  private static final LanguageFileType FILE_TYPE = new LanguageFileType(LANGUAGE) {
+    @NotNull
+    @Override
+    public String getId() {
+      return "CONCURRENT_VISITING_TEST";
+    }
+
+    @NotNull
+    @Override
+    public String getDescription() {
+      return "";
+    }
+
+    @NotNull
+    @Override
+    public String getDefaultExtension() {
+      return "cvt";
+    }
+
+    @Override
+    public Icon getIcon() {
+      return null;
+    }
+  };
+
+  private static final int ITEMS = 3000;
+
+  private final ParserDefinition myParserDefinition = new MyParserDefinition();
+  private final AtomicInteger myAnalyzeCount = new AtomicInteger();
+  private RegistryValue myConcurrentVisiting;
+  private boolean myWasConcurrentVisiting;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    FileTypeManagerEx.getInstanceEx().registerFileType(FILE_TYPE);
+    LanguageParserDefinitions.INSTANCE.addExplicitExtension(LANGUAGE, myParserDefinition);
+    PsiTestExtensionUtil.registerExtension(Extensions.getArea(getProject()), HighlightVisitor.EP_HIGHLIGHT_VISITOR,
+                                           new WarningVisitor(myAnalyzeCount), getTestRootDisposable());
+    myConcurrentVisiting = Registry.get("daemon.concurrent.visiting");
+    myWasConcurrentVisiting = myConcurrentVisiting.asBoolean();
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    try {
+      myConcurrentVisiting.setValue(myWasConcurrentVisiting);
+      LanguageParserDefinitions.INSTANCE.removeExplicitExtension(LANGUAGE, myParserDefinition);
+      FileTypeManagerEx.getInstanceEx().unregisterFileType(FILE_TYPE);
+    }
+    finally {
+      super.tearDown();
+    }
+  }
+
+  public void testSameHighlightsAsSequentialVisiting() {
+    StringBuilder text = new StringBuilder();
+    int bad = 0;
+    int warned = 0;
+    for (int i = 0; i < ITEMS; i++) {
+      text.append("item").append(i).append(" word");
+      if (i % 7 == 0) {
+        text.append(" bad");
+        bad++;
+      }
+      if (i % 11 == 0) {
+        text.append(" warn");
+        warned++;
+      }
+      text.append(";\n");
+    }
+    myFixture.configureByText(FILE_TYPE, text.toString());
+
+    myConcurrentVisiting.setValue(false);
+    List<String> sequential = highlight();
+    int sequentialAnalyzeCount = myAnalyzeCount.get();
+
+    myConcurrentVisiting.setValue(true);
+    List<String> concurrent = highlight();
+    // every chunk visited concurrently is analyzed by a visitor clone of its own
+    assertTrue(sequentialAnalyzeCount + " vs " + myAnalyzeCount.get(), myAnalyzeCount.get() > sequentialAnalyzeCount + 1);
+
+    assertEquals(bad, count(sequential, "Bad word"));
+    assertEquals(warned, count(sequential, "Warned item"));
+    assertEquals(sequential, concurrent);
+  }
+
+  @NotNull
+  private List<String> highlight() {
+    myAnalyzeCount.set(0);
+    DaemonCodeAnalyzer.getInstance(getProject()).restart();
+    List<String> result = new ArrayList<>();
+    for (HighlightInfo info : myFixture.doHighlighting()) {
+      result.add(info.getStartOffset() + ":" + info.getEndOffset() + ":" + info.getSeverity() + ":" + info.getDescription());
+    }
+    Collections.sort(result);
+    return result;
+  }
+
+  private static int count(@NotNull List<String> infos, @NotNull String description) {
+    int count = 0;
+    for (String info : infos) {
+      if (info.endsWith(":" + description)) count++;
+    }
+    return count;
+  }
+
+  /**
+   * Reports items containing the word "warn", counts the {@link #analyze} calls of all its clones
+   */
+  private static class WarningVisitor implements HighlightVisitor {
+    private final AtomicInteger myAnalyzeCount;
+    private HighlightInfoHolder myHolder;
+
+    private WarningVisitor(@NotNull AtomicInteger analyzeCount) {
+      myAnalyzeCount = analyzeCount;
+    }
+
+    @Override
+    public boolean suitableForFile(@NotNull PsiFile file) {
+      return file.getLanguage() == LANGUAGE;
+    }
+
+    @Override
+    public void visit(@NotNull PsiElement element) {
+      if (element.getNode().getElementType() == ITEM && element.getText().contains(" warn")) {
+        myHolder.add(HighlightInfo.newHighlightInfo(HighlightInfoType.WARNING).range(element).descriptionAndTooltip("Warned item").create());
+      }
+    }
+
+    @Override
+    public boolean analyze(@NotNull PsiFile file, boolean updateWholeFile, @NotNull HighlightInfoHolder holder, @NotNull Runnable action) {
+      myAnalyzeCount.incrementAndGet();
+      myHolder = holder;
+      try {
+        action.run();
+      }
+      finally {
+        myHolder = null;
+      }
+      return true;
+    }
+
+    @NotNull
+    @Override
+    public HighlightVisitor clone() {
+      return new WarningVisitor(myAnalyzeCount);
+    }
+
+    @Override
+    public int order() {
+      return 3;
+    }
+
+    @Override
+    public boolean isConcurrentVisitingSupported() {
+      return true;
+    }
+  }
+
+  private static class MyParserDefinition implements ParserDefinition {
+    @NotNull
+    @Override
+    public Lexer createLexer(@NotNull LanguageVersion languageVersion) {
+      return new MyLexer();
+    }
+
+    /**
+     * Every top-level item is a sequence of words ending with a semicolon, the word "bad" is a syntax error
+     */
+    @NotNull
+    @Override
+    public PsiParser createParser(@NotNull LanguageVersion languageVersion) {
+      return (root, builder, version) -> {
+        PsiBuilder.Marker file = builder.mark();
+        while (!builder.eof()) {
+          PsiBuilder.Marker item = builder.mark();
+          while (!builder.eof() && builder.getTokenType() != SEMICOLON) {
+            if ("bad".equals(builder.getTokenText())) {
+              PsiBuilder.Marker error = builder.mark();
+              builder.advanceLexer();
+              error.error("Bad word");
+            }
+            else {
+              builder.advanceLexer();
+            }
+          }
+          if (!builder.eof()) {
+            builder.advanceLexer();
+          }
+          item.done(ITEM);
+        }
+        file.done(root);
+        return builder.getTreeBuilt();
+      };
+    }
+
+    @NotNull
+    @Override
+    public IFileElementType getFileNodeType() {
+      return FILE;
+    }
+
+    @NotNull
+    @Override
+    public TokenSet getWhitespaceTokens(@NotNull LanguageVersion languageVersion) {
+      return TokenSet.create(TokenType.WHITE_SPACE);
+    }
+
+    @NotNull
+    @Override
+    public TokenSet getCommentTokens(@NotNull LanguageVersion languageVersion) {
+      return TokenSet.EMPTY;
+    }
+
+    @NotNull
+    @Override
+    public TokenSet getStringLiteralElements(@NotNull LanguageVersion languageVersion) {
+      return TokenSet.EMPTY;
+    }
+
+    @NotNull
+    @Override
+    public PsiElement createElement(@NotNull ASTNode node) {
+      return new ASTWrapperPsiElement(node);
+    }
+
+    @Override
+    public PsiFile createFile(@NotNull FileViewProvider viewProvider) {
+      return new PsiFileBase(viewProvider, LANGUAGE) {
+        @NotNull
+        @Override
+        public FileType getFileType() {
+          return FILE_TYPE;
+        }
+      };
+    }
+
+    @NotNull
+    @Override
+    public SpaceRequirements spaceExistanceTypeBetweenTokens(ASTNode left, ASTNode right) {
+      return SpaceRequirements.MAY;
+    }
+  }
+
+  private static class MyLexer extends LexerBase {
+    private CharSequence myBuffer;
+    private int myEnd;
+    private int myTokenStart;
+    private int myTokenEnd;
+    private IElementType myTokenType;
+
+    @Override
+    public void start(@NotNull CharSequence buffer, int startOffset, int endOffset, int initialState) {
+      myBuffer = buffer;
+      myEnd = endOffset;
+      myTokenEnd = startOffset;
+      advance();
+    }
+
+    @Override
+    public int getState() {
+      return 0;
+    }
+
+    @Override
+    public IElementType getTokenType() {
+      return myTokenType;
+    }
+
+    @Override
+    public int getTokenStart() {
+      return myTokenStart;
+    }
+
+    @Override
+    public int getTokenEnd() {
+      return myTokenEnd;
+    }
+
+    @Override
+    public void advance() {
+      myTokenStart = myTokenEnd;
+      if (myTokenStart >= myEnd) {
+        myTokenType = null;
+        return;
+      }
+      char c = myBuffer.charAt(myTokenStart);
+      myTokenEnd = myTokenStart + 1;
+      if (c == ';') {
+        myTokenType = SEMICOLON;
+      }
+      else if (Character.isWhitespace(c)) {
+        while (myTokenEnd < myEnd && Character.isWhitespace(myBuffer.charAt(myTokenEnd))) myTokenEnd++;
+        myTokenType = TokenType.WHITE_SPACE;
+      }
+      else {
+        while (myTokenEnd < myEnd && !Character.isWhitespace(myBuffer.charAt(myTokenEnd)) && myBuffer.charAt(myTokenEnd) != ';') {
+          myTokenEnd++;
+        }
+        myTokenType = WORD;
+      }
+    }
+
+    @NotNull
+    @Override
+    public CharSequence getBufferSequence() {
+      return myBuffer;
+    }
+
+    @Override
+    public int getBufferEnd() {
+      return myEnd;
+    }
+  }
+}
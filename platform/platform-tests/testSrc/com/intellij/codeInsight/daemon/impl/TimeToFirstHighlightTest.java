@@ -0,0 +1,55 @@
+/*
+ * Copyright 2013-2016 consulo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.codeInsight.daemon.impl;
+
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.editor.EditorFactory;
+import com.intellij.openapi.fileEditor.TextEditor;
+import com.intellij.openapi.fileEditor.impl.text.TextEditorProvider;
+import com.intellij.openapi.fileTypes.PlainTextFileType;
+import com.intellij.testFramework.fixtures.LightPlatformCodeInsightFixtureTestCase;
+
+import java.util.concurrent.TimeUnit;
+
+public class TimeToFirstHighlightTest extends LightPlatformCodeInsightFixtureTestCase {
+  public void testRecordedWhenFirstPassIsApplied() {
+    myFixture.configureByText(PlainTextFileType.INSTANCE, "some text");
+    TextEditor textEditor = TextEditorProvider.getInstance().getTextEditor(myFixture.getEditor());
+    assertNull(PassExecutorService.getTimeToFirstHighlight(textEditor));
+
+    long start = System.nanoTime();
+    myFixture.doHighlighting();
+    long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+    Long time = PassExecutorService.getTimeToFirstHighlight(textEditor);
+    assertNotNull(time);
+    assertTrue(time + " ms measured in " + elapsed + " ms", time >= 0 && time <= elapsed);
+  }
+
+  public void testNotRecordedForOtherEditors() {
+    myFixture.configureByText(PlainTextFileType.INSTANCE, "some text");
+    Editor other = EditorFactory.getInstance().createEditor(myFixture.getEditor().getDocument(), getProject());
+    try {
+      myFixture.doHighlighting();
+
+      assertNotNull(PassExecutorService.getTimeToFirstHighlight(TextEditorProvider.getInstance().getTextEditor(myFixture.getEditor())));
+      assertNull(PassExecutorService.getTimeToFirstHighlight(TextEditorProvider.getInstance().getTextEditor(other)));
+    }
+    finally {
+      EditorFactory.getInstance().releaseEditor(other);
+    }
+  }
+}
@@ -0,0 +1,243 @@
+/*
+ * Copyright 2013-2016 consulo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.execution.impl;
+
+import com.intellij.execution.filters.Filter;
+import com.intellij.execution.filters.HyperlinkInfo;
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.editor.EditorFactory;
+import com.intellij.openapi.editor.ex.DocumentEx;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.util.TextRange;
+import com.intellij.testFramework.LightPlatformTestCase;
+import com.intellij.testFramework.PlatformTestUtil;
+import com.intellij.util.containers.ContainerUtil;
+import com.intellij.util.ui.UIUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static com.intellij.execution.impl.AsyncFilterRunner.LINES_PER_CHUNK;
+
+public class AsyncFilterRunnerTest extends LightPlatformTestCase {
+  private static final HyperlinkInfo INFO = project -> {
+  };
+
+  private final List<TextRange> myHighlighted = new ArrayList<>();
+  private Editor myEditor;
+  private AsyncFilterRunner myRunner;
+
+  @Override
+  protected void tearDown() throws Exception {
+    try {
+      if (myEditor != null) {
+        EditorFactory.getInstance().releaseEditor(myEditor);
+      }
+    }
+    finally {
+      myEditor = null;
+      super.tearDown();
+    }
+  }
+
+  public void testChunkResultsAreMergedInLineOrder() {
+    int count = 4 * LINES_PER_CHUNK;
+    CountDownLatch lastLineFiltered = new CountDownLatch(1);
+    createRunner(lines(0, count));
+    myRunner.highlightHyperlinks(new NumberFilter() {
+      @Override
+      void filterLine(int number) {
+        if (number == count - 1) {
+          lastLineFiltered.countDown();
+        }
+        else if (number == 0) {
+          // the later chunks are done first if there are threads to filter them
+          await(lastLineFiltered, 1000);
+        }
+      }
+    }, 0, count - 1);
+    waitForFilters();
+
+    assertHighlightedNumbers(0, count);
+  }
+
+  public void testChunksRemovedByCyclicBufferAreSkipped() throws Exception {
+    int count = 4 * LINES_PER_CHUNK;
+    createRunner(lines(0, count));
+    DocumentEx document = (DocumentEx)myEditor.getDocument();
+    document.setCyclicBufferSize(document.getTextLength());
+    CountDownLatch filtering = new CountDownLatch(1);
+    CountDownLatch trimmed = new CountDownLatch(1);
+    Set<Integer> filteredAfterTrimming = ContainerUtil.newConcurrentSet();
+    myRunner.highlightHyperlinks(new NumberFilter() {
+      @Override
+      void filterLine(int number) {
+        filtering.countDown();
+        // the write action of the trimming cancels the read actions the lines are filtered in
+        while (!await(trimmed, 10)) {
+          ProgressManager.checkCanceled();
+        }
+        filteredAfterTrimming.add(number);
+      }
+    }, 0, count - 1);
+    assertTrue(filtering.await(10, TimeUnit.SECONDS));
+
+    // the new output removes the first chunk of lines from the console
+    WriteCommandAction.runWriteCommandAction(getProject(), () -> document.insertString(document.getTextLength(), lines(count, LINES_PER_CHUNK)));
+    trimmed.countDown();
+    waitForFilters();
+
+    for (int number : filteredAfterTrimming) {
+      assertTrue(String.valueOf(number), number >= LINES_PER_CHUNK);
+    }
+    assertHighlightedNumbers(LINES_PER_CHUNK, count - LINES_PER_CHUNK);
+  }
+
+  /**
+   * Filters a log of stack traces in chunks concurrently and, for comparison, line by line in one task
+   */
+  public void testStackTraceLogFilteringTiming() {
+    StringBuilder text = new StringBuilder();
+    int traces = 20000;
+    for (int i = 0; i < traces; i++) {
+      text.append("java.lang.IllegalStateException: failure ").append(i).append('\n');
+      for (int j = 0; j < 9; j++) {
+        text.append("\tat com.example.Service").append(j).append(".call(Service").append(j).append(".java:").append(i % 1000 + j).append(")\n");
+      }
+    }
+    createRunner(text.toString());
+    int lineCount = myEditor.getDocument().getLineCount();
+
+    long start = System.currentTimeMillis();
+    myRunner.highlightHyperlinks(new FileLinkFilter(false), 0, lineCount - 1);
+    waitForFilters();
+    long sequential = System.currentTimeMillis() - start;
+    List<TextRange> expected = new ArrayList<>(myHighlighted);
+    assertEquals(traces * 9, expected.size());
+
+    myHighlighted.clear();
+    start = System.currentTimeMillis();
+    myRunner.highlightHyperlinks(new FileLinkFilter(true), 0, lineCount - 1);
+    waitForFilters();
+    long concurrent = System.currentTimeMillis() - start;
+    assertEquals(expected, myHighlighted);
+
+    PlatformTestUtil.assertTiming("Filtering " + lineCount + " lines in chunks, line by line it took " + sequential + " ms", 5000, concurrent);
+  }
+
+  private void createRunner(@NotNull String text) {
+    myEditor = EditorFactory.getInstance().createViewer(EditorFactory.getInstance().createDocument(text), getProject());
+    EditorHyperlinkSupport hyperlinks = new EditorHyperlinkSupport(myEditor, getProject()) {
+      @Override
+      void highlightHyperlinks(@NotNull Filter.Result result, int offsetDelta) {
+        for (Filter.ResultItem item : result.getResultItems()) {
+          myHighlighted.add(new TextRange(item.getHighlightStartOffset() + offsetDelta, item.getHighlightEndOffset() + offsetDelta));
+        }
+      }
+    };
+    myRunner = new AsyncFilterRunner(hyperlinks, myEditor);
+  }
+
+  /**
+   * The filters may wait for the EDT to let a write action go first, so the events are dispatched while waiting for them
+   */
+  private void waitForFilters() {
+    long deadline = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(1);
+    do {
+      UIUtil.dispatchAllInvocationEvents();
+      assertTrue("Filters are not done in a minute", System.currentTimeMillis() < deadline);
+    }
+    while (!myRunner.waitForPendingFilters(10));
+  }
+
+  private void assertHighlightedNumbers(int first, int count) {
+    String text = myEditor.getDocument().getText();
+    assertEquals(count, myHighlighted.size());
+    for (int i = 0; i < count; i++) {
+      assertEquals(String.format("%05d", first + i), myHighlighted.get(i).substring(text));
+    }
+  }
+
+  @NotNull
+  private static String lines(int first, int count) {
+    StringBuilder text = new StringBuilder();
+    for (int i = first; i < first + count; i++) {
+      text.append(String.format("line %05d\n", i));
+    }
+    return text.toString();
+  }
+
+  private static boolean await(@NotNull CountDownLatch latch, long timeoutMs) {
+    try {
+      return latch.await(timeoutMs, TimeUnit.MILLISECONDS);
+    }
+    catch (InterruptedException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Highlights the number of every line made by {@link #lines(int, int)}
+   */
+  private static class NumberFilter implements Filter {
+    @Nullable
+    @Override
+    public Result applyFilter(String line, int entireLength) {
+      filterLine(Integer.parseInt(line.substring(5, 10)));
+      int start = entireLength - line.length() + 5;
+      return new Result(start, start + 5, INFO);
+    }
+
+    void filterLine(int number) {
+    }
+
+    @Override
+    public boolean isStateless() {
+      return true;
+    }
+  }
+
+  private static class FileLinkFilter implements Filter {
+    private static final Pattern FILE_LINK = Pattern.compile("\\(([\\w$]+\\.java:\\d+)\\)");
+    private final boolean myStateless;
+
+    private FileLinkFilter(boolean stateless) {
+      myStateless = stateless;
+    }
+
+    @Nullable
+    @Override
+    public Result applyFilter(String line, int entireLength) {
+      Matcher matcher = FILE_LINK.matcher(line);
+      if (!matcher.find()) return null;
+      int lineStart = entireLength - line.length();
+      return new Result(lineStart + matcher.start(1), lineStart + matcher.end(1), INFO);
+    }
+
+    @Override
+    public boolean isStateless() {
+      return myStateless;
+    }
+  }
+}
@@ -2,6 +2,8 @@ package com.intellij.execution.impl;
 
 import com.intellij.execution.ui.ConsoleViewContentType;
 import com.intellij.openapi.editor.markup.TextAttributes;
+import com.intellij.openapi.util.Pair;
+import com.intellij.testFramework.PlatformTestUtil;
 import org.jetbrains.annotations.NotNull;
 import org.junit.Before;
 import org.junit.Test;
@@ -93,7 +95,7 @@ public class ConsoleBufferTest {
     myBuffer.print("abc", BORING_OUTPUT, null);
 
     checkState(
-      s("123", "456", "7ab", "c"),
+      s("123", "456", "7", "ab", "c"),
       new TokenInfo(IMPORTANT_OUTPUT, 0, 7), new TokenInfo(BORING_OUTPUT, 7, 10)
     );
   }
@@ -113,11 +115,70 @@ public class ConsoleBufferTest {
     );
   }
   
+  @Test
+  public void trimmedOnPrintWhenExceedingTwiceTheBufferSize() {
+    assertEquals(0, (int)myBuffer.print("12345678", NORMAL_OUTPUT, null).second);
+    assertEquals(0, (int)myBuffer.print("abcdefgh", NORMAL_OUTPUT, null).second);
+    assertEquals(16, myBuffer.getLength());
+
+    assertEquals(11, (int)myBuffer.print("ijklm", BORING_OUTPUT, null).second);
+    assertEquals(10, myBuffer.getLength());
+    checkState(s("d", "efg", "hij", "klm"), new TokenInfo(NORMAL_OUTPUT, 0, 5), new TokenInfo(BORING_OUTPUT, 5, 10));
+  }
+
+  @Test
+  public void deferredOutputIsDroppedByOutputFillingTheBuffer() {
+    myBuffer.print("a", NORMAL_OUTPUT, null);
+    myBuffer.print("b", BORING_OUTPUT, null);
+    Pair<String, Integer> pair = myBuffer.print("1234567890AB", NORMAL_OUTPUT, null);
+    assertEquals("34567890AB", pair.first);
+    assertEquals(2, (int)pair.second);
+    checkState(s("345", "678", "90A", "B"), new TokenInfo(NORMAL_OUTPUT, 0, 10));
+  }
+
+  @Test
+  public void deferredOutputIsNotDroppedIfNotToBeStripped() {
+    myBuffer.print("12", IMPORTANT_OUTPUT, null);
+    assertEquals(0, (int)myBuffer.print("abcdefghijkl", NORMAL_OUTPUT, null).second);
+    assertEquals(4, myBuffer.trimToCyclicBufferSize());
+    checkState(s("12", "efg", "hij", "kl"), new TokenInfo(IMPORTANT_OUTPUT, 0, 2), new TokenInfo(NORMAL_OUTPUT, 2, 10));
+  }
+
+  /**
+   * Prints many short lines of alternating types to the full buffer, which is flushed only now and then, as if the EDT was busy
+   */
+  @Test
+  public void manySmallPrintsToFullBuffer() {
+    myBuffer = new ConsoleBuffer(true, 1024 * 1024, 256);
+    final int lines = 1000000;
+    final String line = "[main] INFO  com.example.Service - processed request\n";
+    PlatformTestUtil.assertTiming("Printing " + lines + " lines", 2000, new Runnable() {
+      @Override
+      public void run() {
+        for (int i = 0; i < lines; i++) {
+          myBuffer.print(line, i % 2 == 0 ? NORMAL_OUTPUT : BORING_OUTPUT, null);
+          if (i % 100000 == 0) {
+            myBuffer.trimToCyclicBufferSize();
+            myBuffer.getText();
+            myBuffer.clear(false);
+          }
+        }
+        myBuffer.trimToCyclicBufferSize();
+      }
+    });
+    assertEquals(1024 * 1024, myBuffer.getLength());
+    assertEquals(myBuffer.getLength(), myBuffer.getText().length());
+  }
+
   private static List<String> s(String ... strings) {
     return Arrays.asList(strings);
   }
   
+  /**
+   * Checks the state the buffer is flushed in
+   */
   private void checkState(@NotNull List<String> expectedBuffers, @NotNull TokenInfo ... expectedTokens) {
+    myBuffer.trimToCyclicBufferSize();
     Deque<StringBuilder> actualBuffers = myBuffer.getDeferredOutput();
     assertEquals(expectedBuffers.size(), actualBuffers.size());
     int i = 0;
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2013-2016 consulo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.ide.util.gotoByName;
+
+import com.intellij.psi.codeStyle.MinusculeMatcher;
+import com.intellij.psi.codeStyle.NameUtil;
+import com.intellij.testFramework.PlatformTestUtil;
+import com.intellij.util.ThrowableRunnable;
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public class NameCandidatesFilterTest extends TestCase {
+  private static final String[] WORDS = {"Abstract", "Base", "Component", "Default", "Editor", "Factory", "Goto", "Highlight", "Impl",
+    "Java", "Key", "List", "Manager", "Name", "Object", "Provider", "Query", "Root", "Service", "Tree", "Util", "View", "Window", "X2"};
+
+  public void testCandidatesContainAllMatches() {
+    String[] names = generateNames(20000, new Random(42));
+    NameCandidatesFilter filter = new NameCandidatesFilter();
+    for (String pattern : new String[]{"a", "cm", "EdFa", "*tree", "gotoNa", "x2", "hl ", "Util*V"}) {
+      List<String> candidates = Arrays.asList(filter.getCandidates(names, pattern));
+      MinusculeMatcher matcher = NameUtil.buildMatcher(pattern, NameUtil.MatchingCaseSensitivity.NONE);
+      for (String name : names) {
+        if (matcher.matches(name)) {
+          assertTrue(pattern + " -> " + name, candidates.contains(name));
+        }
+      }
+    }
+  }
+
+  public void testNarrowing() {
+    assertTrue(NameCandidatesFilter.isNarrowing("go", "got"));
+    assertTrue(NameCandidatesFilter.isNarrowing("*go", "*goto"));
+    assertFalse(NameCandidatesFilter.isNarrowing("go", "ga"));
+    assertFalse(NameCandidatesFilter.isNarrowing("go", "go "));
+    assertFalse(NameCandidatesFilter.isNarrowing("go", "go*t"));
+    assertFalse(NameCandidatesFilter.isNarrowing("", "g"));
+
+    String[] names = {"GotoClass", "GotoFile", "GetObject"};
+    NameCandidatesFilter filter = new NameCandidatesFilter();
+    filter.rememberMatched(names, "go", Arrays.asList("GotoClass", "GotoFile"));
+    assertEquals(Arrays.asList("GotoFile"), Arrays.asList(filter.getCandidates(names, "gof")));
+    // other names array means the previous result is stale
+    assertEquals(Arrays.asList("GotoFile"), Arrays.asList(filter.getCandidates(names.clone(), "gof")));
+  }
+
+  public void testKeystrokesPerformance() {
+    final String[] names = generateNames(2000000, new Random(239));
+    final String[] keystrokes = {"e", "ed", "edi", "edit", "edito", "editorf", "editorfa", "editorfac"};
+    PlatformTestUtil.startPerformanceTest("2M names typing", 15000, new ThrowableRunnable() {
+      @Override
+      public void run() throws Throwable {
+        NameCandidatesFilter filter = new NameCandidatesFilter();
+        for (String pattern : keystrokes) {
+          MinusculeMatcher matcher = NameUtil.buildMatcher(pattern, NameUtil.MatchingCaseSensitivity.NONE);
+          List<String> matched = new ArrayList<String>();
+          for (String candidate : filter.getCandidates(names, pattern)) {
+            if (matcher.matches(candidate)) {
+              matched.add(candidate);
+            }
+          }
+          filter.rememberMatched(names, pattern, matched);
+        }
+      }
+    }).cpuBound().assertTiming();
+  }
+
+  private static String[] generateNames(int count, Random random) {
+    String[] names = new String[count];
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < count; i++) {
+      builder.setLength(0);
+      int words = 1 + random.nextInt(4);
+      for (int j = 0; j < words; j++) {
+        builder.append(WORDS[random.nextInt(WORDS.length)]);
+      }
+      names[i] = builder.toString();
+    }
+    return names;
+  }
+}
@@ -20,10 +20,12 @@ import com.intellij.openapi.progress.ProcessCanceledException;
 import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.progress.Progressive;
 import com.intellij.openapi.util.*;
+import com.intellij.testFramework.PlatformTestUtil;
 import com.intellij.ui.LoadingNode;
 import com.intellij.util.Time;
 import com.intellij.util.WaitFor;
 import com.intellij.util.ui.UIUtil;
+import com.intellij.util.ui.tree.TreeModelAdapter;
 import junit.framework.AssertionFailedError;
 import junit.framework.TestSuite;
 import org.jetbrains.annotations.NotNull;
@@ -35,8 +37,10 @@ import javax.swing.event.TreeModelListener;
 import javax.swing.tree.DefaultMutableTreeNode;
 import javax.swing.tree.TreePath;
 import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import static com.intellij.testFramework.PlatformTestUtil.notNull;
@@ -378,6 +382,50 @@ public class TreeUiTest extends AbstractTreeBuilderTest {
     assertEquals("", updates.get().toString());
   }
 
+  public void testManyChildrenRemovedWithOneModelUpdate() throws Exception {
+    buildStructure(myRoot);
+    final List<Node> children = new ArrayList<Node>();
+    for (int i = 0; i < 20; i++) {
+      children.add(myIntellij.addChild("child" + (i < 10 ? "0" : "") + i));
+    }
+    updateFromRoot();
+    select(new NodeElement("openapi"), false);
+
+    StringBuilder expected = new StringBuilder("-/\n" +
+                                               " -com\n" +
+                                               "  -intellij\n");
+    for (Node each : children) {
+      expected.append("   ").append(each).append("\n");
+    }
+    expected.append("   [openapi]\n" +
+                    " +jetbrains\n" +
+                    " +org\n" +
+                    " +xUnit\n");
+    assertTree(expected.toString());
+
+    final StringBuffer updates = new StringBuffer();
+    notNull(getMyBuilder().getTreeModel()).addTreeModelListener(new TreeModelAdapter() {
+      @Override
+      public void treeNodesRemoved(TreeModelEvent e) {
+        updates.append("removed=").append(e.getTreePath()).append(" count=").append(e.getChildren().length).append("\n");
+      }
+    });
+
+    for (Node each : children) {
+      each.delete();
+    }
+    updateFromRoot();
+
+    assertEquals("removed=[/, com, intellij] count=20\n", updates.toString());
+    assertTree("-/\n" +
+               " -com\n" +
+               "  -intellij\n" +
+               "   [openapi]\n" +
+               " +jetbrains\n" +
+               " +org\n" +
+               " +xUnit\n");
+  }
+
   public void testCancelUpdateBatch() throws Exception {
     buildStructure(myRoot);
 
@@ -1517,6 +1565,62 @@ public class TreeUiTest extends AbstractTreeBuilderTest {
     waitBuilderToCome();
   }
 
+  /**
+   * Benchmarks expanding a synthetic tree of {@link #DEEP_TREE_LEVELS} levels with {@link #DEEP_TREE_BRANCHING} children per node
+   * and refreshing it after half of the leaves are deleted
+   */
+  public void testDeepTreeExpandAndRefreshTiming() throws Exception {
+    final List<Node> leafParents = new ArrayList<Node>();
+    buildDeepTree(myRoot, "node", DEEP_TREE_LEVELS, leafParents);
+    activate();
+    int nodeCount = 0;
+    for (int level = 1, count = 1; level <= DEEP_TREE_LEVELS; level++) {
+      count *= DEEP_TREE_BRANCHING;
+      nodeCount += count;
+    }
+
+    long start = System.currentTimeMillis();
+    doAndWaitForBuilder(new Runnable() {
+      @Override
+      public void run() {
+        getBuilder().expandAll(null);
+      }
+    });
+    long expandTime = System.currentTimeMillis() - start;
+    int rootRows = myTree.isRootVisible() ? 1 : 0;
+    assertEquals(rootRows + nodeCount, myTree.getRowCount());
+
+    int deleted = 0;
+    for (Node each : leafParents) {
+      for (Node leaf : new ArrayList<Node>(each.myChildElements.subList(0, DEEP_TREE_BRANCHING / 2))) {
+        leaf.delete();
+        deleted++;
+      }
+    }
+    start = System.currentTimeMillis();
+    updateFromRoot();
+    long refreshTime = System.currentTimeMillis() - start;
+    assertEquals(rootRows + nodeCount - deleted, myTree.getRowCount());
+
+    PlatformTestUtil.assertTiming("Expanding " + nodeCount + " nodes", 10000, expandTime);
+    PlatformTestUtil.assertTiming("Refreshing " + nodeCount + " nodes after deleting " + deleted, 5000, refreshTime);
+  }
+
+  private static final int DEEP_TREE_LEVELS = 4;
+  private static final int DEEP_TREE_BRANCHING = 8;
+
+  private static void buildDeepTree(@NotNull Node node, @NotNull String name, int levels, @NotNull List<Node> leafParents) {
+    for (int i = 0; i < DEEP_TREE_BRANCHING; i++) {
+      Node child = node.addChild(name + "." + i);
+      if (levels > 1) {
+        buildDeepTree(child, name + "." + i, levels - 1, leafParents);
+      }
+    }
+    if (levels == 1) {
+      leafParents.add(node);
+    }
+  }
+
   private void buildSiblings(final Node node,
                              final int start,
                              final int end,
@@ -2629,6 +2733,11 @@ public class TreeUiTest extends AbstractTreeBuilderTest {
       // doesn't make sense in pass-through mode
     }
 
+    @Override
+    public void testManyChildrenRemovedWithOneModelUpdate() throws Exception {
+      // doesn't make sense in pass-through mode
+    }
+
     @Override
     public void testSelectWhenUpdatesArePending() throws Exception {
       // doesn't make sense in pass-through mode
@@ -2638,6 +2747,11 @@ public class TreeUiTest extends AbstractTreeBuilderTest {
     public void testBigTreeUpdate() throws Exception {
       // doesn't make sense in pass-through mode
     }
+
+    @Override
+    public void testDeepTreeExpandAndRefreshTiming() throws Exception {
+      // doesn't make sense in pass-through mode
+    }
   }
 
 
@@ -2672,6 +2786,11 @@ public class TreeUiTest extends AbstractTreeBuilderTest {
     public void testBigTreeUpdate() throws Exception {
       //to slow, tested the same in VeryQuickBgLoadingTest
     }
+
+    @Override
+    public void testDeepTreeExpandAndRefreshTiming() throws Exception {
+      //to slow, tested the same in VeryQuickBgLoadingTest
+    }
   }
 
   public static class QuickBgLoadingSyncUpdate extends TreeUiTest {
@@ -2698,6 +2817,11 @@ public class TreeUiTest extends AbstractTreeBuilderTest {
     public void testBigTreeUpdate() throws Exception {
       //to slow, tested the same in VeryQuickBgLoadingTest
     }
+
+    @Override
+    public void testDeepTreeExpandAndRefreshTiming() throws Exception {
+      //to slow, tested the same in VeryQuickBgLoadingTest
+    }
   }
 
 
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2013-2016 consulo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.openapi.vcs.ex;
+
+import com.intellij.diff.comparison.LineHashes;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.impl.DocumentImpl;
+import com.intellij.testFramework.LightPlatformTestCase;
+import com.intellij.util.ArrayUtil;
+import com.intellij.util.diff.Diff;
+import com.intellij.util.diff.FilesTooBigForDiffException;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public class RangesBuilderTest extends LightPlatformTestCase {
+  public void testSameRangesAsDiffOfStrings() throws FilesTooBigForDiffException {
+    Random random = new Random(42);
+    for (int i = 0; i < 200; i++) {
+      List<String> vcs = randomLines(random, 50);
+      List<String> current = new ArrayList<String>(vcs);
+      for (int j = random.nextInt(5); j >= 0; j--) {
+        int index = random.nextInt(current.size() + 1);
+        switch (random.nextInt(3)) {
+          case 0:
+            current.add(index, "inserted " + j);
+            break;
+          case 1:
+            if (index < current.size()) current.remove(index);
+            break;
+          default:
+            if (index < current.size()) current.set(index, "changed " + j);
+        }
+      }
+
+      List<Range> expected = new ArrayList<Range>();
+      Diff.Change ch = Diff.buildChanges(ArrayUtil.toStringArray(vcs), ArrayUtil.toStringArray(current));
+      while (ch != null) {
+        expected.add(new Range(ch.line1, ch.line1 + ch.inserted, ch.line0, ch.line0 + ch.deleted));
+        ch = ch.link;
+      }
+      assertEquals(expected, RangesBuilder.createRanges(current, vcs, 0, 0, false));
+    }
+  }
+
+  public void testLinesWithSameHashAreChanged() throws FilesTooBigForDiffException {
+    assertEquals("Aa".hashCode(), "BB".hashCode());
+
+    List<Range> ranges = RangesBuilder.createRanges(Arrays.asList("x", "BB", "y"), Arrays.asList("x", "Aa", "y"), 0, 0, false);
+    assertEquals(Arrays.asList(new Range(1, 2, 1, 2)), ranges);
+  }
+
+  public void testInnerWhitespaceChanges() throws FilesTooBigForDiffException {
+    List<Range> ranges = RangesBuilder.createRanges(Arrays.asList("a", "b  c", "x", "d"), Arrays.asList("a", "b c", "d"), 0, 0, true);
+
+    List<Range.InnerRange> inner = Arrays.asList(new Range.InnerRange(1, 2, Range.EQUAL), new Range.InnerRange(2, 3, Range.INSERTED));
+    assertEquals(Arrays.asList(new Range(1, 3, 1, 2, inner)), ranges);
+  }
+
+  /**
+   * Compares with diffing the document lines as objects, which hashes the lines of both documents on every update
+   */
+  public void testUpdatesAreNotSlowerThanDiffOfDocumentLines() throws FilesTooBigForDiffException {
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < 10000; i++) {
+      text.append("  public void method").append(i).append("(int argument) { return field").append(i % 97).append(" + argument; }\n");
+    }
+    Document vcs = new DocumentImpl(text);
+    List<Document> updates = new ArrayList<Document>();
+    for (int i = 0; i < 20; i++) {
+      // changes at both ends leave nothing to trim off
+      updates.add(new DocumentImpl("// edit " + i + "\n" + text + "// tail " + i));
+    }
+
+    long before = Long.MAX_VALUE;
+    long after = Long.MAX_VALUE;
+    for (int attempt = 0; attempt < 5; attempt++) {
+      long start = System.nanoTime();
+      List<Diff.Change> changes = new ArrayList<Diff.Change>();
+      for (Document current : updates) {
+        Object[] vcsLines = ArrayUtil.toObjectArray(LineHashes.getInstance(vcs).getLines());
+        Object[] currentLines = ArrayUtil.toObjectArray(LineHashes.getInstance(current).getLines());
+        changes.add(Diff.buildChanges(vcsLines, currentLines));
+      }
+      long middle = System.nanoTime();
+      List<List<Range>> ranges = new ArrayList<List<Range>>();
+      for (Document current : updates) {
+        ranges.add(RangesBuilder.createRanges(current, vcs));
+      }
+      long end = System.nanoTime();
+
+      before = Math.min(before, middle - start);
+      after = Math.min(after, end - middle);
+      for (int i = 0; i < updates.size(); i++) {
+        assertEquals(2, ranges.get(i).size());
+        assertEquals(changes.get(i).link.line1, ranges.get(i).get(1).getLine1());
+      }
+    }
+    assertTrue("before " + before / 1000000 + " ms, after " + after / 1000000 + " ms", after <= before);
+  }
+
+  @NotNull
+  private static List<String> randomLines(@NotNull Random random, int count) {
+    List<String> lines = new ArrayList<String>();
+    for (int i = 0; i < count; i++) {
+      // few distinct lines, so that there are many equal ones
+      lines.add("line " + random.nextInt(10));
+    }
+    return lines;
+  }
+}
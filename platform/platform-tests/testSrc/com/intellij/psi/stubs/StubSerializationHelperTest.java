@@ -0,0 +1,197 @@
+/*
+ * Copyright 2013-2016 consulo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.psi.stubs;
+
+import com.intellij.openapi.util.io.BufferExposingByteArrayOutputStream;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.util.io.AbstractStringEnumerator;
+import com.intellij.util.io.StringRef;
+import junit.framework.TestCase;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class StubSerializationHelperTest extends TestCase {
+  private static final String LONG_NAME = StringUtil.repeat("long", 100);
+
+  private StubSerializationHelper myHelper;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myHelper = new StubSerializationHelper(new NameStorage());
+    myHelper.assignId(TestStub.SERIALIZER);
+  }
+
+  public void testStreamRoundTrip() throws Exception {
+    TestStub root = createTree();
+    BufferExposingByteArrayOutputStream bytes = serialize(root);
+
+    Stub stub = myHelper.deserialize(new ByteArrayInputStream(bytes.getInternalBuffer(), 0, bytes.size()));
+    assertEquals(toString(root), toString(stub));
+  }
+
+  public void testBytesRoundTrip() throws Exception {
+    TestStub root = createTree();
+    BufferExposingByteArrayOutputStream bytes = serialize(root);
+
+    Stub stub = myHelper.deserialize(bytes.getInternalBuffer(), bytes.size());
+    assertEquals(toString(root), toString(stub));
+  }
+
+  public void testNamesAreNotReadFromSerializedBytes() throws Exception {
+    TestStub root = createTree();
+    BufferExposingByteArrayOutputStream bytes = serialize(root);
+
+    Stub stub = myHelper.deserialize(bytes.getInternalBuffer(), bytes.size());
+    // the names are decoded only now, the bytes of the tree may be reused by then
+    Arrays.fill(bytes.getInternalBuffer(), (byte)0);
+    assertEquals(toString(root), toString(stub));
+  }
+
+  @NotNull
+  private static TestStub createTree() {
+    TestStub root = createStub(null, "root", 1);
+    TestStub child = createStub(root, "child", 2);
+    createStub(child, "\u043f\u0440\u0438\u0432\u0435\u0442", 3);
+    createStub(child, LONG_NAME, 4);
+    createStub(child, null, 5);
+    createStub(root, "child", 6);
+    createStub(root, "root", 7);
+    return root;
+  }
+
+  @NotNull
+  private static TestStub createStub(@Nullable TestStub parent, @Nullable String name, int value) {
+    return new TestStub(parent, StringRef.fromNullableString(name), value);
+  }
+
+  @NotNull
+  private BufferExposingByteArrayOutputStream serialize(@NotNull Stub stub) throws IOException {
+    BufferExposingByteArrayOutputStream out = new BufferExposingByteArrayOutputStream();
+    myHelper.serialize(stub, out);
+    return out;
+  }
+
+  @NotNull
+  private static String toString(@NotNull Stub stub) {
+    StringBuilder builder = new StringBuilder();
+    append(builder, (TestStub)stub, 0);
+    return builder.toString();
+  }
+
+  private static void append(@NotNull StringBuilder builder, @NotNull TestStub stub, int indent) {
+    builder.append(StringUtil.repeat(" ", indent)).append(stub.getName()).append(':').append(stub.myValue).append('\n');
+    for (TestStub child : stub.myChildren) {
+      append(builder, child, indent + 1);
+    }
+  }
+
+  private static class TestStub extends ObjectStubBase<TestStub> {
+    private static final ObjectStubSerializer<TestStub, TestStub> SERIALIZER = new ObjectStubSerializer<TestStub, TestStub>() {
+      @NotNull
+      @Override
+      public String getExternalId() {
+        return "test.stub";
+      }
+
+      @Override
+      public void serialize(@NotNull TestStub stub, @NotNull StubOutputStream dataStream) throws IOException {
+        dataStream.writeName(stub.getName());
+        dataStream.writeVarInt(stub.myValue);
+      }
+
+      @NotNull
+      @Override
+      public TestStub deserialize(@NotNull StubInputStream dataStream, TestStub parentStub) throws IOException {
+        StringRef name = dataStream.readName();
+        return new TestStub(parentStub, name, dataStream.readVarInt());
+      }
+
+      @Override
+      public void indexStub(@NotNull TestStub stub, @NotNull IndexSink sink) {
+      }
+    };
+
+    @Nullable private final StringRef myName;
+    private final int myValue;
+    private final List<TestStub> myChildren = new ArrayList<TestStub>();
+
+    private TestStub(@Nullable TestStub parent, @Nullable StringRef name, int value) {
+      super(parent);
+      myName = name;
+      myValue = value;
+      if (parent != null) parent.myChildren.add(this);
+    }
+
+    @Nullable
+    private String getName() {
+      return StringRef.toString(myName);
+    }
+
+    @Override
+    public List<TestStub> getChildrenStubs() {
+      return myChildren;
+    }
+
+    @Override
+    public ObjectStubSerializer getStubType() {
+      return SERIALIZER;
+    }
+  }
+
+  private static class NameStorage implements AbstractStringEnumerator {
+    private final List<String> myNames = new ArrayList<String>();
+
+    @Override
+    public int enumerate(@Nullable String value) throws IOException {
+      int index = myNames.indexOf(value);
+      if (index < 0) {
+        index = myNames.size();
+        myNames.add(value);
+      }
+      return index + 1;
+    }
+
+    @Nullable
+    @Override
+    public String valueOf(int idx) throws IOException {
+      return myNames.get(idx - 1);
+    }
+
+    @Override
+    public void markCorrupted() {
+    }
+
+    @Override
+    public void close() throws IOException {
+    }
+
+    @Override
+    public boolean isDirty() {
+      return false;
+    }
+
+    @Override
+    public void force() {
+    }
+  }
+}
@@ -16,6 +16,7 @@
 
 package com.intellij.usages.impl;
 
+import com.intellij.ide.OccurenceNavigator;
 import com.intellij.openapi.actionSystem.AnAction;
 import com.intellij.openapi.extensions.ExtensionPoint;
 import com.intellij.openapi.extensions.Extensions;
@@ -34,6 +35,7 @@ import com.intellij.testFramework.VfsTestUtil;
 import com.intellij.usageView.UsageInfo;
 import com.intellij.usages.*;
 import com.intellij.usages.impl.rules.FileGroupingRule;
+import com.intellij.usages.rules.MergeableUsage;
 import com.intellij.usages.rules.SingleParentUsageGroupingRule;
 import com.intellij.usages.rules.UsageGroupingRule;
 import com.intellij.usages.rules.UsageGroupingRuleProvider;
@@ -43,6 +45,7 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import javax.swing.*;
+import javax.swing.tree.TreePath;
 import java.io.File;
 import java.io.IOException;
 
@@ -98,12 +101,125 @@ public class UsageNodeTreeBuilderTest extends LightPlatformTestCase {
     return new MockUsage(index);
   }
 
+  public void testUsagesOfCollapsedGroupAreInsertedOnExpand() throws Exception {
+    UsageViewImpl usageView = createUsageView(new UsageGroupingRule[]{new OddEvenGroupingRule()});
+    JTree tree = getTree(usageView);
+    for (int index : new int[]{0, 1, 2, 4}) {
+      usageView.appendUsage(createUsage(index));
+    }
+    usageView.expandRoot();
+
+    GroupNode even = findSubGroup(usageView.getRoot(), "Even");
+    assertEquals(0, even.getChildCount());
+    assertFalse(even.isLeaf());
+    assertEquals(3, even.getRecursiveUsageCount());
+
+    tree.expandPath(new TreePath(even.getPath()));
+    assertEquals("[0, 2, 4]", even.getSwingChildren().toString());
+
+    // usages added under an expanded group are inserted right away
+    usageView.appendUsage(createUsage(6));
+    usageView.expandRoot();
+    assertEquals("[0, 2, 4, 6]", even.getSwingChildren().toString());
+    assertEquals(4, even.getRecursiveUsageCount());
+    assertEquals(0, findSubGroup(usageView.getRoot(), "Odd").getChildCount());
+  }
+
+  public void testRemoveLastUsageOfSubgroupInCollapsedGroup() throws Exception {
+    UsageViewImpl usageView = createUsageView(new UsageGroupingRule[]{new OddEvenGroupingRule(), new LogGroupingRule()});
+    JTree tree = getTree(usageView);
+    Usage removed = createUsage(12);
+    usageView.appendUsage(createUsage(0));
+    usageView.appendUsage(createUsage(2));
+    usageView.appendUsage(removed);
+    usageView.expandRoot();
+
+    GroupNode even = findSubGroup(usageView.getRoot(), "Even");
+    assertEquals(0, even.getChildCount());
+    usageView.removeUsage(removed);
+    assertEquals("Even[1[0, 2]]", even.toString());
+    assertEquals(2, even.getRecursiveUsageCount());
+
+    tree.expandPath(new TreePath(even.getPath()));
+    assertEquals("[1[0, 2]]", even.getSwingChildren().toString());
+  }
+
+  public void testNextOccurenceInCollapsedGroup() throws Exception {
+    UsageViewImpl usageView = createUsageView(new UsageGroupingRule[]{new OddEvenGroupingRule()});
+    JTree tree = getTree(usageView);
+    usageView.appendUsage(new NavigatableUsage(1));
+    usageView.appendUsage(new NavigatableUsage(2));
+    usageView.expandRoot();
+    tree.clearSelection();
+
+    OccurenceNavigator navigator = (OccurenceNavigator)usageView.getComponent();
+    assertTrue(navigator.hasNextOccurence());
+    assertNotNull(navigator.goNextOccurence());
+    UsageNode selected = (UsageNode)tree.getSelectionPath().getLastPathComponent();
+    assertEquals("2", selected.getUsage().toString());
+    // the group was synchronized when it was expanded to show the selected usage
+    assertTrue(findSubGroup(usageView.getRoot(), "Even").getSwingChildren().contains(selected));
+
+    assertNotNull(navigator.goNextOccurence());
+    assertEquals("1", ((UsageNode)tree.getSelectionPath().getLastPathComponent()).getUsage().toString());
+    assertFalse(navigator.hasNextOccurence());
+  }
+
+  public void testMergeComparableUsagesNotSortedByLine() throws Exception {
+    UsageViewSettings settings = UsageViewSettings.getInstance();
+    boolean wasFilterDuplicatedLine = settings.isFilterDuplicatedLine();
+    settings.setFilterDuplicatedLine(true);
+    try {
+      UsageViewImpl usageView = createUsageView(UsageGroupingRule.EMPTY_ARRAY);
+      // sorted as 1, 2, 11, 12 while 1 and 11 as well as 2 and 12 are on the same line
+      for (int index : new int[]{1, 2, 11, 12}) {
+        usageView.appendUsage(new LineUsage(index));
+      }
+      usageView.expandRoot();
+
+      assertEquals("Root [1, 2]", usageView.getRoot().toString());
+      assertEquals(2, usageView.getRoot().getRecursiveUsageCount());
+    }
+    finally {
+      settings.setFilterDuplicatedLine(wasFilterDuplicatedLine);
+    }
+  }
+
+  @NotNull
+  private static JTree getTree(@NotNull UsageViewImpl usageView) {
+    JTree tree = UIUtil.findComponentOfType(usageView.getComponent(), JTree.class);
+    assertNotNull(tree);
+    return tree;
+  }
+
+  @NotNull
+  private static GroupNode findSubGroup(@NotNull GroupNode node, @NotNull String text) {
+    for (GroupNode groupNode : node.getSubGroups()) {
+      if (text.equals(groupNode.getGroup().getText(null))) return groupNode;
+    }
+    throw new AssertionError(text + " not found in " + node);
+  }
+
   private GroupNode buildUsageTree(int[] indices, UsageGroupingRule[] rules) {
     Usage[] usages = new Usage[indices.length];
     for (int i = 0; i < usages.length; i++) {
       usages[i] = createUsage(indices[i]);
     }
 
+    UsageViewImpl usageView = createUsageView(rules);
+    for (Usage usage : usages) {
+      usageView.appendUsage(usage);
+    }
+    UIUtil.dispatchAllInvocationEvents();
+
+    return usageView.getRoot();
+  }
+
+  /**
+   * Creates the view with the swing tree initialized and collapsed
+   */
+  @NotNull
+  private UsageViewImpl createUsageView(@NotNull UsageGroupingRule[] rules) {
     UsageViewPresentation presentation = new UsageViewPresentation();
     presentation.setUsagesString("searching for mock usages");
 
@@ -126,12 +242,8 @@ public class UsageNodeTreeBuilderTest extends LightPlatformTestCase {
     try {
       UsageViewImpl usageView = new UsageViewImpl(getProject(), presentation, UsageTarget.EMPTY_ARRAY, null);
       Disposer.register(getTestRootDisposable(), usageView);
-      for (Usage usage : usages) {
-        usageView.appendUsage(usage);
-      }
       UIUtil.dispatchAllInvocationEvents();
-
-      return usageView.getRoot();
+      return usageView;
     }
     finally {
       point.unregisterExtension(provider);
@@ -366,6 +478,40 @@ public class UsageNodeTreeBuilderTest extends LightPlatformTestCase {
     }
   }
 
+  private static class NavigatableUsage extends MockUsage {
+    NavigatableUsage(int index) {
+      super(index);
+    }
+
+    @Override
+    public boolean canNavigate() {
+      return true;
+    }
+  }
+
+  /**
+   * Sorted by id, on the line of the last digit of the id
+   */
+  private static class LineUsage extends MockUsage implements MergeableUsage, Comparable<LineUsage> {
+    LineUsage(int index) {
+      super(index);
+    }
+
+    @Override
+    public boolean merge(@NotNull MergeableUsage mergeableUsage) {
+      return mergeableUsage instanceof LineUsage && ((LineUsage)mergeableUsage).getId() % 10 == getId() % 10;
+    }
+
+    @Override
+    public void reset() {
+    }
+
+    @Override
+    public int compareTo(@NotNull LineUsage usage) {
+      return Integer.compare(getId(), usage.getId());
+    }
+  }
+
   public void testFilesWithTheSameNameButDifferentPathsEndUpInDifferentGroups() throws IOException {
     File ioDir = FileUtil.createTempDirectory("t", null, false);
     VirtualFile dir = null;
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2013-2016 consulo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.util.indexing;
+
+import com.intellij.openapi.util.io.ByteSequence;
+import com.intellij.openapi.util.io.FileUtil;
+import junit.framework.TestCase;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+public class PrebuiltIndexStorageTest extends TestCase {
+  private static final int INDEX_VERSION = 3;
+
+  private File myDir;
+  private File myMounted;
+  private File myCopy;
+  private int myExports;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myDir = FileUtil.createTempDirectory("prebuilt", "indices");
+    myMounted = new File(myDir, "mounted");
+    myCopy = new File(myDir, "copy");
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    try {
+      FileUtil.delete(myDir);
+    }
+    finally {
+      super.tearDown();
+    }
+  }
+
+  public void testLookupInCopyOfMountedData() throws Exception {
+    export(hash(1), "first");
+
+    PrebuiltIndexStorage storage = openMounted(INDEX_VERSION);
+    try {
+      assertEquals("first", get(storage, hash(1)));
+      assertNull(get(storage, hash(2)));
+    }
+    finally {
+      storage.close();
+    }
+    assertTrue(new File(myCopy, "version").isFile());
+
+    // the copy is up to date, so it is opened right away
+    storage = PrebuiltIndexStorage.openMounted(myMounted, myCopy, INDEX_VERSION);
+    assertNotNull(storage);
+    try {
+      assertEquals("first", get(storage, hash(1)));
+    }
+    finally {
+      storage.close();
+    }
+  }
+
+  public void testCopyIsRefreshedWhenMountedDataChanges() throws Exception {
+    export(hash(1), "first");
+    openMounted(INDEX_VERSION).close();
+
+    export(hash(2), "second");
+    PrebuiltIndexStorage storage = openMounted(INDEX_VERSION);
+    try {
+      assertEquals("first", get(storage, hash(1)));
+      assertEquals("second", get(storage, hash(2)));
+    }
+    finally {
+      storage.close();
+    }
+  }
+
+  public void testNoStorageForMissingDataOrOtherVersion() throws Exception {
+    assertNull(PrebuiltIndexStorage.openMounted(myMounted, myCopy, INDEX_VERSION));
+
+    export(hash(1), "first");
+    assertNull(PrebuiltIndexStorage.openMounted(myMounted, myCopy, INDEX_VERSION + 1));
+    assertFalse(myCopy.exists());
+  }
+
+  public void testNothingIsFoundInCorruptedData() throws Exception {
+    export(hash(1), "first");
+    byte[] garbage = new byte[1024];
+    Arrays.fill(garbage, (byte)42);
+    FileUtil.writeToFile(new File(myMounted, "values"), garbage);
+
+    PrebuiltIndexStorage storage = openMounted(INDEX_VERSION);
+    try {
+      assertNull(get(storage, hash(1)));
+    }
+    finally {
+      storage.close();
+    }
+    assertFalse(myCopy.exists());
+  }
+
+  private void export(@NotNull byte[] contentHash, @NotNull String value) throws IOException {
+    PrebuiltIndexStorage storage = PrebuiltIndexStorage.openExport(myMounted, INDEX_VERSION);
+    try {
+      storage.put(contentHash, new ByteSequence(value.getBytes("UTF-8")));
+    }
+    finally {
+      storage.close();
+    }
+    // the copy is checked by the sizes and the modification times, which may not change within a second
+    myExports++;
+    for (File file : myMounted.listFiles()) {
+      file.setLastModified(file.lastModified() + myExports * 10000L);
+    }
+  }
+
+  @NotNull
+  private PrebuiltIndexStorage openMounted(int indexVersion) throws Exception {
+    PrebuiltIndexStorage storage = PrebuiltIndexStorage.openMounted(myMounted, myCopy, indexVersion);
+    assertNotNull(storage);
+    storage.waitForOpening();
+    return storage;
+  }
+
+  @Nullable
+  private static String get(@NotNull PrebuiltIndexStorage storage, @NotNull byte[] contentHash) throws IOException {
+    ByteSequence value = storage.get(contentHash);
+    return value == null ? null : new String(value.getBytes(), value.getOffset(), value.getLength(), "UTF-8");
+  }
+
+  @NotNull
+  private static byte[] hash(int seed) {
+    byte[] hash = new byte[20];
+    Arrays.fill(hash, (byte)seed);
+    return hash;
+  }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2013-2016 consulo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.util.text;
+
+import com.intellij.testFramework.PlatformTestUtil;
+import com.intellij.util.ThrowableRunnable;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class StringSearcherPerformanceTest {
+  private static final String[] WORDS = {"getValue", "setValue", "myProject", "PsiElement", "process", "return", "final", "String"};
+
+  private static final char[] TEXT = generateText(4 * 1024 * 1024);
+
+  @Test
+  public void arrayScan() throws Exception {
+    final StringSearcher searcher = new StringSearcher("PsiElement", true, true);
+    final CharSequence text = new CharArrayCharSequence(TEXT);
+    assertEquals(countOccurrences(searcher, text, null), countOccurrences(searcher, text, TEXT));
+
+    PlatformTestUtil.startPerformanceTest("StringSearcher.scan() over char[]", 1000, new ThrowableRunnable() {
+      @Override
+      public void run() throws Throwable {
+        for (int i = 0; i < 20; i++) {
+          countOccurrences(searcher, text, TEXT);
+        }
+      }
+    }).cpuBound().assertTiming();
+  }
+
+  @Test
+  public void multiWordSearch() throws Exception {
+    final MultiStringSearcher searcher = new MultiStringSearcher(WORDS, true);
+    final CharSequence text = new CharArrayCharSequence(TEXT);
+
+    PlatformTestUtil.startPerformanceTest("MultiStringSearcher for " + WORDS.length + " words", 1500, new ThrowableRunnable() {
+      @Override
+      public void run() throws Throwable {
+        for (int i = 0; i < 5; i++) {
+          searcher.processOccurrences(text, TEXT, 0, TEXT.length, new MultiStringSearcher.OccurrenceProcessor() {
+            @Override
+            public boolean process(int patternIndex, int offset) {
+              return true;
+            }
+          });
+        }
+      }
+    }).cpuBound().assertTiming();
+  }
+
+  private static int countOccurrences(StringSearcher searcher, CharSequence text, char[] textArray) {
+    int count = 0;
+    int offset = 0;
+    while ((offset = searcher.scan(text, textArray, offset, text.length())) >= 0) {
+      count++;
+      offset++;
+    }
+    return count;
+  }
+
+  private static char[] generateText(int length) {
+    Random random = new Random(17);
+    StringBuilder builder = new StringBuilder(length + 16);
+    while (builder.length() < length) {
+      builder.append(WORDS[random.nextInt(WORDS.length)]);
+      builder.append(random.nextInt(3) == 0 ? '\n' : ' ');
+    }
+    builder.setLength(length);
+    return builder.toString().toCharArray();
+  }
+}
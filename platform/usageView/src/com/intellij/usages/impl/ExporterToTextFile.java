@@ -24,7 +24,7 @@ import com.intellij.util.SystemProperties;
 import javax.swing.*;
 import javax.swing.event.ChangeListener;
 import javax.swing.tree.DefaultMutableTreeNode;
-import java.util.Enumeration;
+import javax.swing.tree.TreeNode;
 import java.util.TooManyListenersException;
 
 /**
@@ -68,10 +68,8 @@ class ExporterToTextFile implements com.intellij.ide.ExporterToTextFile {
       childIndent = indent;
     }
 
-    Enumeration enumeration = node.children();
-    while (enumeration.hasMoreElements()) {
-      DefaultMutableTreeNode child = (DefaultMutableTreeNode)enumeration.nextElement();
-      appendNode(buf, child, lineSeparator, childIndent);
+    for (TreeNode child : UsageViewImpl.getModelChildren(node)) {
+      appendNode(buf, (DefaultMutableTreeNode)child, lineSeparator, childIndent);
     }
   }
 
@@ -20,6 +20,7 @@ import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.pom.Navigatable;
 import com.intellij.usages.Usage;
 import com.intellij.usages.UsageGroup;
+import com.intellij.usages.UsageInfo2UsageAdapter;
 import com.intellij.usages.UsageView;
 import com.intellij.usages.rules.MergeableUsage;
 import com.intellij.util.Consumer;
@@ -40,7 +41,8 @@ public class GroupNode extends Node implements Navigatable, Comparable<GroupNode
   private static final NodeComparator COMPARATOR = new NodeComparator();
   private final int myRuleIndex;
   private int myRecursiveUsageCount; // EDT only access
-  private final List<Node> myChildren = new SmartList<>(); // guarded by this
+  private final SmartList<Node> myChildren = new SmartList<>(); // guarded by this
+  private final SmartList<UsageNode> myUncountedUsages = new SmartList<>(); // usage children not added to myRecursiveUsageCount yet, guarded by this
 
   GroupNode(Node parent, @Nullable UsageGroup group, int ruleIndex) {
     setUserObject(group);
@@ -73,6 +75,15 @@ public class GroupNode extends Node implements Navigatable, Comparable<GroupNode
     return ObjectUtils.notNull(children, Collections.emptyList());
   }
 
+  // swing children of a collapsed group may not be synchronized with the model yet, see UsageViewImpl.fireEvents()
+  @Override
+  public boolean isLeaf() {
+    if (getChildCount() != 0) return false;
+    synchronized (this) {
+      return myChildren.isEmpty();
+    }
+  }
+
   @NotNull
   GroupNode addOrGetGroup(@NotNull UsageGroup group, int ruleIndex, @NotNull Consumer<Node> edtInsertedUnderQueue) {
     GroupNode newNode = new GroupNode(this, group, ruleIndex);
@@ -130,88 +141,148 @@ public class GroupNode extends Node implements Navigatable, Comparable<GroupNode
     super.removeAllChildren();
     synchronized (this) {
       myChildren.clear();
+      myUncountedUsages.clear();
     }
     myRecursiveUsageCount = 0;
   }
 
   @Nullable
-  private UsageNode tryMerge(@NotNull Usage usage) {
+  private UsageNode tryMerge(@NotNull Usage usage, int insertionIndex) {
     if (!(usage instanceof MergeableUsage)) return null;
     MergeableUsage mergeableUsage = (MergeableUsage)usage;
-    for (UsageNode node : getUsageNodes()) {
-      Usage original = node.getUsage();
-      if (original == mergeableUsage) {
-        // search returned duplicate usage, ignore
-        return node;
-      }
-      if (original instanceof MergeableUsage) {
-        if (((MergeableUsage)original).merge(mergeableUsage)) return node;
+    if (usage instanceof UsageInfo2UsageAdapter) {
+      // these usages are sorted by file and offset, so the usage of the same line is next to the insertion point,
+      // other comparable usages may be sorted in an order unrelated to their lines
+      for (int i = Math.max(0, insertionIndex - 1); i <= Math.min(insertionIndex + 1, myChildren.size() - 1); i++) {
+        Node node = myChildren.get(i);
+        if (node instanceof UsageNode && tryMerge((UsageNode)node, mergeableUsage)) return (UsageNode)node;
       }
+      return null;
+    }
+
+    for (Node node : myChildren) {
+      if (node instanceof UsageNode && tryMerge((UsageNode)node, mergeableUsage)) return (UsageNode)node;
     }
 
     return null;
   }
 
+  private static boolean tryMerge(@NotNull UsageNode node, @NotNull MergeableUsage mergeableUsage) {
+    Usage original = node.getUsage();
+    if (original == mergeableUsage) {
+      // search returned duplicate usage, ignore
+      return true;
+    }
+    return original instanceof MergeableUsage && ((MergeableUsage)original).merge(mergeableUsage);
+  }
+
   void removeUsage(@NotNull UsageNode usage, @NotNull DefaultTreeModel treeModel) {
     removeUsagesBulk(Collections.singleton(usage), treeModel);
   }
 
   boolean removeUsagesBulk(@NotNull Set<UsageNode> usages, @NotNull DefaultTreeModel treeModel) {
+    return removeUsagesAndCount(usages, treeModel) >= 0;
+  }
+
+  /**
+   * @return the number of removed usages which were added to the recursive usage counts already, -1 if no usage was removed
+   */
+  private int removeUsagesAndCount(@NotNull Set<UsageNode> usages, @NotNull DefaultTreeModel treeModel) {
     ApplicationManager.getApplication().assertIsDispatchThread();
-    boolean removed;
+    int counted = -1;
     synchronized (this) {
-      removed = myChildren.removeAll(usages);
-
-      if (!removed) {
+      int size = myChildren.size();
+      if (myChildren.removeAll(usages)) {
+        // usages inserted since the last countInsertedUsages() call are not in the recursive counts
+        int uncounted = myUncountedUsages.size();
+        myUncountedUsages.removeAll(usages);
+        counted = size - myChildren.size() - (uncounted - myUncountedUsages.size());
+      }
+      else {
         for (GroupNode groupNode : getSubGroups()) {
-          if (groupNode.removeUsagesBulk(usages, treeModel)) {
+          counted = groupNode.removeUsagesAndCount(usages, treeModel);
+          if (counted >= 0) {
             if (groupNode.getRecursiveUsageCount() == 0) {
-              treeModel.removeNodeFromParent(groupNode);
+              // the subgroup is not inserted into the swing children of this group while it is collapsed
+              if (getIndex(groupNode) >= 0) {
+                treeModel.removeNodeFromParent(groupNode);
+              }
               myChildren.remove(groupNode);
             }
-            removed = true;
             break;
           }
         }
       }
     }
 
-    if (removed) {
-      wasRemoved(treeModel);
+    if (counted >= 0) {
+      wasRemoved(treeModel, counted);
     }
 
-    return removed;
+    return counted;
   }
 
-  private void wasRemoved(@NotNull DefaultTreeModel treeModel) {
+  private void wasRemoved(@NotNull DefaultTreeModel treeModel, int count) {
     ApplicationManager.getApplication().assertIsDispatchThread();
-    myRecursiveUsageCount--;
+    myRecursiveUsageCount -= count;
     treeModel.nodeChanged(this);
   }
 
   @NotNull
   UsageNode addUsage(@NotNull Usage usage, @NotNull Consumer<Node> edtInsertedUnderQueue, boolean filterDuplicateLines) {
-    final UsageNode newNode;
+    final UsageNode newNode = new UsageNode(this, usage);
     synchronized (this) {
+      int index = getNodeIndex(newNode, myChildren);
+      if (index < 0) index = -index - 1;
       if (filterDuplicateLines) {
-        UsageNode mergedWith = tryMerge(usage);
+        UsageNode mergedWith = tryMerge(usage, index);
         if (mergedWith != null) {
           return mergedWith;
         }
       }
-      newNode = new UsageNode(this, usage);
-      int index = getNodeInsertionIndex(newNode, myChildren);
       myChildren.add(index, newNode);
+      myUncountedUsages.add(newNode);
     }
     edtInsertedUnderQueue.consume(this);
     return newNode;
   }
 
-  void incrementUsageCount() {
+  /**
+   * Adds the usages inserted into the model since the last call to the recursive usage counts,
+   * whether the swing children of this group are synchronized with the model or not
+   */
+  void countInsertedUsages() {
+    ApplicationManager.getApplication().assertIsDispatchThread();
+    int count;
+    synchronized (this) {
+      count = myUncountedUsages.size();
+      myUncountedUsages.clear();
+    }
+    if (count > 0) {
+      incrementUsageCount(count);
+    }
+  }
+
+  /**
+   * Drops the spare capacity of the model and swing children lists of the subtree, called once the search is finished
+   */
+  void trimToSize() {
     ApplicationManager.getApplication().assertIsDispatchThread();
+    synchronized (this) {
+      myChildren.trimToSize();
+    }
+    if (children != null) {
+      children.trimToSize();
+    }
+    for (GroupNode groupNode : getSubGroups()) {
+      groupNode.trimToSize();
+    }
+  }
+
+  private void incrementUsageCount(int count) {
     GroupNode groupNode = this;
     while (true) {
-      groupNode.myRecursiveUsageCount++;
+      groupNode.myRecursiveUsageCount += count;
       TreeNode parent = groupNode.getParent();
       if (!(parent instanceof GroupNode)) return;
       groupNode = (GroupNode)parent;
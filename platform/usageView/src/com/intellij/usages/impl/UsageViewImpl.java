@@ -81,6 +81,7 @@ import javax.swing.event.TreeExpansionEvent;
 import javax.swing.event.TreeExpansionListener;
 import javax.swing.event.TreeSelectionEvent;
 import javax.swing.event.TreeSelectionListener;
+import javax.swing.event.TreeWillExpandListener;
 import javax.swing.plaf.TreeUI;
 import javax.swing.plaf.basic.BasicTreeUI;
 import javax.swing.tree.*;
@@ -369,6 +370,8 @@ public class UsageViewImpl implements UsageView {
   // it is needed for firing javax.swing.tree.DefaultTreeModel.fireTreeNodesInserted() events in batch
   // has to be linked because events for child nodes should be fired after events for parent nodes
   private final Set<Node> nodesInsertedUnder = new LinkedHashSet<>(); // guarded by nodesInsertedUnder
+  // collapsed groups which swing children are not synchronized with the model yet, EDT only access
+  private final Set<GroupNode> myDeferredGroups = new THashSet<>();
 
   private final Consumer<Node> edtNodeInsertedUnderQueue = (@NotNull Node parent) -> {
     if (!getPresentation().isDetachedMode()) {
@@ -389,40 +392,23 @@ public class UsageViewImpl implements UsageView {
     // for each node synchronize its Swing children (javax.swing.tree.DefaultMutableTreeNode.children)
     // and its model children (com.intellij.usages.impl.GroupNode.getChildren())
     // by issuing corresponding javax.swing.tree.DefaultMutableTreeNode.insert() and then javax.swing.tree.DefaultTreeModel.nodesWereInserted()
-    TIntArrayList indicesToFire = new TIntArrayList();
-    List<Node> nodesToFire = new ArrayList<>();
+    // children of collapsed groups are synchronized only when the group is expanded,
+    // so the swing tree holds the nodes of visible rows and their siblings only
     for (Node parentNode : insertedUnder) {
-      List<Node> swingChildren = ((GroupNode)parentNode).getSwingChildren();
-      synchronized (parentNode) {
-        List<Node> modelChildren = ((GroupNode)parentNode).getChildren();
-        assert modelChildren.size() >= swingChildren.size();
-
-        int k = 0; // index in swingChildren
-        for (int i = 0; i < modelChildren.size(); i++) {
-          Node modelNode = modelChildren.get(i);
-          Node swingNode = k >= swingChildren.size() ? null : swingChildren.get(k);
-          if (swingNode == modelNode) {
-            k++;
-            continue;
-          }
-          parentNode.insertNewNode(modelNode, i);
-          indicesToFire.add(i);
-          nodesToFire.add(modelNode);
-          if (k==i) k++; // ignore just inserted node
-          if (modelNode instanceof UsageNode) {
-            Node parent = (Node)modelNode.getParent();
-            if (parent instanceof GroupNode) {
-              ((GroupNode)parent).incrementUsageCount();
-            }
-          }
-        }
+      GroupNode groupNode = (GroupNode)parentNode;
+      groupNode.countInsertedUsages();
+      if (groupNode == myRoot || myTree != null && myTree.isExpanded(new TreePath(groupNode.getPath()))) {
+        myDeferredGroups.remove(groupNode);
+        syncSwingChildren(groupNode);
+      }
+      else {
+        myDeferredGroups.add(groupNode);
       }
-
-      myModel.fireTreeNodesInserted(parentNode, myModel.getPathToRoot(parentNode), indicesToFire.toNativeArray(), nodesToFire.toArray(new Node[0]));
-      nodesToFire.clear();
-      indicesToFire.clear();
     }
 
+    TIntArrayList indicesToFire = new TIntArrayList();
+    List<Node> nodesToFire = new ArrayList<>();
+
     // group nodes from changedNodesToFire by their parents and issue corresponding javax.swing.tree.DefaultTreeModel.fireTreeNodesChanged()
     List<Map.Entry<Node, Collection<Node>>> changed;
     synchronized (changedNodesToFire) {
@@ -448,6 +434,52 @@ public class UsageViewImpl implements UsageView {
   }
 
 
+  private void syncSwingChildren(@NotNull GroupNode parentNode) {
+    ApplicationManager.getApplication().assertIsDispatchThread();
+    TIntArrayList indicesToFire = new TIntArrayList();
+    List<Node> nodesToFire = new ArrayList<>();
+    List<Node> swingChildren = parentNode.getSwingChildren();
+    synchronized (parentNode) {
+      List<Node> modelChildren = parentNode.getChildren();
+      assert modelChildren.size() >= swingChildren.size();
+
+      int k = 0; // index in swingChildren
+      for (int i = 0; i < modelChildren.size(); i++) {
+        Node modelNode = modelChildren.get(i);
+        Node swingNode = k >= swingChildren.size() ? null : swingChildren.get(k);
+        if (swingNode == modelNode) {
+          k++;
+          continue;
+        }
+        parentNode.insertNewNode(modelNode, i);
+        indicesToFire.add(i);
+        nodesToFire.add(modelNode);
+        if (k==i) k++; // ignore just inserted node
+      }
+    }
+
+    if (!nodesToFire.isEmpty()) {
+      myModel.fireTreeNodesInserted(parentNode, myModel.getPathToRoot(parentNode), indicesToFire.toNativeArray(), nodesToFire.toArray(new Node[0]));
+    }
+  }
+
+  /**
+   * Children of a group in the model, including the ones which are not inserted into the swing tree while the group is collapsed
+   */
+  @NotNull
+  static List<TreeNode> getModelChildren(@NotNull DefaultMutableTreeNode node) {
+    if (node instanceof GroupNode) {
+      synchronized (node) {
+        return new ArrayList<>(((GroupNode)node).getChildren());
+      }
+    }
+    List<TreeNode> children = new ArrayList<>(node.getChildCount());
+    for (int i = 0; i < node.getChildCount(); i++) {
+      children.add(node.getChildAt(i));
+    }
+    return children;
+  }
+
   boolean searchHasBeenCancelled() {
     ProgressIndicator progress = associatedProgress;
     return progress != null && progress.isCanceled();
@@ -622,6 +654,20 @@ public class UsageViewImpl implements UsageView {
     TreeUtil.selectFirstNode(myTree);
     PopupHandler.installPopupHandler(myTree, IdeActions.GROUP_USAGE_VIEW_POPUP, ActionPlaces.USAGE_VIEW_POPUP);
 
+    myTree.addTreeWillExpandListener(new TreeWillExpandListener() {
+      @Override
+      public void treeWillExpand(TreeExpansionEvent event) {
+        Object component = event.getPath().getLastPathComponent();
+        if (component instanceof GroupNode && myDeferredGroups.remove(component)) {
+          syncSwingChildren((GroupNode)component);
+        }
+      }
+
+      @Override
+      public void treeWillCollapse(TreeExpansionEvent event) {
+      }
+    });
+
     myTree.addTreeExpansionListener(new TreeExpansionListener() {
       @Override
       public void treeExpanded(TreeExpansionEvent event) {
@@ -1047,6 +1093,7 @@ public class UsageViewImpl implements UsageView {
   private void reset() {
     ApplicationManager.getApplication().assertIsDispatchThread();
     myUsageNodes.clear();
+    myDeferredGroups.clear();
     myModel.reset();
     if (!myPresentation.isDetachedMode()) {
       //noinspection SSBasedInspection
@@ -1093,7 +1140,10 @@ public class UsageViewImpl implements UsageView {
       UIUtil.invokeLaterIfNeeded(() -> {
         if (isDisposed) return;
         DefaultTreeModel treeModel = (DefaultTreeModel)myTree.getModel();
-        treeModel.removeNodeFromParent(node);
+        TreeNode parent = node.getParent();
+        if (parent != null && parent.getIndex(node) >= 0) {
+          treeModel.removeNodeFromParent(node);
+        }
         ((GroupNode)myTree.getModel().getRoot()).removeUsage(node, treeModel);
       });
     }
@@ -1291,6 +1341,10 @@ public class UsageViewImpl implements UsageView {
     if (!myPresentation.isDetachedMode()) {
       UIUtil.invokeLaterIfNeeded(() -> {
         if (isDisposed) return;
+        if (!searchInProgress) {
+          // the children lists keep their growth capacity otherwise, noticeable with many usages
+          myRoot.trimToSize();
+        }
         final UsageNode firstUsageNode = myModel.getFirstUsageNode();
         if (firstUsageNode == null) return;
 
@@ -1523,10 +1577,8 @@ public class UsageViewImpl implements UsageView {
       usages.add(usage);
     }
 
-    Enumeration enumeration = node.children();
-    while (enumeration.hasMoreElements()) {
-      DefaultMutableTreeNode child = (DefaultMutableTreeNode)enumeration.nextElement();
-      collectUsages(child, usages);
+    for (TreeNode child : getModelChildren(node)) {
+      collectUsages((DefaultMutableTreeNode)child, usages);
     }
   }
 
@@ -1535,10 +1587,8 @@ public class UsageViewImpl implements UsageView {
       nodes.add((Node)node);
     }
 
-    Enumeration enumeration = node.children();
-    while (enumeration.hasMoreElements()) {
-      DefaultMutableTreeNode child = (DefaultMutableTreeNode)enumeration.nextElement();
-      collectAllChildNodes(child, nodes);
+    for (TreeNode child : getModelChildren(node)) {
+      collectAllChildNodes((DefaultMutableTreeNode)child, nodes);
     }
   }
 
@@ -1605,11 +1655,18 @@ public class UsageViewImpl implements UsageView {
       mySupport = new OccurenceNavigatorSupport(tree) {
         @Override
         protected Navigatable createDescriptorForNode(DefaultMutableTreeNode node) {
-          if (node.getChildCount() > 0) return null;
+          if (!node.isLeaf()) return null;
           if (node instanceof Node && ((Node)node).isExcluded()) return null;
           return getNavigatableForNode(node);
         }
 
+        // usages of collapsed groups are not in the tree until the group is expanded by selecting the found one
+        @NotNull
+        @Override
+        protected List<? extends TreeNode> getChildren(@NotNull TreeNode node) {
+          return getModelChildren((DefaultMutableTreeNode)node);
+        }
+
         @Override
         public String getNextOccurenceActionName() {
           return UsageViewBundle.message("action.next.occurrence");
@@ -47,6 +47,28 @@ public class BaseOSProcessHandler extends ProcessHandler implements TaskExecutor
       return new BaseDataReader.AdaptiveSleepingPolicy();
     }
   };
+  private static final Options SHARED_NON_BLOCKING = new Options() {
+    @Override
+    public BaseDataReader.SleepingPolicy policy() {
+      return BaseDataReader.SleepingPolicy.SIMPLE;
+    }
+
+    @Override
+    public boolean sharedPolling() {
+      return true;
+    }
+  };
+  private static final Options SHARED_ADAPTIVE_NON_BLOCKING = new Options() {
+    @Override
+    public BaseDataReader.SleepingPolicy policy() {
+      return new BaseDataReader.AdaptiveSleepingPolicy();
+    }
+
+    @Override
+    public boolean sharedPolling() {
+      return true;
+    }
+  };
 
   protected final Process myProcess;
   protected final String myCommandLine;
@@ -108,11 +130,12 @@ public class BaseOSProcessHandler extends ProcessHandler implements TaskExecutor
     if (!useNonBlockingRead()) {
       return Options.BLOCKING;
     }
-    else if (useAdaptiveSleepingPolicyWhenReadingOutput()) {
-      return ADAPTIVE_NON_BLOCKING;
+    boolean shared = Registry.is("output.reader.shared.polling", false);
+    if (useAdaptiveSleepingPolicyWhenReadingOutput()) {
+      return shared ? SHARED_ADAPTIVE_NON_BLOCKING : ADAPTIVE_NON_BLOCKING;
     }
     else {
-      return Options.NON_BLOCKING;
+      return shared ? SHARED_NON_BLOCKING : Options.NON_BLOCKING;
     }
   }
 
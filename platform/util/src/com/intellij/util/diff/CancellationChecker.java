@@ -0,0 +1,32 @@
+/*
+ * Copyright 2013-2016 consulo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.util.diff;
+
+/**
+ * Lets long diff computations be interrupted, usually delegates to a progress indicator.
+ */
+public interface CancellationChecker {
+  CancellationChecker EMPTY = new CancellationChecker() {
+    @Override
+    public void checkCanceled() {
+    }
+  };
+
+  /**
+   * Throws an unchecked exception if the computation must be stopped
+   */
+  void checkCanceled();
+}
@@ -45,6 +45,12 @@ public class Diff {
 
   @Nullable
   public static <T> Change buildChanges(@NotNull T[] objects1, @NotNull T[] objects2) throws FilesTooBigForDiffException {
+    return buildChanges(objects1, objects2, CancellationChecker.EMPTY);
+  }
+
+  @Nullable
+  public static <T> Change buildChanges(@NotNull T[] objects1, @NotNull T[] objects2, @NotNull CancellationChecker checker)
+          throws FilesTooBigForDiffException {
 
     // Old variant of enumerator worked incorrectly with null values.
     // This check is to ensure that the corrected version does not introduce bugs.
@@ -61,11 +67,17 @@ public class Diff {
     Enumerator<T> enumerator = new Enumerator<T>(trimmedLength, ContainerUtil.<T>canonicalStrategy());
     int[] ints1 = enumerator.enumerate(objects1, startShift, endCut);
     int[] ints2 = enumerator.enumerate(objects2, startShift, endCut);
-    return doBuildChanges(ints1, ints2, new ChangeBuilder(startShift));
+    return doBuildChanges(ints1, ints2, new ChangeBuilder(startShift), checker);
   }
 
   @Nullable
   public static Change buildChanges(@NotNull int[] array1, @NotNull int[] array2) throws FilesTooBigForDiffException {
+    return buildChanges(array1, array2, CancellationChecker.EMPTY);
+  }
+
+  @Nullable
+  public static Change buildChanges(@NotNull int[] array1, @NotNull int[] array2, @NotNull CancellationChecker checker)
+          throws FilesTooBigForDiffException {
     final int startShift = getStartShift(array1, array2);
     final int endCut = getEndCut(array1, array2, startShift);
 
@@ -75,7 +87,7 @@ public class Diff {
     boolean copyArray = startShift != 0 || endCut != 0;
     int[] ints1 = copyArray ? Arrays.copyOfRange(array1, startShift, array1.length - endCut) : array1;
     int[] ints2 = copyArray ? Arrays.copyOfRange(array2, startShift, array2.length - endCut) : array2;
-    return doBuildChanges(ints1, ints2, new ChangeBuilder(startShift));
+    return doBuildChanges(ints1, ints2, new ChangeBuilder(startShift), checker);
   }
 
   @Nullable
@@ -89,8 +101,10 @@ public class Diff {
     return new Ref<Change>(change);
   }
 
-  private static Change doBuildChanges(@NotNull int[] ints1, @NotNull int[] ints2, @NotNull ChangeBuilder builder)
-          throws FilesTooBigForDiffException {
+  private static Change doBuildChanges(@NotNull int[] ints1,
+                                       @NotNull int[] ints2,
+                                       @NotNull ChangeBuilder builder,
+                                       @NotNull CancellationChecker checker) throws FilesTooBigForDiffException {
     Reindexer reindexer = new Reindexer(); // discard unique elements, that have no chance to be matched
     int[][] discarded = reindexer.discardUnique(ints1, ints2);
 
@@ -103,25 +117,42 @@ public class Diff {
     BitSet[] changes;
     if (Registry.is("diff.patience.alg")) {
       PatienceIntLCS patienceIntLCS = new PatienceIntLCS(discarded[0], discarded[1]);
-      patienceIntLCS.execute();
+      patienceIntLCS.execute(false, checker);
       changes = patienceIntLCS.getChanges();
     }
     else {
+      changes = new BitSet[]{new BitSet(discarded[0].length), new BitSet(discarded[1].length)};
+      buildLCS(discarded[0], discarded[1], 0, discarded[0].length, 0, discarded[1].length, changes[0], changes[1], checker);
+    }
+
+    reindexer.reindex(changes, builder);
+    return builder.getFirstChange();
+  }
+
+  /**
+   * Small ranges are compared by {@link IntLCS}, its memory consumption grows with the number of changes.
+   * Bigger ones are compared by linear space {@link MyersLCS}, so there is no limit on the number of changes.
+   */
+  static void buildLCS(@NotNull int[] first,
+                       @NotNull int[] second,
+                       int start1,
+                       int count1,
+                       int start2,
+                       int count2,
+                       @NotNull BitSet changes1,
+                       @NotNull BitSet changes2,
+                       @NotNull CancellationChecker checker) {
+    long length = count1 + count2;
+    if (length * length <= FilesTooBigForDiffException.MAX_BUFFER_LEN) {
       try {
-        IntLCS intLCS = new IntLCS(discarded[0], discarded[1]);
-        intLCS.execute();
-        changes = intLCS.getChanges();
+        new IntLCS(first, second, start1, count1, start2, count2, changes1, changes2).execute();
+        return;
       }
       catch (FilesTooBigForDiffException e) {
-        PatienceIntLCS patienceIntLCS = new PatienceIntLCS(discarded[0], discarded[1]);
-        patienceIntLCS.execute(true);
-        changes = patienceIntLCS.getChanges();
-        LOG.info("Successful fallback to patience diff");
+        LOG.info("Falling back to linear space diff");
       }
     }
-
-    reindexer.reindex(changes, builder);
-    return builder.getFirstChange();
+    new MyersLCS(first, second, start1, count1, start2, count2, changes1, changes2).execute(checker);
   }
 
   private static <T> int getStartShift(@NotNull final T[] o1, @NotNull final T[] o2) {
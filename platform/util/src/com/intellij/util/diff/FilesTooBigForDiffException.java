@@ -6,7 +6,7 @@ package com.intellij.util.diff;
  *         Time: 10:30 PM
  */
 public class FilesTooBigForDiffException extends Exception {
-  public static int MAX_BUFFER_LEN = 10000000; // Limit for memory consumption in IntLCS algorithm. ~ 2000 changed lines, 50Mb memory
+  public static int MAX_BUFFER_LEN = 10000000; // Limit for memory consumption in IntLCS algorithm, bigger ranges are compared by linear space MyersLCS
   public static int MAX_BAD_LINES = 3; // Do not try to compare two lines by-word after this much fails.
 
   private final int myNumLines;
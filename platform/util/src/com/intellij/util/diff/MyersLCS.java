@@ -0,0 +1,245 @@
+/*
+ * Copyright 2013-2016 consulo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.util.diff;
+
+import gnu.trove.TIntArrayList;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.BitSet;
+
+/**
+ * Linear space variant of the Myers algorithm ("An O(ND) Difference Algorithm and Its Variations", 4b).
+ * The middle snake of the edit graph is found by simultaneous forward and backward searches, then both halves are compared separately.
+ * <p/>
+ * Unlike {@link IntLCS} memory consumption does not depend on the number of changes.
+ * The running time is bounded: a middle snake search gives up after {@link #myThreshold} steps and splits the sequences at
+ * the furthest reaching forward path instead, so the result may be not minimal for very different sequences.
+ */
+class MyersLCS {
+  // limits the number of steps done on one level of recursion, about (count1 + count2) * threshold comparisons
+  private static final int MAX_COST = 20000000;
+  private static final int MIN_THRESHOLD = 256;
+
+  private final int[] myFirst;
+  private final int[] mySecond;
+
+  private final int myStart1;
+  private final int myStart2;
+  private final int myCount1;
+  private final int myCount2;
+
+  private final BitSet myChanges1;
+  private final BitSet myChanges2;
+
+  private final int myThreshold;
+
+  // furthest reaching x by diagonal, -1 for unreachable diagonals
+  private final int[] myForward;
+  private final int[] myBackward;
+
+  // result of findMiddleSnake, relative to the compared ranges
+  private int mySnakeX1;
+  private int mySnakeY1;
+  private int mySnakeX2;
+  private int mySnakeY2;
+
+  public MyersLCS(int[] first, int[] second) {
+    this(first, second, 0, first.length, 0, second.length, new BitSet(first.length), new BitSet(second.length));
+  }
+
+  public MyersLCS(int[] first, int[] second, int start1, int count1, int start2, int count2, BitSet changes1, BitSet changes2) {
+    this(first, second, start1, count1, start2, count2, changes1, changes2,
+         Math.max(MIN_THRESHOLD, MAX_COST / Math.max(1, count1 + count2)));
+  }
+
+  MyersLCS(int[] first, int[] second, int start1, int count1, int start2, int count2, BitSet changes1, BitSet changes2, int threshold) {
+    myFirst = first;
+    mySecond = second;
+    myStart1 = start1;
+    myStart2 = start2;
+    myCount1 = count1;
+    myCount2 = count2;
+
+    myChanges1 = changes1;
+    myChanges2 = changes2;
+
+    myThreshold = threshold;
+    myForward = new int[count1 + count2 + 4];
+    myBackward = new int[count1 + count2 + 4];
+  }
+
+  public void execute() {
+    execute(CancellationChecker.EMPTY);
+  }
+
+  public void execute(@NotNull CancellationChecker checker) {
+    // explicit stack, heuristic splits may be unbalanced
+    TIntArrayList stack = new TIntArrayList();
+    push(stack, myStart1, myCount1, myStart2, myCount2);
+
+    while (!stack.isEmpty()) {
+      int count2 = stack.remove(stack.size() - 1);
+      int start2 = stack.remove(stack.size() - 1);
+      int count1 = stack.remove(stack.size() - 1);
+      int start1 = stack.remove(stack.size() - 1);
+
+      while (count1 > 0 && count2 > 0 && myFirst[start1] == mySecond[start2]) {
+        start1++;
+        start2++;
+        count1--;
+        count2--;
+      }
+      while (count1 > 0 && count2 > 0 && myFirst[start1 + count1 - 1] == mySecond[start2 + count2 - 1]) {
+        count1--;
+        count2--;
+      }
+
+      if (count1 == 0 || count2 == 0) {
+        addChange(start1, count1, start2, count2);
+        continue;
+      }
+
+      if (!findMiddleSnake(start1, count1, start2, count2, checker)) {
+        addChange(start1, count1, start2, count2);
+        continue;
+      }
+
+      push(stack, start1, mySnakeX1, start2, mySnakeY1);
+      push(stack, start1 + mySnakeX2, count1 - mySnakeX2, start2 + mySnakeY2, count2 - mySnakeY2);
+    }
+  }
+
+  public BitSet[] getChanges() {
+    return new BitSet[]{myChanges1, myChanges2};
+  }
+
+  /**
+   * @return false if no split point was found, the ranges should be treated as completely changed
+   */
+  private boolean findMiddleSnake(int start1, int count1, int start2, int count2, @NotNull CancellationChecker checker) {
+    int delta = count1 - count2;
+    boolean odd = (delta & 1) != 0;
+    int max = (count1 + count2 + 1) / 2;
+    int offset = max + 1;
+    int limit = Math.min(max, myThreshold);
+
+    myForward[offset + 1] = 0;
+    myBackward[offset + 1] = 0;
+
+    for (int d = 0; d <= limit; d++) {
+      checker.checkCanceled();
+
+      for (int k = -d; k <= d; k += 2) {
+        int x = nextX(myForward, offset, k, d, count1, count2);
+        myForward[offset + k] = x;
+        if (x == -1) continue;
+
+        int y = x - k;
+        int x0 = x;
+        int y0 = y;
+        while (x < count1 && y < count2 && myFirst[start1 + x] == mySecond[start2 + y]) {
+          x++;
+          y++;
+        }
+        myForward[offset + k] = x;
+
+        if (odd && Math.abs(delta - k) <= d - 1) {
+          int backward = myBackward[offset + delta - k];
+          if (backward != -1 && x + backward >= count1) {
+            setSnake(x0, y0, x, y);
+            return true;
+          }
+        }
+      }
+
+      for (int k = -d; k <= d; k += 2) {
+        int x = nextX(myBackward, offset, k, d, count1, count2);
+        myBackward[offset + k] = x;
+        if (x == -1) continue;
+
+        int y = x - k;
+        int x0 = x;
+        int y0 = y;
+        while (x < count1 && y < count2 && myFirst[start1 + count1 - 1 - x] == mySecond[start2 + count2 - 1 - y]) {
+          x++;
+          y++;
+        }
+        myBackward[offset + k] = x;
+
+        if (!odd && Math.abs(delta - k) <= d) {
+          int forward = myForward[offset + delta - k];
+          if (forward != -1 && x + forward >= count1) {
+            setSnake(count1 - x, count2 - y, count1 - x0, count2 - y0);
+            return true;
+          }
+        }
+      }
+    }
+
+    // too expensive, split at the forward path that went the furthest
+    int bestX = -1;
+    int bestSum = 0;
+    for (int k = -limit; k <= limit; k += 2) {
+      int x = myForward[offset + k];
+      if (x != -1 && 2 * x - k > bestSum) {
+        bestSum = 2 * x - k;
+        bestX = x;
+      }
+    }
+    if (bestX == -1 || bestSum >= count1 + count2) {
+      return false;
+    }
+    int bestY = bestSum - bestX;
+    setSnake(bestX, bestY, bestX, bestY);
+    return true;
+  }
+
+  /**
+   * Furthest x reachable on the diagonal with one more step from the neighbour diagonals, staying inside of the edit graph
+   */
+  private static int nextX(@NotNull int[] ends, int offset, int k, int d, int count1, int count2) {
+    int horizontal = -1;
+    if (k > -d) {
+      int prev = ends[offset + k - 1];
+      if (prev != -1 && prev < count1) horizontal = prev + 1;
+    }
+    int vertical = -1;
+    if (k < d || d == 0) {
+      int prev = ends[offset + k + 1];
+      if (prev != -1 && prev - k <= count2) vertical = prev;
+    }
+    return horizontal > vertical ? horizontal : vertical;
+  }
+
+  private void setSnake(int x1, int y1, int x2, int y2) {
+    mySnakeX1 = x1;
+    mySnakeY1 = y1;
+    mySnakeX2 = x2;
+    mySnakeY2 = y2;
+  }
+
+  private void addChange(int start1, int count1, int start2, int count2) {
+    myChanges1.set(start1, start1 + count1);
+    myChanges2.set(start2, start2 + count2);
+  }
+
+  private static void push(@NotNull TIntArrayList stack, int start1, int count1, int start2, int count2) {
+    stack.add(start1);
+    stack.add(count1);
+    stack.add(start2);
+    stack.add(count2);
+  }
+}
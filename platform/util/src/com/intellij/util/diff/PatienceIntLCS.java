@@ -15,6 +15,8 @@
  */
 package com.intellij.util.diff;
 
+import org.jetbrains.annotations.NotNull;
+
 import java.util.BitSet;
 
 class PatienceIntLCS {
@@ -29,6 +31,8 @@ class PatienceIntLCS {
   private final BitSet myChanges1;
   private final BitSet myChanges2;
 
+  private CancellationChecker myChecker = CancellationChecker.EMPTY;
+
   public PatienceIntLCS(int[] first, int[] second) {
     this(first, second, 0, first.length, 0, second.length, new BitSet(first.length), new BitSet(second.length));
   }
@@ -50,6 +54,11 @@ class PatienceIntLCS {
   }
 
   public void execute(boolean failOnSmallReduction) throws FilesTooBigForDiffException {
+    execute(failOnSmallReduction, CancellationChecker.EMPTY);
+  }
+
+  public void execute(boolean failOnSmallReduction, @NotNull CancellationChecker checker) throws FilesTooBigForDiffException {
+    myChecker = checker;
     int thresholdCheckCounter = failOnSmallReduction ? 2 : -1;
     execute(myStart1, myCount1, myStart2, myCount2, thresholdCheckCounter);
   }
@@ -58,6 +67,7 @@ class PatienceIntLCS {
     if (count1 == 0 && count2 == 0) {
       return;
     }
+    myChecker.checkCanceled();
 
     if (count1 == 0 || count2 == 0) {
       addChange(start1, count1, start2, count2);
@@ -86,8 +96,7 @@ class PatienceIntLCS {
 
       if (matching == null) {
         if (thresholdCheckCounter >= 0) checkReduction(count1, count2);
-        IntLCS intLCS = new IntLCS(myFirst, mySecond, start1, count1, start2, count2, myChanges1, myChanges2);
-        intLCS.execute();
+        Diff.buildLCS(myFirst, mySecond, start1, count1, start2, count2, myChanges1, myChanges2, myChecker);
       }
       else {
         int s1, s2, c1, c2;
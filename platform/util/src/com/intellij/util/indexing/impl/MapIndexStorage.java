@@ -18,6 +18,7 @@ package com.intellij.util.indexing.impl;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.util.Processor;
 import com.intellij.util.containers.SLRUCache;
+import com.intellij.util.containers.SLRUMap;
 import com.intellij.util.indexing.StorageException;
 import com.intellij.util.indexing.ValueContainer;
 import com.intellij.util.io.*;
@@ -38,6 +39,13 @@ public abstract class MapIndexStorage<Key, Value> implements IndexStorage<Key, V
   protected final File myBaseStorageFile;
   protected final KeyDescriptor<Key> myKeyDescriptor;
   private final int myCacheSize;
+  private final int myLoadedValuesCacheSize;
+  // values as they were read from myMap, survive flushes unlike myCache; guarded by itself
+  @Nullable private SLRUMap<Key, ValueContainer<Value>> myLoadedValues;
+  private boolean myInvalidatingLoadedValue;
+  private long myLoadedValuesHits;
+  private long myLoadedValuesMisses;
+  private long myLoadedValuesEvictions;
 
   protected final Lock l = new ReentrantLock();
   private final DataExternalizer<Value> myDataExternalizer;
@@ -57,9 +65,23 @@ public abstract class MapIndexStorage<Key, Value> implements IndexStorage<Key, V
                             final int cacheSize,
                             boolean keyIsUniqueForIndexedFile,
                             boolean initialize) throws IOException {
+    this(storageFile, keyDescriptor, valueExternalizer, cacheSize, 0, keyIsUniqueForIndexedFile, initialize);
+  }
+
+  /**
+   * @param loadedValuesCacheSize number of values read from the disk to keep in memory, see {@link #getLoadedValuesHits()}
+   */
+  protected MapIndexStorage(@NotNull File storageFile,
+                            @NotNull KeyDescriptor<Key> keyDescriptor,
+                            @NotNull DataExternalizer<Value> valueExternalizer,
+                            final int cacheSize,
+                            final int loadedValuesCacheSize,
+                            boolean keyIsUniqueForIndexedFile,
+                            boolean initialize) throws IOException {
     myBaseStorageFile = storageFile;
     myKeyDescriptor = keyDescriptor;
     myCacheSize = cacheSize;
+    myLoadedValuesCacheSize = loadedValuesCacheSize;
     myDataExternalizer = valueExternalizer;
     myKeyIsUniqueForIndexedFile = keyIsUniqueForIndexedFile;
     if (initialize) initMapAndCache();
@@ -95,7 +117,10 @@ public abstract class MapIndexStorage<Key, Value> implements IndexStorage<Key, V
           @Nullable
           @Override
           public ValueContainer<Value> compute() {
-            ValueContainer<Value> value;
+            ValueContainer<Value> value = getLoadedValue(key);
+            if (value != null) {
+              return value;
+            }
             try {
               value = map.get(key);
               if (value == null) {
@@ -105,6 +130,7 @@ public abstract class MapIndexStorage<Key, Value> implements IndexStorage<Key, V
             catch (IOException e) {
               throw new RuntimeException(e);
             }
+            putLoadedValue(key, value);
             return value;
           }
         });
@@ -114,7 +140,7 @@ public abstract class MapIndexStorage<Key, Value> implements IndexStorage<Key, V
       protected void onDropFromCache(final Key key, @NotNull final ChangeTrackingValueContainer<Value> valueContainer) {
         if (valueContainer.isDirty()) {
           try {
-            map.put(key, valueContainer);
+            storeValue(map, key, valueContainer);
           }
           catch (IOException e) {
             throw new RuntimeException(e);
@@ -124,6 +150,90 @@ public abstract class MapIndexStorage<Key, Value> implements IndexStorage<Key, V
     };
 
     myMap = map;
+    if (myLoadedValuesCacheSize > 0) {
+      myLoadedValues = new SLRUMap<Key, ValueContainer<Value>>(myLoadedValuesCacheSize, (int)Math.ceil(myLoadedValuesCacheSize * 0.25)) {
+        @Override
+        protected void onDropFromCache(Key key, ValueContainer<Value> value) {
+          if (!myInvalidatingLoadedValue) myLoadedValuesEvictions++;
+        }
+      };
+    }
+  }
+
+  /**
+   * Containers read from the disk are only copied by {@link ChangeTrackingValueContainer}, so they can be shared
+   */
+  @Nullable
+  private ValueContainer<Value> getLoadedValue(Key key) {
+    SLRUMap<Key, ValueContainer<Value>> loadedValues = myLoadedValues;
+    if (loadedValues == null) return null;
+    synchronized (loadedValues) {
+      ValueContainer<Value> value = loadedValues.get(key);
+      if (value != null) {
+        myLoadedValuesHits++;
+      }
+      else {
+        myLoadedValuesMisses++;
+      }
+      return value;
+    }
+  }
+
+  private void putLoadedValue(Key key, @NotNull ValueContainer<Value> value) {
+    SLRUMap<Key, ValueContainer<Value>> loadedValues = myLoadedValues;
+    if (loadedValues == null || !(value instanceof ValueContainerImpl)) return;
+    synchronized (loadedValues) {
+      loadedValues.put(key, value);
+    }
+  }
+
+  private void storeValue(@NotNull ValueContainerMap<Key, Value> map, Key key, @NotNull ChangeTrackingValueContainer<Value> container)
+    throws IOException {
+    // under the same lock as loading of values, so that a value being loaded can not be stored as loaded after the change
+    synchronized (map.getDataAccessLock()) {
+      invalidateLoadedValue(key);
+      map.put(key, container);
+    }
+  }
+
+  private void invalidateLoadedValue(Key key) {
+    SLRUMap<Key, ValueContainer<Value>> loadedValues = myLoadedValues;
+    if (loadedValues == null) return;
+    synchronized (loadedValues) {
+      myInvalidatingLoadedValue = true;
+      try {
+        loadedValues.remove(key);
+      }
+      finally {
+        myInvalidatingLoadedValue = false;
+      }
+    }
+  }
+
+  private void clearLoadedValues() {
+    SLRUMap<Key, ValueContainer<Value>> loadedValues = myLoadedValues;
+    if (loadedValues == null) return;
+    synchronized (loadedValues) {
+      myInvalidatingLoadedValue = true;
+      try {
+        loadedValues.clear();
+      }
+      finally {
+        myInvalidatingLoadedValue = false;
+      }
+    }
+  }
+
+  public long getLoadedValuesHits() {
+    return myLoadedValuesHits;
+  }
+
+  public long getLoadedValuesMisses() {
+    return myLoadedValuesMisses;
+  }
+
+  public long getLoadedValuesEvictions() {
+    return myLoadedValuesEvictions;
   }
 
   protected abstract void checkCanceled();
@@ -149,6 +259,10 @@ public abstract class MapIndexStorage<Key, Value> implements IndexStorage<Key, V
 
   @Override
   public void close() throws StorageException {
+    if (myLoadedValues != null && LOG.isDebugEnabled()) {
+      LOG.debug(myBaseStorageFile.getName() + " loaded values cache: hits=" + myLoadedValuesHits + ", misses=" + myLoadedValuesMisses +
+                ", evictions=" + myLoadedValuesEvictions);
+    }
     try {
       flush();
       myMap.close();
@@ -163,6 +277,7 @@ public abstract class MapIndexStorage<Key, Value> implements IndexStorage<Key, V
 
   @Override
   public void clear() throws StorageException {
+    clearLoadedValues();
     try {
       myMap.close();
     }
@@ -224,7 +339,7 @@ public abstract class MapIndexStorage<Key, Value> implements IndexStorage<Key, V
       // do not pollute the cache with keys unique to indexed file
       ChangeTrackingValueContainer<Value> valueContainer = new ChangeTrackingValueContainer<Value>(null);
       valueContainer.addValue(inputId, value);
-      myMap.put(key, valueContainer);
+      storeValue((ValueContainerMap<Key, Value>)myMap, key, valueContainer);
     }
     catch (IOException e) {
       throw new StorageException(e);
@@ -250,6 +365,7 @@ public abstract class MapIndexStorage<Key, Value> implements IndexStorage<Key, V
       for (Map.Entry<Key, ChangeTrackingValueContainer<Value>> entry : myCache.entrySet()) {
         entry.getValue().dropMergedData();
       }
+      clearLoadedValues();
     }
     finally {
       l.unlock();
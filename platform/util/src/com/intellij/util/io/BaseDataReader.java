@@ -17,11 +17,11 @@ package com.intellij.util.io;
 
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.IOException;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
+import java.util.concurrent.*;
 
 /**
  * @author Konstantin Kolosovsky.
@@ -35,6 +35,12 @@ public abstract class BaseDataReader {
 
   private Future<?> myFinishedFuture;
 
+  private final Object myPollLock = new Object();
+  private boolean myPollStopSignalled;
+  private int myPollGeneration;
+  private volatile ScheduledFuture<?> myNextPoll;
+  private String myPollThreadName;
+
   public BaseDataReader(SleepingPolicy sleepingPolicy) {
     mySleepingPolicy = sleepingPolicy != null ? sleepingPolicy : SleepingPolicy.SIMPLE;
   }
@@ -49,7 +55,14 @@ public abstract class BaseDataReader {
     if (StringUtil.isEmptyOrSpaces(presentableName)) {
       LOG.warn(new Throwable("Must provide not-empty presentable name"));
     }
-    if (myFinishedFuture == null) {
+    if (myFinishedFuture == null && mySleepingPolicy != SleepingPolicy.BLOCKING && isPolledInSharedPool()) {
+      myFinishedFuture = new CompletableFuture<Void>();
+      myPollThreadName = StringUtil.isEmptyOrSpaces(presentableName) ? null : "BaseDataReader: " + presentableName;
+      synchronized (myPollLock) {
+        schedulePoll(0);
+      }
+    }
+    else if (myFinishedFuture == null) {
       myFinishedFuture = executeOnPooledThread(new Runnable() {
         @Override
         public void run() {
@@ -101,6 +114,15 @@ public abstract class BaseDataReader {
   @NotNull
   protected abstract Future<?> executeOnPooledThread(@NotNull Runnable runnable);
 
+  /**
+   * A non-blocking reader may read its stream in a small pool shared by all such readers instead of a thread of its own:
+   * every read of the available data is scheduled to the pool after the time to sleep of the policy,
+   * so readers of idle processes don't occupy a thread. {@link #executeOnPooledThread(Runnable)} is not used then.
+   */
+  protected boolean isPolledInSharedPool() {
+    return false;
+  }
+
   public interface SleepingPolicy {
     int sleepTimeWhenWasActive = 1;
     int sleepTimeWhenIdle = 5;
@@ -191,10 +213,82 @@ public abstract class BaseDataReader {
     }
   }
 
+  // must be called under myPollLock, so the poll cannot run before its future is stored
+  private void schedulePoll(long delay) {
+    final int generation = ++myPollGeneration;
+    myNextPoll = SharedPollingExecutor.INSTANCE.schedule(new Runnable() {
+      @Override
+      public void run() {
+        poll(generation);
+      }
+    }, delay, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Single iteration of {@link #doRun()} for the shared pool. The polls of a reader don't overlap, as every poll schedules
+   * the next one when it's done, so the data is read and passed on without {@link #myPollLock}, and {@link #stop()} doesn't wait for it.
+   */
+  private void poll(int generation) {
+    synchronized (myPollLock) {
+      // stop() has cancelled this poll right when it started and scheduled another one
+      if (generation != myPollGeneration) return;
+    }
+    if (myFinishedFuture.isDone()) return;
+
+    String oldThreadName = Thread.currentThread().getName();
+    if (myPollThreadName != null) {
+      Thread.currentThread().setName(myPollThreadName);
+    }
+    boolean finished = true;
+    try {
+      final boolean read = readAvailable();
+
+      synchronized (myPollLock) {
+        if (!myPollStopSignalled) {
+          // if process stopped, there is no sense to sleep,
+          // just check if there is unread output in the stream
+          myPollStopSignalled = isStopped;
+          schedulePoll(myPollStopSignalled ? 0 : mySleepingPolicy.getTimeToSleep(read));
+          finished = false;
+        }
+      }
+    }
+    catch (IOException e) {
+      LOG.info(e);
+    }
+    catch (Exception e) {
+      LOG.error(e);
+    }
+    finally {
+      if (finished) {
+        try {
+          close();
+        }
+        catch (IOException e) {
+          LOG.error("Can't close stream", e);
+        }
+        finally {
+          ((CompletableFuture<?>)myFinishedFuture).complete(null);
+        }
+      }
+      Thread.currentThread().setName(oldThreadName);
+    }
+  }
+
   private void resumeReading() {
     synchronized (mySleepMonitor) {
       mySleepMonitor.notifyAll();
     }
+
+    if (myNextPoll == null) return;
+    // the lock makes the running poll either see isStopped or have its next poll scheduled already,
+    // it's held by the poll only while it schedules the next one, not while it reads
+    synchronized (myPollLock) {
+      ScheduledFuture<?> nextPoll = myNextPoll;
+      if (nextPoll.getDelay(TimeUnit.MILLISECONDS) > 0 && nextPoll.cancel(false)) {
+        schedulePoll(0);
+      }
+    }
   }
 
   protected abstract void close() throws IOException;
@@ -204,6 +298,11 @@ public abstract class BaseDataReader {
     resumeReading();
   }
 
+  private static class SharedPollingExecutor {
+    private static final ScheduledExecutorService INSTANCE =
+      AppExecutorUtil.createBoundedScheduledExecutorService("BaseDataReader polling", Math.max(2, Runtime.getRuntime().availableProcessors()));
+  }
+
   public void waitFor() throws InterruptedException {
     try {
       myFinishedFuture.get();
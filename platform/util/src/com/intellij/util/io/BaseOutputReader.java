@@ -36,6 +36,8 @@ public abstract class BaseOutputReader extends BaseDataReader {
     public boolean splitToLines() { return true; }
     public boolean sendIncompleteLines() { return true; }
     public boolean withSeparators() { return true; }
+    /** See {@link BaseDataReader#isPolledInSharedPool()}, ignored by the blocking policy. */
+    public boolean sharedPolling() { return false; }
 
     public static Options withPolicy(final SleepingPolicy policy) {
       return new Options() {
@@ -201,6 +203,11 @@ public abstract class BaseOutputReader extends BaseDataReader {
     line.setLength(0);
   }
 
+  @Override
+  protected boolean isPolledInSharedPool() {
+    return myOptions.sharedPolling();
+  }
+
   @Override
   protected void close() throws IOException {
     myReader.close();
@@ -107,6 +107,18 @@ public class MessageBusConnectionImpl implements MessageBusConnection {
     final Topic topic = message.getTopic();
     final Object handler = mySubscriptions.get(topic);
 
+    MessageBusStatistics.Entry statistics = null;
+    long startNanos = 0;
+    long startAllocated = 0;
+    if (MessageBusStatistics.isEnabled() && handler != null) {
+      MessageBusStatistics.Entry entry = MessageBusStatistics.getEntry(topic, handler);
+      if (MessageBusStatistics.countAndShouldSample(entry)) {
+        statistics = entry;
+        startAllocated = MessageBusStatistics.currentThreadAllocatedBytes();
+        startNanos = System.nanoTime();
+      }
+    }
+
     try {
       Method listenerMethod = message.getListenerMethod();
 
@@ -132,6 +144,11 @@ public class MessageBusConnectionImpl implements MessageBusConnection {
     catch (Throwable e) {
       LOG.error(e.getCause() == null ? e : e.getCause());
     }
+    finally {
+      if (statistics != null) {
+        MessageBusStatistics.record(statistics, startNanos, startAllocated);
+      }
+    }
   }
 
   void scheduleMessageDelivery(@NotNull Message message) {
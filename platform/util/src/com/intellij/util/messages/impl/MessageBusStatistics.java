@@ -0,0 +1,218 @@
+/*
+ * Copyright 2013-2016 consulo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.util.messages.impl;
+
+import com.intellij.openapi.util.Pair;
+import com.intellij.util.containers.ContainerUtil;
+import com.intellij.util.messages.Topic;
+import org.jetbrains.annotations.NotNull;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects per (topic, listener class) delivery statistics for {@link MessageBusImpl}.
+ * <p/>
+ * Invocations are always counted while the statistics are enabled, but only every {@link #getSampleRate() n-th} delivery to a listener class is timed,
+ * so the cost of {@link System#nanoTime()} and allocation probing is amortized on busy buses.
+ * Disabled by default, can be enabled with <code>-Didea.message.bus.statistics=true</code> or via {@link #setEnabled(boolean)}.
+ */
+public final class MessageBusStatistics {
+  public static final class Entry {
+    private final String myTopic;
+    private final Class<?> myListenerClass;
+
+    private final AtomicLong myInvocationCount = new AtomicLong();
+    private final AtomicLong mySampledCount = new AtomicLong();
+    private final AtomicLong myTotalNanos = new AtomicLong();
+    private final AtomicLong myMaxNanos = new AtomicLong();
+    private final AtomicLong myAllocatedBytes = new AtomicLong();
+
+    private Entry(@NotNull String topic, @NotNull Class<?> listenerClass) {
+      myTopic = topic;
+      myListenerClass = listenerClass;
+    }
+
+    @NotNull
+    public String getTopic() {
+      return myTopic;
+    }
+
+    @NotNull
+    public Class<?> getListenerClass() {
+      return myListenerClass;
+    }
+
+    public long getInvocationCount() {
+      return myInvocationCount.get();
+    }
+
+    public long getSampledCount() {
+      return mySampledCount.get();
+    }
+
+    /**
+     * @return nanoseconds spent in sampled invocations only
+     */
+    public long getSampledNanos() {
+      return myTotalNanos.get();
+    }
+
+    /**
+     * @return total time extrapolated from sampled invocations to all invocations
+     */
+    public long getEstimatedTotalNanos() {
+      long sampled = mySampledCount.get();
+      return sampled == 0 ? 0 : (long)((double)myTotalNanos.get() * myInvocationCount.get() / sampled);
+    }
+
+    public long getMaxNanos() {
+      return myMaxNanos.get();
+    }
+
+    /**
+     * @return bytes allocated by sampled invocations, or 0 if the JVM does not support thread allocation accounting
+     */
+    public long getSampledAllocatedBytes() {
+      return myAllocatedBytes.get();
+    }
+
+    private void record(long nanos, long allocated) {
+      mySampledCount.incrementAndGet();
+      myTotalNanos.addAndGet(nanos);
+      if (allocated > 0) {
+        myAllocatedBytes.addAndGet(allocated);
+      }
+
+      long max;
+      do {
+        max = myMaxNanos.get();
+      }
+      while (nanos > max && !myMaxNanos.compareAndSet(max, nanos));
+    }
+
+    @Override
+    public String toString() {
+      return myTopic + " -> " + myListenerClass.getName() +
+             ": count=" + getInvocationCount() +
+             ", sampled=" + getSampledCount() +
+             ", estimatedTotalMs=" + getEstimatedTotalNanos() / 1000000 +
+             ", maxMs=" + getMaxNanos() / 1000000 +
+             ", sampledAllocatedKb=" + getSampledAllocatedBytes() / 1024;
+    }
+  }
+
+  private static final int DEFAULT_SAMPLE_RATE = 16;
+
+  private static volatile boolean ourEnabled = Boolean.getBoolean("idea.message.bus.statistics");
+  private static volatile int ourSampleRate = Integer.getInteger("idea.message.bus.statistics.sample.rate", DEFAULT_SAMPLE_RATE);
+
+  private static final ConcurrentMap<Pair<Topic, Class>, Entry> ourEntries = ContainerUtil.newConcurrentMap();
+
+  private static final ThreadMXBean ourThreadMXBean = ManagementFactory.getThreadMXBean();
+  private static final boolean ourAllocationSupported = isAllocationSupported();
+
+  private MessageBusStatistics() {
+  }
+
+  public static boolean isEnabled() {
+    return ourEnabled;
+  }
+
+  public static void setEnabled(boolean enabled) {
+    ourEnabled = enabled;
+  }
+
+  public static int getSampleRate() {
+    return ourSampleRate;
+  }
+
+  /**
+   * @param sampleRate time every n-th delivery, 1 means every delivery is timed
+   */
+  public static void setSampleRate(int sampleRate) {
+    ourSampleRate = Math.max(1, sampleRate);
+  }
+
+  public static void reset() {
+    ourEntries.clear();
+  }
+
+  /**
+   * @return snapshot of collected entries sorted by estimated total time, most expensive first
+   */
+  @NotNull
+  public static List<Entry> getEntries() {
+    List<Entry> entries = new ArrayList<Entry>(ourEntries.values());
+    Collections.sort(entries, new Comparator<Entry>() {
+      @Override
+      public int compare(Entry o1, Entry o2) {
+        return Long.compare(o2.getEstimatedTotalNanos(), o1.getEstimatedTotalNanos());
+      }
+    });
+    return entries;
+  }
+
+  @NotNull
+  static Entry getEntry(@NotNull Topic topic, @NotNull Object handler) {
+    Pair<Topic, Class> key = Pair.<Topic, Class>create(topic, handler.getClass());
+    Entry entry = ourEntries.get(key);
+    if (entry == null) {
+      Entry newEntry = new Entry(topic.getDisplayName(), handler.getClass());
+      entry = ourEntries.putIfAbsent(key, newEntry);
+      if (entry == null) {
+        entry = newEntry;
+      }
+    }
+    return entry;
+  }
+
+  /**
+   * Counts invocation and decides whether it must be timed.
+   * Every entry is sampled by its own count, starting with its first invocation, so busy topics don't take the samples of rare ones.
+   */
+  static boolean countAndShouldSample(@NotNull Entry entry) {
+    return (entry.myInvocationCount.incrementAndGet() - 1) % ourSampleRate == 0;
+  }
+
+  static long currentThreadAllocatedBytes() {
+    if (!ourAllocationSupported) {
+      return 0;
+    }
+    return ((com.sun.management.ThreadMXBean)ourThreadMXBean).getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+
+  static void record(@NotNull Entry entry, long startNanos, long startAllocated) {
+    long allocated = ourAllocationSupported ? currentThreadAllocatedBytes() - startAllocated : 0;
+    entry.record(System.nanoTime() - startNanos, allocated);
+  }
+
+  private static boolean isAllocationSupported() {
+    try {
+      return ourThreadMXBean instanceof com.sun.management.ThreadMXBean &&
+             ((com.sun.management.ThreadMXBean)ourThreadMXBean).isThreadAllocatedMemoryEnabled();
+    }
+    catch (Throwable e) {
+      return false;
+    }
+  }
+}
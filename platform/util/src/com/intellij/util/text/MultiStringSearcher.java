@@ -0,0 +1,225 @@
+/*
+ * Copyright 2013-2016 consulo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.util.text;
+
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.util.ArrayUtil;
+import gnu.trove.TIntArrayList;
+import gnu.trove.TLongIntHashMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Locale;
+
+/**
+ * Finds all occurrences of several patterns in one pass over the text (Aho-Corasick automaton).
+ * <p/>
+ * Unlike running {@link StringSearcher} once per pattern the text is read once, which matters when the same file
+ * is searched for several words. Overlapping occurrences are reported, like repeated {@link StringSearcher#scan} calls do.
+ * <p/>
+ * Instances are immutable and thread safe.
+ */
+public class MultiStringSearcher {
+  public interface OccurrenceProcessor {
+    /**
+     * @param patternIndex index of the pattern in the array passed to the constructor, equal patterns are reported by the first index
+     * @param offset       start offset of the occurrence in the text
+     * @return false to stop processing
+     */
+    boolean process(int patternIndex, int offset);
+  }
+
+  private static final int ROOT = 0;
+
+  private final String[] myPatterns;
+  private final boolean myCaseSensitive;
+  private final int[] myPatternLengths;
+
+  // (state << 16 | char) -> next state
+  private final TLongIntHashMap myTransitions = new TLongIntHashMap();
+  private final int[] myFailure;
+  // index of the pattern which ends in the state, or -1
+  private final int[] myPatternEndingHere;
+  // nearest state reachable by failure links which ends some pattern, or -1
+  private final int[] myOutputLink;
+
+  public MultiStringSearcher(@NotNull String[] patterns, boolean caseSensitive) {
+    myPatterns = patterns;
+    myCaseSensitive = caseSensitive;
+    myPatternLengths = new int[patterns.length];
+
+    TIntArrayList patternEndingHere = new TIntArrayList();
+    patternEndingHere.add(-1);
+    TIntArrayList depth = new TIntArrayList();
+    depth.add(0);
+
+    for (int p = 0; p < patterns.length; p++) {
+      String pattern = normalize(patterns[p]);
+      if (pattern.isEmpty()) {
+        throw new IllegalArgumentException("Empty pattern at " + p);
+      }
+      myPatternLengths[p] = pattern.length();
+      int state = ROOT;
+      for (int i = 0; i < pattern.length(); i++) {
+        long key = key(state, pattern.charAt(i));
+        int next = myTransitions.containsKey(key) ? myTransitions.get(key) : -1;
+        if (next == -1) {
+          next = patternEndingHere.size();
+          patternEndingHere.add(-1);
+          depth.add(i + 1);
+          myTransitions.put(key, next);
+        }
+        state = next;
+      }
+      if (patternEndingHere.get(state) == -1) {
+        patternEndingHere.set(state, p);
+      }
+    }
+
+    int statesCount = patternEndingHere.size();
+    myPatternEndingHere = patternEndingHere.toNativeArray();
+    myFailure = new int[statesCount];
+    myOutputLink = new int[statesCount];
+    myOutputLink[ROOT] = -1;
+
+    int[][] children = collectChildren(statesCount);
+    // children of the root fail to the root
+    int[] rootChildren = children[ROOT];
+    for (int i = 1; i < rootChildren.length; i += 2) {
+      myFailure[rootChildren[i]] = ROOT;
+      myOutputLink[rootChildren[i]] = -1;
+    }
+
+    // process states breadth first to have failure links of shorter prefixes ready
+    int[] byDepth = sortStatesByDepth(depth.toNativeArray());
+    for (int state : byDepth) {
+      if (state == ROOT) continue;
+      int[] stateChildren = children[state];
+      for (int i = 0; i < stateChildren.length; i += 2) {
+        char c = (char)stateChildren[i];
+        int child = stateChildren[i + 1];
+        int failure = myFailure[state];
+        int target = ROOT;
+        while (true) {
+          int next = goTo(failure, c);
+          if (next != -1 && next != child) {
+            target = next;
+            break;
+          }
+          if (failure == ROOT) break;
+          failure = myFailure[failure];
+        }
+        myFailure[child] = target;
+        myOutputLink[child] = myPatternEndingHere[target] != -1 ? target : myOutputLink[target];
+      }
+    }
+  }
+
+  @NotNull
+  public String[] getPatterns() {
+    return myPatterns;
+  }
+
+  public boolean isCaseSensitive() {
+    return myCaseSensitive;
+  }
+
+  /**
+   * @param textArray the text chars if available, see {@link CharArrayUtil#fromSequenceWithoutCopying(CharSequence)}
+   * @return false if the processor stopped processing
+   */
+  public boolean processOccurrences(@NotNull CharSequence text,
+                                    @Nullable char[] textArray,
+                                    int start,
+                                    int end,
+                                    @NotNull OccurrenceProcessor processor) {
+    int state = ROOT;
+    for (int offset = start; offset < end; offset++) {
+      char c = textArray != null ? textArray[offset] : text.charAt(offset);
+      if (!myCaseSensitive) {
+        c = StringUtil.toLowerCase(c);
+      }
+      int next;
+      while ((next = goTo(state, c)) == -1 && state != ROOT) {
+        state = myFailure[state];
+      }
+      state = next == -1 ? ROOT : next;
+
+      for (int output = myPatternEndingHere[state] != -1 ? state : myOutputLink[state]; output != -1; output = myOutputLink[output]) {
+        int patternIndex = myPatternEndingHere[output];
+        if (!processor.process(patternIndex, offset + 1 - myPatternLengths[patternIndex])) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  private int goTo(int state, char c) {
+    long key = key(state, c);
+    return myTransitions.containsKey(key) ? myTransitions.get(key) : -1;
+  }
+
+  @NotNull
+  private int[][] collectChildren(int statesCount) {
+    TIntArrayList[] lists = new TIntArrayList[statesCount];
+    long[] keys = myTransitions.keys();
+    for (long key : keys) {
+      int parent = (int)(key >>> 16);
+      char c = (char)(key & 0xFFFF);
+      TIntArrayList list = lists[parent];
+      if (list == null) {
+        lists[parent] = list = new TIntArrayList();
+      }
+      list.add(c);
+      list.add(myTransitions.get(key));
+    }
+    int[][] result = new int[statesCount][];
+    for (int i = 0; i < statesCount; i++) {
+      result[i] = lists[i] == null ? ArrayUtil.EMPTY_INT_ARRAY : lists[i].toNativeArray();
+    }
+    return result;
+  }
+
+  @NotNull
+  private static int[] sortStatesByDepth(@NotNull int[] depth) {
+    int maxDepth = 0;
+    for (int d : depth) {
+      maxDepth = Math.max(maxDepth, d);
+    }
+    int[] counts = new int[maxDepth + 2];
+    for (int d : depth) {
+      counts[d + 1]++;
+    }
+    for (int i = 1; i < counts.length; i++) {
+      counts[i] += counts[i - 1];
+    }
+    int[] result = new int[depth.length];
+    for (int state = 0; state < depth.length; state++) {
+      result[counts[depth[state]]++] = state;
+    }
+    return result;
+  }
+
+  @NotNull
+  private String normalize(@NotNull String pattern) {
+    return myCaseSensitive ? pattern : pattern.toLowerCase(Locale.US);
+  }
+
+  private static long key(int state, char c) {
+    return (long)state << 16 | c;
+  }
+}
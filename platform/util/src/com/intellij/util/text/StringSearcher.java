@@ -30,6 +30,11 @@ public class StringSearcher {
   private final char[] myPatternArray;
   private final int myPatternLength;
   private final int[] mySearchTable = new int[128];
+  /**
+   * Horspool shifts for the forward {@code char[]} scan, indexed by the low byte of the char.
+   * Chars sharing the low byte get the smallest shift of them, so the table is valid for any char, not only ASCII
+   */
+  private final int[] myForwardShiftTable;
   private final boolean myCaseSensitive;
   private final boolean myForwardDirection;
   private final boolean myJavaIdentifier;
@@ -60,6 +65,7 @@ public class StringSearcher {
     myPatternArray = myCaseSensitive ? myPattern.toCharArray() : myPattern.toLowerCase(Locale.US).toCharArray();
     myPatternLength = myPatternArray.length;
     Arrays.fill(mySearchTable, -1);
+    myForwardShiftTable = buildForwardShiftTable(myPatternArray);
     myJavaIdentifier = lookForJavaIdentifiersOnlyIfPossible &&
                        (pattern.isEmpty() ||
                         Character.isJavaIdentifierPart(pattern.charAt(0)) &&
@@ -108,6 +114,9 @@ public class StringSearcher {
         // optimization
         return StringUtil.indexOf(text, myPatternArray[0], _start, _end, myCaseSensitive);
       }
+      if (textArray != null) {
+        return scanForward(textArray, _start, _end);
+      }
       int start = _start;
       int end = _end - myPatternLength;
 
@@ -186,6 +195,49 @@ public class StringSearcher {
     }
   }
 
+  private int scanForward(@NotNull char[] text, int start, int end) {
+    final char[] pattern = myPatternArray;
+    final int[] shiftTable = myForwardShiftTable;
+    final int last = myPatternLength - 1;
+    final char lastPatternChar = pattern[last];
+    final boolean caseSensitive = myCaseSensitive;
+    final int limit = end - myPatternLength;
+
+    while (start <= limit) {
+      char lastChar = text[start + last];
+      if (!caseSensitive) {
+        lastChar = StringUtil.toLowerCase(lastChar);
+      }
+      if (lastChar == lastPatternChar) {
+        int i = last - 1;
+        while (i >= 0) {
+          char c = text[start + i];
+          if (!caseSensitive) {
+            c = StringUtil.toLowerCase(c);
+          }
+          if (pattern[i] != c) break;
+          i--;
+        }
+        if (i < 0) {
+          return start;
+        }
+      }
+      start += shiftTable[lastChar & 0xFF];
+    }
+    return -1;
+  }
+
+  @NotNull
+  private static int[] buildForwardShiftTable(@NotNull char[] pattern) {
+    int[] table = new int[256];
+    Arrays.fill(table, pattern.length);
+    // later chars have smaller shifts, so colliding chars end up with the smallest one
+    for (int i = 0; i < pattern.length - 1; i++) {
+      table[pattern[i] & 0xFF] = pattern.length - 1 - i;
+    }
+    return table;
+  }
+
   /**
    * @deprecated Use {@link #scan(CharSequence)} instead
    */
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2013-2016 consulo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.util.diff;
+
+import gnu.trove.TIntArrayList;
+import junit.framework.TestCase;
+
+import java.util.BitSet;
+import java.util.Random;
+
+public class MyersLCSTest extends TestCase {
+  public void testSameAsIntLCS() throws FilesTooBigForDiffException {
+    Random random = new Random(1);
+    for (int i = 0; i < 5000; i++) {
+      int[] first = generate(random, random.nextInt(30), 1 + random.nextInt(5));
+      int[] second = generate(random, random.nextInt(30), 1 + random.nextInt(5));
+
+      MyersLCS myersLCS = new MyersLCS(first, second);
+      myersLCS.execute();
+      IntLCS intLCS = new IntLCS(first, second);
+      intLCS.execute();
+
+      assertEquals(countChanges(first, second, intLCS.getChanges()), countChanges(first, second, myersLCS.getChanges()));
+    }
+  }
+
+  public void testThresholdGivesValidResult() {
+    Random random = new Random(2);
+    for (int i = 0; i < 5000; i++) {
+      int[] first = generate(random, random.nextInt(50), 1 + random.nextInt(5));
+      int[] second = generate(random, random.nextInt(50), 1 + random.nextInt(5));
+
+      MyersLCS myersLCS = new MyersLCS(first, second, 0, first.length, 0, second.length, new BitSet(), new BitSet(), 1);
+      myersLCS.execute();
+      countChanges(first, second, myersLCS.getChanges());
+    }
+  }
+
+  public void testCancellation() {
+    Random random = new Random(3);
+    int[] first = generate(random, 10000, 10);
+    int[] second = generate(random, 10000, 10);
+    try {
+      new MyersLCS(first, second).execute(new CancellationChecker() {
+        @Override
+        public void checkCanceled() {
+          throw new IllegalStateException();
+        }
+      });
+      fail();
+    }
+    catch (IllegalStateException ignored) {
+    }
+  }
+
+  public void testManyChangesPerformance() throws FilesTooBigForDiffException {
+    Random random = new Random(4);
+    int length = 200000;
+    Integer[] first = new Integer[length];
+    Integer[] second = new Integer[length];
+    for (int i = 0; i < length; i++) {
+      first[i] = random.nextInt(100);
+      second[i] = random.nextBoolean() ? first[i] : random.nextInt(100);
+    }
+
+    Diff.Change change = Diff.buildChanges(first, second);
+
+    // the unchanged elements of both sequences must match one by one
+    int changed = 0;
+    int index1 = 0;
+    int index2 = 0;
+    for (Diff.Change current = change; current != null; current = current.link) {
+      assertTrue(current.line0 >= index1 && current.line1 >= index2);
+      assertEquals(current.line0 - index1, current.line1 - index2);
+      for (; index1 < current.line0; index1++, index2++) {
+        assertEquals(first[index1], second[index2]);
+      }
+      index1 += current.deleted;
+      index2 += current.inserted;
+      changed += current.deleted + current.inserted;
+    }
+    assertEquals(length - index1, length - index2);
+    for (; index1 < length; index1++, index2++) {
+      assertEquals(first[index1], second[index2]);
+    }
+    assertTrue(changed > 0);
+  }
+
+  private static int[] generate(Random random, int length, int alphabet) {
+    int[] result = new int[length];
+    for (int i = 0; i < length; i++) {
+      result[i] = random.nextInt(alphabet);
+    }
+    return result;
+  }
+
+  /**
+   * Checks that unchanged elements of both sequences are the same
+   */
+  private static int countChanges(int[] first, int[] second, BitSet[] changes) {
+    TIntArrayList unchanged1 = new TIntArrayList();
+    TIntArrayList unchanged2 = new TIntArrayList();
+    for (int i = 0; i < first.length; i++) {
+      if (!changes[0].get(i)) unchanged1.add(first[i]);
+    }
+    for (int i = 0; i < second.length; i++) {
+      if (!changes[1].get(i)) unchanged2.add(second[i]);
+    }
+    assertEquals(unchanged1, unchanged2);
+    return changes[0].cardinality() + changes[1].cardinality();
+  }
+}
@@ -0,0 +1,233 @@
+/*
+ * Copyright 2013-2016 consulo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.util.io;
+
+import junit.framework.TestCase;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+public class BaseOutputReaderSharedPollingTest extends TestCase {
+  private static final int READERS = 200;
+  private static final int LINES = 50;
+
+  private final List<PipedOutputStream> myOutputs = new ArrayList<PipedOutputStream>();
+  private final List<TestReader> myReaders = new ArrayList<TestReader>();
+
+  @Override
+  protected void tearDown() throws Exception {
+    try {
+      for (PipedOutputStream output : myOutputs) {
+        output.close();
+      }
+      for (TestReader reader : myReaders) {
+        reader.stop();
+        reader.waitFor();
+      }
+    }
+    finally {
+      super.tearDown();
+    }
+  }
+
+  public void testAllOutputIsRead() throws Exception {
+    startReaders(BaseDataReader.SleepingPolicy.SIMPLE);
+
+    writeLines(0, LINES / 2);
+    // let the readers become idle between the chunks of output
+    Thread.sleep(50);
+    writeLines(LINES / 2, LINES);
+    for (PipedOutputStream output : myOutputs) {
+      output.close();
+    }
+
+    for (TestReader reader : myReaders) {
+      reader.stop();
+      reader.waitFor();
+    }
+    for (int r = 0; r < READERS; r++) {
+      StringBuilder expected = new StringBuilder();
+      for (int line = 0; line < LINES; line++) {
+        expected.append(getLine(r, line));
+      }
+      assertEquals("reader " + r, expected.toString(), myReaders.get(r).getText());
+    }
+  }
+
+  public void testStopWakesUpIdleReaders() throws Exception {
+    // without being woken up the readers would poll again only after a minute
+    startReaders(new BaseDataReader.SleepingPolicy() {
+      @Override
+      public int getTimeToSleep(boolean wasActive) {
+        return wasActive ? sleepTimeWhenWasActive : 60 * 1000;
+      }
+    });
+    writeLines(0, 1);
+    Thread.sleep(100);
+
+    long start = System.currentTimeMillis();
+    for (TestReader reader : myReaders) {
+      reader.stop();
+    }
+    for (TestReader reader : myReaders) {
+      reader.waitFor();
+    }
+    long elapsed = System.currentTimeMillis() - start;
+    assertTrue("stopping took " + elapsed + " ms", elapsed < 5000);
+  }
+
+  public void testWaitForReturnsAfterClose() throws Exception {
+    startReaders(new BaseDataReader.AdaptiveSleepingPolicy());
+    writeLines(0, LINES);
+
+    for (TestReader reader : myReaders) {
+      reader.stop();
+    }
+    for (int r = 0; r < READERS; r++) {
+      TestReader reader = myReaders.get(r);
+      reader.waitFor();
+      assertTrue("reader " + r, reader.isClosed());
+      assertEquals("reader " + r, getLine(r, LINES - 1), reader.getLastLine());
+    }
+  }
+
+  public void testStopDoesNotWaitForReading() throws Exception {
+    final CountDownLatch reading = new CountDownLatch(1);
+    final CountDownLatch stopped = new CountDownLatch(1);
+    PipedOutputStream output = new PipedOutputStream();
+    TestReader reader = new TestReader(new PipedInputStream(output), createOptions(BaseDataReader.SleepingPolicy.SIMPLE)) {
+      @Override
+      protected void onTextAvailable(@NotNull String text) {
+        reading.countDown();
+        try {
+          stopped.await(2, TimeUnit.SECONDS);
+        }
+        catch (InterruptedException e) {
+          throw new RuntimeException(e);
+        }
+        super.onTextAvailable(text);
+      }
+    };
+    myOutputs.add(output);
+    myReaders.add(reader);
+    reader.start("slow reader");
+    output.write(getLine(0, 0).getBytes(StandardCharsets.UTF_8));
+    output.flush();
+    assertTrue(reading.await(10, TimeUnit.SECONDS));
+
+    long start = System.currentTimeMillis();
+    reader.stop();
+    long elapsed = System.currentTimeMillis() - start;
+    stopped.countDown();
+    reader.waitFor();
+    assertTrue("stopping took " + elapsed + " ms", elapsed < 1000);
+    assertEquals(getLine(0, 0), reader.getText());
+  }
+
+  @NotNull
+  private static BaseOutputReader.Options createOptions(@NotNull final BaseDataReader.SleepingPolicy policy) {
+    return new BaseOutputReader.Options() {
+      @Override
+      public BaseDataReader.SleepingPolicy policy() {
+        return policy;
+      }
+
+      @Override
+      public boolean sharedPolling() {
+        return true;
+      }
+    };
+  }
+
+  private void startReaders(@NotNull BaseDataReader.SleepingPolicy policy) throws IOException {
+    BaseOutputReader.Options options = createOptions(policy);
+    for (int r = 0; r < READERS; r++) {
+      PipedOutputStream output = new PipedOutputStream();
+      // big enough for all output, so the writer never waits for a reader
+      PipedInputStream input = new PipedInputStream(output, 64 * 1024);
+      TestReader reader = new TestReader(input, options);
+      myOutputs.add(output);
+      myReaders.add(reader);
+      reader.start("test reader " + r);
+    }
+  }
+
+  private void writeLines(int from, int to) throws IOException {
+    for (int r = 0; r < READERS; r++) {
+      PipedOutputStream output = myOutputs.get(r);
+      for (int line = from; line < to; line++) {
+        output.write(getLine(r, line).getBytes(StandardCharsets.UTF_8));
+      }
+      output.flush();
+    }
+  }
+
+  @NotNull
+  private static String getLine(int reader, int line) {
+    return "line " + line + " of reader " + reader + "\n";
+  }
+
+  private static class TestReader extends BaseOutputReader {
+    // polling must not use a thread of its own
+    private static final ExecutorService NO_THREADS = Executors.newFixedThreadPool(1);
+
+    private final StringBuffer myText = new StringBuffer();
+    private volatile String myLastLine;
+    private volatile boolean myClosed;
+
+    private TestReader(@NotNull PipedInputStream input, @NotNull Options options) {
+      super(input, StandardCharsets.UTF_8, options);
+    }
+
+    @NotNull
+    @Override
+    protected Future<?> executeOnPooledThread(@NotNull Runnable runnable) {
+      fail("Shared polling readers should not run on a thread of their own");
+      return NO_THREADS.submit(runnable);
+    }
+
+    @Override
+    protected void onTextAvailable(@NotNull String text) {
+      myText.append(text);
+      myLastLine = text;
+    }
+
+    @Override
+    protected void close() throws IOException {
+      super.close();
+      myClosed = true;
+    }
+
+    @NotNull
+    private String getText() {
+      return myText.toString();
+    }
+
+    private String getLastLine() {
+      return myLastLine;
+    }
+
+    private boolean isClosed() {
+      return myClosed;
+    }
+  }
+}
@@ -20,6 +20,7 @@
 package com.intellij.util.messages;
 
 import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.util.messages.impl.MessageBusStatistics;
 import junit.framework.TestCase;
 
 import java.util.ArrayList;
@@ -196,7 +197,69 @@ public class MessageBusTest extends TestCase {
                  "inside:t11:done",
                  "C2T1Handler:t12");
   }
-  
+
+  public void testStatistics() {
+    boolean wasEnabled = MessageBusStatistics.isEnabled();
+    int sampleRate = MessageBusStatistics.getSampleRate();
+    MessageBusStatistics.reset();
+    MessageBusStatistics.setEnabled(true);
+    MessageBusStatistics.setSampleRate(1);
+    try {
+      myBus.connect().subscribe(TOPIC1, new T1Handler("c"));
+      myBus.syncPublisher(TOPIC1).t11();
+      myBus.syncPublisher(TOPIC1).t12();
+
+      List<MessageBusStatistics.Entry> entries = MessageBusStatistics.getEntries();
+      assertEquals(1, entries.size());
+      MessageBusStatistics.Entry entry = entries.get(0);
+      assertEquals("T1", entry.getTopic());
+      assertEquals(T1Handler.class, entry.getListenerClass());
+      assertEquals(2, entry.getInvocationCount());
+      assertEquals(2, entry.getSampledCount());
+      assertTrue(entry.getMaxNanos() <= entry.getSampledNanos());
+    }
+    finally {
+      MessageBusStatistics.setEnabled(wasEnabled);
+      MessageBusStatistics.setSampleRate(sampleRate);
+      MessageBusStatistics.reset();
+    }
+  }
+
+  public void testStatisticsSampleRareTopics() {
+    boolean wasEnabled = MessageBusStatistics.isEnabled();
+    int sampleRate = MessageBusStatistics.getSampleRate();
+    MessageBusStatistics.reset();
+    MessageBusStatistics.setEnabled(true);
+    MessageBusStatistics.setSampleRate(4);
+    try {
+      myBus.connect().subscribe(TOPIC1, new T1Handler("c"));
+      myBus.connect().subscribe(TOPIC2, new T2Handler("c"));
+      for (int i = 0; i < 3; i++) {
+        myBus.syncPublisher(TOPIC1).t11();
+        myBus.syncPublisher(TOPIC1).t12();
+        myBus.syncPublisher(TOPIC1).t11();
+        myBus.syncPublisher(TOPIC2).t21();
+      }
+
+      for (MessageBusStatistics.Entry entry : MessageBusStatistics.getEntries()) {
+        if (entry.getTopic().equals("T1")) {
+          assertEquals(9, entry.getInvocationCount());
+          assertEquals(3, entry.getSampledCount());
+        }
+        else {
+          assertEquals(3, entry.getInvocationCount());
+          assertEquals(1, entry.getSampledCount());
+        }
+      }
+      assertEquals(2, MessageBusStatistics.getEntries().size());
+    }
+    finally {
+      MessageBusStatistics.setEnabled(wasEnabled);
+      MessageBusStatistics.setSampleRate(sampleRate);
+      MessageBusStatistics.reset();
+    }
+  }
+
   private void assertEvents(String... expected) {
     String joinExpected = StringUtil.join(expected, "\n");
     String joinActual = StringUtil.join(myLog, "\n");
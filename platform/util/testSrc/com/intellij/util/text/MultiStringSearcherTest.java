@@ -0,0 +1,88 @@
+/*
+ * Copyright 2013-2016 consulo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.util.text;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class MultiStringSearcherTest extends TestCase {
+  public void testOverlappingPatterns() {
+    MultiStringSearcher searcher = new MultiStringSearcher(new String[]{"he", "she", "his", "hers"}, true);
+    assertEquals("1:1 0:2 3:2 ", collect(searcher, "ushers"));
+    assertEquals("2:0 0:4 ", collect(searcher, "hisxhe"));
+  }
+
+  public void testCaseInsensitive() {
+    MultiStringSearcher searcher = new MultiStringSearcher(new String[]{"Foo", "bar"}, false);
+    assertEquals("0:0 1:3 0:7 ", collect(searcher, "fOObarxFOO"));
+  }
+
+  public void testSameAsStringSearcher() {
+    Random random = new Random(3);
+    for (int iteration = 0; iteration < 100; iteration++) {
+      String text = random(random, 300);
+      String[] patterns = {random(random, 2), random(random, 3), random(random, 1), random(random, 4)};
+      MultiStringSearcher multiSearcher = new MultiStringSearcher(patterns, true);
+      final List<String> actual = new ArrayList<String>();
+      multiSearcher.processOccurrences(text, null, 0, text.length(), new MultiStringSearcher.OccurrenceProcessor() {
+        @Override
+        public boolean process(int patternIndex, int offset) {
+          actual.add(patternIndex + ":" + offset);
+          return true;
+        }
+      });
+
+      for (int p = 0; p < patterns.length; p++) {
+        if (indexOf(patterns, patterns[p]) != p) continue;
+        StringSearcher searcher = new StringSearcher(patterns[p], true, true);
+        for (int index = searcher.scan(text); index >= 0; index = searcher.scan(text, index + 1, text.length())) {
+          assertTrue(patterns[p] + " at " + index, actual.remove(p + ":" + index));
+        }
+      }
+      assertTrue(actual.toString(), actual.isEmpty());
+    }
+  }
+
+  private static int indexOf(String[] patterns, String pattern) {
+    for (int i = 0; i < patterns.length; i++) {
+      if (patterns[i].equals(pattern)) return i;
+    }
+    return -1;
+  }
+
+  private static String random(Random random, int length) {
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < length; i++) {
+      builder.append((char)('a' + random.nextInt(3)));
+    }
+    return builder.toString();
+  }
+
+  private static String collect(MultiStringSearcher searcher, String text) {
+    final StringBuilder result = new StringBuilder();
+    searcher.processOccurrences(text, null, 0, text.length(), new MultiStringSearcher.OccurrenceProcessor() {
+      @Override
+      public boolean process(int patternIndex, int offset) {
+        result.append(patternIndex).append(':').append(offset).append(' ');
+        return true;
+      }
+    });
+    return result.toString();
+  }
+}
@@ -21,6 +21,8 @@ package com.intellij.util.text;
 
 import junit.framework.TestCase;
 
+import java.util.Random;
+
 public class StringSearcherTest extends TestCase {
   public void testSearchPatternAtTheEnd() {
     final String pattern = "bc";
@@ -32,4 +34,28 @@ public class StringSearcherTest extends TestCase {
     assertEquals(text.indexOf("bc"), index);
   }
 
+  public void testArrayScanIsSameAsSequenceScan() {
+    Random random = new Random(17);
+    String alphabet = "abcAB\u0430\u0431\u0141\u0241";
+    for (int iteration = 0; iteration < 200; iteration++) {
+      String text = randomString(random, alphabet, 50 + random.nextInt(200));
+      String pattern = randomString(random, alphabet, 2 + random.nextInt(3));
+      for (boolean caseSensitive : new boolean[]{true, false}) {
+        StringSearcher searcher = new StringSearcher(pattern, caseSensitive, true);
+        char[] array = text.toCharArray();
+        for (int start = 0; start < text.length(); start++) {
+          int expected = searcher.scan(text, null, start, text.length());
+          assertEquals(pattern + " in " + text + " from " + start, expected, searcher.scan(text, array, start, text.length()));
+        }
+      }
+    }
+  }
+
+  private static String randomString(Random random, String alphabet, int length) {
+    StringBuilder builder = new StringBuilder(length);
+    for (int i = 0; i < length; i++) {
+      builder.append(alphabet.charAt(random.nextInt(alphabet.length())));
+    }
+    return builder.toString();
+  }
 }
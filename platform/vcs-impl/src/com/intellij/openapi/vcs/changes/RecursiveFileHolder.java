@@ -5,7 +5,6 @@ import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.Comparing;
 import com.intellij.openapi.vcs.AbstractVcs;
 import com.intellij.openapi.vcs.ProjectLevelVcsManager;
-import com.intellij.openapi.vfs.VfsUtilCore;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.vcsUtil.VcsUtil;
 import org.jetbrains.annotations.NotNull;
@@ -75,11 +74,10 @@ public class RecursiveFileHolder<T> implements IgnoredFilesHolder {
   @Override
   public boolean containsFile(final VirtualFile file) {
     if (myMap.containsKey(file)) return true;
-    final VirtualFile floor = myDirMap.floorKey(file);
-    if (floor == null) return false;
-    final SortedMap<VirtualFile, T> floorMap = myDirMap.headMap(floor, true);
-    for (VirtualFile parent : floorMap.keySet()) {
-      if (VfsUtilCore.isAncestor(parent, file, false)) {
+    if (myDirMap.isEmpty()) return false;
+    // a directory stands for its whole subtree, look at the parents instead of all the directories
+    for (VirtualFile parent = file.getParent(); parent != null; parent = parent.getParent()) {
+      if (myDirMap.containsKey(parent)) {
         return true;
       }
     }
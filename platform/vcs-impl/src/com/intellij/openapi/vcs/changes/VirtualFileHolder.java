@@ -29,14 +29,19 @@ import java.util.*;
  * @author max
  */
 public class VirtualFileHolder implements FileHolder {
-  private final Set<VirtualFile> myFiles = new HashSet<VirtualFile>();
+  private final VirtualFileTrie myFiles;
   private final Project myProject;
   private final HolderType myType;
   private int myNumDirs;
 
   public VirtualFileHolder(Project project, final HolderType type) {
+    this(project, type, new VirtualFileTrie());
+  }
+
+  private VirtualFileHolder(Project project, final HolderType type, final VirtualFileTrie files) {
     myProject = project;
     myType = type;
+    myFiles = files;
   }
 
   public HolderType getType() {
@@ -104,8 +109,34 @@ public class VirtualFileHolder implements FileHolder {
     });
   }
 
+  /**
+   * Looks only at the files under the dirty scope. A deleted file is marked dirty by {@link VcsDirtyScopeVfsListener}, so invalid
+   * files are dropped when their scope is cleaned, until then {@link #getFiles()} skips them
+   */
   public void cleanAndAdjustScope(final VcsModifiableDirtyScope scope) {
-    myNumDirs -= cleanScope(myProject, myFiles, scope);
+    ApplicationManager.getApplication().runReadAction(new Runnable() {
+      public void run() {
+        if (myProject.isDisposed() || myFiles.isEmpty()) return;
+
+        for (FilePath dir : scope.getRecursivelyDirtyDirectories()) {
+          for (VirtualFile file : myFiles.getFilesUnder(dir, true)) {
+            final boolean fileDropped = fileDropped(file);
+            if (fileDropped) {
+              scope.addDirtyFile(new FilePathImpl(file));
+            }
+            if (fileDropped || scope.belongsTo(new FilePathImpl(file))) {
+              removeFile(file);
+            }
+          }
+        }
+        for (FilePath dirtyFile : scope.getDirtyFilesNoExpand()) {
+          // the file itself and its immediate children
+          for (VirtualFile file : myFiles.getFilesUnder(dirtyFile, false)) {
+            removeFile(file);
+          }
+        }
+      }
+    });
   }
 
   private static boolean fileDropped(final VirtualFile file) {
@@ -113,7 +144,9 @@ public class VirtualFileHolder implements FileHolder {
   }
 
   public void addFile(VirtualFile file) {
-    myFiles.add(file);
+    final VirtualFile previous = myFiles.add(file);
+    if (file.equals(previous)) return;
+    if (previous != null && previous.isDirectory()) -- myNumDirs;
     if (file.isDirectory()) ++ myNumDirs;
   }
 
@@ -127,12 +160,17 @@ public class VirtualFileHolder implements FileHolder {
 
   // todo track number of copies made
   public List<VirtualFile> getFiles() {
-    return new ArrayList<VirtualFile>(myFiles);
+    final List<VirtualFile> files = myFiles.getFiles();
+    for (Iterator<VirtualFile> iterator = files.iterator(); iterator.hasNext(); ) {
+      if (fileDropped(iterator.next())) {
+        iterator.remove();
+      }
+    }
+    return files;
   }
 
   public VirtualFileHolder copy() {
-    final VirtualFileHolder copyHolder = new VirtualFileHolder(myProject, myType);
-    copyHolder.myFiles.addAll(myFiles);
+    final VirtualFileHolder copyHolder = new VirtualFileHolder(myProject, myType, myFiles.copy());
     copyHolder.myNumDirs = myNumDirs;
     return copyHolder;
   }
@@ -0,0 +1,515 @@
+/*
+ * Copyright 2013-2016 consulo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.openapi.vcs.changes;
+
+import com.intellij.openapi.vcs.FilePath;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.ArrayUtil;
+import com.intellij.util.PairProcessor;
+import com.intellij.util.text.CharSequenceHashingStrategy;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Set of files stored as a tree of their paths, names are shared with VFS.
+ * <p/>
+ * Files under a directory can be found without looking at the rest of the set, so cleaning a dirty scope costs
+ * time proportional to the scope. Only one file is kept for a path: an added file replaces a deleted one with the same path.
+ * A chain of directories which have a single child and are not in the set themselves is kept in one node.
+ * <p/>
+ * {@link #copy()} is constant time, the copies share nodes until one of them modifies a node. The children of a node
+ * are kept in an immutable {@link Children} map, so a modification copies only the path to the changed file.
+ */
+class VirtualFileTrie {
+  private static final CharSequence[] NO_NAMES = new CharSequence[0];
+
+  private static final class Node {
+    // the copy which may modify this node in place
+    private final Object myOwner;
+    // names on the path from the parent node, the first one is the key in the parent's children; empty for the root
+    @NotNull private CharSequence[] myNames;
+    @Nullable private VirtualFile myFile;
+    @NotNull private Children myChildren = Children.EMPTY;
+    // number of files in the subtree
+    private int mySize;
+
+    private Node(@NotNull Object owner, @NotNull CharSequence[] names) {
+      myOwner = owner;
+      myNames = names;
+    }
+
+    private Node(@NotNull Object owner, @NotNull Node node) {
+      myOwner = owner;
+      myNames = node.myNames;
+      myFile = node.myFile;
+      myChildren = node.myChildren;
+      mySize = node.mySize;
+    }
+  }
+
+  /**
+   * Hash array mapped trie of the child nodes by name. It is never modified, an update copies only the arrays on the way
+   * to the changed entry instead of all children of a directory.
+   */
+  private static final class Children {
+    private static final Children EMPTY = new Children(0, ArrayUtil.EMPTY_OBJECT_ARRAY);
+    private static final int BITS = 5;
+    // deeper levels have no hash bits left, their entries are compared one by one
+    private static final int MAX_SHIFT = 32;
+
+    // bit i is set if the slot for the hash fragment i is occupied
+    private final int myBitmap;
+    // two elements per occupied slot: either a name and its node, or null and the nested level
+    private final Object[] myArray;
+
+    private Children(int bitmap, @NotNull Object[] array) {
+      myBitmap = bitmap;
+      myArray = array;
+    }
+
+    private boolean isEmpty() {
+      return myArray.length == 0;
+    }
+
+    /**
+     * @return the only node, null if there are more of them
+     */
+    @Nullable
+    private Node getSingle() {
+      // a nested level is created for two entries at least and moved up when a single one is left
+      return myArray.length == 2 && myArray[0] != null ? (Node)myArray[1] : null;
+    }
+
+    @Nullable
+    private Node get(@NotNull CharSequence name) {
+      return get(name, hash(name), 0);
+    }
+
+    @NotNull
+    private Children plus(@NotNull CharSequence name, @NotNull Node node) {
+      return plus(name, hash(name), 0, node);
+    }
+
+    @NotNull
+    private Children minus(@NotNull CharSequence name) {
+      return minus(name, hash(name), 0);
+    }
+
+    private boolean process(@NotNull PairProcessor<CharSequence, Node> processor) {
+      for (int i = 0; i < myArray.length; i += 2) {
+        if (myArray[i] == null ? !((Children)myArray[i + 1]).process(processor) : !processor.process((CharSequence)myArray[i], (Node)myArray[i + 1])) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    @Nullable
+    private Node get(@NotNull CharSequence name, int hash, int shift) {
+      if (shift >= MAX_SHIFT) {
+        int index = indexOf(name);
+        return index < 0 ? null : (Node)myArray[index + 1];
+      }
+      int bit = bit(hash, shift);
+      if ((myBitmap & bit) == 0) return null;
+      int index = index(bit);
+      Object key = myArray[index];
+      if (key == null) return ((Children)myArray[index + 1]).get(name, hash, shift + BITS);
+      return equal(name, key) ? (Node)myArray[index + 1] : null;
+    }
+
+    @NotNull
+    private Children plus(@NotNull CharSequence name, int hash, int shift, @NotNull Node node) {
+      if (shift >= MAX_SHIFT) {
+        int index = indexOf(name);
+        return index < 0 ? new Children(0, inserted(myArray.length, name, node)) : new Children(0, replaced(index, name, node));
+      }
+      int bit = bit(hash, shift);
+      int index = index(bit);
+      if ((myBitmap & bit) == 0) return new Children(myBitmap | bit, inserted(index, name, node));
+
+      Object key = myArray[index];
+      Object value = myArray[index + 1];
+      if (key == null) {
+        return new Children(myBitmap, replaced(index, null, ((Children)value).plus(name, hash, shift + BITS, node)));
+      }
+      if (equal(name, key)) return new Children(myBitmap, replaced(index, name, node));
+
+      CharSequence otherName = (CharSequence)key;
+      Children nested = EMPTY.plus(otherName, hash(otherName), shift + BITS, (Node)value).plus(name, hash, shift + BITS, node);
+      return new Children(myBitmap, replaced(index, null, nested));
+    }
+
+    @NotNull
+    private Children minus(@NotNull CharSequence name, int hash, int shift) {
+      if (shift >= MAX_SHIFT) {
+        int index = indexOf(name);
+        return index < 0 ? this : new Children(0, removed(index));
+      }
+      int bit = bit(hash, shift);
+      if ((myBitmap & bit) == 0) return this;
+      int index = index(bit);
+
+      Object key = myArray[index];
+      if (key == null) {
+        Children nested = (Children)myArray[index + 1];
+        Children newNested = nested.minus(name, hash, shift + BITS);
+        if (newNested == nested) return this;
+        if (newNested.isEmpty()) return new Children(myBitmap & ~bit, removed(index));
+        if (newNested.myArray.length == 2 && newNested.myArray[0] != null) {
+          // a single entry is moved up to this level
+          return new Children(myBitmap, replaced(index, newNested.myArray[0], newNested.myArray[1]));
+        }
+        return new Children(myBitmap, replaced(index, null, newNested));
+      }
+      return equal(name, key) ? new Children(myBitmap & ~bit, removed(index)) : this;
+    }
+
+    private int indexOf(@NotNull CharSequence name) {
+      for (int i = 0; i < myArray.length; i += 2) {
+        if (equal(name, myArray[i])) return i;
+      }
+      return -1;
+    }
+
+    private int index(int bit) {
+      return 2 * Integer.bitCount(myBitmap & (bit - 1));
+    }
+
+    @NotNull
+    private Object[] inserted(int index, @NotNull Object key, @NotNull Object value) {
+      Object[] array = new Object[myArray.length + 2];
+      System.arraycopy(myArray, 0, array, 0, index);
+      array[index] = key;
+      array[index + 1] = value;
+      System.arraycopy(myArray, index, array, index + 2, myArray.length - index);
+      return array;
+    }
+
+    @NotNull
+    private Object[] replaced(int index, @Nullable Object key, @NotNull Object value) {
+      Object[] array = myArray.clone();
+      array[index] = key;
+      array[index + 1] = value;
+      return array;
+    }
+
+    @NotNull
+    private Object[] removed(int index) {
+      Object[] array = new Object[myArray.length - 2];
+      System.arraycopy(myArray, 0, array, 0, index);
+      System.arraycopy(myArray, index + 2, array, index, array.length - index);
+      return array;
+    }
+
+    private static int bit(int hash, int shift) {
+      return 1 << ((hash >>> shift) & 31);
+    }
+
+    private static int hash(@NotNull CharSequence name) {
+      return CharSequenceHashingStrategy.CASE_SENSITIVE.computeHashCode(name);
+    }
+
+    private static boolean equal(@NotNull CharSequence name, @NotNull Object key) {
+      return CharSequenceHashingStrategy.CASE_SENSITIVE.equals(name, (CharSequence)key);
+    }
+  }
+
+  private Object myOwner = new Object();
+  private Node myRoot = new Node(myOwner, NO_NAMES);
+
+  public int size() {
+    return myRoot.mySize;
+  }
+
+  public boolean isEmpty() {
+    return myRoot.mySize == 0;
+  }
+
+  public void clear() {
+    myOwner = new Object();
+    myRoot = new Node(myOwner, NO_NAMES);
+  }
+
+  @NotNull
+  public VirtualFileTrie copy() {
+    VirtualFileTrie copy = new VirtualFileTrie();
+    copy.myRoot = myRoot;
+    // nodes are shared now, neither of the copies may modify them in place
+    myOwner = new Object();
+    return copy;
+  }
+
+  public boolean contains(@NotNull VirtualFile file) {
+    Node node = findNode(getNames(file));
+    return node != null && file.equals(node.myFile);
+  }
+
+  /**
+   * @return the file previously stored for the same path, if any
+   */
+  @Nullable
+  public VirtualFile add(@NotNull VirtualFile file) {
+    List<CharSequence> names = getNames(file);
+    Node existing = findNode(names);
+    VirtualFile previous = existing == null ? null : existing.myFile;
+    if (file.equals(previous)) return previous;
+
+    myRoot = add(myRoot, names, 0, file, previous == null);
+    return previous;
+  }
+
+  /**
+   * @param index the first of the names below the node
+   * @param isNew true if the set has no file with the path
+   */
+  @NotNull
+  private Node add(@NotNull Node node, @NotNull List<CharSequence> names, int index, @NotNull VirtualFile file, boolean isNew) {
+    Node result = editable(node);
+    if (isNew) result.mySize++;
+    if (index == names.size()) {
+      result.myFile = file;
+      return result;
+    }
+
+    CharSequence name = names.get(index);
+    Node child = result.myChildren.get(name);
+    Node newChild;
+    if (child == null) {
+      newChild = createLeaf(names, index, file);
+    }
+    else {
+      int common = getCommonPrefix(child.myNames, names, index);
+      if (common == child.myNames.length) {
+        newChild = add(child, names, index + common, file, isNew);
+      }
+      else {
+        // the path leaves the collapsed directories in the middle, they are split there
+        Node tail = new Node(myOwner, child);
+        tail.myNames = Arrays.copyOfRange(child.myNames, common, child.myNames.length);
+        newChild = new Node(myOwner, Arrays.copyOfRange(child.myNames, 0, common));
+        newChild.mySize = child.mySize + 1;
+        newChild.myChildren = Children.EMPTY.plus(tail.myNames[0], tail);
+        if (index + common == names.size()) {
+          newChild.myFile = file;
+        }
+        else {
+          newChild.myChildren = newChild.myChildren.plus(names.get(index + common), createLeaf(names, index + common, file));
+        }
+      }
+    }
+    result.myChildren = result.myChildren.plus(name, newChild);
+    return result;
+  }
+
+  @NotNull
+  private Node createLeaf(@NotNull List<CharSequence> names, int index, @NotNull VirtualFile file) {
+    Node leaf = new Node(myOwner, names.subList(index, names.size()).toArray(NO_NAMES));
+    leaf.myFile = file;
+    leaf.mySize = 1;
+    return leaf;
+  }
+
+  public boolean remove(@NotNull VirtualFile file) {
+    List<CharSequence> names = getNames(file);
+    Node existing = findNode(names);
+    if (existing == null || !file.equals(existing.myFile)) return false;
+
+    Node root = remove(myRoot, names, 0);
+    myRoot = root == null ? new Node(myOwner, NO_NAMES) : root;
+    return true;
+  }
+
+  /**
+   * @param index the first of the names below the node
+   * @return null if nothing is left in the subtree
+   */
+  @Nullable
+  private Node remove(@NotNull Node node, @NotNull List<CharSequence> names, int index) {
+    // the subtree contains only the removed file
+    if (node.mySize == 1) return null;
+
+    boolean isRoot = node == myRoot;
+    Node result = editable(node);
+    result.mySize--;
+    if (index == names.size()) {
+      result.myFile = null;
+    }
+    else {
+      CharSequence name = names.get(index);
+      Node child = result.myChildren.get(name);
+      assert child != null;
+      Node newChild = remove(child, names, index + child.myNames.length);
+      result.myChildren = newChild == null ? result.myChildren.minus(name) : result.myChildren.plus(name, newChild);
+    }
+
+    Node single = result.myFile == null && !isRoot ? result.myChildren.getSingle() : null;
+    if (single == null) return result;
+    // the directory is not needed anymore, it is collapsed with its only child
+    Node merged = new Node(myOwner, single);
+    merged.myNames = ArrayUtil.mergeArrays(result.myNames, single.myNames);
+    return merged;
+  }
+
+  /**
+   * @param recursive true to collect the whole subtree of the path, false for the path itself and its immediate children
+   */
+  @NotNull
+  public List<VirtualFile> getFilesUnder(@NotNull FilePath path, boolean recursive) {
+    List<CharSequence> names = getNames(path);
+    int[] namesAfterPath = new int[1];
+    Node node = names == null ? null : findNode(names, namesAfterPath);
+    if (node == null) return Collections.emptyList();
+
+    List<VirtualFile> result = new ArrayList<>();
+    if (recursive) {
+      collect(node, result);
+    }
+    else if (namesAfterPath[0] == 1) {
+      // the node is an immediate child of the path
+      if (node.myFile != null) result.add(node.myFile);
+    }
+    else if (namesAfterPath[0] == 0) {
+      if (node.myFile != null) result.add(node.myFile);
+      node.myChildren.process((name, child) -> {
+        if (child.myNames.length == 1 && child.myFile != null) result.add(child.myFile);
+        return true;
+      });
+    }
+    return result;
+  }
+
+  @NotNull
+  public List<VirtualFile> getFiles() {
+    List<VirtualFile> result = new ArrayList<>(size());
+    collect(myRoot, result);
+    return result;
+  }
+
+  private static void collect(@NotNull Node node, @NotNull List<VirtualFile> result) {
+    if (node.myFile != null) result.add(node.myFile);
+    node.myChildren.process((name, child) -> {
+      collect(child, result);
+      return true;
+    });
+  }
+
+  @NotNull
+  private Node editable(@NotNull Node node) {
+    return node.myOwner == myOwner ? node : new Node(myOwner, node);
+  }
+
+  @Nullable
+  private Node findNode(@NotNull List<CharSequence> names) {
+    int[] namesAfterPath = new int[1];
+    Node node = findNode(names, namesAfterPath);
+    return namesAfterPath[0] == 0 ? node : null;
+  }
+
+  /**
+   * @param namesAfterPath gets the number of the node's names below the path if the path ends inside collapsed directories
+   * @return the node which has the last name of the path
+   */
+  @Nullable
+  private Node findNode(@NotNull List<CharSequence> names, @NotNull int[] namesAfterPath) {
+    Node node = myRoot;
+    int index = 0;
+    while (index < names.size()) {
+      node = node.myChildren.get(names.get(index));
+      if (node == null) return null;
+      int common = getCommonPrefix(node.myNames, names, index);
+      if (index + common < names.size() && common < node.myNames.length) return null;
+      namesAfterPath[0] = node.myNames.length - common;
+      index += common;
+    }
+    return node;
+  }
+
+  private static int getCommonPrefix(@NotNull CharSequence[] nodeNames, @NotNull List<CharSequence> names, int index) {
+    int common = 0;
+    while (common < nodeNames.length && index + common < names.size() && Children.equal(names.get(index + common), nodeNames[common])) {
+      common++;
+    }
+    return common;
+  }
+
+  /**
+   * Works for files which are not valid anymore, they still know their names and parents
+   */
+  @NotNull
+  private static List<CharSequence> getNames(@NotNull VirtualFile file) {
+    List<CharSequence> names = new ArrayList<>();
+    for (VirtualFile current = file; current != null; current = current.getParent()) {
+      names.add(current.getNameSequence());
+    }
+    Collections.reverse(names);
+    return names;
+  }
+
+  /**
+   * Paths of deleted files are resolved against the closest existing parent
+   */
+  @Nullable
+  private static List<CharSequence> getNames(@NotNull FilePath path) {
+    VirtualFile file = path.getVirtualFile();
+    if (file != null) return getNames(file);
+
+    FilePath parent = path.getParentPath();
+    if (parent == null) return null;
+    List<CharSequence> names = getNames(parent);
+    if (names != null) names.add(path.getName());
+    return names;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (o == null || getClass() != o.getClass()) return false;
+
+    VirtualFileTrie that = (VirtualFileTrie)o;
+    return equals(myRoot, that.myRoot);
+  }
+
+  private static boolean equals(@NotNull Node node1, @NotNull Node node2) {
+    if (node1 == node2) return true;
+    if (node1.mySize != node2.mySize) return false;
+    if (node1.myFile == null ? node2.myFile != null : !node1.myFile.equals(node2.myFile)) return false;
+    // directories are collapsed the same way for the same files
+    if (node1.myNames.length != node2.myNames.length) return false;
+    for (int i = 0; i < node1.myNames.length; i++) {
+      if (!Children.equal(node1.myNames[i], node2.myNames[i])) return false;
+    }
+    // subtrees are never empty, so with equal sizes the second node cannot have children the first one lacks
+    return node1.myChildren.process((name, child1) -> {
+      Node child2 = node2.myChildren.get(name);
+      return child2 != null && equals(child1, child2);
+    });
+  }
+
+  @Override
+  public int hashCode() {
+    int result = 0;
+    for (VirtualFile file : getFiles()) {
+      result += file.hashCode();
+    }
+    return result;
+  }
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright 2013-2016 consulo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.openapi.vcs.changes;
+
+import com.intellij.mock.MockVirtualFile;
+import com.intellij.openapi.vcs.FilePathImpl;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+import java.util.*;
+
+import static junit.framework.Assert.*;
+
+public class VirtualFileTrieTest {
+  private final MockVirtualFile myRoot = new MockVirtualFile(true, "root");
+  private final Map<String, MockVirtualFile> myFiles = new HashMap<String, MockVirtualFile>();
+
+  @Test
+  public void testAddContainsRemove() {
+    VirtualFileTrie trie = new VirtualFileTrie();
+    assertTrue(trie.isEmpty());
+
+    assertNull(trie.add(file("a/b/c.txt")));
+    assertNull(trie.add(file("a/d.txt")));
+    assertNull(trie.add(file("a")));
+    assertEquals(3, trie.size());
+    assertTrue(trie.contains(file("a/b/c.txt")));
+    assertTrue(trie.contains(file("a")));
+    assertFalse(trie.contains(file("a/b")));
+    assertFalse(trie.contains(file("a/b/e.txt")));
+
+    assertFalse(trie.remove(file("a/b")));
+    assertTrue(trie.remove(file("a/b/c.txt")));
+    assertFalse(trie.remove(file("a/b/c.txt")));
+    assertFalse(trie.contains(file("a/b/c.txt")));
+    assertTrue(trie.contains(file("a/d.txt")));
+    assertEquals(2, trie.size());
+
+    assertTrue(trie.remove(file("a")));
+    assertTrue(trie.remove(file("a/d.txt")));
+    assertTrue(trie.isEmpty());
+    assertEquals(new VirtualFileTrie(), trie);
+  }
+
+  @Test
+  public void testAddedFileReplacesFileWithSamePath() {
+    VirtualFileTrie trie = new VirtualFileTrie();
+    VirtualFile deleted = file("a/b.txt");
+    trie.add(deleted);
+
+    MockVirtualFile created = new MockVirtualFile("b.txt");
+    created.setParent(file("a"));
+    assertSame(deleted, trie.add(created));
+    assertSame(created, trie.add(created));
+    assertEquals(1, trie.size());
+    assertTrue(trie.contains(created));
+    assertFalse(trie.contains(deleted));
+    assertFalse(trie.remove(deleted));
+  }
+
+  @Test
+  public void testFilesUnderCollapsedDirectories() {
+    VirtualFileTrie trie = new VirtualFileTrie();
+    trie.add(file("a/b/c/d/x.txt"));
+    trie.add(file("a/b/c/d/y.txt"));
+    trie.add(file("a/e.txt"));
+
+    assertSameFiles(trie.getFiles(), "a/b/c/d/x.txt", "a/b/c/d/y.txt", "a/e.txt");
+    // paths ending inside and at the end of the collapsed directories
+    assertSameFiles(trie.getFilesUnder(path("a/b"), true), "a/b/c/d/x.txt", "a/b/c/d/y.txt");
+    assertSameFiles(trie.getFilesUnder(path("a/b/c/d"), true), "a/b/c/d/x.txt", "a/b/c/d/y.txt");
+    assertSameFiles(trie.getFilesUnder(path("a/b/c/d"), false), "a/b/c/d/x.txt", "a/b/c/d/y.txt");
+    assertSameFiles(trie.getFilesUnder(path("a/b"), false));
+    assertSameFiles(trie.getFilesUnder(path("a"), false), "a/e.txt");
+    assertSameFiles(trie.getFilesUnder(path("a/f"), true));
+
+    // a file in the middle of the collapsed directories splits them
+    trie.add(file("a/b/c"));
+    assertSameFiles(trie.getFilesUnder(path("a/b"), false), "a/b/c");
+    assertSameFiles(trie.getFilesUnder(path("a/b/c"), false), "a/b/c");
+    assertSameFiles(trie.getFilesUnder(path("a/b/c"), true), "a/b/c", "a/b/c/d/x.txt", "a/b/c/d/y.txt");
+  }
+
+  @Test
+  public void testSameTreeForSameFiles() {
+    VirtualFileTrie trie = new VirtualFileTrie();
+    trie.add(file("a/b/c/d/x.txt"));
+    trie.add(file("a/b/y.txt"));
+    trie.add(file("a/b/c"));
+    trie.remove(file("a/b/y.txt"));
+    trie.remove(file("a/b/c"));
+
+    VirtualFileTrie expected = new VirtualFileTrie();
+    expected.add(file("a/b/c/d/x.txt"));
+    assertEquals(expected, trie);
+    assertEquals(expected.hashCode(), trie.hashCode());
+    assertSameFiles(trie.getFilesUnder(path("a/b/c"), true), "a/b/c/d/x.txt");
+  }
+
+  @Test
+  public void testCopiesAreIsolated() {
+    VirtualFileTrie trie = new VirtualFileTrie();
+    trie.add(file("a/b/c.txt"));
+    trie.add(file("a/b/d.txt"));
+
+    VirtualFileTrie copy = trie.copy();
+    copy.add(file("a/b/e.txt"));
+    copy.remove(file("a/b/c.txt"));
+    trie.add(file("a/f.txt"));
+    trie.remove(file("a/b/d.txt"));
+
+    assertSameFiles(trie.getFiles(), "a/b/c.txt", "a/f.txt");
+    assertSameFiles(copy.getFiles(), "a/b/d.txt", "a/b/e.txt");
+
+    VirtualFileTrie copyOfCopy = copy.copy();
+    copyOfCopy.clear();
+    assertTrue(copyOfCopy.isEmpty());
+    assertSameFiles(copy.getFiles(), "a/b/d.txt", "a/b/e.txt");
+  }
+
+  @Test
+  public void testRandomChangesOfCopies() {
+    List<VirtualFile> files = new ArrayList<VirtualFile>();
+    for (int i = 0; i < 3; i++) {
+      files.add(file("d" + i));
+      for (int j = 0; j < 20; j++) {
+        files.add(file("d" + i + "/s" + j % 4 + "/f" + j));
+        files.add(file("d" + i + "/s" + j % 4 + "/deep/er/f" + j));
+      }
+    }
+
+    Random random = new Random(42);
+    List<VirtualFileTrie> tries = new ArrayList<VirtualFileTrie>();
+    List<Set<VirtualFile>> sets = new ArrayList<Set<VirtualFile>>();
+    tries.add(new VirtualFileTrie());
+    sets.add(new HashSet<VirtualFile>());
+    for (int step = 0; step < 5000; step++) {
+      int index = random.nextInt(tries.size());
+      VirtualFileTrie trie = tries.get(index);
+      Set<VirtualFile> set = sets.get(index);
+      VirtualFile file = files.get(random.nextInt(files.size()));
+      switch (random.nextInt(5)) {
+        case 0:
+          if (tries.size() < 10) {
+            tries.add(trie.copy());
+            sets.add(new HashSet<VirtualFile>(set));
+          }
+          break;
+        case 1:
+        case 2:
+          assertEquals(set.remove(file), trie.remove(file));
+          break;
+        default:
+          assertEquals(!set.add(file), trie.add(file) != null);
+      }
+      assertEquals(set.size(), trie.size());
+    }
+
+    for (int i = 0; i < tries.size(); i++) {
+      VirtualFileTrie trie = tries.get(i);
+      Set<VirtualFile> set = sets.get(i);
+      assertEquals(set, new HashSet<VirtualFile>(trie.getFiles()));
+      for (VirtualFile file : files) {
+        assertEquals(set.contains(file), trie.contains(file));
+      }
+
+      VirtualFileTrie rebuilt = new VirtualFileTrie();
+      for (VirtualFile file : set) {
+        rebuilt.add(file);
+      }
+      assertEquals(rebuilt, trie);
+    }
+  }
+
+  private void assertSameFiles(@NotNull List<VirtualFile> actual, @NotNull String... expected) {
+    Set<VirtualFile> expectedFiles = new HashSet<VirtualFile>();
+    for (String path : expected) {
+      expectedFiles.add(file(path));
+    }
+    assertEquals(expected.length, actual.size());
+    assertEquals(expectedFiles, new HashSet<VirtualFile>(actual));
+  }
+
+  @NotNull
+  private FilePathImpl path(@NotNull String path) {
+    return new FilePathImpl(file(path));
+  }
+
+  /**
+   * Paths without an extension are directories
+   */
+  @NotNull
+  private MockVirtualFile file(@NotNull String path) {
+    MockVirtualFile file = myFiles.get(path);
+    if (file == null) {
+      int index = path.lastIndexOf('/');
+      String name = path.substring(index + 1);
+      file = new MockVirtualFile(!name.contains("."), name);
+      file.setParent(index < 0 ? myRoot : file(path.substring(0, index)));
+      myFiles.put(path, file);
+    }
+    return file;
+  }
+}
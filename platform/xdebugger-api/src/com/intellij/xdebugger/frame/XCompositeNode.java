@@ -32,9 +32,19 @@ import javax.swing.*;
 public interface XCompositeNode extends Obsolescent {
   /**
    * If node has more children than this constant it's recommended to stop adding children and call {@link #tooManyChildren(int)} method
+   * @see #getMaxChildrenToShow()
    */
   int MAX_CHILDREN_TO_SHOW = 100;
 
+  /**
+   * Size of a page of children: if node has more children than this number it's recommended to stop adding children
+   * and call {@link #tooManyChildren(int)} method, the next page is requested by calling {@link XValueContainer#computeChildren(XCompositeNode)} again.
+   * The debugger tree may request the next page before the user asks for it.
+   */
+  default int getMaxChildrenToShow() {
+    return MAX_CHILDREN_TO_SHOW;
+  }
+
   /**
    * Add children to the node.
    * @param children child nodes to add
@@ -46,7 +56,7 @@ public interface XCompositeNode extends Obsolescent {
    * Add an ellipsis node ("...") indicating that the node has too many children. If user double-click on that node
    * {@link XValueContainer#computeChildren(XCompositeNode)} method will be called again to add next children.
    * @param remaining number of remaining children or <code>-1</code> if unknown
-   * @see #MAX_CHILDREN_TO_SHOW
+   * @see #getMaxChildrenToShow()
    */
   void tooManyChildren(int remaining);
 
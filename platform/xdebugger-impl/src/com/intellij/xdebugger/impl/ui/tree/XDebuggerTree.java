@@ -25,6 +25,7 @@ import com.intellij.openapi.editor.Editor;
 import com.intellij.openapi.fileEditor.FileEditorManager;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.Condition;
+import com.intellij.openapi.util.registry.Registry;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vcs.changes.issueLinks.TreeLinkMouseListener;
 import com.intellij.ui.DoubleClickListener;
@@ -56,6 +57,7 @@ import javax.swing.tree.TreePath;
 import java.awt.*;
 import java.awt.datatransfer.Transferable;
 import java.awt.event.*;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -245,6 +247,56 @@ public class XDebuggerTree extends DnDAwareTree implements DataProvider, Disposa
     return false;
   }
 
+  @Override
+  protected void paintComponent(Graphics g) {
+    super.paintComponent(g);
+    requestVisibleNodesData();
+  }
+
+  /**
+   * Presentations of values added after the first page of children are computed only when their rows are painted,
+   * and the next page of children is prefetched once its ellipsis row is within a screen below the painted rows.
+   * The requests for all rows of a paint are sent together after the paint.
+   */
+  private void requestVisibleNodesData() {
+    Rectangle visibleRect = getVisibleRect();
+    int first = getClosestRowForLocation(visibleRect.x, visibleRect.y);
+    int last = getClosestRowForLocation(visibleRect.x, visibleRect.y + visibleRect.height);
+    if (first < 0 || last < 0) return;
+    int lastPrefetched = Math.min(getRowCount() - 1, last + last - first + 1);
+
+    final List<XValueNodeImpl> values = new ArrayList<>();
+    final List<MessageTreeNode> ellipsisNodes = new ArrayList<>();
+    boolean loadMoreChildren = Registry.is("debugger.tree.load.children.on.scroll");
+    for (int row = first; row <= lastPrefetched; row++) {
+      TreePath path = getPathForRow(row);
+      if (path == null) continue;
+      Object node = path.getLastPathComponent();
+      if (row <= last && node instanceof XValueNodeImpl && !((XValueNodeImpl)node).isPresentationRequested()) {
+        values.add((XValueNodeImpl)node);
+      }
+      else if (loadMoreChildren && node instanceof MessageTreeNode && ((MessageTreeNode)node).isEllipsis()) {
+        ellipsisNodes.add((MessageTreeNode)node);
+      }
+    }
+    if (values.isEmpty() && ellipsisNodes.isEmpty()) return;
+
+    //noinspection SSBasedInspection
+    SwingUtilities.invokeLater(() -> {
+      for (XValueNodeImpl value : values) {
+        if (!value.isObsolete()) {
+          value.computePresentationIfNeeded();
+        }
+      }
+      for (MessageTreeNode ellipsis : ellipsisNodes) {
+        TreeNode parent = ellipsis.getParent();
+        if (parent instanceof XValueContainerNode) {
+          ((XValueContainerNode)parent).loadMoreChildren(ellipsis);
+        }
+      }
+    });
+  }
+
   public void addTreeListener(@NotNull XDebuggerTreeListener listener) {
     myListeners.add(listener);
   }
@@ -15,6 +15,7 @@
  */
 package com.intellij.xdebugger.impl.ui.tree.nodes;
 
+import com.intellij.openapi.util.registry.Registry;
 import com.intellij.ui.SimpleTextAttributes;
 import com.intellij.util.ObjectUtils;
 import com.intellij.util.SmartList;
@@ -92,8 +93,11 @@ public abstract class XValueContainerNode<ValueContainer extends XValueContainer
         }
         boolean valuesInline = XDebuggerSettingsManager.getInstance().getDataViewSettings().isShowValuesInline();
         InlineDebuggerHelper inlineHelper = getTree().getEditorsProvider().getInlineDebuggerHelper();
+        int maxChildrenToShow = getMaxChildrenToShow();
         for (int i = 0; i < children.size(); i++) {
-          XValueNodeImpl node = new XValueNodeImpl(myTree, this, children.getName(i), children.getValue(i));
+          // presentations of the children after the first page are computed when they are shown, see XDebuggerTree.requestVisibleNodesData()
+          boolean computePresentation = myValueChildren.size() < maxChildrenToShow;
+          XValueNodeImpl node = new XValueNodeImpl(myTree, this, children.getName(i), children.getValue(i), computePresentation);
           myValueChildren.add(node);
           newChildren.add(node);
 
@@ -143,6 +147,19 @@ public abstract class XValueContainerNode<ValueContainer extends XValueContainer
     return nodes;
   }
 
+  @Override
+  public int getMaxChildrenToShow() {
+    return Math.max(1, Registry.intValue("debugger.tree.children.page.size"));
+  }
+
+  /**
+   * Requests the next page of children if the ellipsis node is still shown
+   */
+  public void loadMoreChildren(@NotNull MessageTreeNode ellipsis) {
+    if (myObsolete || myTemporaryMessageChildren == null || !myTemporaryMessageChildren.contains(ellipsis)) return;
+    startComputingChildren();
+  }
+
   @Override
   public void tooManyChildren(final int remaining) {
     invokeNodeUpdate(() -> setTemporaryMessageNode(MessageTreeNode.createEllipsisNode(myTree, this, remaining)));
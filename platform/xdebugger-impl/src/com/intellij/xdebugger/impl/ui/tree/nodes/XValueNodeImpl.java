@@ -64,13 +64,24 @@ public class XValueNodeImpl extends XValueContainerNode<XValue> implements XValu
   private XFullValueEvaluator myFullValueEvaluator;
   private boolean myChanged;
   private XValuePresentation myValuePresentation;
+  private boolean myPresentationRequested;
 
   //todo[nik] annotate 'name' with @NotNull
   public XValueNodeImpl(XDebuggerTree tree, @Nullable XDebuggerTreeNode parent, String name, @NotNull XValue value) {
+    this(tree, parent, name, value, true);
+  }
+
+  /**
+   * @param computePresentation <code>false</code> to postpone the computation of the presentation until the node is shown,
+   *                            see {@link #computePresentationIfNeeded()}
+   */
+  public XValueNodeImpl(XDebuggerTree tree, @Nullable XDebuggerTreeNode parent, String name, @NotNull XValue value, boolean computePresentation) {
     super(tree, parent, value);
     myName = name;
 
-    value.computePresentation(this, XValuePlace.TREE);
+    if (computePresentation) {
+      computePresentationIfNeeded();
+    }
 
     // add "Collecting" message only if computation is not yet done
     if (!isComputed()) {
@@ -82,6 +93,16 @@ public class XValueNodeImpl extends XValueContainerNode<XValue> implements XValu
     }
   }
 
+  public boolean isPresentationRequested() {
+    return myPresentationRequested;
+  }
+
+  public void computePresentationIfNeeded() {
+    if (myPresentationRequested) return;
+    myPresentationRequested = true;
+    myValueContainer.computePresentation(this, XValuePlace.TREE);
+  }
+
   @Override
   public void setPresentation(@Nullable Icon icon, @NonNls @Nullable String type, @NonNls @NotNull String value, boolean hasChildren) {
     XValueNodePresentationConfigurator.setPresentation(icon, type, value, hasChildren, this);
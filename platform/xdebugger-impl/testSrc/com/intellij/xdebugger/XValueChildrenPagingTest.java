@@ -0,0 +1,267 @@
+/*
+ * Copyright 2013-2016 consulo.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.xdebugger;
+
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.EditorFactory;
+import com.intellij.openapi.fileTypes.FileType;
+import com.intellij.openapi.fileTypes.PlainTextFileType;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.util.registry.Registry;
+import com.intellij.openapi.util.registry.RegistryValue;
+import com.intellij.testFramework.PlatformTestCase;
+import com.intellij.util.ui.UIUtil;
+import com.intellij.xdebugger.evaluation.EvaluationMode;
+import com.intellij.xdebugger.evaluation.XDebuggerEditorsProvider;
+import com.intellij.xdebugger.frame.*;
+import com.intellij.xdebugger.impl.actions.XDebuggerActions;
+import com.intellij.xdebugger.impl.ui.tree.XDebuggerTree;
+import com.intellij.xdebugger.impl.ui.tree.nodes.MessageTreeNode;
+import com.intellij.xdebugger.impl.ui.tree.nodes.XValueContainerNode;
+import com.intellij.xdebugger.impl.ui.tree.nodes.XValueNodeImpl;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.swing.tree.TreeNode;
+import javax.swing.tree.TreePath;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.List;
+
+public class XValueChildrenPagingTest extends PlatformTestCase {
+  private XDebuggerTree myTree;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myTree = new XDebuggerTree(myProject, new MyEditorsProvider(), null, XDebuggerActions.VARIABLES_TREE_POPUP_GROUP, null);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    try {
+      Disposer.dispose(myTree);
+      myTree = null;
+    }
+    finally {
+      super.tearDown();
+    }
+  }
+
+  public void testChildrenArePagedByRegistryPageSize() {
+    RegistryValue pageSize = Registry.get("debugger.tree.children.page.size");
+    int oldPageSize = pageSize.asInteger();
+    pageSize.setValue(3);
+    try {
+      MyChildValue[] values = createValues(7);
+      XValueNodeImpl root = createRoot(values);
+
+      loadChildren(root);
+      assertEquals(3, root.getLoadedChildren().size());
+      assertTrue(values[2].myPresentationComputed);
+      assertFalse(values[3].myPresentationComputed);
+      MessageTreeNode ellipsis = findEllipsis(root);
+      assertNotNull(ellipsis);
+
+      root.loadMoreChildren(ellipsis);
+      drain();
+      assertEquals(6, root.getLoadedChildren().size());
+      assertNotNull(findEllipsis(root));
+    }
+    finally {
+      pageSize.setValue(oldPageSize);
+    }
+  }
+
+  public void testNextPageIsPrefetchedBeforeEllipsisIsShown() {
+    RegistryValue pageSize = Registry.get("debugger.tree.children.page.size");
+    int oldPageSize = pageSize.asInteger();
+    pageSize.setValue(3);
+    try {
+      MyChildValue[] values = createValues(10);
+      XValueNodeImpl root = createRoot(values);
+      loadChildren(root);
+      myTree.expandPath(new TreePath(root));
+
+      // the root and the first two children are shown, the ellipsis is two rows below them
+      myTree.setRowHeight(10);
+      myTree.setSize(200, 25);
+      paint();
+      assertEquals(6, root.getLoadedChildren().size());
+      for (int i = 3; i < 6; i++) {
+        assertFalse("child " + i, values[i].myPresentationComputed);
+      }
+    }
+    finally {
+      pageSize.setValue(oldPageSize);
+    }
+  }
+
+  public void testPresentationsAfterFirstPageAreDeferred() {
+    int pageSize = createRoot().getMaxChildrenToShow();
+    MyChildValue[] values = createValues(2 * pageSize + 1);
+    XValueNodeImpl root = createRoot(values);
+
+    loadChildren(root);
+    assertEquals(pageSize, root.getLoadedChildren().size());
+    for (int i = 0; i < pageSize; i++) {
+      assertTrue("child " + i, values[i].myPresentationComputed);
+    }
+
+    MessageTreeNode ellipsis = findEllipsis(root);
+    assertNotNull(ellipsis);
+    root.loadMoreChildren(ellipsis);
+    drain();
+
+    List<? extends XValueContainerNode<?>> children = root.getLoadedChildren();
+    assertEquals(2 * pageSize, children.size());
+    for (int i = pageSize; i < 2 * pageSize; i++) {
+      assertFalse("child " + i, ((XValueNodeImpl)children.get(i)).isPresentationRequested());
+      assertFalse("child " + i, values[i].myPresentationComputed);
+    }
+
+    XValueNodeImpl shown = (XValueNodeImpl)children.get(pageSize);
+    shown.computePresentationIfNeeded();
+    assertTrue(shown.isPresentationRequested());
+    assertTrue(values[pageSize].myPresentationComputed);
+    assertFalse(values[pageSize + 1].myPresentationComputed);
+  }
+
+  public void testLastPageRemovesEllipsis() {
+    int pageSize = createRoot().getMaxChildrenToShow();
+    MyChildValue[] values = createValues(pageSize + 1);
+    XValueNodeImpl root = createRoot(values);
+
+    loadChildren(root);
+    MessageTreeNode ellipsis = findEllipsis(root);
+    assertNotNull(ellipsis);
+
+    root.loadMoreChildren(ellipsis);
+    drain();
+    assertEquals(pageSize + 1, root.getLoadedChildren().size());
+    assertNull(findEllipsis(root));
+
+    // an ellipsis which is not shown anymore does not load anything
+    root.loadMoreChildren(ellipsis);
+    drain();
+    assertEquals(pageSize + 1, root.getLoadedChildren().size());
+  }
+
+  @NotNull
+  private XValueNodeImpl createRoot(@NotNull MyChildValue... values) {
+    XValueNodeImpl root = new XValueNodeImpl(myTree, null, "root", new MyContainerValue(values));
+    myTree.setRoot(root, true);
+    return root;
+  }
+
+  @NotNull
+  private static MyChildValue[] createValues(int count) {
+    MyChildValue[] values = new MyChildValue[count];
+    for (int i = 0; i < count; i++) {
+      values[i] = new MyChildValue();
+    }
+    return values;
+  }
+
+  private void loadChildren(@NotNull XValueNodeImpl node) {
+    node.getChildren();
+    drain();
+  }
+
+  private void paint() {
+    BufferedImage image = UIUtil.createImage(myTree.getWidth(), myTree.getHeight(), BufferedImage.TYPE_INT_RGB);
+    Graphics graphics = image.getGraphics();
+    try {
+      myTree.paint(graphics);
+    }
+    finally {
+      graphics.dispose();
+    }
+    UIUtil.dispatchAllInvocationEvents();
+    drain();
+  }
+
+  private void drain() {
+    myTree.getLaterInvocator().drain();
+  }
+
+  @Nullable
+  private static MessageTreeNode findEllipsis(@NotNull XValueNodeImpl node) {
+    for (TreeNode child : node.getChildren()) {
+      if (child instanceof MessageTreeNode && ((MessageTreeNode)child).isEllipsis()) {
+        return (MessageTreeNode)child;
+      }
+    }
+    return null;
+  }
+
+  private static class MyContainerValue extends XValue {
+    private final MyChildValue[] myChildren;
+    private int myNext;
+
+    private MyContainerValue(@NotNull MyChildValue[] children) {
+      myChildren = children;
+    }
+
+    @Override
+    public void computePresentation(@NotNull XValueNode node, @NotNull XValuePlace place) {
+      node.setPresentation(null, null, "container", true);
+    }
+
+    @Override
+    public void computeChildren(@NotNull XCompositeNode node) {
+      node.setAlreadySorted(true);
+      int end = Math.min(myChildren.length, myNext + node.getMaxChildrenToShow());
+      XValueChildrenList list = new XValueChildrenList(end - myNext);
+      for (int i = myNext; i < end; i++) {
+        list.add("child" + i, myChildren[i]);
+      }
+      myNext = end;
+      node.addChildren(list, end == myChildren.length);
+      if (end < myChildren.length) {
+        node.tooManyChildren(myChildren.length - end);
+      }
+    }
+  }
+
+  private static class MyChildValue extends XValue {
+    private boolean myPresentationComputed;
+
+    @Override
+    public void computePresentation(@NotNull XValueNode node, @NotNull XValuePlace place) {
+      myPresentationComputed = true;
+      node.setPresentation(null, null, "value", false);
+    }
+  }
+
+  private static class MyEditorsProvider extends XDebuggerEditorsProvider {
+    @NotNull
+    @Override
+    public FileType getFileType() {
+      return PlainTextFileType.INSTANCE;
+    }
+
+    @NotNull
+    @Override
+    public Document createDocument(@NotNull Project project,
+                                   @NotNull String text,
+                                   @Nullable XSourcePosition sourcePosition,
+                                   @NotNull EvaluationMode mode) {
+      return EditorFactory.getInstance().createDocument(text);
+    }
+  }
+}